@@ -1,20 +1,13 @@
 package com.github.thbrown.softballsim;
 
-import java.lang.reflect.Field;
-import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
-import com.github.thbrown.softballsim.data.gson.helpers.DataPlayerLookupImpl;
 import com.github.thbrown.softballsim.lineup.BattingLineup;
 import com.github.thbrown.softballsim.optimizer.OptimizerEnum;
-import com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive.MonteCarloExhaustiveResult;
 import com.github.thbrown.softballsim.util.GsonAccessor;
 import com.github.thbrown.softballsim.util.StringUtils;
-import com.google.gson.Gson;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
-import com.github.thbrown.softballsim.util.Logger;
 
 /**
  * This class contains the output of an optimization. It's used for reporting to the end user as
@@ -49,7 +42,6 @@ public abstract class Result {
   // Make sure these match the actual variable name used above!
   // TODO: test these are valid in unit test with
   // this.getClass().getDeclaredFields()
-  private final static String ESTIMATED_TIME_VARIABLE_NAME = "estimatedTimeRemainingMs";
   private final static String STATUS_VARIABLE_NAME = "status";
   private final static String STATUS_MESSAGE_VARIABLE_NAME = "statusMessage";
 
@@ -77,44 +69,66 @@ public abstract class Result {
     this.timestamp = System.currentTimeMillis();
   }
 
+  /**
+   * Copy constructor, see {@link #copy(ResultStatusEnum, String, Long)}
+   */
+  protected Result(Result toCopy, ResultStatusEnum status, String statusMessage, Long estimatedTimeRemainingMs) {
+    this.optimizer = toCopy.optimizer;
+    this.lineup = toCopy.lineup;
+    this.lineupScore = toCopy.lineupScore;
+    this.countTotal = toCopy.countTotal;
+    this.countCompleted = toCopy.countCompleted;
+    this.elapsedTimeMs = toCopy.elapsedTimeMs;
+    this.status = status;
+    this.statusMessage = statusMessage;
+    this.estimatedTimeRemainingMs = estimatedTimeRemainingMs;
+    this.timestamp = toCopy.timestamp;
+  }
+
   public Result(OptimizerEnum optimizer, long duration) {
     this(optimizer, null, 0, 0, 0, 0, ResultStatusEnum.ESTIMATE, null, duration);
   }
 
   /**
-   * Copy an existing Result but provide timeRemainingMs. This uses Gson serialization/deserialization
-   * to maintain subclass status (i.e. If you call this on a MonteCarloExaustiveResult, you will get
-   * back a MonteCarloExaustiveResult)
+   * Copy an existing Result but provide timeRemainingMs. The copy is the same class as this result
+   * (i.e. If you call this on a MonteCarloExhaustiveResult, you will get back a
+   * MonteCarloExhaustiveResult)
    */
   public final Result copyWithNewEstimatedTimeRemainingMs(Long estimatedTimeRemainingMs) {
-    // Setup for serializing and deserializing BattingLineups (to make a copy)
-    List<BattingLineup> battingLineups = getAllBattingLineupsInClassHierarchy();
-    DataPlayerLookupImpl lookup = new DataPlayerLookupImpl(battingLineups);
-    Gson g = GsonAccessor.getInstance().getCustomWithStatsLookup(lookup);
-
-    // Perform the copy and alter estimatedTimeRemainingMs
-    JsonObject obj = (JsonObject) g.toJsonTree(this);
-    obj.addProperty(Result.ESTIMATED_TIME_VARIABLE_NAME, estimatedTimeRemainingMs);
-    return g.fromJson(obj, this.getClass());
+    return copy(this.status, this.statusMessage, estimatedTimeRemainingMs);
   }
 
   /**
-   * Copy an existing Result but provide an updated status and statusMessages. This uses Gson
-   * serialization/deserialization to maintain subclass identity (i.e. If you call this on a
-   * MonteCarloExhaustiveResult, you will get back a MonteCarloExhaustiveResult)
+   * Copy an existing Result but provide an updated status and statusMessages. The copy is the same
+   * class as this result (i.e. If you call this on a MonteCarloExhaustiveResult, you will get back a
+   * MonteCarloExhaustiveResult)
    */
   public final Result copyWithNewStatus(ResultStatusEnum newStatus, String newStatusMessage) {
-    // Setup for serializing and deserializing BattingLineups (to make a copy)
-    List<BattingLineup> battingLineups = getAllBattingLineupsInClassHierarchy();
-    DataPlayerLookupImpl lookup = new DataPlayerLookupImpl(battingLineups);
-    Gson g = GsonAccessor.getInstance().getCustomWithStatsLookup(lookup);
-
-    // Perform the copy and alter status and status message
-    // Logger.log("Type " + this.getClass() + " " + newStatus);
-    JsonObject obj = (JsonObject) g.toJsonTree(this);
-    obj.addProperty(Result.STATUS_VARIABLE_NAME, newStatus.name());
-    obj.addProperty(Result.STATUS_MESSAGE_VARIABLE_NAME, newStatusMessage);
-    return g.fromJson(obj, this.getClass());
+    return copy(newStatus, newStatusMessage, this.estimatedTimeRemainingMs);
+  }
+
+  /**
+   * Copy this result, replacing the status, status message and estimated time remaining. Subclasses
+   * should implement this with a constructor that calls
+   * {@link #Result(Result, ResultStatusEnum, String, Long)}. Since results are immutable, fields may be
+   * shared with the copy.
+   */
+  protected abstract Result copy(ResultStatusEnum status, String statusMessage, Long estimatedTimeRemainingMs);
+
+  /**
+   * @return binary state the optimizer can resume from, or null if it has none. Checkpoints aren't part
+   *         of the result's JSON, data sources persist them separately.
+   */
+  public byte[] getCheckpoint() {
+    return null;
+  }
+
+  /**
+   * Reattach a checkpoint a data source persisted alongside this result. Results whose optimizer
+   * doesn't use checkpoints return themselves.
+   */
+  public Result withCheckpoint(byte[] checkpoint) {
+    return this;
   }
 
   /**
@@ -129,38 +143,6 @@ public abstract class Result {
     return GsonAccessor.getInstance().getDefault().toJson(obj);
   }
 
-  /**
-   * @returns a list of all batting lineups stored as instance variables in this object
-   */
-  private List<BattingLineup> getAllBattingLineupsInClassHierarchy() {
-    List<BattingLineup> battingLineups = new ArrayList<>();
-    List<Field> fields = getAllFields(this.getClass());
-    for (Field field : fields) {
-      String name = field.getName();
-      Object value;
-      try {
-        field.setAccessible(true);
-        value = field.get(this);
-      } catch (IllegalArgumentException | IllegalAccessException e) {
-        throw new RuntimeException(e);
-      }
-      // System.out.println(name + ": " + value.toString());
-      if (value instanceof BattingLineup) {
-        battingLineups.add((BattingLineup) value);
-      }
-    }
-    return battingLineups;
-  }
-
-  // https://stackoverflow.com/questions/1042798/retrieving-the-inherited-attribute-names-values-using-java-reflection
-  private static List<Field> getAllFields(Class<?> type) {
-    List<Field> fields = new ArrayList<Field>();
-    for (Class<?> c = type; c != null; c = c.getSuperclass()) {
-      fields.addAll(Arrays.asList(c.getDeclaredFields()));
-    }
-    return fields;
-  }
-
   @Override
   public final String toString() {
     final int INDENT = 3;
@@ -35,20 +35,31 @@ public class CloudUtils {
    * will not create a new bucket, however
    */
   public static void upsertBlob(String data, String blobName, String bucketName) {
+    upsertBlob(data.getBytes(ENCODING), "text/plain", blobName, bucketName);
+  }
+
+  /**
+   * Same as {@link #upsertBlob(String, String, String)}, but for binary data
+   */
+  public static void upsertBlob(byte[] data, String blobName, String bucketName) {
+    upsertBlob(data, "application/octet-stream", blobName, bucketName);
+  }
+
+  private static void upsertBlob(byte[] data, String contentType, String blobName, String bucketName) {
     Logger.log("Persist to bucket " + bucketName + ":" + blobName);
     Storage storage = StorageOptions.getDefaultInstance().getService();
 
     BlobId blobId = BlobId.of(bucketName, blobName);
     Blob blob = storage.get(blobId);
     if (blob == null) {
-      BlobInfo blobInfo = BlobInfo.newBuilder(blobId).setContentType("text/plain").build();
-      blob = storage.create(blobInfo, data.getBytes(ENCODING));
+      BlobInfo blobInfo = BlobInfo.newBuilder(blobId).setContentType(contentType).build();
+      blob = storage.create(blobInfo, data);
     } else {
       // byte[] prevContent = blob.getContent();
       // System.out.println(new String(prevContent, StandardCharsets.UTF_8));
       WritableByteChannel channel = blob.writer();
       try {
-        channel.write(ByteBuffer.wrap(data.getBytes(ENCODING)));
+        channel.write(ByteBuffer.wrap(data));
         channel.close();
       } catch (IOException e) {
         throw new RuntimeException(e);
@@ -73,13 +84,20 @@ public class CloudUtils {
    * Reads the entire content of the GCP Storage Bucket blob into a String and returns the result.
    */
   public static String readBlob(String blobName, String bucketName) {
+    byte[] content = readBlobBytes(blobName, bucketName);
+    return content == null ? null : new String(content, CloudUtils.ENCODING);
+  }
+
+  /**
+   * Reads the entire content of the GCP Storage Bucket blob, or returns null if it can't be read.
+   */
+  public static byte[] readBlobBytes(String blobName, String bucketName) {
     Logger.log("Read blob " + bucketName + ":" + blobName);
     Storage storage = StorageOptions.getDefaultInstance().getService();
 
     BlobId blobId = BlobId.of(bucketName, blobName);
     try {
-      byte[] content = storage.readAllBytes(blobId);
-      return new String(content, CloudUtils.ENCODING);
+      return storage.readAllBytes(blobId);
     } catch (StorageException e) {
       Logger.log("Unable to read " + bucketName + ":" + blobName + " returning null " + e.toString());
       return null;
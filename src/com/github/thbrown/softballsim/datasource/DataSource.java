@@ -109,6 +109,23 @@ public interface DataSource {
    */
   public String getControlFlag(CommandLine cmd, DataStats stats);
 
+  /**
+   * Reads a value saved by {@link #writeCacheEntry(CommandLine, String, String)} on this or an earlier
+   * run. Optimizers use these entries for intermediate values that are expensive to compute and don't
+   * depend on the optimizer's options, so unlike cached results they're shared between runs.
+   * 
+   * @return the value, or null if there isn't one or this data source doesn't keep cache entries
+   */
+  public default String readCacheEntry(CommandLine cmd, String key) {
+    return null;
+  }
+
+  /**
+   * Saves a value for {@link #readCacheEntry(CommandLine, String)}. Key should be usable as a file name.
+   * Does nothing by default.
+   */
+  public default void writeCacheEntry(CommandLine cmd, String key, String value) {}
+
   /**
    * Send HTTP post to the endpoint indicated by the input parameters. Returns false if API call
    * failed and can be retried, returns true otherwise.
@@ -61,6 +61,16 @@ public enum DataSourceEnum implements DataSource {
     return dataSource.getControlFlag(cmd, stats);
   }
 
+  @Override
+  public String readCacheEntry(CommandLine cmd, String key) {
+    return dataSource.readCacheEntry(cmd, key);
+  }
+
+  @Override
+  public void writeCacheEntry(CommandLine cmd, String key, String value) {
+    dataSource.writeCacheEntry(cmd, key, value);
+  }
+
   @Override
   public void onUpdate(CommandLine cmd, DataStats stats, ProgressTracker tracker) {
     dataSource.onUpdate(cmd, stats, tracker);
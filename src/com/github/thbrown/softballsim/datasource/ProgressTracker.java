@@ -1,5 +1,7 @@
 package com.github.thbrown.softballsim.datasource;
 
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
 import org.apache.commons.cli.CommandLine;
 import com.github.thbrown.softballsim.CommandLineOptions;
 import com.github.thbrown.softballsim.Result;
@@ -17,6 +19,11 @@ import com.github.thbrown.softballsim.optimizer.OptimizerEnum;
  * This class must be thread safe as it is accessed by thread(s) that update the progress and a
  * separate thread that reports the progress.
  * 
+ * Building a Result can be expensive, and most of the results an optimizer could publish are never
+ * reported. So optimizers that make progress quickly should either publish a Supplier that builds the
+ * Result only when it's needed, see {@link #updateProgress(Supplier)}, or only build a Result when
+ * {@link #isUpdateDue()}.
+ * 
  * TODO: It might be good to split the thread safe data storage function of this class and the
  * update thread function into separate classes.
  */
@@ -33,6 +40,12 @@ public final class ProgressTracker {
   // This will always hold the most recent result, sync on all read/write access
   private Result mostRecentResult;
 
+  // The most recent lazily built result, if it's newer than mostRecentResult
+  private final AtomicReference<Supplier<? extends Result>> pendingResult = new AtomicReference<>();
+
+  // Set once the most recent result has been reported
+  private volatile boolean updateDue = true;
+
   private Long estimatedSecondsRemaining = null;
   private Long estimatedSecondsTotal = null;
 
@@ -62,7 +75,42 @@ public final class ProgressTracker {
 
   // This method is called from other threads
   public void updateProgress(Result updatedResult) {
-    updateResults(updatedResult);
+    synchronized (this) {
+      // This result is newer than any pending one
+      pendingResult.set(null);
+      updateResults(updatedResult);
+    }
+    updateDue = false;
+  }
+
+  /**
+   * Like {@link #updateProgress(Result)}, but the result isn't built until it's needed, if at all. This
+   * only replaces a reference, so it's cheap enough to call after every unit of work.
+   * 
+   * @param resultSupplier builds the result. It's called at most once, from whichever thread next
+   *        reads the current result, so it must only use state that won't change after this call.
+   */
+  public void updateProgress(Supplier<? extends Result> resultSupplier) {
+    pendingResult.set(resultSupplier);
+    updateDue = false;
+  }
+
+  /**
+   * @return true if the most recently published result has been reported, so an optimizer that can't
+   *         cheaply publish a Supplier should build and publish a new result.
+   */
+  public boolean isUpdateDue() {
+    return updateDue;
+  }
+
+  /**
+   * Builds the pending result, if there is one. Must be called while synchronized on this.
+   */
+  private void resolvePendingResult() {
+    Supplier<? extends Result> supplier = pendingResult.getAndSet(null);
+    if (supplier != null) {
+      updateResults(supplier.get());
+    }
   }
 
   private void updateResults(Result updatedResult) {
@@ -124,6 +172,7 @@ public final class ProgressTracker {
           break;
         }
         dataSource.onUpdate(cmd, stats, this);
+        updateDue = true;
 
         // If the optimization is in a terminal state, we don't need ProgressTracker
         Result recentResult = this.getCurrentResult();
@@ -157,6 +206,7 @@ public final class ProgressTracker {
 
   public Result getCurrentResult() {
     synchronized (this) {
+      resolvePendingResult();
       return mostRecentResult;
     }
   }
@@ -172,4 +222,18 @@ public final class ProgressTracker {
       return estimatedSecondsTotal;
     }
   }
+
+  /**
+   * See {@link DataSource#readCacheEntry(CommandLine, String)}
+   */
+  public String readCacheEntry(String key) {
+    return dataSource.readCacheEntry(cmd, key);
+  }
+
+  /**
+   * See {@link DataSource#writeCacheEntry(CommandLine, String, String)}
+   */
+  public void writeCacheEntry(String key, String value) {
+    dataSource.writeCacheEntry(cmd, key, value);
+  }
 }
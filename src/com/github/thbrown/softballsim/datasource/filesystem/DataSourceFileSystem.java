@@ -39,6 +39,9 @@ public class DataSourceFileSystem implements DataSource {
   public final static String CACHED_RESULTS_FILE_PATH = "./cache";
   public final static String CONTROL_FLAGS_FILE_PATH = "./flags";
 
+  // Optimizer checkpoints (see Result.getCheckpoint()) are saved next to the cached result
+  public final static String CHECKPOINT_SUFFIX = ".checkpoint";
+
   private final Gson gson = GsonAccessor.getInstance().getCustom();
 
   @Override
@@ -69,6 +72,7 @@ public class DataSourceFileSystem implements DataSource {
     String fileName = getFileName(cmd, gson.toJson(stats));
     File cacheFile = getFilePath(statsFileLocation, fileName);
     writeFile(result, cacheFile);
+    writeCheckpoint(currentResult, cacheFile);
 
     DataSource.super.onUpdate(cmd, stats, tracker);
   }
@@ -81,6 +85,7 @@ public class DataSourceFileSystem implements DataSource {
     String fileName = getFileName(cmd, gson.toJson(stats));
     File cacheFile = getFilePath(statsFileLocation, fileName);
     writeFile(resultString, cacheFile);
+    writeCheckpoint(finalResult, cacheFile);
     DataSource.super.onComplete(cmd, stats, finalResult);
   }
 
@@ -132,7 +137,12 @@ public class DataSourceFileSystem implements DataSource {
           + " flag to disregard this cached result.");
       try {
         String data = new String(Files.readAllBytes(Paths.get(cacheFile.getCanonicalPath())));
-        return GsonAccessor.getInstance().getCustomWithStatsLookup(stats).fromJson(data, Result.class);
+        Result result = GsonAccessor.getInstance().getCustomWithStatsLookup(stats).fromJson(data, Result.class);
+        File checkpointFile = getCheckpointFile(cacheFile);
+        if (checkpointFile.exists()) {
+          result = result.withCheckpoint(Files.readAllBytes(checkpointFile.toPath()));
+        }
+        return result;
       } catch (Exception e) {
         Logger.warn("Failed to read/parse cached result file: " + cacheFile.getName() + " because " + e.getMessage()
             + ". Ignoring cached result and running a new simulation.");
@@ -141,6 +151,36 @@ public class DataSourceFileSystem implements DataSource {
     return null;
   }
 
+  @Override
+  public String readCacheEntry(CommandLine cmd, String key) {
+    File entryFile = getCacheEntryFile(cmd, key);
+    if (!entryFile.exists()) {
+      return null;
+    }
+    try {
+      return new String(Files.readAllBytes(entryFile.toPath()));
+    } catch (IOException e) {
+      Logger.warn("Failed to read cache entry " + entryFile.getName() + " because " + e.getMessage());
+      return null;
+    }
+  }
+
+  @Override
+  public void writeCacheEntry(CommandLine cmd, String key, String value) {
+    writeFile(value, getCacheEntryFile(cmd, key));
+  }
+
+  /**
+   * Cache entries go in the cache directory, or next to the cache file if the cache path is a file
+   */
+  private File getCacheEntryFile(CommandLine cmd, String key) {
+    File cachePath = new File(cmd.getOptionValue(CACHE_PATH, CACHED_RESULTS_FILE_PATH));
+    if (cachePath.isDirectory()) {
+      return new File(cachePath, key);
+    }
+    return new File(cachePath.getAbsoluteFile().getParentFile(), key);
+  }
+
   @Override
   public String getControlFlag(CommandLine cmd, DataStats stats) {
     String flagsFileLocation = cmd.getOptionValue(FLAGS_PATH, CONTROL_FLAGS_FILE_PATH);
@@ -173,6 +213,28 @@ public class DataSourceFileSystem implements DataSource {
     return flagsPath;
   }
 
+  private File getCheckpointFile(File cacheFile) {
+    return new File(cacheFile.getPath() + CHECKPOINT_SUFFIX);
+  }
+
+  /**
+   * Saves the result's checkpoint next to the cache file, or removes an old checkpoint if the result
+   * doesn't have one so it's never paired with a newer result
+   */
+  private void writeCheckpoint(Result result, File cacheFile) {
+    File checkpointFile = getCheckpointFile(cacheFile);
+    byte[] checkpoint = result.getCheckpoint();
+    try {
+      if (checkpoint == null) {
+        Files.deleteIfExists(checkpointFile.toPath());
+      } else {
+        Files.write(checkpointFile.toPath(), checkpoint);
+      }
+    } catch (IOException e) {
+      Logger.error("There was a problem writing to " + checkpointFile.getAbsolutePath() + ". " + e.toString());
+    }
+  }
+
   private void writeFile(String value, File file) {
     try {
       if (!file.exists()) {
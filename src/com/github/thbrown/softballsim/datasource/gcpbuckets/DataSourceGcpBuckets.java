@@ -23,6 +23,9 @@ public class DataSourceGcpBuckets implements DataSource {
   public final static String CACHED_RESULTS_BUCKET = "optimization-results";
   public final static String CONTROL_FLAGS_BUCKET = "optimization-flags";
 
+  // Optimizer checkpoints (see Result.getCheckpoint()) are saved next to the cached result
+  public final static String CHECKPOINT_SUFFIX = ".checkpoint";
+
   private final Gson gson = GsonAccessor.getInstance().getCustom();
 
   @Override
@@ -46,9 +49,10 @@ public class DataSourceGcpBuckets implements DataSource {
     Logger.log("cached result " + result);
     if (result == null) {
       return null;
-    } else {
-      return GsonAccessor.getInstance().getCustomWithStatsLookup(stats).fromJson(result, Result.class);
     }
+    Result cachedResult = GsonAccessor.getInstance().getCustomWithStatsLookup(stats).fromJson(result, Result.class);
+    byte[] checkpoint = CloudUtils.readBlobBytes(getCheckpointBlobName(cmd), CACHED_RESULTS_BUCKET);
+    return checkpoint == null ? cachedResult : cachedResult.withCheckpoint(checkpoint);
   }
 
   @Override
@@ -57,6 +61,7 @@ public class DataSourceGcpBuckets implements DataSource {
     try {
       CloudUtils.upsertBlob(gson.toJson(latestResult), cmd.getOptionValue(DataSourceGcpBuckets.NAME),
           CACHED_RESULTS_BUCKET);
+      writeCheckpoint(cmd, latestResult);
     } catch (Exception e) {
       // It's not so bad if we skip an update
       Logger.log(e);
@@ -72,6 +77,7 @@ public class DataSourceGcpBuckets implements DataSource {
       Logger.log(finalResult);
       CloudUtils.upsertBlob(gson.toJson(finalResult), cmd.getOptionValue(DataSourceGcpBuckets.NAME),
           CACHED_RESULTS_BUCKET);
+      writeCheckpoint(cmd, finalResult);
 
       CloudUtils.deleteBlob(cmd.getOptionValue(DataSourceGcpBuckets.NAME), STATS_DATA_BUCKET);
       CloudUtils.deleteBlob(cmd.getOptionValue(DataSourceGcpBuckets.NAME), CONTROL_FLAGS_BUCKET);
@@ -79,6 +85,21 @@ public class DataSourceGcpBuckets implements DataSource {
     DataSource.super.onComplete(cmd, stats, finalResult);
   }
 
+  /**
+   * Saves the result's checkpoint next to the cached result. Names are unique per request, so there's
+   * no older checkpoint to clean up when a result doesn't have one.
+   */
+  private void writeCheckpoint(CommandLine cmd, Result result) {
+    byte[] checkpoint = result.getCheckpoint();
+    if (checkpoint != null) {
+      CloudUtils.upsertBlob(checkpoint, getCheckpointBlobName(cmd), CACHED_RESULTS_BUCKET);
+    }
+  }
+
+  private String getCheckpointBlobName(CommandLine cmd) {
+    return cmd.getOptionValue(DataSourceGcpBuckets.NAME) + CHECKPOINT_SUFFIX;
+  }
+
   @Override
   public String getControlFlag(CommandLine cmd, DataStats stats) {
     return CloudUtils.readBlob(cmd.getOptionValue(DataSourceGcpBuckets.NAME),
@@ -66,6 +66,22 @@ public class AlternatingBattingLineup implements BattingLineup {
     }
   }
 
+  @Override
+  public int getBattingOrderLength() {
+    // Each group cycles independently, so the order repeats after the least common multiple of the
+    // two group sizes has batted from each group
+    int a = groupA.size();
+    int b = groupB.size();
+    int gcd = a;
+    int remainder = b;
+    while (remainder != 0) {
+      int temp = gcd % remainder;
+      gcd = remainder;
+      remainder = temp;
+    }
+    return 2 * (a / gcd * b);
+  }
+
   @Override
   public String toString() {
     final int SPACING = 3;
@@ -27,6 +27,14 @@ public interface BattingLineup {
    */
   public DataPlayer getBatter(int index);
 
+  /**
+   * The number of plate appearances it takes for the batting order to repeat itself. That is, for
+   * every index i, getBatter(i) is the same player as getBatter(i + getBattingOrderLength()).
+   */
+  public default int getBattingOrderLength() {
+    return size();
+  }
+
   /**
    * String used to identify the type of lineup during serialization/deserialization
    * 
@@ -3,6 +3,7 @@ package com.github.thbrown.softballsim.lineupindexer;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Arrays;
+import java.util.Random;
 import org.apache.commons.math3.util.Pair;
 import com.github.thbrown.softballsim.data.gson.DataPlayer;
 import com.github.thbrown.softballsim.data.gson.DataStats;
@@ -10,9 +11,9 @@ import com.github.thbrown.softballsim.lineup.AlternatingBattingLineup;
 import com.github.thbrown.softballsim.lineup.BattingLineup;
 import com.github.thbrown.softballsim.util.CombinatoricsUtil;
 import com.github.thbrown.softballsim.util.Logger;
-import java.util.concurrent.ThreadLocalRandom;
+import com.github.thbrown.softballsim.util.MathUtil;
 
-public class AlternatingGenderLineupIndexer implements BattingLineupIndexer<AlternatingBattingLineup> {
+public class AlternatingGenderLineupIndexer implements InterleavedLineupIndexer<AlternatingBattingLineup> {
 
   private final List<DataPlayer> men = new ArrayList<>();
   private final List<DataPlayer> women = new ArrayList<>();
@@ -63,13 +64,67 @@ public class AlternatingGenderLineupIndexer implements BattingLineupIndexer<Alte
     }
   }
 
+  @Override
+  public List<DataPlayer> getPlayers() {
+    List<DataPlayer> players = new ArrayList<>(men);
+    players.addAll(women);
+    return players;
+  }
+
+  /**
+   * Slots are the group that bats first followed by the other group. Men are slots [0, men) and women
+   * are [men, men + women).
+   */
+  @Override
+  public AlternatingBattingLineup getLineup(int[] slots) {
+    List<DataPlayer> menOrder = new ArrayList<>(men.size());
+    List<DataPlayer> womenOrder = new ArrayList<>(women.size());
+    for (int slot : slots) {
+      if (slot < men.size()) {
+        menOrder.add(men.get(slot));
+      } else {
+        womenOrder.add(women.get(slot - men.size()));
+      }
+    }
+    if (slots[0] < men.size()) {
+      return new AlternatingBattingLineup(menOrder, womenOrder);
+    } else {
+      return new AlternatingBattingLineup(womenOrder, menOrder);
+    }
+  }
+
+  @Override
+  public LineupCursor<AlternatingBattingLineup> getCursor(long index) {
+    return new InterleavedLineupCursor<>(index, size, men.size(), women.size(), getLayout(), this::getLineup);
+  }
+
+  @Override
+  public int getFirstGroupSize() {
+    return men.size();
+  }
+
+  @Override
+  public InterleavedLineupCursor.Layout getLayout() {
+    // Layout 0 is men first, layout 1 is women first
+    return (layout, menPositions, womenPositions) -> {
+      int menStart = layout == 0 ? 0 : women.size();
+      int womenStart = layout == 0 ? men.size() : 0;
+      for (int i = 0; i < menPositions.length; i++) {
+        menPositions[i] = menStart + i;
+      }
+      for (int i = 0; i < womenPositions.length; i++) {
+        womenPositions[i] = womenStart + i;
+      }
+    };
+  }
+
   @Override
   public long size() {
     return this.size;
   }
 
   @Override
-  public Pair<Long, AlternatingBattingLineup> getRandomNeighbor(long index) {
+  public Pair<Long, AlternatingBattingLineup> getRandomNeighbor(long index, Random random) {
 
     // Get the current order
     AlternatingBattingLineup lineup = getLineup(index);
@@ -86,26 +141,26 @@ public class AlternatingGenderLineupIndexer implements BattingLineupIndexer<Alte
 
     long totalNumberOfPossibleSwaps =
         CombinatoricsUtil.binomial(groupA.size(), 2) + CombinatoricsUtil.binomial(groupB.size(), 2);
-    if (ThreadLocalRandom.current().nextLong(totalNumberOfPossibleSwaps + 1L) == 0) {
+    if (MathUtil.nextLong(random, totalNumberOfPossibleSwaps + 1L) == 0) {
       // Swap groupA and groupB (same probabibility of any other swap)
       newGroupAList = groupB;
       newGroupBList = groupA;
     } else {
       // Swap two random elements in either the male list or female list (longer lists are more likely to
       // be swapped)
-      if (ThreadLocalRandom.current().nextLong(totalNumberOfPossibleSwaps) < CombinatoricsUtil.binomial(groupA.size(),
+      if (MathUtil.nextLong(random, totalNumberOfPossibleSwaps) < CombinatoricsUtil.binomial(groupA.size(),
           2)) {
-        int randomOne = ThreadLocalRandom.current().nextInt(groupA.size());
+        int randomOne = random.nextInt(groupA.size());
         int randomTwo = 0;
         do {
-          randomTwo = ThreadLocalRandom.current().nextInt(groupA.size());
+          randomTwo = random.nextInt(groupA.size());
         } while (randomOne == randomTwo);
         CombinatoricsUtil.swap(randomOne, randomTwo, orderA);
       } else {
-        int randomOne = ThreadLocalRandom.current().nextInt(groupB.size());
+        int randomOne = random.nextInt(groupB.size());
         int randomTwo = 0;
         do {
-          randomTwo = ThreadLocalRandom.current().nextInt(groupB.size());
+          randomTwo = random.nextInt(groupB.size());
         } while (randomOne == randomTwo);
         CombinatoricsUtil.swap(randomOne, randomTwo, orderB);
       }
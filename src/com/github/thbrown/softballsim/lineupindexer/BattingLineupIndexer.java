@@ -1,8 +1,10 @@
 package com.github.thbrown.softballsim.lineupindexer;
 
 import java.util.List;
+import java.util.Random;
 import java.util.concurrent.ThreadLocalRandom;
 import org.apache.commons.math3.util.Pair;
+import com.github.thbrown.softballsim.data.gson.DataPlayer;
 import com.github.thbrown.softballsim.lineup.BattingLineup;
 
 /**
@@ -21,6 +23,49 @@ public interface BattingLineupIndexer<T extends BattingLineup> {
    */
   public T getLineup(long index);
 
+  /**
+   * The players that the int slots used by {@link LineupCursor} and
+   * {@link #getLineups(long, int, int[][])} refer to.
+   */
+  public List<DataPlayer> getPlayers();
+
+  /**
+   * Builds the lineup described by slots, an array of indexes into {@link #getPlayers()} as produced by
+   * a {@link LineupCursor}. For lineups that are a single batting order the slots are that order.
+   */
+  public T getLineup(int[] slots);
+
+  /**
+   * Gets a cursor positioned at the given index (which may be size(), in which case the cursor is
+   * already past the last lineup). Use this instead of {@link #getLineup(long)} to visit consecutive
+   * indexes.
+   */
+  public LineupCursor<T> getCursor(long index);
+
+  /**
+   * Writes the slots of up to count consecutive lineups, starting at index start, into out. Each
+   * out[i] must be at least as long as the number of players.
+   * 
+   * @return the number of lineups written, this is less than count if the end of the lineups is
+   *         reached
+   */
+  public default int getLineups(long start, int count, int[][] out) {
+    if (start >= size()) {
+      return 0;
+    }
+    LineupCursor<T> cursor = getCursor(start);
+    int written = 0;
+    while (written < count) {
+      int[] slots = cursor.getSlots();
+      System.arraycopy(slots, 0, out[written], 0, slots.length);
+      written++;
+      if (!cursor.next()) {
+        break;
+      }
+    }
+    return written;
+  }
+
   /**
    * Given a lineup, this method returns its index.
    */
@@ -38,8 +83,66 @@ public interface BattingLineupIndexer<T extends BattingLineup> {
    * 2) It should be possible to reach the optimal lineup from any other lineup by successive calls to
    * getRandomNeighbor(...). The fewer steps required, the better the implementation. Because of this,
    * a single lineup typically has lots of neighbors.
+   *
+   * @param random every random choice is drawn from this, so a seeded Random picks the same neighbor
+   *        every time
    */
-  public Pair<Long, T> getRandomNeighbor(long index);
+  public Pair<Long, T> getRandomNeighbor(long index, Random random);
 
+  /**
+   * Same as {@link #getRandomNeighbor(long, Random)} using the current thread's random
+   */
+  public default Pair<Long, T> getRandomNeighbor(long index) {
+    return getRandomNeighbor(index, ThreadLocalRandom.current());
+  }
+
+  /**
+   * Rearranges slots, as produced by a {@link LineupCursor}, into the slots of a random neighbor (see
+   * {@link #getRandomNeighbor(long)}) in place. Optimizers that take many small steps, most of which
+   * they reject, should use this with {@link #undoMove(int[], int[])} so they don't rank and unrank an
+   * index for every step. Implementers should override both methods with cheaper moves if they can,
+   * this implementation goes through the neighbor's index.
+   *
+   * @param undo receives what {@link #undoMove(int[], int[])} needs to restore slots, it must be at
+   *        least as long as slots
+   * @param random every random choice is drawn from this, see {@link #getRandomNeighbor(long, Random)}
+   * @return false if the lineup has no neighbors, in which case slots is unchanged
+   */
+  public default boolean moveToRandomNeighbor(int[] slots, int[] undo, Random random) {
+    Pair<Long, T> neighbor = getRandomNeighbor(getIndex(getLineup(slots)), random);
+    if (neighbor == null) {
+      return false;
+    }
+    System.arraycopy(slots, 0, undo, 0, slots.length);
+    System.arraycopy(getCursor(neighbor.getFirst()).getSlots(), 0, slots, 0, slots.length);
+    return true;
+  }
+
+  /**
+   * Same as {@link #moveToRandomNeighbor(int[], int[], Random)} using the current thread's random
+   */
+  public default boolean moveToRandomNeighbor(int[] slots, int[] undo) {
+    return moveToRandomNeighbor(slots, undo, ThreadLocalRandom.current());
+  }
+
+  /**
+   * Puts slots back the way they were before the last {@link #moveToRandomNeighbor(int[], int[])}
+   * that wrote to undo.
+   */
+  public default void undoMove(int[] slots, int[] undo) {
+    System.arraycopy(undo, 0, slots, 0, slots.length);
+  }
+
+  /**
+   * Players in the same group can trade places in any lineup and it's still one of this indexer's
+   * lineups, e.g. for lineups with rules about where men and women bat the groups are the genders. So
+   * rearranging players within their groups, but not which slots each group occupies, is always valid.
+   * By default every player is in the same group.
+   *
+   * @param slot a slot value, an index into {@link #getPlayers()}
+   */
+  public default int getGroup(int slot) {
+    return 0;
+  }
 
 }
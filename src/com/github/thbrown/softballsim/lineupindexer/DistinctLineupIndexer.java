@@ -0,0 +1,187 @@
+package com.github.thbrown.softballsim.lineupindexer;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.apache.commons.math3.util.Pair;
+import com.github.thbrown.softballsim.data.gson.DataPlayer;
+import com.github.thbrown.softballsim.lineup.BattingLineup;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive.HitGenerator;
+import com.github.thbrown.softballsim.util.CombinatoricsUtil;
+import com.github.thbrown.softballsim.util.MultisetPermutationCursor;
+
+/**
+ * Indexes the same lineups as another indexer, except that lineups which only differ by the order of
+ * identical players are indexed once.
+ *
+ * Players are identical if their plate appearance outcomes (see
+ * {@link HitGenerator#getOutcomeCounts(DataPlayer)}) happen in exactly the same proportions, e.g. a
+ * player with 1 single and 3 outs and a player with 2 singles and 6 outs. Every optimizer sees those
+ * players the same way, so swapping them doesn't change a lineup's score distribution. For k identical
+ * players this divides the number of lineups by k!.
+ *
+ * Each group of equivalent lineups is represented by the lineup in which identical players bat in the
+ * same relative order they have in {@link #getPlayers()}.
+ */
+public class DistinctLineupIndexer<T extends BattingLineup> implements BattingLineupIndexer<T> {
+
+  private final InterleavedLineupIndexer<T> indexer;
+
+  // The identity class of each player in each group, see MultisetPermutationCursor
+  private final int[] firstClasses;
+  private final int[] secondClasses;
+
+  // Number of orderings of each group for the wrapped indexer and for this one
+  private final long firstPermutations;
+  private final long secondPermutations;
+  private final long firstOrderings;
+  private final long secondOrderings;
+  private final long size;
+
+  public DistinctLineupIndexer(BattingLineupIndexer<T> indexer) {
+    if (!(indexer instanceof InterleavedLineupIndexer)) {
+      throw new IllegalArgumentException(
+          "Identical players can't be collapsed for lineups indexed by " + indexer.getClass().getSimpleName());
+    }
+    this.indexer = (InterleavedLineupIndexer<T>) indexer;
+
+    List<DataPlayer> players = indexer.getPlayers();
+    int firstSize = this.indexer.getFirstGroupSize();
+    this.firstClasses = getClasses(players.subList(0, firstSize));
+    this.secondClasses = getClasses(players.subList(firstSize, players.size()));
+
+    this.firstPermutations = CombinatoricsUtil.factorial(firstClasses.length);
+    this.secondPermutations = CombinatoricsUtil.factorial(secondClasses.length);
+    this.firstOrderings = MultisetPermutationCursor.countOrderings(firstClasses);
+    this.secondOrderings = MultisetPermutationCursor.countOrderings(secondClasses);
+
+    long layouts = indexer.size() / (firstPermutations * secondPermutations);
+    this.size = layouts * firstOrderings * secondOrderings;
+  }
+
+  /**
+   * Numbers the distinct outcome distributions in the group from 0, in the order they first appear
+   */
+  private static int[] getClasses(List<DataPlayer> group) {
+    Map<String, Integer> classIds = new HashMap<>();
+    int[] classes = new int[group.size()];
+    for (int i = 0; i < group.size(); i++) {
+      String key = Arrays.toString(getOutcomeRatios(group.get(i)));
+      Integer classId = classIds.get(key);
+      if (classId == null) {
+        classId = classIds.size();
+        classIds.put(key, classId);
+      }
+      classes[i] = classId;
+    }
+    return classes;
+  }
+
+  /**
+   * @return the player's outcome counts divided by their greatest common divisor
+   */
+  private static long[] getOutcomeRatios(DataPlayer player) {
+    long[] counts = HitGenerator.getOutcomeCounts(player);
+    long divisor = 0;
+    for (long count : counts) {
+      divisor = gcd(divisor, count);
+    }
+    if (divisor > 1) {
+      for (int i = 0; i < counts.length; i++) {
+        counts[i] /= divisor;
+      }
+    }
+    return counts;
+  }
+
+  private static long gcd(long a, long b) {
+    return b == 0 ? a : gcd(b, a % b);
+  }
+
+  @Override
+  public long size() {
+    return size;
+  }
+
+  @Override
+  public T getLineup(long index) {
+    if (index >= size) {
+      return null;
+    }
+    return getCursor(index).getLineup();
+  }
+
+  @Override
+  public List<DataPlayer> getPlayers() {
+    return indexer.getPlayers();
+  }
+
+  @Override
+  public T getLineup(int[] slots) {
+    return indexer.getLineup(slots);
+  }
+
+  @Override
+  public LineupCursor<T> getCursor(long index) {
+    return new InterleavedLineupCursor<>(index, size, firstClasses, secondClasses, indexer.getLayout(),
+        indexer::getLineup);
+  }
+
+  /**
+   * Gets the index of the lineup, or of the lineup that represents it if identical players are out of
+   * order.
+   */
+  @Override
+  public long getIndex(T lineup) {
+    long index = indexer.getIndex(lineup);
+    long firstIndex = getOrderingIndex(firstClasses, index % firstPermutations);
+    long secondIndex = getOrderingIndex(secondClasses, (index / firstPermutations) % secondPermutations);
+    long layout = index / (firstPermutations * secondPermutations);
+    return firstIndex + secondIndex * firstOrderings + layout * firstOrderings * secondOrderings;
+  }
+
+  private static long getOrderingIndex(int[] classes, long permutationIndex) {
+    int[] permutation = CombinatoricsUtil.getIthPermutation(classes.length, permutationIndex);
+    int[] classOrder = new int[permutation.length];
+    for (int i = 0; i < permutation.length; i++) {
+      classOrder[i] = classes[permutation[i]];
+    }
+    return CombinatoricsUtil.getMultisetPermutationIndex(classOrder,
+        Arrays.stream(classes).max().orElse(-1) + 1);
+  }
+
+  /**
+   * Uses the wrapped indexer's neighbors. The neighbor may be the same lineup if the swap was between
+   * identical players.
+   */
+  @Override
+  public Pair<Long, T> getRandomNeighbor(long index, Random random) {
+    Pair<Long, T> neighbor = indexer.getRandomNeighbor(indexer.getIndex(getLineup(index)), random);
+    if (neighbor == null) {
+      return null;
+    }
+    long neighborIndex = getIndex(neighbor.getSecond());
+    return Pair.create(neighborIndex, getLineup(neighborIndex));
+  }
+
+  /**
+   * Slots are the wrapped indexer's, so its moves apply as is
+   */
+  @Override
+  public boolean moveToRandomNeighbor(int[] slots, int[] undo, Random random) {
+    return indexer.moveToRandomNeighbor(slots, undo, random);
+  }
+
+  @Override
+  public void undoMove(int[] slots, int[] undo) {
+    indexer.undoMove(slots, undo);
+  }
+
+  @Override
+  public int getGroup(int slot) {
+    return indexer.getGroup(slot);
+  }
+
+}
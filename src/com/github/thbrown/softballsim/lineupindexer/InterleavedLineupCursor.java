@@ -0,0 +1,132 @@
+package com.github.thbrown.softballsim.lineupindexer;
+
+import java.util.function.Function;
+import java.util.function.LongFunction;
+import com.github.thbrown.softballsim.lineup.BattingLineup;
+import com.github.thbrown.softballsim.util.CombinatoricsUtil;
+import com.github.thbrown.softballsim.util.MultisetPermutationCursor;
+import com.github.thbrown.softballsim.util.OrderCursor;
+import com.github.thbrown.softballsim.util.PermutationCursor;
+
+/**
+ * Cursor for indexers whose lineups are two independently permuted groups of players (i.e. men and
+ * women) arranged by some layout that says which slots each group occupies. The indexes are assumed
+ * to be laid out as
+ * 
+ * index = firstGroupPermutation + secondGroupPermutation * firstSize! + layout * firstSize! *
+ * secondSize!
+ * 
+ * which is how all of our gendered indexers (and, with an empty second group, the standard indexer)
+ * number their lineups. Stepping the first group's permutation is amortized O(1), the layout only
+ * changes once every firstSize! * secondSize! lineups.
+ * 
+ * Slot values are the first group's player indexes followed by the second group's, offset by the
+ * size of the first group.
+ * 
+ * When some players are interchangeable (see {@link DistinctLineupIndexer}) each group steps through
+ * the distinct orderings of its players instead of every permutation, the layout is unchanged.
+ */
+class InterleavedLineupCursor<T extends BattingLineup> implements LineupCursor<T> {
+
+  /**
+   * Fills in the slot occupied by each member of each group, in batting order within the group, for a
+   * given layout.
+   */
+  interface Layout {
+    public void getPositions(long layout, int[] firstPositions, int[] secondPositions);
+  }
+
+  private final long size;
+  private final long permutationsPerLayout;
+  private final Layout layout;
+  private final Function<int[], T> lineupBuilder;
+
+  private final OrderCursor first;
+  private final OrderCursor second;
+  private final int[] firstPositions;
+  private final int[] secondPositions;
+  private final int[] slots;
+
+  private long index;
+  private long layoutIndex;
+
+  InterleavedLineupCursor(long index, long size, int firstSize, int secondSize, Layout layout,
+      Function<int[], T> lineupBuilder) {
+    this(index, size, CombinatoricsUtil.factorial(firstSize), CombinatoricsUtil.factorial(secondSize),
+        i -> new PermutationCursor(firstSize, i), i -> new PermutationCursor(secondSize, i), layout, lineupBuilder);
+  }
+
+  /**
+   * Players in a group with the same class are interchangeable, see {@link MultisetPermutationCursor}
+   */
+  InterleavedLineupCursor(long index, long size, int[] firstClasses, int[] secondClasses, Layout layout,
+      Function<int[], T> lineupBuilder) {
+    this(index, size, MultisetPermutationCursor.countOrderings(firstClasses),
+        MultisetPermutationCursor.countOrderings(secondClasses), i -> new MultisetPermutationCursor(firstClasses, i),
+        i -> new MultisetPermutationCursor(secondClasses, i), layout, lineupBuilder);
+  }
+
+  private InterleavedLineupCursor(long index, long size, long firstCount, long secondCount,
+      LongFunction<OrderCursor> firstFactory, LongFunction<OrderCursor> secondFactory, Layout layout,
+      Function<int[], T> lineupBuilder) {
+    if (index < 0 || index > size) {
+      throw new IllegalArgumentException("Lineup index " + index + " is out of range, there are " + size);
+    }
+    this.size = size;
+    this.index = index;
+    this.layout = layout;
+    this.lineupBuilder = lineupBuilder;
+    this.permutationsPerLayout = firstCount * secondCount;
+
+    // A cursor that starts past the end still needs valid state, it just never exposes it
+    long start = index == size ? 0 : index;
+    this.first = firstFactory.apply(start % firstCount);
+    this.second = secondFactory.apply((start / firstCount) % secondCount);
+    this.firstPositions = new int[first.getOrder().length];
+    this.secondPositions = new int[second.getOrder().length];
+    this.slots = new int[firstPositions.length + secondPositions.length];
+    this.layoutIndex = start / permutationsPerLayout;
+    applyLayout();
+  }
+
+  @Override
+  public long getIndex() {
+    return index;
+  }
+
+  @Override
+  public int[] getSlots() {
+    return slots;
+  }
+
+  @Override
+  public T getLineup() {
+    if (index >= size) {
+      return null;
+    }
+    return lineupBuilder.apply(slots);
+  }
+
+  @Override
+  public boolean next() {
+    if (index >= size) {
+      return false;
+    }
+    index++;
+    if (index == size) {
+      return false;
+    }
+    if (first.next() && second.next()) {
+      layoutIndex++;
+      applyLayout();
+    }
+    return true;
+  }
+
+  private void applyLayout() {
+    layout.getPositions(layoutIndex, firstPositions, secondPositions);
+    first.setMirror(slots, firstPositions, 0);
+    second.setMirror(slots, secondPositions, firstPositions.length);
+  }
+
+}
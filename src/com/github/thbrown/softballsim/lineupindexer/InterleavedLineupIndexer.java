@@ -0,0 +1,21 @@
+package com.github.thbrown.softballsim.lineupindexer;
+
+import com.github.thbrown.softballsim.lineup.BattingLineup;
+
+/**
+ * An indexer that numbers its lineups the way {@link InterleavedLineupCursor} expects. The first
+ * group is the first {@link #getFirstGroupSize()} players of {@link #getPlayers()}, the second group
+ * is the rest.
+ */
+interface InterleavedLineupIndexer<T extends BattingLineup> extends BattingLineupIndexer<T> {
+
+  public int getFirstGroupSize();
+
+  public InterleavedLineupCursor.Layout getLayout();
+
+  @Override
+  public default int getGroup(int slot) {
+    return slot < getFirstGroupSize() ? 0 : 1;
+  }
+
+}
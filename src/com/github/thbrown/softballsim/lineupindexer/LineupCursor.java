@@ -0,0 +1,40 @@
+package com.github.thbrown.softballsim.lineupindexer;
+
+import com.github.thbrown.softballsim.lineup.BattingLineup;
+
+/**
+ * Walks the lineups of a {@link BattingLineupIndexer} in index order. Moving to the next lineup
+ * mutates a small int array in place instead of unranking the next index from scratch, so walking a
+ * range of indexes is much cheaper than calling {@link BattingLineupIndexer#getLineup(long)} for each
+ * one.
+ *
+ * Cursors are not thread safe, use one per thread.
+ */
+public interface LineupCursor<T extends BattingLineup> {
+
+  /**
+   * Index of the lineup the cursor is on. This is equal to the indexer's size once the cursor has
+   * moved past the last lineup.
+   */
+  public long getIndex();
+
+  /**
+   * The current lineup as indexes into {@link BattingLineupIndexer#getPlayers()}, see
+   * {@link BattingLineupIndexer#getLineup(int[])} for how to interpret them. The returned array is
+   * updated in place by {@link #next()} and must not be modified.
+   */
+  public int[] getSlots();
+
+  /**
+   * Builds the lineup the cursor is on, or returns null if the cursor has moved past the last lineup.
+   */
+  public T getLineup();
+
+  /**
+   * Moves to the lineup at the next index.
+   * 
+   * @return false if there are no more lineups
+   */
+  public boolean next();
+
+}
@@ -7,6 +7,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
 import com.github.thbrown.softballsim.data.gson.DataStats;
+import com.github.thbrown.softballsim.lineup.BattingLineup;
 import com.github.thbrown.softballsim.util.StringUtils;
 
 public enum LineupTypeEnum implements LineupIndexerFactory {
@@ -49,6 +50,21 @@ public enum LineupTypeEnum implements LineupIndexerFactory {
     return lineupIndexerFactory.getLineupIndexer(stats, players);
   }
 
+  /**
+   * If collapseIdenticalPlayers is true, lineups that only differ by the order of identical players
+   * are indexed once. See {@link DistinctLineupIndexer}.
+   */
+  public BattingLineupIndexer<?> getLineupIndexer(DataStats stats, List<String> players,
+      boolean collapseIdenticalPlayers) {
+    BattingLineupIndexer<?> indexer = getLineupIndexer(stats, players);
+    return collapseIdenticalPlayers ? collapseIdenticalPlayers(indexer) : indexer;
+  }
+
+  private static <T extends BattingLineup> DistinctLineupIndexer<T> collapseIdenticalPlayers(
+      BattingLineupIndexer<T> indexer) {
+    return new DistinctLineupIndexer<>(indexer);
+  }
+
   /**
    * Gets the enum that corresponds with the given id. Returns null if there is no corresponding enum
    * for that id.
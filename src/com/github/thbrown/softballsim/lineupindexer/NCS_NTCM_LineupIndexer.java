@@ -6,8 +6,8 @@ import java.util.Set;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.Random;
 import java.util.stream.Collectors;
-import java.util.concurrent.ThreadLocalRandom;
 import org.apache.commons.math3.util.Pair;
 import com.github.thbrown.softballsim.data.gson.DataPlayer;
 import com.github.thbrown.softballsim.data.gson.DataStats;
@@ -16,7 +16,7 @@ import com.github.thbrown.softballsim.lineup.StandardBattingLineup;
 import com.github.thbrown.softballsim.util.CombinatoricsUtil;
 import com.github.thbrown.softballsim.util.Logger;
 
-public class NCS_NTCM_LineupIndexer implements BattingLineupIndexer<StandardBattingLineup> {
+public class NCS_NTCM_LineupIndexer implements InterleavedLineupIndexer<StandardBattingLineup> {
 
   private List<DataPlayer> men = new ArrayList<>();
   private List<DataPlayer> women = new ArrayList<>();
@@ -99,95 +99,79 @@ public class NCS_NTCM_LineupIndexer implements BattingLineupIndexer<StandardBatt
     if (index >= size) {
       return null;
     }
+    return getCursor(index).getLineup();
+  }
 
-    int males = men.size();
-    int females = women.size();
-
-    // Derive the indexes for each permutation/combination from the main index
-    long malePermutationIndex = index % CombinatoricsUtil.factorial(males);
-    long cumulativeSize1 = CombinatoricsUtil.factorial(males);
-    long femalePermutationIndex =
-        (cumulativeSize1 == 0 ? 0 : (long) Math.floor(index / cumulativeSize1) % CombinatoricsUtil.factorial(females));
-    long cumulativeSize2 = CombinatoricsUtil.factorial(males) * CombinatoricsUtil.factorial(females);
-    long maleCombinationIndex = (cumulativeSize2 == 0 ? 0 : (long) Math.floor(index / cumulativeSize2));
-
-    int[] maleOrder = CombinatoricsUtil.getIthPermutation(males, malePermutationIndex);
-    List<DataPlayer> maleLineup = CombinatoricsUtil.mapListToArray(men, maleOrder);
+  @Override
+  public List<DataPlayer> getPlayers() {
+    List<DataPlayer> players = new ArrayList<>(men);
+    players.addAll(women);
+    return players;
+  }
 
-    int[] femaleOrder = CombinatoricsUtil.getIthPermutation(females, femalePermutationIndex);
-    List<DataPlayer> femaleLineup = CombinatoricsUtil.mapListToArray(women, femaleOrder);
+  /**
+   * Slots are the batting order. Men are slots [0, men) and women are [men, men + women).
+   */
+  @Override
+  public StandardBattingLineup getLineup(int[] slots) {
+    List<DataPlayer> lineup = new ArrayList<>(slots.length);
+    for (int slot : slots) {
+      lineup.add(slot < maleCount ? men.get(slot) : women.get(slot - maleCount));
+    }
+    return new StandardBattingLineup(lineup);
+  }
 
-    List<DataPlayer> mergedLineup = new ArrayList<>();
+  @Override
+  public LineupCursor<StandardBattingLineup> getCursor(long index) {
+    return new InterleavedLineupCursor<>(index, size, maleCount, femaleCount, getLayout(), this::getLineup);
+  }
 
+  @Override
+  public int getFirstGroupSize() {
+    return maleCount;
+  }
 
-    /*
-     * Set<String> dupDetector = new HashSet<>(); int length = 8; int numberToChoose = 4; for (int i =
-     * 0; i < CombinatoricsUtil.binomial(length, numberToChoose); i++) { String result =
-     * Arrays.toString(CombinatoricsUtil.getIthCombination(numberToChoose, i));
-     * System.out.println(result); boolean isSuccess = dupDetector.add(result); if (!isSuccess) { throw
-     * new RuntimeException("Duplicate value detected" + result); } }
-     */
+  @Override
+  public InterleavedLineupCursor.Layout getLayout() {
+    return this::getPositions;
+  }
 
-    if (maleCombinationIndex < this.cutoff) {
-      // Male first
-      int maleIndex = 0;
-      int femaleIndex = 0;
-      int doubleMaleIndex = 0;
-      int[] doubleMaleSlots = CombinatoricsUtil.getIthCombination(males - females, maleCombinationIndex);
-      // Logger.log(index + " " + Arrays.toString(maleOrder) + " " + Arrays.toString(femaleOrder) + " " +
-      // Arrays.toString(doubleMaleSlots) + " " + 0);
-
-      for (int betweenFemaleSlot = 0; betweenFemaleSlot < femaleLineup.size(); betweenFemaleSlot++) {
-        if (doubleMaleIndex < doubleMaleSlots.length && betweenFemaleSlot == doubleMaleSlots[doubleMaleIndex]) {
-          doubleMaleIndex++;
-          // Logger.log(maleIndex + " " + maleLineup);
-          mergedLineup.add(maleLineup.get(maleIndex));
-          maleIndex++;
-          mergedLineup.add(maleLineup.get(maleIndex));
-          maleIndex++;
-        } else {
-          mergedLineup.add(maleLineup.get(maleIndex));
-          maleIndex++;
-        }
-        mergedLineup.add(femaleLineup.get(femaleIndex));
-        femaleIndex++;
+  /**
+   * Gets the lineup slots occupied by the males and the females for the given combination index (the
+   * index divided by the number of male and female permutations).
+   */
+  private void getPositions(long maleCombinationIndex, int[] malePositions, int[] femalePositions) {
+    boolean maleFirst = maleCombinationIndex < this.cutoff;
+    int[] doubleMaleSlots = CombinatoricsUtil.getIthCombination(maleCount - femaleCount,
+        maleFirst ? maleCombinationIndex : maleCombinationIndex - this.cutoff);
+
+    // Each female is preceded (male first) or followed (female first) by one or two males
+    int slot = 0;
+    int maleIndex = 0;
+    int doubleMaleIndex = 0;
+    for (int betweenFemaleSlot = 0; betweenFemaleSlot < femaleCount; betweenFemaleSlot++) {
+      if (!maleFirst) {
+        femalePositions[betweenFemaleSlot] = slot++;
       }
-    } else {
-      // Female first
-      int maleIndex = 0;
-      int femaleIndex = 0;
-      int doubleMaleIndex = 0;
-      int[] doubleMaleSlots = CombinatoricsUtil.getIthCombination(males - females, maleCombinationIndex - this.cutoff);
-      // Logger.log(index + " " + Arrays.toString(maleOrder) + " " + Arrays.toString(femaleOrder) + " " +
-      // Arrays.toString(doubleMaleSlots) + " " + 1);
-
-      for (int betweenFemaleSlot = 0; betweenFemaleSlot < femaleLineup.size(); betweenFemaleSlot++) {
-        mergedLineup.add(femaleLineup.get(femaleIndex));
-        femaleIndex++;
-        if (doubleMaleIndex < doubleMaleSlots.length && betweenFemaleSlot == doubleMaleSlots[doubleMaleIndex]) {
-          doubleMaleIndex++;
-          mergedLineup.add(maleLineup.get(maleIndex));
-          maleIndex++;
-          mergedLineup.add(maleLineup.get(maleIndex));
-          maleIndex++;
-        } else {
-          mergedLineup.add(maleLineup.get(maleIndex));
-          maleIndex++;
-        }
+      if (doubleMaleIndex < doubleMaleSlots.length && betweenFemaleSlot == doubleMaleSlots[doubleMaleIndex]) {
+        doubleMaleIndex++;
+        malePositions[maleIndex++] = slot++;
+      }
+      malePositions[maleIndex++] = slot++;
+      if (maleFirst) {
+        femalePositions[betweenFemaleSlot] = slot++;
       }
     }
-
-    return new StandardBattingLineup(mergedLineup);
   }
 
   @Override
-  public Pair<Long, StandardBattingLineup> getRandomNeighbor(long index) {
+  public Pair<Long, StandardBattingLineup> getRandomNeighbor(long index, Random random) {
     final int SPREAD = 5;
 
     // Don't return the same index that was passed in, that's not a neighbor
     long offset = 0;
     do {
-      offset = (long) (SPREAD * 2 * Math.random());
+      offset = (long) (SPREAD * 2 * random.nextDouble());
     } while (offset == 0);
 
     long newIndex = (index + offset) % this.size;
@@ -3,14 +3,15 @@ package com.github.thbrown.softballsim.lineupindexer;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Arrays;
-import java.util.concurrent.ThreadLocalRandom;
+import java.util.Random;
 import org.apache.commons.math3.util.Pair;
 import com.github.thbrown.softballsim.data.gson.DataPlayer;
 import com.github.thbrown.softballsim.data.gson.DataStats;
 import com.github.thbrown.softballsim.lineup.StandardBattingLineup;
 import com.github.thbrown.softballsim.util.CombinatoricsUtil;
+import com.github.thbrown.softballsim.util.MathUtil;
 
-public class NoConsecutiveFemalesLineupIndexer implements BattingLineupIndexer<StandardBattingLineup> {
+public class NoConsecutiveFemalesLineupIndexer implements InterleavedLineupIndexer<StandardBattingLineup> {
 
   private List<DataPlayer> men = new ArrayList<>();
   private List<DataPlayer> women = new ArrayList<>();
@@ -100,69 +101,86 @@ public class NoConsecutiveFemalesLineupIndexer implements BattingLineupIndexer<S
     if (index >= size) {
       return null;
     }
+    return getCursor(index).getLineup();
+  }
+
+  @Override
+  public List<DataPlayer> getPlayers() {
+    List<DataPlayer> players = new ArrayList<>(men);
+    players.addAll(women);
+    return players;
+  }
+
+  /**
+   * Slots are the batting order. Men are slots [0, men) and women are [men, men + women).
+   */
+  @Override
+  public StandardBattingLineup getLineup(int[] slots) {
+    List<DataPlayer> lineup = new ArrayList<>(slots.length);
+    for (int slot : slots) {
+      lineup.add(slot < maleCount ? men.get(slot) : women.get(slot - maleCount));
+    }
+    return new StandardBattingLineup(lineup);
+  }
+
+  @Override
+  public LineupCursor<StandardBattingLineup> getCursor(long index) {
+    return new InterleavedLineupCursor<>(index, size, maleCount, femaleCount, getLayout(), this::getLineup);
+  }
+
+  @Override
+  public int getFirstGroupSize() {
+    return maleCount;
+  }
+
+  @Override
+  public InterleavedLineupCursor.Layout getLayout() {
+    return this::getPositions;
+  }
 
-    int males = men.size();
-    int females = women.size();
-
-    // Derive the indexes for each permutation/combination from the main index
-    long malePermutationIndex = index % CombinatoricsUtil.factorial(males);
-    long cumulativeSize1 = CombinatoricsUtil.factorial(males);
-    long femalePermutationIndex = (cumulativeSize1 == 0 ? 0
-        : (long) Math.floor(index / cumulativeSize1) % CombinatoricsUtil.factorial(females));
-    long cumulativeSize2 = CombinatoricsUtil.factorial(males) * CombinatoricsUtil.factorial(females);
-    long femaleCombinationIndex = (cumulativeSize2 == 0 ? 0 : (long) Math.floor(index / cumulativeSize2) /*
-                                                                                                          * no need for
-                                                                                                          * mod here,
-                                                                                                          * since this
-                                                                                                          * is the last
-                                                                                                          * group (would
-                                                                                                          * have been
-                                                                                                          * this.
-                                                                                                          * slotCombinations)
-                                                                                                          */);
-
-    int[] maleOrder = CombinatoricsUtil.getIthPermutation(males, malePermutationIndex);
-    List<DataPlayer> maleLineup = CombinatoricsUtil.mapListToArray(men, maleOrder);
-
-    int[] femaleOrder = CombinatoricsUtil.getIthPermutation(females, femalePermutationIndex);
-    List<DataPlayer> femaleLineup = CombinatoricsUtil.mapListToArray(women, femaleOrder);
-
-    int[] femalePositions = null;
+  /**
+   * Gets the lineup slots occupied by the males and the females for the given combination index (the
+   * index divided by the number of male and female permutations).
+   */
+  private void getPositions(long femaleCombinationIndex, int[] malePositions, int[] femalePositions) {
     if (femaleCombinationIndex < this.cutoff) {
-      // Female positions before the cutoff indicate which spots between the males the
-      // females should
-      // occupy, excluding the first and last lineup slots (because we'll force a
-      // female batter last).
-      // Here we'll find places for all females, except the last one (who will be
-      // added to the end).
-      femalePositions = CombinatoricsUtil.getIthCombination(females - 1, femaleCombinationIndex);
-
-      // Add one to each, since this is before the cutoff we are excluding the first
-      // slot
-      femalePositions = Arrays.stream(femalePositions).map(i -> i + 1).toArray();
-
-      // There is always a female batting last, add her to the end
-      femalePositions = Arrays.copyOf(femalePositions, femalePositions.length + 1);
-      femalePositions[femalePositions.length - 1] = males;
+      // Female positions before the cutoff indicate which spots between the males the females should
+      // occupy, excluding the first and last lineup slots (because we'll force a female batter last).
+      // Here we'll find places for all females, except the last one (who will be added to the end).
+      int[] combination = CombinatoricsUtil.getIthCombination(femaleCount - 1, femaleCombinationIndex);
+
+      // Add one to each, since this is before the cutoff we are excluding the first slot
+      for (int i = 0; i < combination.length; i++) {
+        femalePositions[i] = combination[i] + 1;
+      }
+
+      // There is always a female batting last
+      femalePositions[femaleCount - 1] = maleCount;
     } else {
-      femalePositions = CombinatoricsUtil.getIthCombination(females, femaleCombinationIndex - cutoff);
+      int[] combination = CombinatoricsUtil.getIthCombination(femaleCount, femaleCombinationIndex - cutoff);
+      System.arraycopy(combination, 0, femalePositions, 0, femaleCount);
     }
 
-    // Convert to lineup indexes - add the number of females inserted before them to
-    // their value.
+    // Convert to lineup indexes - add the number of females inserted before them to their value.
     for (int i = 0; i < femalePositions.length; i++) {
       femalePositions[i] = femalePositions[i] + i;
     }
 
-    // These three parameters are all we need to define a noConsecutiveFemale
-    // lineup, merge them
-    List<DataPlayer> mergedLineup = buildLineup(maleLineup, femaleLineup, femalePositions);
-
-    return new StandardBattingLineup(mergedLineup);
+    // Males fill the remaining slots
+    int femaleIndex = 0;
+    int maleIndex = 0;
+    for (int i = 0; i < totalCount; i++) {
+      if (femaleIndex < femaleCount && femalePositions[femaleIndex] == i) {
+        femaleIndex++;
+      } else {
+        malePositions[maleIndex] = i;
+        maleIndex++;
+      }
+    }
   }
 
   @Override
-  public Pair<Long, StandardBattingLineup> getRandomNeighbor(long index) {
+  public Pair<Long, StandardBattingLineup> getRandomNeighbor(long index, Random random) {
 
     // Get the current order
     StandardBattingLineup lineup = getLineup(index);
@@ -212,24 +230,24 @@ public class NoConsecutiveFemalesLineupIndexer implements BattingLineupIndexer<S
 
     // Logger.log("PERM " + totalNumberOfPossiblePermSwaps + " COMBOS " +
     // totalNumberOfPossibleCombSwaps);
-    if (ThreadLocalRandom.current()
-        .nextLong(totalNumberOfPossiblePermSwaps + totalNumberOfPossibleCombSwaps) < totalNumberOfPossiblePermSwaps) {
+    if (MathUtil.nextLong(random,
+        totalNumberOfPossiblePermSwaps + totalNumberOfPossibleCombSwaps) < totalNumberOfPossiblePermSwaps) {
       // Swap two random elements in either the male list or female list (longer lists
       // are more likely to
       // be swapped)
-      if (ThreadLocalRandom.current().nextLong(totalNumberOfPossiblePermSwaps) < CombinatoricsUtil.binomial(men.size(),
+      if (MathUtil.nextLong(random, totalNumberOfPossiblePermSwaps) < CombinatoricsUtil.binomial(men.size(),
           2)) {
-        int randomOne = ThreadLocalRandom.current().nextInt(men.size());
+        int randomOne = random.nextInt(men.size());
         int randomTwo = 0;
         do {
-          randomTwo = ThreadLocalRandom.current().nextInt(men.size());
+          randomTwo = random.nextInt(men.size());
         } while (randomOne == randomTwo);
         CombinatoricsUtil.swap(randomOne, randomTwo, orderA);
       } else {
-        int randomOne = ThreadLocalRandom.current().nextInt(women.size());
+        int randomOne = random.nextInt(women.size());
         int randomTwo = 0;
         do {
-          randomTwo = ThreadLocalRandom.current().nextInt(women.size());
+          randomTwo = random.nextInt(women.size());
         } while (randomOne == randomTwo);
         CombinatoricsUtil.swap(randomOne, randomTwo, orderB);
       }
@@ -247,7 +265,7 @@ public class NoConsecutiveFemalesLineupIndexer implements BattingLineupIndexer<S
         int swapsForFirstOrLast = (women.size() - 1) * (men.size() - women.size());
         int swapsForMiddle = (1) * (men.size() + 1 - women.size());
 
-        if (ThreadLocalRandom.current().nextLong(swapsForFirstOrLast + swapsForMiddle) < swapsForFirstOrLast) {
+        if (MathUtil.nextLong(random, swapsForFirstOrLast + swapsForMiddle) < swapsForFirstOrLast) {
           // Remove the first or last slot
           if (femaleFirst) {
             randomSlotToRemove = 0;
@@ -263,13 +281,13 @@ public class NoConsecutiveFemalesLineupIndexer implements BattingLineupIndexer<S
           // Remove a middle slot
           if (femaleFirst) {
             // Choose a random middle slot (this assumes currentWomenSlots is sorted asc)
-            int randomIndex = ThreadLocalRandom.current().nextInt(this.women.size() - 1) + 1;
+            int randomIndex = random.nextInt(this.women.size() - 1) + 1;
             randomSlotToRemove = currentWomenSlots[randomIndex];
             // Choose replacement options - can't put a female in the last slot
             invertedSlots = this.invertArray(currentWomenSlots, 0, this.men.size() - 1);
           } else if (femaleLast) {
             // Choose a random middle slot (this assumes currentWomenSlots is sorted asc)
-            int randomIndex = ThreadLocalRandom.current().nextInt(this.women.size() - 1);
+            int randomIndex = random.nextInt(this.women.size() - 1);
             randomSlotToRemove = currentWomenSlots[randomIndex];
             // Choose replacement options - can't put a female in the first slot
             invertedSlots = this.invertArray(currentWomenSlots, 1, this.men.size());
@@ -280,14 +298,14 @@ public class NoConsecutiveFemalesLineupIndexer implements BattingLineupIndexer<S
         }
       } else {
         // Select a random female slot to remove
-        int randomIndex = ThreadLocalRandom.current().nextInt(currentWomenSlots.length);
+        int randomIndex = random.nextInt(currentWomenSlots.length);
         randomSlotToRemove = currentWomenSlots[randomIndex];
         // Choose replacement options - we can choose any other available slot
         invertedSlots = this.invertArray(currentWomenSlots, 0, this.men.size());
       }
 
       // Randomly choose one of the available options
-      int randomNewIndex = ThreadLocalRandom.current().nextInt(invertedSlots.length);
+      int randomNewIndex = random.nextInt(invertedSlots.length);
       int randomSlotToAdd = invertedSlots[randomNewIndex];
 
       // Add everything to the new array except for the slot we are removing
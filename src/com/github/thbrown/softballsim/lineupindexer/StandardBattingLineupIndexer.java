@@ -3,7 +3,7 @@ package com.github.thbrown.softballsim.lineupindexer;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Arrays;
-import java.util.concurrent.ThreadLocalRandom;
+import java.util.Random;
 import org.apache.commons.math3.util.Pair;
 import com.github.thbrown.softballsim.CommandLineOptions;
 import com.github.thbrown.softballsim.data.gson.DataPlayer;
@@ -13,7 +13,7 @@ import com.github.thbrown.softballsim.lineup.StandardBattingLineup;
 import com.github.thbrown.softballsim.util.CombinatoricsUtil;
 import com.github.thbrown.softballsim.util.Logger;
 
-public class StandardBattingLineupIndexer implements BattingLineupIndexer<StandardBattingLineup> {
+public class StandardBattingLineupIndexer implements InterleavedLineupIndexer<StandardBattingLineup> {
   private List<DataPlayer> players = new ArrayList<>();
   private long size;
 
@@ -48,24 +48,50 @@ public class StandardBattingLineupIndexer implements BattingLineupIndexer<Standa
   }
 
   @Override
-  public Pair<Long, StandardBattingLineup> getRandomNeighbor(long index) {
+  public List<DataPlayer> getPlayers() {
+    return players;
+  }
+
+  @Override
+  public StandardBattingLineup getLineup(int[] slots) {
+    List<DataPlayer> lineup = new ArrayList<>(slots.length);
+    for (int slot : slots) {
+      lineup.add(players.get(slot));
+    }
+    return new StandardBattingLineup(lineup);
+  }
+
+  @Override
+  public LineupCursor<StandardBattingLineup> getCursor(long index) {
+    return new InterleavedLineupCursor<>(index, size, players.size(), 0, getLayout(), this::getLineup);
+  }
+
+  @Override
+  public int getFirstGroupSize() {
+    return players.size();
+  }
+
+  @Override
+  public InterleavedLineupCursor.Layout getLayout() {
+    // Everyone is in the first group and there is only one layout
+    return (layout, positions, unused) -> {
+      for (int i = 0; i < positions.length; i++) {
+        positions[i] = i;
+      }
+    };
+  }
+
+  @Override
+  public Pair<Long, StandardBattingLineup> getRandomNeighbor(long index, Random random) {
     // Get the current order
     int[] order = CombinatoricsUtil.getIthPermutation(players.size(), index);
 
     // If there is only one player in the lineup, there are no neighbors
     // TODO: Make sure there is a test case for this
-    if (players.size() == 1) {
+    if (!moveToRandomNeighbor(order, new int[order.length], random)) {
       return null;
     }
 
-    // Swap any two elements
-    int randomOne = ThreadLocalRandom.current().nextInt(players.size());
-    int randomTwo = 0;
-    do {
-      randomTwo = ThreadLocalRandom.current().nextInt(players.size());
-    } while (randomOne == randomTwo);
-    CombinatoricsUtil.swap(randomOne, randomTwo, order);
-
     // Build the Pair
     long newIndex = CombinatoricsUtil.getPermutationIndex(order);
     List<DataPlayer> playersInLineup = CombinatoricsUtil.mapListToArray(players, order);
@@ -73,6 +99,30 @@ public class StandardBattingLineupIndexer implements BattingLineupIndexer<Standa
     return Pair.create(newIndex, lineup);
   }
 
+  /**
+   * Swaps any two elements, undo holds the two positions that were swapped
+   */
+  @Override
+  public boolean moveToRandomNeighbor(int[] slots, int[] undo, Random random) {
+    if (slots.length == 1) {
+      return false;
+    }
+    int randomOne = random.nextInt(slots.length);
+    int randomTwo = 0;
+    do {
+      randomTwo = random.nextInt(slots.length);
+    } while (randomOne == randomTwo);
+    CombinatoricsUtil.swap(randomOne, randomTwo, slots);
+    undo[0] = randomOne;
+    undo[1] = randomTwo;
+    return true;
+  }
+
+  @Override
+  public void undoMove(int[] slots, int[] undo) {
+    CombinatoricsUtil.swap(undo[0], undo[1], slots);
+  }
+
   @Override
   public long getIndex(StandardBattingLineup lineup) {
     List<DataPlayer> listLineup = lineup.asList();
@@ -12,4 +12,14 @@ public class EmptyResult extends Result {
     super(optimizer, null, 0, 0, 0, 0, status);
   }
 
+  private EmptyResult(EmptyResult toCopy, ResultStatusEnum status, String statusMessage,
+      Long estimatedTimeRemainingMs) {
+    super(toCopy, status, statusMessage, estimatedTimeRemainingMs);
+  }
+
+  @Override
+  protected Result copy(ResultStatusEnum status, String statusMessage, Long estimatedTimeRemainingMs) {
+    return new EmptyResult(this, status, statusMessage, estimatedTimeRemainingMs);
+  }
+
 }
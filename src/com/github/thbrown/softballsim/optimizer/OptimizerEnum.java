@@ -27,6 +27,9 @@ import com.github.thbrown.softballsim.optimizer.impl.sortbyaverage.SortByAverage
 import com.github.thbrown.softballsim.optimizer.impl.montecarloadaptive.MonteCarloAdaptiveOptimizer;
 import com.github.thbrown.softballsim.optimizer.impl.montecarloannealing.MonteCarloAnnealingOptimizer;
 import com.github.thbrown.softballsim.optimizer.impl.expectedvalue.ExpectedValueOptimizer;
+import com.github.thbrown.softballsim.optimizer.impl.branchandbound.BranchAndBoundOptimizer;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloracing.MonteCarloRacingOptimizer;
+import com.github.thbrown.softballsim.optimizer.impl.montecarlogenetic.MonteCarloGeneticOptimizer;
 import com.github.thbrown.softballsim.util.GsonAccessor;
 import com.github.thbrown.softballsim.util.Logger;
 import com.github.thbrown.softballsim.util.StringUtils;
@@ -42,7 +45,10 @@ public enum OptimizerEnum {
   MONTE_CARLO_ADAPTIVE(1, new MonteCarloAdaptiveOptimizer()),
   MONTE_CARLO_ANNEALING(2, new MonteCarloAnnealingOptimizer()),
   EXPECTED_VALUE(3, new ExpectedValueOptimizer()),
-  SORT_BY_AVERAGE(4, new SortByAverageOptimizer());
+  SORT_BY_AVERAGE(4, new SortByAverageOptimizer()),
+  BRANCH_AND_BOUND(5, new BranchAndBoundOptimizer()),
+  MONTE_CARLO_RACING(6, new MonteCarloRacingOptimizer()),
+  MONTE_CARLO_GENETIC(7, new MonteCarloGeneticOptimizer());
 
   private final int id;
   private final Optimizer<? extends Result> optimizerImplementation;
@@ -30,7 +30,7 @@ public class OptimizerDefinitionOptionEnumeration extends OptimizerDefinitionOpt
       return value;
     }
 
-    if (values.contains(value)) {
+    if (!values.contains(value)) {
       throw new RuntimeException("The value provided for argurment " + super.getLongLabel() + " is " + value
           + " which not in the list of allowed values " + values);
     }
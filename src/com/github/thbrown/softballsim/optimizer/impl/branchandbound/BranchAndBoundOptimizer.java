@@ -0,0 +1,125 @@
+package com.github.thbrown.softballsim.optimizer.impl.branchandbound;
+
+import java.text.DecimalFormat;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import com.github.thbrown.softballsim.Msg;
+import com.github.thbrown.softballsim.Result;
+import com.github.thbrown.softballsim.ResultStatusEnum;
+import com.github.thbrown.softballsim.data.gson.DataPlayer;
+import com.github.thbrown.softballsim.data.gson.DataStats;
+import com.github.thbrown.softballsim.datasource.ProgressTracker;
+import com.github.thbrown.softballsim.lineup.BattingLineup;
+import com.github.thbrown.softballsim.lineupindexer.BattingLineupIndexer;
+import com.github.thbrown.softballsim.lineupindexer.LineupTypeEnum;
+import com.github.thbrown.softballsim.optimizer.Optimizer;
+import com.github.thbrown.softballsim.optimizer.impl.branchandbound.BranchAndBoundSearch.Node;
+import com.github.thbrown.softballsim.util.Logger;
+
+/**
+ * Finds the lineup with the most (or fewest) expected runs, the same lineup the Expected Value
+ * optimizer finds, without scoring every lineup. See {@link BranchAndBoundSearch}.
+ */
+public class BranchAndBoundOptimizer implements Optimizer<BranchAndBoundResult> {
+
+  // The search is split into at least this many subtrees per thread so the work stays balanced
+  private static final int NODES_PER_THREAD = 16;
+
+  @Override
+  public BranchAndBoundResult optimize(List<String> playersInLineup, LineupTypeEnum lineupType,
+      DataStats battingData, Map<String, String> arguments, ProgressTracker progressTracker,
+      BranchAndBoundResult existingResult) {
+
+    // Start the timer
+    long startTimestamp = System.currentTimeMillis();
+
+    // Check that the batting data we have is sufficient to run this optmizer
+    validateData(battingData, playersInLineup);
+
+    // Get the arguments as their expected types
+    BranchAndBoundArgumentParser parsedArguments = new BranchAndBoundArgumentParser(arguments);
+
+    BattingLineupIndexer<?> indexer = lineupType.getLineupIndexer(battingData, playersInLineup);
+    LineupStructure structure = LineupStructure.forLineupType(lineupType, indexer);
+    ExpectedRunsBound bound = new ExpectedRunsBound(indexer.getPlayers(), structure, parsedArguments.getInnings(),
+        parsedArguments.getMaxBatters(), parsedArguments.isLowestScore());
+    long countTotal = indexer.size();
+
+    // Print the details before we start
+    DecimalFormat formatter = new DecimalFormat("#,###");
+    Logger.log("Possible lineups: \t\t" + formatter.format(countTotal));
+    Logger.log("Maximum batters per game: \t" + parsedArguments.getMaxBatters());
+    Logger.log("Innings per game: \t\t" + parsedArguments.getInnings());
+    Logger.log("Threads used: \t\t\t" + parsedArguments.getThreads());
+    Logger.log("Lowest?: \t\t\t" + parsedArguments.isLowestScore());
+    Logger.log("Bound horizon (batters): \t" + bound.getHorizon());
+    Logger.log("*********************************************************************");
+
+    BranchAndBoundSearch search = new BranchAndBoundSearch(indexer, structure, bound, parsedArguments.getInnings(),
+        parsedArguments.getMaxBatters(), parsedArguments.isLowestScore());
+    List<Node> nodes = search.split(search.getRoots(), parsedArguments.getThreads() * NODES_PER_THREAD);
+    if (!nodes.isEmpty()) {
+      search.dive(nodes.get(0));
+    }
+
+    // Subtrees are submitted best bound first so good incumbents are found early
+    ExecutorService executor = Executors.newFixedThreadPool(parsedArguments.getThreads());
+    try {
+      Queue<Future<?>> futures = new ArrayDeque<>(nodes.size());
+      for (Node node : nodes) {
+        futures.add(executor.submit(() -> search.search(node)));
+      }
+      while (!futures.isEmpty()) {
+        futures.poll().get();
+
+        // Only build the result if the progress tracker gets around to reporting it
+        BattingLineup lineup = search.getBestLineup();
+        double score = search.getBestScore();
+        long countCompleted = search.getCountCompleted();
+        long lineupsScored = search.getLineupsScored();
+        long boundsComputed = search.getBoundsComputed();
+        long elapsedTime = System.currentTimeMillis() - startTimestamp;
+        progressTracker.updateProgress(() -> new BranchAndBoundResult(lineup, score, countTotal, countCompleted,
+            elapsedTime, ResultStatusEnum.IN_PROGRESS, lineupsScored, boundsComputed));
+      }
+    } catch (InterruptedException | ExecutionException e) {
+      throw new RuntimeException(e);
+    } finally {
+      executor.shutdownNow();
+    }
+
+    long elapsedTime = System.currentTimeMillis() - startTimestamp;
+    return new BranchAndBoundResult(search.getBestLineup(), search.getBestScore(), countTotal,
+        search.getCountCompleted(), elapsedTime, ResultStatusEnum.COMPLETE, search.getLineupsScored(),
+        search.getBoundsComputed());
+  }
+
+  private void validateData(DataStats data, List<String> playersInLineup) {
+    // All players in the lineup must have at least one plate appearance
+    for (String playerId : playersInLineup) {
+      DataPlayer player = data.getPlayerById(playerId);
+      if (player.getPlateAppearanceCount() == 0) {
+        throw new RuntimeException(Msg.PLAYER_HAS_NO_PA.args(player.getName(), player.getId()));
+      }
+    }
+  }
+
+  @Override
+  public Class<? extends Result> getResultClass() {
+    return BranchAndBoundResult.class;
+  }
+
+  @Override
+  public Result estimate(List<String> playersInLineup, LineupTypeEnum lineupType, DataStats battingData,
+      Map<String, String> arguments, BranchAndBoundResult existingResult) throws Exception {
+    // How long this takes depends on how much of the search the bounds prune, which isn't known ahead
+    // of time
+    return null;
+  }
+}
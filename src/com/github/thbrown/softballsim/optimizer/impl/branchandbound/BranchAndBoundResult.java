@@ -0,0 +1,58 @@
+package com.github.thbrown.softballsim.optimizer.impl.branchandbound;
+
+import com.github.thbrown.softballsim.Result;
+import com.github.thbrown.softballsim.ResultStatusEnum;
+import com.github.thbrown.softballsim.lineup.BattingLineup;
+import com.github.thbrown.softballsim.optimizer.OptimizerEnum;
+import com.github.thbrown.softballsim.util.StringUtils;
+
+public class BranchAndBoundResult extends Result {
+
+  private final long lineupsScored;
+  private final long boundsComputed;
+
+  public BranchAndBoundResult(BattingLineup lineup, double lineupScore, long countTotal, long countCompleted,
+      long elapsedTimeMs, ResultStatusEnum status, long lineupsScored, long boundsComputed) {
+    super(OptimizerEnum.BRANCH_AND_BOUND, lineup, lineupScore, countTotal, countCompleted, elapsedTimeMs, status);
+    this.lineupsScored = lineupsScored;
+    this.boundsComputed = boundsComputed;
+  }
+
+  private BranchAndBoundResult(BranchAndBoundResult toCopy, ResultStatusEnum status, String statusMessage,
+      Long estimatedTimeRemainingMs) {
+    super(toCopy, status, statusMessage, estimatedTimeRemainingMs);
+    this.lineupsScored = toCopy.lineupsScored;
+    this.boundsComputed = toCopy.boundsComputed;
+  }
+
+  @Override
+  protected Result copy(ResultStatusEnum status, String statusMessage, Long estimatedTimeRemainingMs) {
+    return new BranchAndBoundResult(this, status, statusMessage, estimatedTimeRemainingMs);
+  }
+
+  /**
+   * @return the number of lineups whose expected runs were calculated, the rest were ruled out by a
+   *         bound
+   */
+  public long getLineupsScored() {
+    return lineupsScored;
+  }
+
+  public long getBoundsComputed() {
+    return boundsComputed;
+  }
+
+  @Override
+  public String getHumanReadableDetails() {
+    StringBuilder sb = new StringBuilder(super.getHumanReadableDetails());
+    sb.append("Lineups scored: ");
+    sb.append(this.lineupsScored);
+    sb.append(" (");
+    sb.append(StringUtils.formatDecimal((double) this.lineupsScored / (double) super.getCountTotal() * 100, 4));
+    sb.append("% of all lineups)\n");
+    sb.append("Bounds computed: ");
+    sb.append(this.boundsComputed);
+    return sb.toString();
+  }
+
+}
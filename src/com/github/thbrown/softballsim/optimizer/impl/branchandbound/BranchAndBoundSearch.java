@@ -0,0 +1,306 @@
+package com.github.thbrown.softballsim.optimizer.impl.branchandbound;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import com.github.thbrown.softballsim.data.gson.DataPlayer;
+import com.github.thbrown.softballsim.lineup.BattingLineup;
+import com.github.thbrown.softballsim.lineup.StandardBattingLineup;
+import com.github.thbrown.softballsim.lineupindexer.BattingLineupIndexer;
+import com.github.thbrown.softballsim.optimizer.impl.expectedvalue.ExpectedValue;
+import com.github.thbrown.softballsim.util.CombinatoricsUtil;
+
+/**
+ * Depth first branch and bound over partial lineups. For each {@link SlotPattern} the players are
+ * placed one at a time, best player first, into the open slots for their group. Partial lineups whose
+ * {@link ExpectedRunsBound} can't beat the best lineup found so far (the incumbent) are skipped along
+ * with every lineup that completes them. Complete lineups are scored exactly with
+ * {@link ExpectedValue}.
+ *
+ * The bound assumes every open slot gets the most useful player that's left. Placing the best players
+ * first means the players that are left are the weaker ones, which keeps that assumption close to the
+ * truth.
+ *
+ * The incumbent and the counters are shared, so {@link #search(Node)} may be called for different
+ * nodes from several threads at once. Each thread benefits from the incumbents found by the others.
+ */
+public class BranchAndBoundSearch {
+
+  private static final int EMPTY = ExpectedRunsBound.EMPTY;
+
+  // Bounding a partial lineup with a couple of open slots costs about as much as scoring every lineup
+  // that completes it, so partial lineups with fewer completions than this are just scored
+  private static final int MIN_COMPLETIONS_TO_BOUND = 2;
+
+  private final BattingLineupIndexer<?> indexer;
+  private final LineupStructure structure;
+  private final ExpectedRunsBound bound;
+  private final int inningsPerGame;
+  private final int maxPlateAppearances;
+  private final boolean lowestScore;
+  private final int playerCount;
+
+  // The order players are placed in, best first
+  private final int[] placementOrder;
+
+  // For each depth (number of players placed), the players that are left in each group and the number
+  // of ways to place them
+  private final int[][][] candidates;
+  private final long[] completions;
+
+  private final AtomicReference<Incumbent> incumbent = new AtomicReference<>();
+  private final AtomicLong countCompleted = new AtomicLong();
+  private final AtomicLong lineupsScored = new AtomicLong();
+  private final AtomicLong boundsComputed = new AtomicLong();
+
+  public BranchAndBoundSearch(BattingLineupIndexer<?> indexer, LineupStructure structure, ExpectedRunsBound bound,
+      int inningsPerGame, int maxPlateAppearances, boolean lowestScore) {
+    this.indexer = indexer;
+    this.structure = structure;
+    this.bound = bound;
+    this.inningsPerGame = inningsPerGame;
+    this.maxPlateAppearances = maxPlateAppearances;
+    this.lowestScore = lowestScore;
+    this.playerCount = structure.getPlayerCount();
+
+    // A player's strength is the expected runs of a lineup with only that player in it
+    List<DataPlayer> players = indexer.getPlayers();
+    double[] strength = new double[playerCount];
+    Integer[] order = new Integer[playerCount];
+    for (int p = 0; p < playerCount; p++) {
+      BattingLineup lineup = new StandardBattingLineup(Collections.singletonList(players.get(p)));
+      strength[p] = getObjective(ExpectedValue.getExpectedValue(lineup, inningsPerGame, maxPlateAppearances));
+      order[p] = p;
+    }
+    Arrays.sort(order, Comparator.comparingDouble((Integer p) -> strength[p]).reversed());
+    this.placementOrder = Arrays.stream(order).mapToInt(Integer::intValue).toArray();
+
+    this.candidates = new int[playerCount + 1][][];
+    this.completions = new long[playerCount + 1];
+    for (int depth = 0; depth <= playerCount; depth++) {
+      int[][] groupCandidates = new int[2][];
+      long count = 1;
+      for (int group = 0; group < groupCandidates.length; group++) {
+        final int g = group;
+        groupCandidates[group] = Arrays.stream(placementOrder, depth, playerCount)
+            .filter(p -> structure.getGroup(p) == g).toArray();
+        count *= CombinatoricsUtil.factorial(groupCandidates[group].length);
+      }
+      this.candidates[depth] = groupCandidates;
+      this.completions[depth] = count;
+    }
+  }
+
+  /**
+   * @return one empty lineup for each pattern, every lineup completes exactly one of them
+   */
+  public List<Node> getRoots() {
+    List<Node> roots = new ArrayList<>();
+    for (SlotPattern pattern : structure.getPatterns()) {
+      int[] slots = new int[playerCount];
+      Arrays.fill(slots, EMPTY);
+      roots.add(new Node(pattern, slots, 0, Double.POSITIVE_INFINITY));
+    }
+    return roots;
+  }
+
+  /**
+   * Follows the child with the best bound from the given node down to a complete lineup and offers
+   * it as the incumbent. This gives the search something to prune against from the start. Lineups
+   * scored here aren't counted as completed, the search will get to them again.
+   */
+  public void dive(Node node) {
+    int[] slots = node.slots.clone();
+    for (int depth = node.depth; depth < playerCount; depth++) {
+      Node best = expand(node.pattern, slots, depth).get(0);
+      System.arraycopy(best.slots, 0, slots, 0, playerCount);
+    }
+    score(slots);
+  }
+
+  /**
+   * Expands the nodes breadth first until there are at least 'minNodes' of them or they are close to
+   * complete. Nodes that are already ruled out by the incumbent are dropped (and counted as
+   * completed).
+   *
+   * @return the nodes, best bound first
+   */
+  public List<Node> split(List<Node> nodes, int minNodes) {
+    List<Node> frontier = new ArrayList<>(nodes);
+    while (!frontier.isEmpty() && frontier.size() < minNodes
+        && completions[frontier.get(0).depth + 1] >= MIN_COMPLETIONS_TO_BOUND) {
+      List<Node> next = new ArrayList<>();
+      for (Node parent : frontier) {
+        for (Node child : expand(parent.pattern, parent.slots, parent.depth)) {
+          if (isPromising(child.bound)) {
+            next.add(child);
+          } else {
+            countCompleted.addAndGet(completions[child.depth]);
+          }
+        }
+      }
+      frontier = next;
+    }
+    frontier.sort(Comparator.comparingDouble((Node n) -> n.bound).reversed());
+    return frontier;
+  }
+
+  /**
+   * Visits every lineup that completes the node, except the ones a bound rules out
+   */
+  public void search(Node node) {
+    if (!isPromising(node.bound)) {
+      countCompleted.addAndGet(completions[node.depth]);
+      return;
+    }
+    search(node.pattern, node.slots.clone(), node.depth);
+  }
+
+  private void search(SlotPattern pattern, int[] slots, int depth) {
+    if (depth == playerCount) {
+      score(slots);
+      countCompleted.incrementAndGet();
+      return;
+    }
+    int player = placementOrder[depth];
+    for (Node child : expand(pattern, slots, depth)) {
+      if (!isPromising(child.bound)) {
+        countCompleted.addAndGet(completions[child.depth]);
+        continue;
+      }
+      int slot = child.getSlot(player);
+      slots[slot] = player;
+      search(pattern, slots, depth + 1);
+      slots[slot] = EMPTY;
+    }
+  }
+
+  /**
+   * @return the ways to place the next player, best bound first
+   */
+  private List<Node> expand(SlotPattern pattern, int[] slots, int depth) {
+    int player = placementOrder[depth];
+    int group = structure.getGroup(player);
+    List<Node> children = new ArrayList<>();
+    for (int slot = 0; slot < playerCount; slot++) {
+      if (slots[slot] != EMPTY || pattern.getGroup(slot) != group) {
+        continue;
+      }
+      int[] childSlots = slots.clone();
+      childSlots[slot] = player;
+      double childBound = Double.POSITIVE_INFINITY;
+      if (completions[depth + 1] >= MIN_COMPLETIONS_TO_BOUND) {
+        childBound = bound.getBound(pattern, childSlots, candidates[depth + 1]);
+        boundsComputed.incrementAndGet();
+      }
+      children.add(new Node(pattern, childSlots, depth + 1, childBound));
+    }
+    children.sort(Comparator.comparingDouble((Node n) -> n.bound).reversed());
+    return children;
+  }
+
+  private void score(int[] slots) {
+    BattingLineup lineup = indexer.getLineup(slots);
+    double score = ExpectedValue.getExpectedValue(lineup, inningsPerGame, maxPlateAppearances);
+    lineupsScored.incrementAndGet();
+
+    Incumbent candidate = new Incumbent(lineup, score);
+    while (true) {
+      Incumbent current = incumbent.get();
+      if (current != null && getObjective(score) <= getObjective(current.score)) {
+        return;
+      }
+      if (incumbent.compareAndSet(current, candidate)) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * @return false if no lineup that completes a node with this bound can beat the incumbent
+   */
+  private boolean isPromising(double nodeBound) {
+    Incumbent current = incumbent.get();
+    return current == null || nodeBound + bound.getAllowance() > getObjective(current.score);
+  }
+
+  /**
+   * @return the score, negated if we're looking for the lowest scoring lineup. Same sign as the
+   *         bounds.
+   */
+  private double getObjective(double score) {
+    return lowestScore ? -score : score;
+  }
+
+  /**
+   * @return the best lineup found so far, or null if none have been scored
+   */
+  public BattingLineup getBestLineup() {
+    Incumbent current = incumbent.get();
+    return current == null ? null : current.lineup;
+  }
+
+  /**
+   * @return the expected runs of {@link #getBestLineup()}, or 0 if none have been scored
+   */
+  public double getBestScore() {
+    Incumbent current = incumbent.get();
+    return current == null ? 0 : current.score;
+  }
+
+  /**
+   * @return the number of lineups that were either scored or ruled out by a bound
+   */
+  public long getCountCompleted() {
+    return countCompleted.get();
+  }
+
+  public long getLineupsScored() {
+    return lineupsScored.get();
+  }
+
+  public long getBoundsComputed() {
+    return boundsComputed.get();
+  }
+
+  /**
+   * A partially filled pattern, the first 'depth' players of the placement order have been placed
+   */
+  public static class Node {
+    private final SlotPattern pattern;
+    private final int[] slots;
+    private final int depth;
+    private final double bound;
+
+    private Node(SlotPattern pattern, int[] slots, int depth, double bound) {
+      this.pattern = pattern;
+      this.slots = slots;
+      this.depth = depth;
+      this.bound = bound;
+    }
+
+    private int getSlot(int player) {
+      for (int slot = 0; slot < slots.length; slot++) {
+        if (slots[slot] == player) {
+          return slot;
+        }
+      }
+      throw new IllegalStateException("Player " + player + " hasn't been placed");
+    }
+  }
+
+  private static class Incumbent {
+    private final BattingLineup lineup;
+    private final double score;
+
+    private Incumbent(BattingLineup lineup, double score) {
+      this.lineup = lineup;
+      this.score = score;
+    }
+  }
+
+}
@@ -0,0 +1,354 @@
+package com.github.thbrown.softballsim.optimizer.impl.branchandbound;
+
+import java.util.Arrays;
+import java.util.List;
+import com.github.thbrown.softballsim.data.gson.DataPlayer;
+import com.github.thbrown.softballsim.optimizer.impl.expectedvalue.ExpectedValue;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive.BasesUtil;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive.HitGenerator;
+
+/**
+ * Calculates an upper bound on the expected runs (as calculated by {@link ExpectedValue}) of every
+ * lineup that matches a partially filled {@link SlotPattern}.
+ *
+ * ExpectedValue carries the probability of each game state forward one plate appearance at a time.
+ * This class solves the same Markov chain backwards instead: for each plate appearance t (starting
+ * from the last one) and each state (outs, runners on base) it calculates the expected runs the rest
+ * of the game would produce. If the slot that bats at plate appearance t is filled, that's the usual
+ * expectation over the batter's outcomes. If the slot is still open, it's the best result of any
+ * player who could still be placed in that slot, chosen separately for every state and plate
+ * appearance. Any actual lineup that fills the open slots is one of those choices, so it can't be
+ * expected to score more than the bound.
+ *
+ * Left at that, every open slot would get the same player, the one best suited to the state, and the
+ * bound would be loose once several slots are open. So the open slots of each window (see
+ * {@link SlotPattern#startsWindow(int)}) must get different players. The players used so far in the
+ * current window become part of the state. That multiplies the work by up to 2^(open slots), so it's
+ * only done when at most 10 slots are open. An actual lineup puts different players in the slots of a
+ * window too, so the bound is still sound.
+ *
+ * Solving backwards needs a fixed number of plate appearances, the horizon. The horizon is picked so
+ * that the runs a game could be expected to score after it are negligible, and those runs are added
+ * back by {@link #getAllowance()}, along with the runs that ExpectedValue ignores when it stops early.
+ * So bound + allowance is a true upper bound, not an approximation.
+ *
+ * To find the lowest scoring lineup, all runs are negated and the bound is on the negated expected
+ * runs.
+ *
+ * This class is immutable and may be shared between threads.
+ */
+public class ExpectedRunsBound {
+
+  public static final int EMPTY = -1;
+
+  // The horizon is extended until the runs expected after it are less than this. Whatever is left over
+  // is added to every bound, so a loose tolerance only costs a little pruning.
+  private static final double TOLERANCE = 1e-4;
+
+  // Above this many open slots, the players used in a window aren't tracked. Tracking them takes
+  // memory and time proportional to 2^(open slots) per state.
+  private static final int MAX_TRACKED_CANDIDATES = 10;
+
+  private static final int BASE_STATES = 8;
+  private static final int OUTCOMES = HitGenerator.OUTCOMES;
+
+  // For player 'p', entry [p * OUTCOMES + i] is the probability of earning i bases
+  private final double[] probabilities;
+
+  // For state 's', entry [s * OUTCOMES + i] is the state after the batter earns i bases (-1 if the
+  // game is over) and the runs (negated for lowestScore) that score
+  private final int[] nextStates;
+  private final double[] runs;
+  private final int states;
+
+  private final int horizon;
+  private final double allowance;
+
+  public ExpectedRunsBound(List<DataPlayer> players, LineupStructure structure, int inningsPerGame,
+      int maxPlateAppearances, boolean lowestScore) {
+    int playerCount = players.size();
+    this.probabilities = new double[playerCount * OUTCOMES];
+    for (int p = 0; p < playerCount; p++) {
+      System.arraycopy(ExpectedValue.getOutcomeProbabilities(players.get(p)), 0, probabilities, p * OUTCOMES,
+          OUTCOMES);
+    }
+
+    int outsPerGame = inningsPerGame * ExpectedValue.OUTS_PER_INNING;
+    this.states = outsPerGame * BASE_STATES;
+    this.nextStates = new int[states * OUTCOMES];
+    this.runs = new double[states * OUTCOMES];
+    double sign = lowestScore ? -1 : 1;
+    for (int outs = 0; outs < outsPerGame; outs++) {
+      for (int bases = 0; bases < BASE_STATES; bases++) {
+        int index = (outs * BASE_STATES + bases) * OUTCOMES;
+
+        // Out, same rules as ExpectedValue
+        int newOuts = outs + 1;
+        int newBases = newOuts % ExpectedValue.OUTS_PER_INNING == 0 ? 0 : bases;
+        nextStates[index] = newOuts < outsPerGame ? newOuts * BASE_STATES + newBases : -1;
+
+        // Hits
+        for (int numBases = 1; numBases < OUTCOMES; numBases++) {
+          int transition = BasesUtil.getTransition(bases, numBases);
+          nextStates[index + numBases] = outs * BASE_STATES + BasesUtil.getBasesMask(transition);
+          runs[index + numBases] = sign * BasesUtil.getRuns(transition);
+        }
+      }
+    }
+
+    if (outsPerGame == 0) {
+      this.horizon = 0;
+      this.allowance = 0;
+      return;
+    }
+
+    /*
+     * Runs scored after any point in a game come from the runners on base (at most 3) and the batters
+     * who reach base afterwards, so they can't be expected to exceed 3 + the expected number of
+     * remaining plate appearances. Every player bats a fixed number of times each cycle, no matter the
+     * lineup, so a cycle makes 'outsPerCycle' outs on average. By Wald's identity, making the remaining
+     * outs takes at most (outsPerGame + cycleLength) / outsPerCycle full cycles on average, plus the
+     * partial cycle we started in.
+     */
+    SlotPattern pattern = structure.getPatterns().get(0);
+    int cycleLength = pattern.getCycleLength();
+    double outsPerCycle = 0;
+    double[] cycleOuts = {1}; // Distribution of outs made in one cycle, capped at outsPerGame
+    for (int p = 0; p < playerCount; p++) {
+      double outProbability = probabilities[p * OUTCOMES];
+      for (int i = 0; i < pattern.getAppearancesPerCycle(structure.getGroup(p)); i++) {
+        outsPerCycle += outProbability;
+        cycleOuts = addOuts(cycleOuts, new double[] {1 - outProbability, outProbability}, outsPerGame);
+      }
+    }
+    if (outsPerCycle == 0) {
+      // Nobody ever makes an out, every lineup bats until maxPlateAppearances
+      this.horizon = maxPlateAppearances;
+      this.allowance = 0;
+      return;
+    }
+    double remainingRuns = 3 + cycleLength * ((outsPerGame + cycleLength) / outsPerCycle + 1);
+
+    // Extend the horizon one cycle at a time until the game is almost certainly over
+    double[] gameOuts = {1};
+    int cycles = 0;
+    double tail = 0;
+    while (true) {
+      cycles++;
+      gameOuts = addOuts(gameOuts, cycleOuts, outsPerGame);
+      if ((long) cycles * cycleLength >= maxPlateAppearances) {
+        // ExpectedValue stops here too, so there's nothing after the horizon
+        tail = 0;
+        break;
+      }
+      double inProgress = 0;
+      for (int outs = 0; outs < Math.min(outsPerGame, gameOuts.length); outs++) {
+        inProgress += gameOuts[outs];
+      }
+      if (inProgress * remainingRuns <= TOLERANCE) {
+        tail = inProgress * remainingRuns;
+        break;
+      }
+    }
+    this.horizon = (int) Math.min(maxPlateAppearances, (long) cycles * cycleLength);
+    this.allowance = tail + ExpectedValue.EPSILON * remainingRuns;
+  }
+
+  /**
+   * @return the bound on the expected runs (negated if lowestScore) of every lineup that fills the
+   *         open slots of the pattern. Add {@link #getAllowance()} before comparing this to an actual
+   *         score.
+   * @param slots the player in each slot of the pattern, or EMPTY
+   * @param groupCandidates the players that could still fill the open slots of each group
+   */
+  public double getBound(SlotPattern pattern, int[] slots, int[][] groupCandidates) {
+    if (states == 0) {
+      return 0;
+    }
+    int candidateCount = 0;
+    for (int[] candidates : groupCandidates) {
+      candidateCount += candidates.length;
+    }
+    if (candidateCount < 2 || candidateCount > MAX_TRACKED_CANDIDATES) {
+      // With one candidate there's nothing to track
+      return getUntrackedBound(pattern, slots, groupCandidates);
+    }
+    return getTrackedBound(pattern, slots, groupCandidates, candidateCount);
+  }
+
+  /**
+   * Bound where each open slot may take any candidate, even one already batting in the same window
+   */
+  private double getUntrackedBound(SlotPattern pattern, int[] slots, int[][] groupCandidates) {
+    double[] later = new double[states]; // Zero after the horizon
+    double[] current = new double[states];
+    int[] fixed = new int[1];
+    for (int t = horizon - 1; t >= 0; t--) {
+      int slot = pattern.getSlot(t);
+      int[] players;
+      if (slots[slot] != EMPTY) {
+        fixed[0] = slots[slot];
+        players = fixed;
+      } else {
+        players = groupCandidates[pattern.getGroup(slot)];
+      }
+      for (int s = 0; s < getReachableStates(t); s++) {
+        int index = s * OUTCOMES;
+        double v0 = valueAfter(index, later, 0);
+        double v1 = valueAfter(index + 1, later, 0);
+        double v2 = valueAfter(index + 2, later, 0);
+        double v3 = valueAfter(index + 3, later, 0);
+        double v4 = valueAfter(index + 4, later, 0);
+        double best = Double.NEGATIVE_INFINITY;
+        for (int player : players) {
+          int p = player * OUTCOMES;
+          double value = probabilities[p] * v0 + probabilities[p + 1] * v1 + probabilities[p + 2] * v2
+              + probabilities[p + 3] * v3 + probabilities[p + 4] * v4;
+          if (value > best) {
+            best = value;
+          }
+        }
+        current[s] = best;
+      }
+      double[] temp = later;
+      later = current;
+      current = temp;
+    }
+    return later[0];
+  }
+
+  /**
+   * Bound where the open slots of a window must take different candidates. Values are indexed by
+   * [usedMask * states + state], bit i of usedMask is set if candidate i already batted in the window.
+   */
+  private double getTrackedBound(SlotPattern pattern, int[] slots, int[][] groupCandidates, int candidateCount) {
+    int groups = groupCandidates.length;
+    int[] candidates = new int[candidateCount];
+    int[] groupMasks = new int[groups];
+    int bit = 0;
+    for (int group = 0; group < groups; group++) {
+      for (int player : groupCandidates[group]) {
+        candidates[bit] = player;
+        groupMasks[group] |= 1 << bit;
+        bit++;
+      }
+    }
+
+    // The number of open slots of each group that bat in the window before each plate appearance of
+    // the cycle. A used mask is only reachable at that plate appearance if it has that many bits set.
+    int cycleLength = pattern.getCycleLength();
+    int[][] usedBefore = new int[groups][cycleLength];
+    int[] used = new int[groups];
+    for (int i = 0; i < cycleLength; i++) {
+      if (pattern.startsWindow(i)) {
+        Arrays.fill(used, 0);
+      }
+      for (int group = 0; group < groups; group++) {
+        usedBefore[group][i] = used[group];
+      }
+      int slot = pattern.getSlot(i);
+      if (slots[slot] == EMPTY) {
+        used[pattern.getGroup(slot)]++;
+      }
+    }
+
+    int masks = 1 << candidateCount;
+    double[] later = new double[masks * states]; // Zero after the horizon
+    double[] current = new double[masks * states];
+    for (int t = horizon - 1; t >= 0; t--) {
+      int position = t % cycleLength;
+      int slot = pattern.getSlot(t);
+      int player = slots[slot];
+      int openMask = groupMasks[pattern.getGroup(slot)];
+      boolean windowEnds = pattern.startsWindow(t + 1);
+      int reachableStates = getReachableStates(t);
+      for (int mask = 0; mask < masks; mask++) {
+        if (!isReachable(mask, groupMasks, usedBefore, position)) {
+          continue;
+        }
+        int base = mask * states;
+        for (int s = 0; s < reachableStates; s++) {
+          int index = s * OUTCOMES;
+          if (player != EMPTY) {
+            current[base + s] = getExpectedValue(player, index, later, (windowEnds ? 0 : mask) * states);
+            continue;
+          }
+          double best = Double.NEGATIVE_INFINITY;
+          for (int available = openMask & ~mask; available != 0; available &= available - 1) {
+            int i = Integer.numberOfTrailingZeros(available);
+            int laterBase = (windowEnds ? 0 : mask | (1 << i)) * states;
+            double value = getExpectedValue(candidates[i], index, later, laterBase);
+            if (value > best) {
+              best = value;
+            }
+          }
+          current[base + s] = best;
+        }
+      }
+      double[] temp = later;
+      later = current;
+      current = temp;
+    }
+    return later[0];
+  }
+
+  private static boolean isReachable(int mask, int[] groupMasks, int[][] usedBefore, int position) {
+    for (int group = 0; group < groupMasks.length; group++) {
+      if (Integer.bitCount(mask & groupMasks[group]) != usedBefore[group][position]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private double getExpectedValue(int player, int index, double[] later, int laterBase) {
+    int p = player * OUTCOMES;
+    return probabilities[p] * valueAfter(index, later, laterBase)
+        + probabilities[p + 1] * valueAfter(index + 1, later, laterBase)
+        + probabilities[p + 2] * valueAfter(index + 2, later, laterBase)
+        + probabilities[p + 3] * valueAfter(index + 3, later, laterBase)
+        + probabilities[p + 4] * valueAfter(index + 4, later, laterBase);
+  }
+
+  /**
+   * @return the number of states that can be reached at the given plate appearance, states with more
+   *         outs than plate appearances so far can't be
+   */
+  private int getReachableStates(int plateAppearance) {
+    return (int) Math.min(states, (plateAppearance + 1L) * BASE_STATES);
+  }
+
+  /**
+   * @return the number of runs that must be added to a bound before comparing it to an actual score
+   */
+  public double getAllowance() {
+    return allowance;
+  }
+
+  /**
+   * @return the number of plate appearances the bound considers
+   */
+  public int getHorizon() {
+    return horizon;
+  }
+
+  private double valueAfter(int transition, double[] later, int laterBase) {
+    int next = nextStates[transition];
+    return runs[transition] + (next < 0 ? 0 : later[laterBase + next]);
+  }
+
+  /**
+   * @return the distribution of the sum of two independent out counts, with everything at or above
+   *         the cap added to the cap
+   */
+  private static double[] addOuts(double[] a, double[] b, int cap) {
+    double[] sum = new double[Math.min(cap, a.length + b.length - 2) + 1];
+    for (int i = 0; i < a.length; i++) {
+      for (int j = 0; j < b.length; j++) {
+        sum[Math.min(cap, i + j)] += a[i] * b[j];
+      }
+    }
+    return sum;
+  }
+
+}
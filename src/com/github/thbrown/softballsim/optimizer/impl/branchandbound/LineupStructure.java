@@ -0,0 +1,150 @@
+package com.github.thbrown.softballsim.optimizer.impl.branchandbound;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import com.github.thbrown.softballsim.data.gson.DataPlayer;
+import com.github.thbrown.softballsim.lineupindexer.BattingLineupIndexer;
+import com.github.thbrown.softballsim.lineupindexer.LineupTypeEnum;
+import com.github.thbrown.softballsim.util.CombinatoricsUtil;
+
+/**
+ * Describes the lineups of a lineup type as a set of {@link SlotPattern}s. Every lineup of the type
+ * matches exactly one pattern, and every way of putting each group's players into the pattern's slots
+ * for that group is a lineup of the type. Players are the indexer's
+ * {@link BattingLineupIndexer#getPlayers()}.
+ *
+ * For the gender lineup types group 0 is men and group 1 is women. STANDARD lineups only have group
+ * 0.
+ */
+public class LineupStructure {
+
+  private static final int MALE = 0;
+  private static final int FEMALE = 1;
+
+  private final int[] playerGroups;
+  private final List<SlotPattern> patterns;
+
+  private LineupStructure(int[] playerGroups, List<SlotPattern> patterns) {
+    this.playerGroups = playerGroups;
+    this.patterns = Collections.unmodifiableList(patterns);
+  }
+
+  public static LineupStructure forLineupType(LineupTypeEnum lineupType, BattingLineupIndexer<?> indexer) {
+    List<DataPlayer> players = indexer.getPlayers();
+    int playerCount = players.size();
+    int[] genders = new int[playerCount];
+    int menCount = 0;
+    for (int i = 0; i < playerCount; i++) {
+      genders[i] = players.get(i).getGender().equals("M") ? MALE : FEMALE;
+      menCount += genders[i] == MALE ? 1 : 0;
+    }
+    int womenCount = playerCount - menCount;
+
+    List<SlotPattern> patterns = new ArrayList<>();
+    switch (lineupType) {
+      case STANDARD:
+        patterns.add(new SlotPattern(new int[playerCount], getIdentity(playerCount)));
+        return new LineupStructure(new int[playerCount], patterns);
+      case ALTERNATING_GENDER:
+        // Slots are the order of the group that bats first followed by the order of the other group
+        patterns.add(getAlternatingPattern(MALE, menCount, womenCount));
+        patterns.add(getAlternatingPattern(FEMALE, womenCount, menCount));
+        return new LineupStructure(genders, patterns);
+      case NO_CONSECUTIVE_FEMALES:
+        addGenderPatterns(new int[playerCount], 0, menCount, womenCount, false, patterns);
+        return new LineupStructure(genders, patterns);
+      case NO_CONSECUTIVE_FEMALES_AND_NO_THREE_CONSECUTIVE_MALES:
+        addGenderPatterns(new int[playerCount], 0, menCount, womenCount, true, patterns);
+        return new LineupStructure(genders, patterns);
+      default:
+        throw new IllegalArgumentException("Unsupported lineup type " + lineupType);
+    }
+  }
+
+  public int getPlayerCount() {
+    return playerGroups.length;
+  }
+
+  public int getGroup(int player) {
+    return playerGroups[player];
+  }
+
+  public List<SlotPattern> getPatterns() {
+    return patterns;
+  }
+
+  /**
+   * @return the number of lineups of this type, this matches the indexer's size()
+   */
+  public long countLineups() {
+    int[] groupSizes = new int[2];
+    for (int group : playerGroups) {
+      groupSizes[group]++;
+    }
+    return patterns.size() * CombinatoricsUtil.factorial(groupSizes[0])
+        * CombinatoricsUtil.factorial(groupSizes[1]);
+  }
+
+  private static SlotPattern getAlternatingPattern(int firstGroup, int firstGroupSize, int secondGroupSize) {
+    int playerCount = firstGroupSize + secondGroupSize;
+    int[] slotGroups = new int[playerCount];
+    for (int slot = 0; slot < playerCount; slot++) {
+      slotGroups[slot] = slot < firstGroupSize ? firstGroup : 1 - firstGroup;
+    }
+
+    // Same as AlternatingBattingLineup, the groups take turns so the order repeats after twice the
+    // least common multiple of the group sizes
+    int cycleLength = 2 * (firstGroupSize / gcd(firstGroupSize, secondGroupSize) * secondGroupSize);
+    int[] battingOrder = new int[cycleLength];
+    for (int plateAppearance = 0; plateAppearance < cycleLength; plateAppearance++) {
+      int turn = plateAppearance / 2;
+      battingOrder[plateAppearance] = plateAppearance % 2 == 0 ? turn % firstGroupSize
+          : firstGroupSize + turn % secondGroupSize;
+    }
+    return new SlotPattern(slotGroups, battingOrder);
+  }
+
+  /**
+   * Adds every valid order of genders for the lineup types that don't allow consecutive females. The
+   * rules apply across the end of the batting order, where it wraps back around to the top. With
+   * noThreeConsecutiveMales, NCS_NTCM_LineupIndexer also leaves out the lineups that start and end
+   * with a male (each one is a rotation of a lineup that doesn't), so they're left out here too.
+   */
+  private static void addGenderPatterns(int[] genders, int pos, int menLeft, int womenLeft,
+      boolean noThreeConsecutiveMales, List<SlotPattern> patterns) {
+    int playerCount = genders.length;
+    if (pos == playerCount) {
+      boolean isValid = genders[playerCount - 1] != FEMALE || genders[0] != FEMALE;
+      if (noThreeConsecutiveMales) {
+        isValid &= genders[playerCount - 1] != MALE || genders[0] != MALE;
+      }
+      if (isValid) {
+        patterns.add(new SlotPattern(genders.clone(), getIdentity(playerCount)));
+      }
+      return;
+    }
+    if (womenLeft > 0 && (pos == 0 || genders[pos - 1] != FEMALE)) {
+      genders[pos] = FEMALE;
+      addGenderPatterns(genders, pos + 1, menLeft, womenLeft - 1, noThreeConsecutiveMales, patterns);
+    }
+    boolean threeMales = pos >= 2 && genders[pos - 1] == MALE && genders[pos - 2] == MALE;
+    if (menLeft > 0 && !(noThreeConsecutiveMales && threeMales)) {
+      genders[pos] = MALE;
+      addGenderPatterns(genders, pos + 1, menLeft - 1, womenLeft, noThreeConsecutiveMales, patterns);
+    }
+  }
+
+  private static int[] getIdentity(int length) {
+    int[] identity = new int[length];
+    for (int i = 0; i < length; i++) {
+      identity[i] = i;
+    }
+    return identity;
+  }
+
+  private static int gcd(int a, int b) {
+    return b == 0 ? a : gcd(b, a % b);
+  }
+
+}
@@ -0,0 +1,81 @@
+package com.github.thbrown.softballsim.optimizer.impl.branchandbound;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Which group of players (e.g. which gender) fills each slot of a lineup, and the order the slots
+ * bat in. Slots are the int arrays used by
+ * {@link com.github.thbrown.softballsim.lineupindexer.BattingLineupIndexer#getLineup(int[])}.
+ */
+public class SlotPattern {
+
+  private final int[] slotGroups;
+  private final int[] battingOrder;
+  private final boolean[] windowStarts;
+
+  /**
+   * @param slotGroups the group of the player in each slot
+   * @param battingOrder the slot that bats for each plate appearance of one cycle, after which the
+   *        order repeats
+   */
+  public SlotPattern(int[] slotGroups, int[] battingOrder) {
+    this.slotGroups = slotGroups;
+    this.battingOrder = battingOrder;
+
+    // Start a new window whenever a slot would bat twice in the current one
+    this.windowStarts = new boolean[battingOrder.length];
+    Set<Integer> batted = new HashSet<>();
+    for (int i = 0; i < battingOrder.length; i++) {
+      if (i == 0 || !batted.add(battingOrder[i])) {
+        windowStarts[i] = true;
+        batted.clear();
+        batted.add(battingOrder[i]);
+      }
+    }
+  }
+
+  public int getSlotCount() {
+    return slotGroups.length;
+  }
+
+  public int getGroup(int slot) {
+    return slotGroups[slot];
+  }
+
+  /**
+   * @return the slot whose player takes the given (zero indexed) plate appearance of a game
+   */
+  public int getSlot(int plateAppearance) {
+    return battingOrder[plateAppearance % battingOrder.length];
+  }
+
+  /**
+   * @return true if a window starts at the given (zero indexed) plate appearance. Windows split each
+   *         cycle into runs of plate appearances in which no slot bats twice, so every plate
+   *         appearance in a window is taken by a different player.
+   */
+  public boolean startsWindow(int plateAppearance) {
+    return windowStarts[plateAppearance % windowStarts.length];
+  }
+
+  public int getCycleLength() {
+    return battingOrder.length;
+  }
+
+  /**
+   * @return the number of plate appearances each player in the group gets per cycle
+   */
+  public int getAppearancesPerCycle(int group) {
+    int groupSlots = 0;
+    int groupAppearances = 0;
+    for (int slotGroup : slotGroups) {
+      groupSlots += slotGroup == group ? 1 : 0;
+    }
+    for (int slot : battingOrder) {
+      groupAppearances += slotGroups[slot] == group ? 1 : 0;
+    }
+    return groupSlots == 0 ? 0 : groupAppearances / groupSlots;
+  }
+
+}
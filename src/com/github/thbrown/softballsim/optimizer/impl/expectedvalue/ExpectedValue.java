@@ -1,90 +1,118 @@
 package com.github.thbrown.softballsim.optimizer.impl.expectedvalue;
 
-import java.util.List;
+import java.util.Arrays;
 import com.github.thbrown.softballsim.data.gson.DataPlayer;
 import com.github.thbrown.softballsim.lineup.BattingLineup;
 import com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive.BasesUtil;
-import com.github.thbrown.softballsim.util.Logger;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive.HitGenerator;
 
 /**
- * Static class that calculates the expected number of runs from a given lineup of players
+ * Static class that calculates the expected number of runs from a given lineup of players.
+ *
+ * A game is treated as a Markov chain. After t plate appearances the game is in a state of (outs so
+ * far this game, runners on base) and the batter is always the player at position t in the batting
+ * order, so the inning is implied by the outs and the batting order slot is implied by t. We carry
+ * the probability of being in each state forward one plate appearance at a time using the same base
+ * running rules as the Monte Carlo simulation ({@link BasesUtil}) and add up the expected runs scored
+ * by each plate appearance along the way.
+ *
+ * The calculation stops once the probability that the game is still going is negligible or after the
+ * maximum number of plate appearances, whichever comes first. Unlike the simulation, no cap is placed
+ * on the runs scored in a single inning.
  */
 public class ExpectedValue {
 
   public static int OUTS_PER_INNING = 3;
 
+  // Stop once the probability of the game still being in progress drops below this
+  public static final double EPSILON = 1e-12;
+
+  private static final int BASE_STATES = 8;
+
   public static double getExpectedValue(BattingLineup lineup, int inningsPerGame, int maxPlateAppearance) {
-    HitsForEachPlayer playerHits = new HitsForEachPlayer(lineup);
-    double expectedRuns = 0;
-    double totalProbability = 0;
-    long index = 0;
-
-    // Keep simulating till we've done 99% of the possibilities
-    while (totalProbability < .99) {
-      long start = System.nanoTime();
-      List<Integer> hits = playerHits.getHitsByIndex(index, inningsPerGame * OUTS_PER_INNING, maxPlateAppearance);
-      long A = System.nanoTime();
-      double score = ExpectedValue.getExpectedScore(hits);
-      long B = System.nanoTime();
-      double probability = ExpectedValue.getProbability(lineup, hits);
-      long C = System.nanoTime();
-      Logger.log((A - start) + " " + (B - A) + " " + (C - B));
-
-
-      expectedRuns += (score * probability);
-      totalProbability += probability;
-      index++;
+    // Outcome probabilities for each position in one full trip through the batting order
+    int battingOrderLength = lineup.getBattingOrderLength();
+    double[][] outcomeProbabilities = new double[battingOrderLength][];
+    for (int i = 0; i < battingOrderLength; i++) {
+      outcomeProbabilities[i] = getOutcomeProbabilities(lineup.getBatter(i));
     }
 
-    return expectedRuns;
-  }
+    int outsPerGame = inningsPerGame * OUTS_PER_INNING;
+    if (outsPerGame == 0) {
+      return 0;
+    }
+    double[] current = new double[outsPerGame * BASE_STATES];
+    double[] next = new double[outsPerGame * BASE_STATES];
+    current[0] = 1; // No outs, bases empty
 
-  /**
-   * How many runs would the given array of hits produce?
-   */
-  private static double getExpectedScore(List<Integer> hits) {
-    double score = 0;
-    int outCounter = 0;
-    BasesUtil.BasesState bases = new BasesUtil.BasesState();
-    for (int hit : hits) {
-      if (hit == 0) {
-        outCounter++;
-        // Reset the bases after three outs
-        if (outCounter == 3) {
-          bases.clear();
-          continue;
+    double expectedRuns = 0;
+    int position = 0;
+    for (int plateAppearance = 0; plateAppearance < maxPlateAppearance; plateAppearance++) {
+      double[] p = outcomeProbabilities[position];
+      Arrays.fill(next, 0);
+
+      for (int outs = 0; outs < outsPerGame; outs++) {
+        for (int bases = 0; bases < BASE_STATES; bases++) {
+          double stateProbability = current[outs * BASE_STATES + bases];
+          if (stateProbability == 0) {
+            continue;
+          }
+
+          // Out, the bases are cleared if it ends the inning. The game is over after the last out.
+          int newOuts = outs + 1;
+          if (newOuts < outsPerGame) {
+            int newBases = newOuts % OUTS_PER_INNING == 0 ? 0 : bases;
+            next[newOuts * BASE_STATES + newBases] += stateProbability * p[0];
+          }
+
+          // Hits
+          for (int numBases = 1; numBases < HitGenerator.OUTCOMES; numBases++) {
+            if (p[numBases] == 0) {
+              continue;
+            }
+            double transitionProbability = stateProbability * p[numBases];
+            int transition = BasesUtil.getTransition(bases, numBases);
+            expectedRuns += transitionProbability * BasesUtil.getRuns(transition);
+            next[outs * BASE_STATES + BasesUtil.getBasesMask(transition)] += transitionProbability;
+          }
         }
       }
-      score += BasesUtil.updateRunsAndBasesAfterHit(hit, bases);
+
+      double[] temp = current;
+      current = next;
+      next = temp;
+
+      double inProgress = 0;
+      for (double stateProbability : current) {
+        inProgress += stateProbability;
+      }
+      if (inProgress < EPSILON) {
+        break;
+      }
+
+      position++;
+      if (position == battingOrderLength) {
+        position = 0;
+      }
     }
-    return score;
+
+    return expectedRuns;
   }
 
   /**
-   * What are the chances that the given lineup gets the given hit results?
+   * @return the probability of each outcome of a plate appearance for this player, indexed by the
+   *         number of bases earned
    */
-  private static double getProbability(BattingLineup lineup, List<Integer> hits) {
-    int lineupIndex = 0;
-    double probability = 1;
-    for (int hit : hits) {
-      DataPlayer batter = lineup.getBatter(lineupIndex);
-      // TODO: cache this math
-      if (hit == 0) {
-        probability *= (double) (batter.getOutCount() + batter.getSacCount()) / batter.getPlateAppearanceCount();
-      } else if (hit == 1) {
-        probability *= (double) (batter.getSingleCount() + batter.getWalkCount()) / batter.getPlateAppearanceCount();
-      } else if (hit == 2) {
-        probability *= (double) (batter.getDoubleCount()) / batter.getPlateAppearanceCount();
-      } else if (hit == 3) {
-        probability *= (double) (batter.getTripleCount()) / batter.getPlateAppearanceCount();
-      } else if (hit == 4) {
-        probability *= (double) (batter.getHomerunCount()) / batter.getPlateAppearanceCount();
-      }
-      lineupIndex = (lineupIndex + 1) % lineup.size();
-      if (probability == 0) {
-        return 0;
-      }
+  public static double[] getOutcomeProbabilities(DataPlayer player) {
+    long[] counts = HitGenerator.getOutcomeCounts(player);
+    long total = 0;
+    for (long count : counts) {
+      total += count;
+    }
+    double[] probabilities = new double[counts.length];
+    for (int i = 0; i < counts.length; i++) {
+      probabilities[i] = (double) counts[i] / total;
     }
-    return probability;
+    return probabilities;
   }
 }
@@ -5,6 +5,7 @@ import java.util.Map;
 public class ExpectedValueArgumentParser {
 
   public final static String MAX_BATTERS = "B";
+  public final static String COLLAPSE_IDENTICAL_PLAYERS = "C";
   public final static String INNINGS = "I";
   public final static String LOWEST_SCORE = "L";
   public final static String THREADS = "T";
@@ -13,11 +14,13 @@ public class ExpectedValueArgumentParser {
   private final int innings;
   private final int threads;
   private final boolean lowestScore;
+  private final boolean collapseIdenticalPlayers;
 
   public ExpectedValueArgumentParser(Map<String, String> args) {
     batters = Integer.parseInt(args.get(MAX_BATTERS));
     innings = Integer.parseInt(args.get(INNINGS));
     lowestScore = Boolean.parseBoolean(args.get(LOWEST_SCORE));
+    collapseIdenticalPlayers = Boolean.parseBoolean(args.get(COLLAPSE_IDENTICAL_PLAYERS));
     threads = Integer.parseInt(args.get(THREADS));
   }
 
@@ -33,6 +36,10 @@ public class ExpectedValueArgumentParser {
     return lowestScore;
   }
 
+  public boolean isCollapseIdenticalPlayers() {
+    return collapseIdenticalPlayers;
+  }
+
   public int getThreads() {
     return threads;
   }
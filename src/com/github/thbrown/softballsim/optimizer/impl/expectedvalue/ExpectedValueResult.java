@@ -1,6 +1,7 @@
 package com.github.thbrown.softballsim.optimizer.impl.expectedvalue;
 
 import java.util.Map;
+import com.github.thbrown.softballsim.Result;
 import com.github.thbrown.softballsim.ResultStatusEnum;
 import com.github.thbrown.softballsim.lineup.BattingLineup;
 import com.github.thbrown.softballsim.optimizer.OptimizerEnum;
@@ -15,4 +16,14 @@ public class ExpectedValueResult extends MonteCarloExhaustiveResult {
         histogram, isFinalResult, oppositeOfOptimalLineup, oppositeOfOptimalScore);
   }
 
+  private ExpectedValueResult(ExpectedValueResult toCopy, ResultStatusEnum status, String statusMessage,
+      Long estimatedTimeRemainingMs) {
+    super(toCopy, status, statusMessage, estimatedTimeRemainingMs);
+  }
+
+  @Override
+  protected Result copy(ResultStatusEnum status, String statusMessage, Long estimatedTimeRemainingMs) {
+    return new ExpectedValueResult(this, status, statusMessage, estimatedTimeRemainingMs);
+  }
+
 }
@@ -0,0 +1,220 @@
+package com.github.thbrown.softballsim.optimizer.impl.montecarloadaptive;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import org.apache.commons.math3.stat.descriptive.StatisticalSummary;
+
+/**
+ * Everything the adaptive optimizer needs to pick up where it left off: the index of the next fresh
+ * lineup, the champion and the surviving candidates, each with the n, mean and sum of squared
+ * deviations (M2) of the games simulated for it. Resuming from a checkpoint doesn't re-simulate any
+ * of those games.
+ *
+ * The binary form is gzipped. Candidates are sorted by lineup index and each index is written as a
+ * varint of the gap from the previous one, so a few thousand candidates spread over millions of
+ * lineups take a couple of bytes each plus their stats.
+ */
+public class AdaptiveCheckpoint {
+
+  private static final int VERSION = 1;
+
+  private final long nextLineupIndex;
+  private final long championIndex;
+  private final long championN;
+  private final double championMean;
+  private final double championM2;
+
+  // Sorted by lineup index
+  private final long[] lineupIndexes;
+  private final long[] n;
+  private final double[] means;
+  private final double[] m2s;
+
+  private AdaptiveCheckpoint(long nextLineupIndex, long championIndex, long championN, double championMean,
+      double championM2, long[] lineupIndexes, long[] n, double[] means, double[] m2s) {
+    this.nextLineupIndex = nextLineupIndex;
+    this.championIndex = championIndex;
+    this.championN = championN;
+    this.championMean = championMean;
+    this.championM2 = championM2;
+    this.lineupIndexes = lineupIndexes;
+    this.n = n;
+    this.means = means;
+    this.m2s = m2s;
+  }
+
+  /**
+   * @param nextLineupIndex every lineup before this one has been compared with the champion or is a
+   *        candidate
+   */
+  public static AdaptiveCheckpoint of(long nextLineupIndex, LineupComposite champion, CandidateStore candidates) {
+    int size = candidates.size();
+    long[] unsortedIndexes = new long[size];
+    long[] unsortedN = new long[size];
+    double[] unsortedMeans = new double[size];
+    double[] unsortedM2s = new double[size];
+    int[] count = new int[1];
+    candidates.forEach((lineupIndex, n, mean, m2) -> {
+      int i = count[0]++;
+      unsortedIndexes[i] = lineupIndex;
+      unsortedN[i] = n;
+      unsortedMeans[i] = mean;
+      unsortedM2s[i] = m2;
+    });
+
+    Integer[] order = new Integer[size];
+    for (int i = 0; i < size; i++) {
+      order[i] = i;
+    }
+    Arrays.sort(order, (a, b) -> Long.compare(unsortedIndexes[a], unsortedIndexes[b]));
+
+    long[] lineupIndexes = new long[size];
+    long[] n = new long[size];
+    double[] means = new double[size];
+    double[] m2s = new double[size];
+    for (int i = 0; i < size; i++) {
+      lineupIndexes[i] = unsortedIndexes[order[i]];
+      n[i] = unsortedN[order[i]];
+      means[i] = unsortedMeans[order[i]];
+      m2s[i] = unsortedM2s[order[i]];
+    }
+
+    StatisticalSummary championStats = champion.getStats();
+    long championN = championStats.getN();
+    double championMean = championN == 0 ? 0 : championStats.getMean();
+    double championM2 = championN < 2 ? 0 : championStats.getVariance() * (championN - 1);
+    return new AdaptiveCheckpoint(nextLineupIndex, champion.getIndex(), championN, championMean, championM2,
+        lineupIndexes, n, means, m2s);
+  }
+
+  public byte[] toBytes() {
+    try {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      try (DataOutputStream out = new DataOutputStream(new GZIPOutputStream(bytes))) {
+        out.writeByte(VERSION);
+        writeVarLong(out, nextLineupIndex);
+        writeVarLong(out, championIndex);
+        writeVarLong(out, championN);
+        out.writeDouble(championMean);
+        out.writeDouble(championM2);
+        writeVarLong(out, lineupIndexes.length);
+        long previousIndex = 0;
+        for (int i = 0; i < lineupIndexes.length; i++) {
+          writeVarLong(out, lineupIndexes[i] - previousIndex);
+          previousIndex = lineupIndexes[i];
+          writeVarLong(out, n[i]);
+          out.writeDouble(means[i]);
+          out.writeDouble(m2s[i]);
+        }
+      }
+      return bytes.toByteArray();
+    } catch (IOException e) {
+      // Nothing here does real I/O
+      throw new RuntimeException(e);
+    }
+  }
+
+  public static AdaptiveCheckpoint fromBytes(byte[] data) {
+    try (DataInputStream in = new DataInputStream(new GZIPInputStream(new ByteArrayInputStream(data)))) {
+      int version = in.readUnsignedByte();
+      if (version != VERSION) {
+        throw new IllegalArgumentException("Unsupported checkpoint version " + version);
+      }
+      long nextLineupIndex = readVarLong(in);
+      long championIndex = readVarLong(in);
+      long championN = readVarLong(in);
+      double championMean = in.readDouble();
+      double championM2 = in.readDouble();
+      int size = Math.toIntExact(readVarLong(in));
+      long[] lineupIndexes = new long[size];
+      long[] n = new long[size];
+      double[] means = new double[size];
+      double[] m2s = new double[size];
+      long previousIndex = 0;
+      for (int i = 0; i < size; i++) {
+        lineupIndexes[i] = previousIndex + readVarLong(in);
+        previousIndex = lineupIndexes[i];
+        n[i] = readVarLong(in);
+        means[i] = in.readDouble();
+        m2s[i] = in.readDouble();
+      }
+      return new AdaptiveCheckpoint(nextLineupIndex, championIndex, championN, championMean, championM2,
+          lineupIndexes, n, means, m2s);
+    } catch (IOException e) {
+      throw new IllegalArgumentException("Unable to read checkpoint", e);
+    }
+  }
+
+  /**
+   * Writes a non-negative value seven bits at a time, low bits first
+   */
+  private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+    while ((value & ~0x7FL) != 0) {
+      out.writeByte((int) ((value & 0x7F) | 0x80));
+      value >>>= 7;
+    }
+    out.writeByte((int) value);
+  }
+
+  private static long readVarLong(DataInputStream in) throws IOException {
+    long value = 0;
+    for (int shift = 0; shift < Long.SIZE; shift += 7) {
+      int b = in.readUnsignedByte();
+      value |= (long) (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+    }
+    throw new IOException("Malformed varint");
+  }
+
+  public long getNextLineupIndex() {
+    return nextLineupIndex;
+  }
+
+  public long getChampionIndex() {
+    return championIndex;
+  }
+
+  public long getChampionN() {
+    return championN;
+  }
+
+  public double getChampionMean() {
+    return championMean;
+  }
+
+  public double getChampionM2() {
+    return championM2;
+  }
+
+  /**
+   * @return the number of candidates
+   */
+  public int size() {
+    return lineupIndexes.length;
+  }
+
+  public long getLineupIndex(int candidate) {
+    return lineupIndexes[candidate];
+  }
+
+  public long getN(int candidate) {
+    return n[candidate];
+  }
+
+  public double getMean(int candidate) {
+    return means[candidate];
+  }
+
+  public double getM2(int candidate) {
+    return m2s[candidate];
+  }
+
+}
@@ -0,0 +1,159 @@
+package com.github.thbrown.softballsim.optimizer.impl.montecarloadaptive;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.function.IntConsumer;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive.CompiledLineup;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive.ControlVariateAccumulator;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive.GameScoreAccumulator;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive.GameSimulator;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive.MonteCarloGameSimulation;
+
+/**
+ * Splits a batch of simulated games across the optimizer's idle worker threads.
+ *
+ * While there are more tasks than threads every worker is busy and batches run on the thread that
+ * asked for them. Near the end of an adaptive run only a few candidates are left, so a handful of
+ * comparisons (each needing up to a couple million games) would otherwise run on one thread each while
+ * the rest of the pool sits idle. Once the pool has idle workers, large batches are divided into
+ * parts, each part accumulates into its own accumulator on its own thread, and the parts are merged
+ * before the caller runs its next significance test.
+ *
+ * The calling thread always runs the first part itself and then runs any part that no worker has
+ * picked up yet, so it only ever waits on parts that are actually running. This keeps tasks that split
+ * their batches from deadlocking the pool they're running on.
+ */
+public class BatchSplitter {
+
+  // Smaller parts aren't worth handing to another thread
+  private static final int MIN_GAMES_PER_PART = 1000;
+
+  private final ThreadPoolExecutor executor;
+  private final int threads;
+
+  /**
+   * @param executor the pool the tasks using this splitter run on, parts are run on the same pool
+   */
+  public BatchSplitter(ThreadPoolExecutor executor) {
+    this.executor = executor;
+    this.threads = executor.getMaximumPoolSize();
+  }
+
+  /**
+   * @return the number of workers that are neither running a task nor about to take a queued one
+   */
+  public int getIdleWorkers() {
+    return Math.max(0, threads - executor.getActiveCount() - executor.getQueue().size());
+  }
+
+  /**
+   * Same as simulator.simulateGames(inningsPerGame, numberOfGames, accumulator)
+   */
+  public void simulateGames(GameSimulator simulator, int inningsPerGame, long numberOfGames,
+      GameScoreAccumulator accumulator) {
+    int parts = getParts(numberOfGames);
+    if (parts == 1) {
+      simulator.simulateGames(inningsPerGame, numberOfGames, accumulator);
+      return;
+    }
+    GameScoreAccumulator[] partAccumulators = new GameScoreAccumulator[parts];
+    for (int i = 0; i < parts; i++) {
+      partAccumulators[i] = new GameScoreAccumulator();
+    }
+    runParts(parts, part -> simulator.simulateGames(inningsPerGame, getPartSize(numberOfGames, parts, part),
+        partAccumulators[part]));
+    for (GameScoreAccumulator partAccumulator : partAccumulators) {
+      accumulator.merge(partAccumulator);
+    }
+  }
+
+  /**
+   * Same as MonteCarloGameSimulation.simulateGames(lineup, inningsPerGame, numberOfGames, accumulator)
+   */
+  public void simulateGames(CompiledLineup lineup, int inningsPerGame, long numberOfGames,
+      ControlVariateAccumulator accumulator) {
+    int parts = getParts(numberOfGames);
+    if (parts == 1) {
+      MonteCarloGameSimulation.simulateGames(lineup, inningsPerGame, numberOfGames, accumulator);
+      return;
+    }
+    ControlVariateAccumulator[] partAccumulators = new ControlVariateAccumulator[parts];
+    for (int i = 0; i < parts; i++) {
+      partAccumulators[i] = new ControlVariateAccumulator();
+    }
+    runParts(parts, part -> MonteCarloGameSimulation.simulateGames(lineup, inningsPerGame,
+        getPartSize(numberOfGames, parts, part), partAccumulators[part]));
+    for (ControlVariateAccumulator partAccumulator : partAccumulators) {
+      accumulator.merge(partAccumulator);
+    }
+  }
+
+  /**
+   * Same as MonteCarloGameSimulation.simulatePairedGames(...) with the same arguments
+   */
+  public void simulatePairedGames(CompiledLineup lineupA, CompiledLineup lineupB, int inningsPerGame,
+      long numberOfGames, GameScoreAccumulator scoresA, GameScoreAccumulator scoresB,
+      ControlVariateAccumulator differences) {
+    int parts = getParts(numberOfGames);
+    if (parts == 1) {
+      MonteCarloGameSimulation.simulatePairedGames(lineupA, lineupB, inningsPerGame, numberOfGames, scoresA, scoresB,
+          differences);
+      return;
+    }
+    GameScoreAccumulator[] partScoresA = new GameScoreAccumulator[parts];
+    GameScoreAccumulator[] partScoresB = new GameScoreAccumulator[parts];
+    ControlVariateAccumulator[] partDifferences = new ControlVariateAccumulator[parts];
+    for (int i = 0; i < parts; i++) {
+      partScoresA[i] = new GameScoreAccumulator();
+      partScoresB[i] = new GameScoreAccumulator();
+      partDifferences[i] = new ControlVariateAccumulator();
+    }
+    runParts(parts, part -> MonteCarloGameSimulation.simulatePairedGames(lineupA, lineupB, inningsPerGame,
+        getPartSize(numberOfGames, parts, part), partScoresA[part], partScoresB[part], partDifferences[part]));
+    for (int i = 0; i < parts; i++) {
+      scoresA.merge(partScoresA[i]);
+      scoresB.merge(partScoresB[i]);
+      differences.merge(partDifferences[i]);
+    }
+  }
+
+  /**
+   * @return how many parts to split numberOfGames into, one for the calling thread plus one for each
+   *         idle worker
+   */
+  private int getParts(long numberOfGames) {
+    long maxParts = numberOfGames / MIN_GAMES_PER_PART;
+    if (maxParts < 2) {
+      return 1;
+    }
+    return (int) Math.min(maxParts, 1 + getIdleWorkers());
+  }
+
+  private static long getPartSize(long numberOfGames, int parts, int part) {
+    return numberOfGames / parts + (part < numberOfGames % parts ? 1 : 0);
+  }
+
+  private void runParts(int parts, IntConsumer runPart) {
+    List<FutureTask<Void>> tasks = new ArrayList<>(parts - 1);
+    for (int i = 1; i < parts; i++) {
+      int part = i;
+      FutureTask<Void> task = new FutureTask<>(() -> runPart.accept(part), null);
+      tasks.add(task);
+      executor.execute(task);
+    }
+    runPart.accept(0);
+    for (FutureTask<Void> task : tasks) {
+      // Does nothing if a worker has already started the part
+      task.run();
+      try {
+        task.get();
+      } catch (InterruptedException | ExecutionException e) {
+        throw new RuntimeException(e);
+      }
+    }
+  }
+
+}
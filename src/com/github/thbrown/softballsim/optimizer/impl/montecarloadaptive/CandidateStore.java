@@ -0,0 +1,215 @@
+package com.github.thbrown.softballsim.optimizer.impl.montecarloadaptive;
+
+import java.util.HashSet;
+import java.util.Set;
+import org.apache.commons.math3.stat.descriptive.StatisticalSummary;
+import com.github.thbrown.softballsim.lineupindexer.BattingLineupIndexer;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive.HitGenerator;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive.SimulationEngineEnum;
+
+/**
+ * The lineups the adaptive optimizer hasn't eliminated yet (the candidates), stored as primitives
+ * instead of {@link LineupComposite}s. Each candidate occupies a slot in a set of parallel arrays
+ * holding its lineup index and the n, mean and sum of squared deviations (M2) of the games simulated
+ * for it. Lineups and simulators are only built from the lineup index when a task runs, so a queued
+ * candidate costs a few dozen bytes.
+ *
+ * Slots of eliminated candidates go on a free list and are reused. A bitmap marks which slots are
+ * live, so removal is O(1) and the live candidates can be listed without a separate collection.
+ * Since slots are reused, candidates are identified by a handle that combines the slot with a
+ * generation number that changes each time the slot is reused. A handle for an eliminated candidate
+ * stays invalid even after its slot is given to another lineup.
+ *
+ * Only one thread may add, remove or update candidates. The arrays are allocated in fixed size pages
+ * that never move, so other threads may read a candidate's lineup index and stats as long as the
+ * candidate was added (and its stats updated) before the reading thread was handed its handle, e.g.
+ * by submitting a task to an executor.
+ */
+public class CandidateStore {
+
+  /**
+   * Handle for lineups that aren't stored here
+   */
+  public static final long NO_HANDLE = -1;
+
+  private static final int PAGE_BITS = 12;
+  private static final int PAGE_SIZE = 1 << PAGE_BITS;
+  private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+  private volatile Page[] pages = new Page[0];
+  private int slotCount = 0;
+  private int size = 0;
+
+  private int[] freeSlots = new int[16];
+  private int freeSlotCount = 0;
+
+  private static class Page {
+    final long[] lineupIndexes = new long[PAGE_SIZE];
+    final int[] generations = new int[PAGE_SIZE];
+    final long[] n = new long[PAGE_SIZE];
+    final double[] means = new double[PAGE_SIZE];
+    final double[] m2s = new double[PAGE_SIZE];
+    final long[] live = new long[PAGE_SIZE / Long.SIZE];
+  }
+
+  /**
+   * Adds a candidate with no simulated games
+   *
+   * @return the candidate's handle
+   */
+  public long add(long lineupIndex) {
+    int slot;
+    if (freeSlotCount > 0) {
+      slot = freeSlots[--freeSlotCount];
+    } else {
+      slot = slotCount++;
+      if ((slot >>> PAGE_BITS) == pages.length) {
+        Page[] grown = new Page[pages.length + 1];
+        System.arraycopy(pages, 0, grown, 0, pages.length);
+        grown[pages.length] = new Page();
+        pages = grown;
+      }
+    }
+    Page page = pages[slot >>> PAGE_BITS];
+    int offset = slot & PAGE_MASK;
+    page.lineupIndexes[offset] = lineupIndex;
+    page.n[offset] = 0;
+    page.means[offset] = 0;
+    page.m2s[offset] = 0;
+    page.live[offset >>> 6] |= 1L << offset;
+    size++;
+    return toHandle(slot, page.generations[offset]);
+  }
+
+  /**
+   * Removes the candidate, if it hasn't already been removed
+   *
+   * @return true if the candidate was removed
+   */
+  public boolean remove(long handle) {
+    if (!contains(handle)) {
+      return false;
+    }
+    int slot = toSlot(handle);
+    Page page = pages[slot >>> PAGE_BITS];
+    int offset = slot & PAGE_MASK;
+    page.live[offset >>> 6] &= ~(1L << offset);
+    page.generations[offset]++;
+    if (freeSlotCount == freeSlots.length) {
+      int[] grown = new int[freeSlots.length * 2];
+      System.arraycopy(freeSlots, 0, grown, 0, freeSlotCount);
+      freeSlots = grown;
+    }
+    freeSlots[freeSlotCount++] = slot;
+    size--;
+    return true;
+  }
+
+  public boolean contains(long handle) {
+    if (handle == NO_HANDLE) {
+      return false;
+    }
+    int slot = toSlot(handle);
+    if (slot >= slotCount) {
+      return false;
+    }
+    Page page = pages[slot >>> PAGE_BITS];
+    int offset = slot & PAGE_MASK;
+    return (page.live[offset >>> 6] & (1L << offset)) != 0 && page.generations[offset] == toGeneration(handle);
+  }
+
+  /**
+   * Replaces the stored stats of a candidate, does nothing if the candidate has been removed
+   */
+  public void setStats(long handle, long n, double mean, double m2) {
+    if (!contains(handle)) {
+      return;
+    }
+    int slot = toSlot(handle);
+    Page page = pages[slot >>> PAGE_BITS];
+    int offset = slot & PAGE_MASK;
+    page.n[offset] = n;
+    page.means[offset] = mean;
+    page.m2s[offset] = m2;
+  }
+
+  /**
+   * Replaces the stored stats of a candidate with a copy of stats, does nothing if the candidate has
+   * been removed
+   */
+  public void setStats(long handle, StatisticalSummary stats) {
+    long n = stats.getN();
+    setStats(handle, n, n == 0 ? 0 : stats.getMean(), n < 2 ? 0 : stats.getVariance() * (n - 1));
+  }
+
+  public long getLineupIndex(long handle) {
+    int slot = toSlot(handle);
+    return pages[slot >>> PAGE_BITS].lineupIndexes[slot & PAGE_MASK];
+  }
+
+  /**
+   * Builds a composite for the candidate with the stats stored for it
+   */
+  public LineupComposite getComposite(long handle, BattingLineupIndexer<?> indexer, HitGenerator hitGenerator,
+      SimulationEngineEnum engine) {
+    int slot = toSlot(handle);
+    Page page = pages[slot >>> PAGE_BITS];
+    int offset = slot & PAGE_MASK;
+    long lineupIndex = page.lineupIndexes[offset];
+    LineupComposite composite =
+        new LineupComposite(indexer.getLineup(lineupIndex), hitGenerator, lineupIndex, engine);
+    composite.restoreSamples(page.n[offset], page.means[offset], page.m2s[offset]);
+    composite.setCandidateHandle(handle);
+    return composite;
+  }
+
+  /**
+   * @return the number of candidates
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * @return the lineup indexes of every candidate
+   */
+  public Set<Long> getLineupIndexes() {
+    Set<Long> lineupIndexes = new HashSet<>(size * 2);
+    forEach((lineupIndex, n, mean, m2) -> lineupIndexes.add(lineupIndex));
+    return lineupIndexes;
+  }
+
+  /**
+   * Passes the lineup index and stats of every candidate to consumer, in no particular order
+   */
+  public void forEach(CandidateConsumer consumer) {
+    Page[] pages = this.pages;
+    for (Page page : pages) {
+      for (int word = 0; word < page.live.length; word++) {
+        long bits = page.live[word];
+        while (bits != 0) {
+          int offset = (word << 6) + Long.numberOfTrailingZeros(bits);
+          consumer.accept(page.lineupIndexes[offset], page.n[offset], page.means[offset], page.m2s[offset]);
+          bits &= bits - 1;
+        }
+      }
+    }
+  }
+
+  public interface CandidateConsumer {
+    void accept(long lineupIndex, long n, double mean, double m2);
+  }
+
+  private static long toHandle(int slot, int generation) {
+    return ((long) generation << 32) | slot;
+  }
+
+  private static int toSlot(long handle) {
+    return (int) handle;
+  }
+
+  private static int toGeneration(long handle) {
+    return (int) (handle >>> 32);
+  }
+
+}
@@ -0,0 +1,69 @@
+package com.github.thbrown.softballsim.optimizer.impl.montecarloadaptive;
+
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Holds the best lineup found so far (the champion), which every {@link TTestTaskWithBestLineup}
+ * compares its lineups against.
+ *
+ * The composite held here is never modified once it's published. Tasks work on their own copy and
+ * publish changes as a new composite with compare-and-swap, retrying if another thread published
+ * first. So reading the champion never waits, and games that several tasks simulate for the champion
+ * at the same time are all added to it.
+ */
+public class ChampionReference {
+
+  private final AtomicReference<LineupComposite> champion;
+
+  public ChampionReference(LineupComposite champion) {
+    this.champion = new AtomicReference<>(new LineupComposite(champion));
+  }
+
+  /**
+   * @return a copy of the champion that belongs to the caller, games added to it can be given back
+   *         with {@link #mergeSamples(LineupComposite)}
+   */
+  public LineupComposite getCopy() {
+    return new LineupComposite(champion.get());
+  }
+
+  /**
+   * Adds the games that were added to a copy of the champion to the champion, unless the champion has
+   * since been replaced by a different lineup.
+   *
+   * @return true if the copy's lineup is still the champion
+   */
+  public boolean mergeSamples(LineupComposite copy) {
+    while (true) {
+      LineupComposite current = champion.get();
+      if (!current.equals(copy)) {
+        return false;
+      }
+      LineupComposite merged = new LineupComposite(current);
+      merged.addSamplesFrom(copy);
+      if (champion.compareAndSet(current, merged)) {
+        return true;
+      }
+    }
+  }
+
+  /**
+   * Makes newChampion the champion if the current champion has been eliminated
+   *
+   * @return true if the champion was replaced
+   */
+  public boolean replaceIfCurrentIsIn(LineupComposite newChampion, Set<LineupComposite> eliminated) {
+    LineupComposite replacement = new LineupComposite(newChampion);
+    while (true) {
+      LineupComposite current = champion.get();
+      if (!eliminated.contains(current)) {
+        return false;
+      }
+      if (champion.compareAndSet(current, replacement)) {
+        return true;
+      }
+    }
+  }
+
+}
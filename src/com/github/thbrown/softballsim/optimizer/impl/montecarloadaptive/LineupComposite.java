@@ -1,56 +1,208 @@
 package com.github.thbrown.softballsim.optimizer.impl.montecarloadaptive;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Objects;
-import org.apache.commons.math3.stat.descriptive.AggregateSummaryStatistics;
 import org.apache.commons.math3.stat.descriptive.StatisticalSummary;
-import org.apache.commons.math3.stat.descriptive.StatisticalSummaryValues;
-import org.apache.commons.math3.stat.descriptive.SummaryStatistics;
 import com.github.thbrown.softballsim.lineup.BattingLineup;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive.CompiledLineup;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive.ControlVariateAccumulator;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive.GameScoreAccumulator;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive.GameSimulator;
 import com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive.HitGenerator;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive.SimulationEngineEnum;
+import com.github.thbrown.softballsim.util.WelfordAccumulator;
 
 /**
  * POJO that allows us to keep track of a lineup and it's associated objects (index, stats,
  * hitGenerator) in a single class.
  */
 public class LineupComposite {
-  private StatisticalSummary stats;
-  private final SummaryStatistics modifiableStats;
+  private final WelfordAccumulator stats;
   private final BattingLineup lineup;
   private final HitGenerator hitGenerator;
+  private final CompiledLineup compiledLineup;
+  private final GameSimulator simulator;
   private final Long lineupIndex;
 
+  // Identifies this lineup in the adaptive optimizer's CandidateStore, if it's stored there
+  private long candidateHandle = CandidateStore.NO_HANDLE;
+
+  // Only created once samples with control variates are added
+  private ControlVariateAccumulator controlVariates;
+
+  // The samples added since this composite was created or copied, see addSamplesFrom
+  private final WelfordAccumulator addedStats = new WelfordAccumulator();
+  private ControlVariateAccumulator addedControlVariates;
+
   public LineupComposite(BattingLineup lineup, HitGenerator hitGenerator, Long lineupIndex) {
-    this.modifiableStats = new SummaryStatistics();
-    this.stats = new StatisticalSummaryValues(0, 0, 0, 0, 0, 0); // Empty
+    this(lineup, hitGenerator, lineupIndex, SimulationEngineEnum.PLATE_APPEARANCE);
+  }
+
+  public LineupComposite(BattingLineup lineup, HitGenerator hitGenerator, Long lineupIndex,
+      SimulationEngineEnum engine) {
+    this.stats = new WelfordAccumulator();
     this.lineup = lineup;
     this.hitGenerator = hitGenerator;
+    this.compiledLineup = new CompiledLineup(lineup, hitGenerator);
+    this.simulator = engine.getSimulator(compiledLineup);
     this.lineupIndex = lineupIndex;
   }
 
+  /**
+   * The copy starts out with all of toCopy's samples, but none of them count as added (see
+   * {@link #addSamplesFrom(LineupComposite)}).
+   */
   public LineupComposite(LineupComposite toCopy) {
-    this.modifiableStats = new SummaryStatistics();
-    mergeModStatsIntoStats();
-    this.stats = toCopy.stats;
+    this.stats = new WelfordAccumulator(toCopy.stats);
     this.lineup = toCopy.lineup;
     this.hitGenerator = toCopy.hitGenerator;
+    this.compiledLineup = toCopy.compiledLineup;
+    this.simulator = toCopy.simulator;
     this.lineupIndex = toCopy.lineupIndex;
+    this.candidateHandle = toCopy.candidateHandle;
+    this.controlVariates =
+        toCopy.controlVariates == null ? null : new ControlVariateAccumulator(toCopy.controlVariates);
+  }
+
+  public void addSample(double value) {
+    stats.add(value);
+    addedStats.add(value);
   }
 
-  /*
-   * private LineupComposite() { this.modifiableStats = new SummaryStatistics(); }
+  /**
+   * Adds games that were simulated for this lineup before, given by their count, mean and sum of
+   * squared deviations from the mean. Like the games a copy starts out with, these don't count as
+   * added.
    */
+  public void restoreSamples(long n, double mean, double m2) {
+    stats.merge(n, mean, m2, Double.NaN, Double.NaN);
+  }
 
-  public void addSample(double value) {
-    modifiableStats.addValue(value);
+  /**
+   * Adds a batch of simulated games to this composite's stats.
+   */
+  public void addSamples(GameScoreAccumulator samples) {
+    if (samples.getN() == 0) {
+      return;
+    }
+    stats.merge(samples.getN(), samples.getMean(), samples.getSumOfSquaredDeviations(), samples.getMin(),
+        samples.getMax());
+    addedStats.merge(samples.getN(), samples.getMean(), samples.getSumOfSquaredDeviations(), samples.getMin(),
+        samples.getMax());
   }
 
+  /**
+   * Adds a batch of simulated games to this composite's stats and keeps their covariates for
+   * {@link #getAdjustedMean()}.
+   */
+  public void addSamples(ControlVariateAccumulator samples) {
+    if (samples.getN() == 0) {
+      return;
+    }
+    stats.merge(samples.getN(), samples.getMean(), samples.getSumOfSquaredDeviations(), samples.getMin(),
+        samples.getMax());
+    addedStats.merge(samples.getN(), samples.getMean(), samples.getSumOfSquaredDeviations(), samples.getMin(),
+        samples.getMax());
+    if (controlVariates == null) {
+      controlVariates = new ControlVariateAccumulator();
+    }
+    controlVariates.merge(samples);
+    if (addedControlVariates == null) {
+      addedControlVariates = new ControlVariateAccumulator();
+    }
+    addedControlVariates.merge(samples);
+  }
+
+  /**
+   * Adds the samples that were added to another composite for the same lineup since it was copied.
+   * This lets several threads simulate games for copies of the same lineup and then pool them.
+   */
+  public void addSamplesFrom(LineupComposite other) {
+    stats.merge(other.addedStats);
+    addedStats.merge(other.addedStats);
+    if (other.addedControlVariates != null) {
+      if (controlVariates == null) {
+        controlVariates = new ControlVariateAccumulator();
+      }
+      controlVariates.merge(other.addedControlVariates);
+      if (addedControlVariates == null) {
+        addedControlVariates = new ControlVariateAccumulator();
+      }
+      addedControlVariates.merge(other.addedControlVariates);
+    }
+  }
+
+  /**
+   * Pools this composite's samples with samples other threads simulated for the same lineup. The
+   * samples added since this composite was created, copied or last pooled are merged into the pooled
+   * accumulators (all of this composite's samples are, if the pool is empty), then this composite's
+   * samples are replaced with the pooled ones, none of which count as added.
+   *
+   * This doesn't synchronize anything, the caller must make sure no other thread is using the pooled
+   * accumulators.
+   */
+  public void poolSamples(WelfordAccumulator pooledStats, ControlVariateAccumulator pooledControlVariates) {
+    if (pooledStats.getN() == 0) {
+      pooledStats.merge(stats);
+      if (controlVariates != null) {
+        pooledControlVariates.merge(controlVariates);
+      }
+    } else {
+      pooledStats.merge(addedStats);
+      if (addedControlVariates != null) {
+        pooledControlVariates.merge(addedControlVariates);
+      }
+    }
+
+    stats.clear();
+    stats.merge(pooledStats);
+    addedStats.clear();
+    if (pooledControlVariates.getN() > 0) {
+      if (controlVariates == null) {
+        controlVariates = new ControlVariateAccumulator();
+      }
+      controlVariates.clear();
+      controlVariates.merge(pooledControlVariates);
+    }
+    if (addedControlVariates != null) {
+      addedControlVariates.clear();
+    }
+  }
+
+  /**
+   * @return the stats of every game simulated for this lineup. This is a live view that changes as
+   *         samples are added.
+   */
   public StatisticalSummary getStats() {
-    mergeModStatsIntoStats();
     return stats;
   }
 
+  /**
+   * @return the control variate adjusted mean of the games that were simulated with covariates, or the
+   *         plain mean if there weren't enough of those. The adjusted mean estimates the same thing as
+   *         the plain mean but with (usually much) less variance.
+   */
+  public double getAdjustedMean() {
+    return hasAdjustedStats() ? controlVariates.getAdjustedMean() : stats.getMean();
+  }
+
+  /**
+   * @return the variance to go with {@link #getAdjustedMean()}
+   */
+  public double getAdjustedVariance() {
+    return hasAdjustedStats() ? controlVariates.getAdjustedVariance() : stats.getVariance();
+  }
+
+  /**
+   * @return the sample size to go with {@link #getAdjustedMean()}
+   */
+  public long getAdjustedN() {
+    return hasAdjustedStats() ? controlVariates.getN() : stats.getN();
+  }
+
+  private boolean hasAdjustedStats() {
+    return controlVariates != null && controlVariates.getN() >= 2;
+  }
+
   public BattingLineup getLineup() {
     return lineup;
   }
@@ -59,6 +211,18 @@ public class LineupComposite {
     return hitGenerator;
   }
 
+  public CompiledLineup getCompiledLineup() {
+    return compiledLineup;
+  }
+
+  /**
+   * @return the simulator for this lineup's games, as chosen by the engine this composite was built
+   *         with
+   */
+  public GameSimulator getSimulator() {
+    return simulator;
+  }
+
   public Long lineupIndex() {
     return lineupIndex;
   }
@@ -96,28 +260,12 @@ public class LineupComposite {
     return lineupIndex;
   }
 
-  public void incorperateAdditionalStats(StatisticalSummary additionalData) {
-    List<StatisticalSummary> combo = new ArrayList<>(3);
-    combo.add(modifiableStats);
-    combo.add(additionalData);
-    combo.add(stats);
-
-    this.stats = AggregateSummaryStatistics.aggregate(combo);
-
-    modifiableStats.clear();
+  public long getCandidateHandle() {
+    return candidateHandle;
   }
 
-  private void mergeModStatsIntoStats() {
-    if (modifiableStats.getN() > 0) {
-      List<StatisticalSummary> combo = new ArrayList<>(2);
-      combo.add(modifiableStats);
-      combo.add(stats);
-
-      this.stats = AggregateSummaryStatistics.aggregate(combo);
-
-      modifiableStats.clear();
-    }
+  public void setCandidateHandle(long candidateHandle) {
+    this.candidateHandle = candidateHandle;
   }
 
-
 }
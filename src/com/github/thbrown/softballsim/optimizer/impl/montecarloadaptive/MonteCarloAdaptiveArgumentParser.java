@@ -1,6 +1,7 @@
 package com.github.thbrown.softballsim.optimizer.impl.montecarloadaptive;
 
 import java.util.Map;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive.SimulationEngineEnum;
 
 public class MonteCarloAdaptiveArgumentParser {
 
@@ -8,16 +9,28 @@ public class MonteCarloAdaptiveArgumentParser {
   public final static String LOWEST_SCORE = "L";
   public final static String THREADS = "T";
   public final static String ALPHA = "A";
+  public final static String ENGINE = "E";
+  public final static String UNPAIRED = "U";
+  public final static String RAW_MEANS = "R";
+  public final static String INDIFFERENCE_ZONE = "Z";
 
   private final int innings;
   private final boolean lowestScore;
   private final int threads;
   private final double alpha;
+  private final SimulationEngineEnum engine;
+  private final boolean paired;
+  private final boolean controlVariates;
+  private final double indifferenceZone;
 
   public MonteCarloAdaptiveArgumentParser(Map<String, String> args) {
     innings = Integer.parseInt(args.get(INNINGS));
     lowestScore = Boolean.parseBoolean(args.get(LOWEST_SCORE));
     alpha = Double.parseDouble(args.get(ALPHA));
+    engine = SimulationEngineEnum.getEnumFromName(args.get(ENGINE));
+    paired = !Boolean.parseBoolean(args.get(UNPAIRED));
+    controlVariates = !Boolean.parseBoolean(args.get(RAW_MEANS));
+    indifferenceZone = Double.parseDouble(args.get(INDIFFERENCE_ZONE));
 
     String threadsString = args.get(THREADS);
     if (threadsString == null) {
@@ -42,4 +55,30 @@ public class MonteCarloAdaptiveArgumentParser {
   public double getAlpha() {
     return alpha;
   }
+
+  public SimulationEngineEnum getEngine() {
+    return engine;
+  }
+
+  /**
+   * @return true if lineups should be compared using common random numbers and a paired t-test
+   */
+  public boolean isPaired() {
+    return paired;
+  }
+
+  /**
+   * @return true if t-tests should use control variate adjusted means and variances
+   */
+  public boolean isControlVariates() {
+    return controlVariates;
+  }
+
+  /**
+   * @return lineups shown to be within this many runs per game of each other are considered equally
+   *         good, 0 if comparisons should always run until there is a significant difference
+   */
+  public double getIndifferenceZone() {
+    return indifferenceZone;
+  }
 }
@@ -1,9 +1,10 @@
 package com.github.thbrown.softballsim.optimizer.impl.montecarloadaptive;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -18,7 +19,7 @@ import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
-import org.apache.commons.math3.stat.descriptive.SummaryStatistics;
+import org.apache.commons.math3.stat.descriptive.StatisticalSummary;
 import com.github.thbrown.softballsim.Msg;
 import com.github.thbrown.softballsim.Result;
 import com.github.thbrown.softballsim.ResultStatusEnum;
@@ -31,11 +32,12 @@ import com.github.thbrown.softballsim.lineupindexer.LineupTypeEnum;
 import com.github.thbrown.softballsim.optimizer.Optimizer;
 import com.github.thbrown.softballsim.optimizer.impl.montecarloadaptive.statstransform.RangeSummaryStatisticsTransform;
 import com.github.thbrown.softballsim.optimizer.impl.montecarloadaptive.statstransform.SummaryStatisticsTransform;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive.GameScoreAccumulator;
 import com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive.HitGenerator;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive.SimulationEngineEnum;
 import com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive.MonteCarloExhaustiveResult;
-import com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive.MonteCarloGameSimulation;
 import com.github.thbrown.softballsim.util.Logger;
-import com.github.thbrown.softballsim.util.MiscUtils;
+import com.github.thbrown.softballsim.util.LandscapeStatistics;
 
 public class MonteCarloAdaptiveOptimizer implements Optimizer<MonteCarloAdaptiveResult> {
 
@@ -63,6 +65,10 @@ public class MonteCarloAdaptiveOptimizer implements Optimizer<MonteCarloAdaptive
     final double ALPHA = parsedArguments.getAlpha();
     final int INNINGS = parsedArguments.getInnings();
     final boolean LOWEST = parsedArguments.isLowestScore();
+    final SimulationEngineEnum ENGINE = parsedArguments.getEngine();
+    final boolean PAIRED = parsedArguments.isPaired();
+    final boolean CONTROL_VARIATES = parsedArguments.isControlVariates();
+    final double INDIFFERENCE_ZONE = parsedArguments.getIndifferenceZone();
 
     // Since this optimizer involves iterating over all possible lineups, we'll use
     // the lineup indexer
@@ -98,6 +104,11 @@ public class MonteCarloAdaptiveOptimizer implements Optimizer<MonteCarloAdaptive
     ExecutorService executor = Executors.newFixedThreadPool(parsedArguments.getThreads());
     Queue<Future<TTestTaskResult>> results = new LinkedList<>();
 
+    // Once there are fewer tasks than threads, tasks spread their simulations over the idle threads
+    BatchSplitter splitter = new BatchSplitter((ThreadPoolExecutor) executor);
+    TTestTask.Options options = new TTestTask.Options(INNINGS, ALPHA).lowest(LOWEST).paired(PAIRED)
+        .controlVariates(CONTROL_VARIATES).indifferenceZone(INDIFFERENCE_ZONE).splitter(splitter);
+
     /*
      * Build a hitGenerator that can be used across threads, this way we only have to parse the stats
      * data once. We're using the first lineup here (index 0) to get a list of players, but we could
@@ -111,6 +122,7 @@ public class MonteCarloAdaptiveOptimizer implements Optimizer<MonteCarloAdaptive
     long simulationsRun = Optional.ofNullable(existingResult).map(v -> v.getSimulationsRequired()).orElse(0L);
     long comparisonsThatReachedSimLimit =
         Optional.ofNullable(existingResult).map(v -> v.getComparisonsThatReachedSimLimit()).orElse(0L);
+    long simulationsSaved = Optional.ofNullable(existingResult).map(v -> v.getSimulationsSaved()).orElse(0L);
 
     BattingLineup startingLineup = Optional.ofNullable(existingResult).map(MonteCarloAdaptiveResult::getLineup)
         // The serialized result does not save the players stats
@@ -119,40 +131,66 @@ public class MonteCarloAdaptiveOptimizer implements Optimizer<MonteCarloAdaptive
           return lineup;
         }).orElse(indexer.getLineup(0));
 
-    LineupComposite startingLineupComposite = new LineupComposite(startingLineup, hitGenerator, 0L);
-    SynchronizedLineupCompositeWrapper bestLineupComposite = new SynchronizedLineupCompositeWrapper(
-        startingLineupComposite);
+    // A checkpoint has the stats of every game simulated so far, so nothing needs to be re-simulated
+    AdaptiveCheckpoint checkpoint = Optional.ofNullable(existingResult).map(MonteCarloAdaptiveResult::getCheckpoint)
+        .map(AdaptiveCheckpoint::fromBytes).orElse(null);
+
+    long startingLineupIndex = checkpoint == null ? 0L : checkpoint.getChampionIndex();
+    LineupComposite startingLineupComposite =
+        new LineupComposite(startingLineup, hitGenerator, startingLineupIndex, ENGINE);
 
     // This is where the best lineups from older tasks wait to be added to a new task.
-    Queue<LineupComposite> winnersPool = new LinkedList<>();
-
-    // Candidate list contains all lineups before the 'lineupIndex' that have not yet been eliminated,
-    // they may been in the winners pool waiting to be added to a task, or they may have already been
-    // assigned to a task
-    Set<LineupComposite> candidateLineups = new LinkedHashSet<>();
-
-    Set<Long> savedCandidateLineupIndexes = Optional.ofNullable(existingResult)
-        .map(MonteCarloAdaptiveResult::getCandidateLineups).orElse(Collections.emptySet());
-    for (Long linupIndex : savedCandidateLineupIndexes) {
-      LineupComposite composite = new LineupComposite(indexer.getLineup(linupIndex), hitGenerator, linupIndex);
-      candidateLineups.add(composite);
-      winnersPool.add(composite);
+    Queue<Long> winnersPool = new ArrayDeque<>();
+
+    // Candidates are all lineups before the 'lineupIndex' that have not yet been eliminated, they may
+    // been in the winners pool waiting to be added to a task, or they may have already been assigned to
+    // a task
+    CandidateStore candidates = new CandidateStore();
+
+    if (checkpoint != null) {
+      startingLineupComposite.restoreSamples(checkpoint.getChampionN(), checkpoint.getChampionMean(),
+          checkpoint.getChampionM2());
+      for (int i = 0; i < checkpoint.size(); i++) {
+        long handle = candidates.add(checkpoint.getLineupIndex(i));
+        candidates.setStats(handle, checkpoint.getN(i), checkpoint.getMean(i), checkpoint.getM2(i));
+        if (checkpoint.getLineupIndex(i) == startingLineupIndex) {
+          // The champion is one of the candidates, it must be removed from them when it's eliminated
+          startingLineupComposite.setCandidateHandle(handle);
+        } else {
+          winnersPool.add(handle);
+        }
+      }
+    } else {
+      // Results saved without a checkpoint only have the candidates' lineup indexes
+      Set<Long> savedCandidateLineupIndexes = Optional.ofNullable(existingResult)
+          .map(MonteCarloAdaptiveResult::getCandidateLineups).orElse(Collections.emptySet());
+      for (Long linupIndex : savedCandidateLineupIndexes) {
+        long handle = candidates.add(linupIndex);
+        if (indexer.getLineup(linupIndex).equals(startingLineup)) {
+          startingLineupComposite.setCandidateHandle(handle);
+        } else {
+          winnersPool.add(handle);
+        }
+      }
     }
 
-    // Queue up a few tasks to process (number of tasks is capped by TASK_BUFFER_SIZE)
-    long startIndex = Optional.ofNullable(existingResult).map(v -> v.getCountCompleted()).orElse(1L); // 0th lineup will
-                                                                                                      // already be
-                                                                                                      // added
+    ChampionReference bestLineupComposite = new ChampionReference(startingLineupComposite);
+
+    // Queue up a few tasks to process (number of tasks is capped by TASK_BUFFER_SIZE). The 0th lineup
+    // will already be added. Without a checkpoint, resume from the completed count, which re-tests lineups
+    // that were candidates when the result was saved.
+    long startIndex = checkpoint != null ? checkpoint.getNextLineupIndex()
+        : Optional.ofNullable(existingResult).map(v -> v.getCountCompleted()).orElse(1L);
     lineupIndex = startIndex;
 
     for (int i = 0; i < TASK_BUFFER_SIZE; i++) {
       int taskSize = getNumberOfLineupsToAddToTask(indexer.size() - lineupIndex, parsedArguments.getThreads());
       long savedLineupIndexerIndex = this.lineupIndex;
-      List<LineupComposite> lineupsToTest = getLineupsToTest(taskSize, winnersPool, hitGenerator, indexer);
+      long[] winnersToTest = getLineupsToTest(taskSize, winnersPool, indexer);
       long newLineupsAdded = this.lineupIndex - savedLineupIndexerIndex;
-      if (lineupsToTest.size() > 0) {
-        TTestTask task = new TTestTaskWithBestLineup(bestLineupComposite, lineupsToTest, INNINGS, ALPHA,
-            newLineupsAdded, LOWEST);
+      if (winnersToTest.length + newLineupsAdded > 0) {
+        TTestTask task = new TTestTaskWithBestLineup(bestLineupComposite, candidates, winnersToTest,
+            savedLineupIndexerIndex, newLineupsAdded, indexer, hitGenerator, ENGINE, options);
         results.add(executor.submit(task));
       }
     }
@@ -172,60 +210,68 @@ public class MonteCarloAdaptiveOptimizer implements Optimizer<MonteCarloAdaptive
         throw new RuntimeException(e);
       }
 
+      // Maintain the list of active lineups, lineups that haven't won a task yet aren't in it
+      for (LineupComposite eliminated : result.getEliminatedLineupComposites()) {
+        candidates.remove(eliminated.getCandidateHandle());
+      }
+
       // Replace the best lineup if necessary
-      if (result.getBestLineupComposite() != null) { // Null means do nothing
+      LineupComposite winner = result.getBestLineupComposite();
+      if (winner != null) { // Null means do nothing
+        if (!candidates.contains(winner.getCandidateHandle())) {
+          winner.setCandidateHandle(candidates.add(winner.getIndex()));
+        }
+        candidates.setStats(winner.getCandidateHandle(), winner.getStats());
+
         // If the bestLineup is in the elimination list, update the bestLineup
-        boolean wasReplaced = bestLineupComposite.replaceIfCurrentIsInCollection(result.getBestLineupComposite(),
-            result.getEliminatedLineupComposites());
+        boolean wasReplaced =
+            bestLineupComposite.replaceIfCurrentIsIn(winner, result.getEliminatedLineupComposites());
         if (!wasReplaced) {
           // Result lineup hasn't yet been compared to the current bestLineup (this should only happen in
           // multi-threaded use cases). Enqueue it for further evaluation.
-          winnersPool.add(result.getBestLineupComposite());
+          winnersPool.add(winner.getCandidateHandle());
         }
       }
 
-      // Maintain the list of active lineups
-      candidateLineups.removeAll(result.getEliminatedLineupComposites());
-      if (result.getBestLineupComposite() != null) {
-        candidateLineups.add(result.getBestLineupComposite());
-      }
-
       // Keep track of the number of simulations run so far
       simulationsRun += result.getSimulationsRequired();
 
       // Keep track of lineup pairs for which we couldn't find a statistically significant difference in
       // score
       comparisonsThatReachedSimLimit += result.getComparisonsThatReachedSimLimit();
-
-      // Update the progress tracker
-      LineupComposite bestLineupCopy = bestLineupComposite.getCopyOfBestLineupComposite();
+      simulationsSaved += result.getSimulationsSaved();
 
       // Ugly cast :(
       progressCounter += ((TTestTaskResultWithNewLineups) result).getNewLineupsProcessed();
       // Logger.log(progressCounter + " of " + indexer.size() + " " +
       // (result.getEliminatedLineupComposites().size()));
 
-      Set<Long> candidateLineupIndexes = candidateLineups.stream().map(LineupComposite::lineupIndex)
-          .collect(Collectors.toSet());
+      // Update the progress tracker. Checkpointing the candidates is expensive, so only do it once the
+      // tracker has reported the last result we gave it.
+      if (progressTracker.isUpdateDue()) {
+        LineupComposite bestLineupCopy = bestLineupComposite.getCopy();
 
-      long elapsedTime = (System.currentTimeMillis() - startTimestamp)
-          + Optional.ofNullable(existingResult).map(MonteCarloAdaptiveResult::getElapsedTimeMs).orElse(0l);
+        byte[] checkpointBytes = AdaptiveCheckpoint.of(progressCounter, bestLineupCopy, candidates).toBytes();
 
-      MonteCarloAdaptiveResult partialResult = new MonteCarloAdaptiveResult(bestLineupCopy.getLineup(),
-          bestLineupCopy.getStats().getMean(), indexer.size(), progressCounter - candidateLineups.size(), elapsedTime,
-          candidateLineupIndexes, ResultStatusEnum.IN_PROGRESS, simulationsRun, comparisonsThatReachedSimLimit);
+        long elapsedTime = (System.currentTimeMillis() - startTimestamp)
+            + Optional.ofNullable(existingResult).map(MonteCarloAdaptiveResult::getElapsedTimeMs).orElse(0l);
 
-      progressTracker.updateProgress(partialResult);
+        MonteCarloAdaptiveResult partialResult = new MonteCarloAdaptiveResult(bestLineupCopy.getLineup(),
+            bestLineupCopy.getStats().getMean(), indexer.size(), progressCounter - candidates.size(),
+            elapsedTime, null, checkpointBytes, ResultStatusEnum.IN_PROGRESS, simulationsRun,
+            comparisonsThatReachedSimLimit, simulationsSaved);
+
+        progressTracker.updateProgress(partialResult);
+      }
 
       // Add new tasks
       int taskSize = getNumberOfLineupsToAddToTask(indexer.size() - lineupIndex, parsedArguments.getThreads());
       long savedLineupIndexerIndex = this.lineupIndex;
-      List<LineupComposite> lineupsToTest = getLineupsToTest(taskSize, winnersPool, hitGenerator, indexer);
+      long[] winnersToTest = getLineupsToTest(taskSize, winnersPool, indexer);
       long newLineupsAdded = this.lineupIndex - savedLineupIndexerIndex;
-
-      if (lineupsToTest.size() > 0) {
-        TTestTask task = new TTestTaskWithBestLineup(bestLineupComposite, lineupsToTest, INNINGS, ALPHA,
-            newLineupsAdded, LOWEST);
+      if (winnersToTest.length + newLineupsAdded > 0) {
+        TTestTask task = new TTestTaskWithBestLineup(bestLineupComposite, candidates, winnersToTest,
+            savedLineupIndexerIndex, newLineupsAdded, indexer, hitGenerator, ENGINE, options);
         results.add(executor.submit(task));
       }
 
@@ -238,9 +284,7 @@ public class MonteCarloAdaptiveOptimizer implements Optimizer<MonteCarloAdaptive
       }
 
     }
-    executor.shutdown();
-
-    LineupComposite bestLineupCopy = bestLineupComposite.getCopyOfBestLineupComposite();
+    LineupComposite bestLineupCopy = bestLineupComposite.getCopy();
 
     /*
      * if (candidateLineupsGlobal.size() != 0) { throw new RuntimeException(
@@ -249,54 +293,51 @@ public class MonteCarloAdaptiveOptimizer implements Optimizer<MonteCarloAdaptive
 
     // Make sure we've run at least MAX_ITERATIONS games on our final result so the expected score is
     // accurate.
-    // This is especially important when using a cached result. Since stats objects can't be serialized
-    // and cached, a final result will have a score of NaN
+    // This is especially important when using a cached result without a checkpoint. Those don't have
+    // the champion's stats, so a final result would have a score of NaN
     if (bestLineupCopy.getStats().getN() < TTestTask.MAX_ITERATIONS) {
       Logger.log("Top up iterations: " + (TTestTask.MAX_ITERATIONS - bestLineupCopy.getStats().getN()));
-      for (int i = 0; i < TTestTask.MAX_ITERATIONS - bestLineupCopy.getStats().getN(); i++) {
-        double score = MonteCarloGameSimulation.simulateGame(bestLineupCopy.getLineup(), INNINGS,
-            bestLineupCopy.getHitGenerator());
-        bestLineupCopy.addSample(score);
-      }
+      GameScoreAccumulator accumulator = new GameScoreAccumulator();
+      splitter.simulateGames(bestLineupCopy.getSimulator(), INNINGS,
+          TTestTask.MAX_ITERATIONS - bestLineupCopy.getStats().getN(), accumulator);
+      bestLineupCopy.addSamples(accumulator);
     }
+    executor.shutdown();
 
-    Set<Long> candidateLineupIndexes = candidateLineups.stream().map(v -> v.lineupIndex()).collect(Collectors.toSet());
+    byte[] checkpointBytes = AdaptiveCheckpoint.of(indexer.size(), bestLineupCopy, candidates).toBytes();
     long elapsedTime = (System.currentTimeMillis() - startTimestamp)
         + Optional.ofNullable(existingResult).map(v -> v.getElapsedTimeMs()).orElse(0l);
     MonteCarloAdaptiveResult finalResult = new MonteCarloAdaptiveResult(bestLineupCopy.getLineup(),
-        bestLineupCopy.getStats().getMean(), indexer.size(), indexer.size(), elapsedTime, candidateLineupIndexes,
-        ResultStatusEnum.COMPLETE, simulationsRun, comparisonsThatReachedSimLimit);
+        bestLineupCopy.getStats().getMean(), indexer.size(), indexer.size(), elapsedTime, null, checkpointBytes,
+        ResultStatusEnum.COMPLETE, simulationsRun, comparisonsThatReachedSimLimit, simulationsSaved);
 
     Logger.log(
-        "FINAL RESULT " + finalResult.getSimulationsRequired() + " " + finalResult.getComparisonsThatReachedSimLimit());
+        "FINAL RESULT " + finalResult.getSimulationsRequired() + " " + finalResult.getComparisonsThatReachedSimLimit()
+            + " " + finalResult.getSimulationsSaved());
 
     progressTracker.updateProgress(finalResult);
     return finalResult;
   }
 
-  private List<LineupComposite> getLineupsToTest(int taskSize, Queue<LineupComposite> inProgressLineups,
-      HitGenerator hitGenerator, BattingLineupIndexer indexer) {
-    List<LineupComposite> lineupsToTest = new LinkedList<>(); // LinkedList becasue we only iterate and sometimes need
-                                                              // to add elements to the beginning of the list
+  /**
+   * Picks up to taskSize lineups for a task, winners from earlier tasks first and then fresh lineups.
+   * Fresh lineups are consecutive, the task gets them by advancing lineupIndex.
+   *
+   * @return the handles of the winners
+   */
+  private long[] getLineupsToTest(int taskSize, Queue<Long> inProgressLineups, BattingLineupIndexer indexer) {
+    long[] winnersToTest = new long[taskSize];
+    int winnerCount = 0;
     for (int j = 0; j < taskSize; j++) {
 
-      // First, add the best lineup we have so far to the task list. Make a copy so other threads can
-      // modify it.
-      // Having a good lineup in each task reduces the runtime because we don't waste much time comparing
-      // bad lineups to other bad lineups.
-      // lineupsToTest.add(new LineupComposite(bestLineup));
-
       // First, get any in progress lineups from the queue and add them to the task
       if (!inProgressLineups.isEmpty()) {
-        LineupComposite toEnqueue = inProgressLineups.remove();
-        lineupsToTest.add(toEnqueue);
+        winnersToTest[winnerCount++] = inProgressLineups.remove();
         continue;
       }
 
       // Second, get fresh lineups
       if (lineupIndex < indexer.size()) {
-        LineupComposite composite = new LineupComposite(indexer.getLineup(lineupIndex), hitGenerator, lineupIndex);
-        lineupsToTest.add(composite);
         lineupIndex++;
       }
 
@@ -306,7 +347,7 @@ public class MonteCarloAdaptiveOptimizer implements Optimizer<MonteCarloAdaptive
       }
     }
 
-    return lineupsToTest;
+    return winnerCount == taskSize ? winnersToTest : Arrays.copyOf(winnersToTest, winnerCount);
   }
 
   private int getNumberOfLineupsToAddToTask(long remainingLineups, int numberOfThreads) {
@@ -349,14 +390,20 @@ public class MonteCarloAdaptiveOptimizer implements Optimizer<MonteCarloAdaptive
     final double NUM_STD_DEVIATIONS = .8; // (set higher for shorter estimation times and vice versa)
     final int LINEUPS_TO_TEST = 100;
 
-    SummaryStatistics dataStats = MiscUtils.getSummaryStatisticsForIndexer(indexer, 100, 10000, 7);
+    // The pool's threads help sample the lineups
+    ExecutorService executor = Executors.newFixedThreadPool(parsedArguments.getThreads());
+    StatisticalSummary dataStats =
+        LandscapeStatistics.get(indexer, 7, 100, 10000, executor, parsedArguments.getThreads() - 1, null);
     SummaryStatisticsTransform transform =
         new RangeSummaryStatisticsTransform(dataStats.getStandardDeviation() * NUM_STD_DEVIATIONS);
 
+    TTestTask.Options options = new TTestTask.Options(parsedArguments.getInnings(), parsedArguments.getAlpha())
+        .paired(parsedArguments.isPaired()).controlVariates(parsedArguments.isControlVariates())
+        .indifferenceZone(parsedArguments.getIndifferenceZone());
+
     // Warmup
     // Test random lineups are within NUM_STD_DEVIATIONS of each other
     Queue<Future<TTestTaskResult>> results = new LinkedList<>();
-    ExecutorService executor = Executors.newFixedThreadPool(parsedArguments.getThreads());
     for (int i = 0; i < LINEUPS_TO_TEST; i++) {
       long randomIndexA = ThreadLocalRandom.current().nextLong(0, indexer.size());
       long randomIndexB = ThreadLocalRandom.current().nextLong(0, indexer.size());
@@ -365,10 +412,10 @@ public class MonteCarloAdaptiveOptimizer implements Optimizer<MonteCarloAdaptive
       BattingLineup randomLineupB = indexer.getLineup(randomIndexB);
 
       List<LineupComposite> list = new ArrayList<>(2);
-      list.add(new LineupComposite(randomLineupA, hitGenerator, randomIndexA));
-      list.add(new LineupComposite(randomLineupB, hitGenerator, randomIndexB));
+      list.add(new LineupComposite(randomLineupA, hitGenerator, randomIndexA, parsedArguments.getEngine()));
+      list.add(new LineupComposite(randomLineupB, hitGenerator, randomIndexB, parsedArguments.getEngine()));
 
-      TTestTask task = new TTestTask(list, parsedArguments.getInnings(), parsedArguments.getAlpha(), transform, false);
+      TTestTask task = new TTestTask(list, transform, options);
       results.add(executor.submit(task));
     }
 
@@ -392,10 +439,10 @@ public class MonteCarloAdaptiveOptimizer implements Optimizer<MonteCarloAdaptive
       BattingLineup randomLineupB = indexer.getLineup(randomIndexB);
 
       List<LineupComposite> list = new ArrayList<>(2);
-      list.add(new LineupComposite(randomLineupA, hitGenerator, randomIndexA));
-      list.add(new LineupComposite(randomLineupB, hitGenerator, randomIndexB));
+      list.add(new LineupComposite(randomLineupA, hitGenerator, randomIndexA, parsedArguments.getEngine()));
+      list.add(new LineupComposite(randomLineupB, hitGenerator, randomIndexB, parsedArguments.getEngine()));
 
-      TTestTask task = new TTestTask(list, parsedArguments.getInnings(), parsedArguments.getAlpha(), transform, false);
+      TTestTask task = new TTestTask(list, transform, options);
       results.add(executor.submit(task));
     }
 
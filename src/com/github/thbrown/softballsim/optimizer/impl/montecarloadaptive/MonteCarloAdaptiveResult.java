@@ -12,25 +12,72 @@ import com.github.thbrown.softballsim.util.StringUtils;
  */
 public class MonteCarloAdaptiveResult extends Result {
 
+  // Results written before checkpoints existed saved the candidates here instead
   private final Set<Long> candidateLineups;
   private long simulationsRequired;
   private long comparisonsThatReachedSimLimit;
+  private long simulationsSaved;
+
+  // See AdaptiveCheckpoint, persisted by the data source instead of as JSON
+  private final transient byte[] checkpoint;
 
   public MonteCarloAdaptiveResult(BattingLineup lineup, double lineupScore, long countTotal, long countCompleted,
       long elapsedTimeMs, Set<Long> candidateLineups, ResultStatusEnum status, long simulationsRequired,
-      long comparisonsThatReachedSimLimit) {
+      long comparisonsThatReachedSimLimit, long simulationsSaved) {
+    this(lineup, lineupScore, countTotal, countCompleted, elapsedTimeMs, candidateLineups, null, status,
+        simulationsRequired, comparisonsThatReachedSimLimit, simulationsSaved);
+  }
+
+  public MonteCarloAdaptiveResult(BattingLineup lineup, double lineupScore, long countTotal, long countCompleted,
+      long elapsedTimeMs, Set<Long> candidateLineups, byte[] checkpoint, ResultStatusEnum status,
+      long simulationsRequired, long comparisonsThatReachedSimLimit, long simulationsSaved) {
     super(OptimizerEnum.MONTE_CARLO_ADAPTIVE, lineup, lineupScore, countTotal, countCompleted, elapsedTimeMs, status);
     this.candidateLineups = candidateLineups;
+    this.checkpoint = checkpoint;
     this.simulationsRequired = simulationsRequired;
     this.comparisonsThatReachedSimLimit = comparisonsThatReachedSimLimit;
+    this.simulationsSaved = simulationsSaved;
   }
 
   public MonteCarloAdaptiveResult(long estimatedCompletionTimeMs) {
     super(OptimizerEnum.MONTE_CARLO_ADAPTIVE, null, 0, 0, 0, 0, ResultStatusEnum.ESTIMATE, null,
         estimatedCompletionTimeMs);
     this.candidateLineups = null;
+    this.checkpoint = null;
     this.simulationsRequired = 0;
     this.comparisonsThatReachedSimLimit = 0;
+    this.simulationsSaved = 0;
+  }
+
+  private MonteCarloAdaptiveResult(MonteCarloAdaptiveResult toCopy, ResultStatusEnum status, String statusMessage,
+      Long estimatedTimeRemainingMs) {
+    this(toCopy, status, statusMessage, estimatedTimeRemainingMs, toCopy.checkpoint);
+  }
+
+  private MonteCarloAdaptiveResult(MonteCarloAdaptiveResult toCopy, ResultStatusEnum status, String statusMessage,
+      Long estimatedTimeRemainingMs, byte[] checkpoint) {
+    super(toCopy, status, statusMessage, estimatedTimeRemainingMs);
+    this.candidateLineups = toCopy.candidateLineups;
+    this.checkpoint = checkpoint;
+    this.simulationsRequired = toCopy.simulationsRequired;
+    this.comparisonsThatReachedSimLimit = toCopy.comparisonsThatReachedSimLimit;
+    this.simulationsSaved = toCopy.simulationsSaved;
+  }
+
+  @Override
+  protected Result copy(ResultStatusEnum status, String statusMessage, Long estimatedTimeRemainingMs) {
+    return new MonteCarloAdaptiveResult(this, status, statusMessage, estimatedTimeRemainingMs);
+  }
+
+  @Override
+  public byte[] getCheckpoint() {
+    return checkpoint;
+  }
+
+  @Override
+  public Result withCheckpoint(byte[] checkpoint) {
+    return new MonteCarloAdaptiveResult(this, getStatus(), getStatusMessage(), getEstimatedTimeRemainingMs(),
+        checkpoint);
   }
 
   public Set<Long> getCandidateLineups() {
@@ -45,6 +92,14 @@ public class MonteCarloAdaptiveResult extends Result {
     return this.comparisonsThatReachedSimLimit;
   }
 
+  /**
+   * @return the estimated number of simulations saved by comparing lineups with common random numbers and
+   *         control variates
+   */
+  public Long getSimulationsSaved() {
+    return this.simulationsSaved;
+  }
+
   @Override
   public String getHumanReadableDetails() {
     StringBuilder sb = new StringBuilder(super.getHumanReadableDetails());
@@ -54,6 +109,9 @@ public class MonteCarloAdaptiveResult extends Result {
     sb.append("% of indeterminate comparisons: ");
     sb.append(StringUtils
         .formatDecimal(((double) this.comparisonsThatReachedSimLimit / (double) super.getCountCompleted() * 100), 3));
+    sb.append("\n");
+    sb.append("Simulations saved by variance reduction (est): ");
+    sb.append(this.simulationsSaved);
     return sb.toString();
   }
 }
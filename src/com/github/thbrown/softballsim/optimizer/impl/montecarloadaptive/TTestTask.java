@@ -1,20 +1,40 @@
 package com.github.thbrown.softballsim.optimizer.impl.montecarloadaptive;
 
-import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.Callable;
-import org.apache.commons.math3.stat.descriptive.StatisticalSummary;
-import org.apache.commons.math3.stat.inference.TTest;
-import org.apache.commons.math3.util.Pair;
+import org.apache.commons.math3.distribution.NormalDistribution;
 import com.github.thbrown.softballsim.optimizer.impl.montecarloadaptive.statstransform.SummaryStatisticsTransform;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive.ControlVariateAccumulator;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive.GameScoreAccumulator;
 import com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive.MonteCarloGameSimulation;
 import com.github.thbrown.softballsim.util.Logger;
+import com.github.thbrown.softballsim.util.WelchTTest;
 
 /**
  * Manages the relationship between two results and acts as the judge between a best result so far
  * state and a series of new states
+ *
+ * In paired mode each comparison simulates both lineups with common random numbers (see
+ * {@link MonteCarloGameSimulation#simulatePairedGames}) and runs a paired t-test on the per-game
+ * differences. Samples from paired comparisons are still added to each lineup's stats, but since
+ * those stats aren't paired with anything, each comparison starts its paired sample from scratch.
+ *
+ * With control variates enabled, games are simulated along with covariates of known expectation (see
+ * {@link ControlVariateAccumulator}) and the t-test is given the adjusted means and variances, for a
+ * single lineup's scores in unpaired mode or for the differences in paired mode.
+ *
+ * The t-tests use {@link WelchTTest} on primitives, so a comparison allocates nothing no matter how
+ * many batches of games it takes.
+ *
+ * Instead of adding games in fixed chunks, each batch is sized using the observed variances and gap
+ * between the means to predict how many games the test needs to become significant. With an
+ * indifference zone, comparisons also end as soon as the lineups are shown to be within that many
+ * runs per game of each other (two one-sided tests), since it doesn't matter which of them wins.
+ *
+ * Given a {@link BatchSplitter}, batches are spread over any idle threads in the pool this task runs
+ * on, which is what keeps the last few comparisons of an adaptive run from running on a single thread.
  */
 public class TTestTask implements Callable<TTestTaskResult> {
 
@@ -22,41 +42,59 @@ public class TTestTask implements Callable<TTestTaskResult> {
   public static int MAX_ITERATIONS = 1000000;
   private static int INITIAL_GAMES_TO_SIMULATE = 1000;
   private static int SAMPLE_CHUNK_SIZE = 1000;
-  private final static TTest tester = new TTest();
+
+  // The predicted sample size is only an estimate, especially early on when the observed gap between
+  // the means is noisy, so a single batch can at most double a sample
+  private static int MAX_GROWTH_FACTOR = 2;
 
   protected final List<LineupComposite> toTest;
   private final int inningsPerGame;
   private final double alpha;
   private final boolean lowest;
+  private final boolean paired;
+  private final boolean controlVariates;
+  private final double indifferenceZone;
+
+  // Null to always simulate on the calling thread
+  private final BatchSplitter splitter;
+
+  // Normal approximations of the t critical values, used to predict how many more games are needed
+  private final double twoSidedCriticalValue;
+  private final double oneSidedCriticalValue;
 
   private long simulationsRequired = 0;
+  private long simulationsSaved = 0;
   private long comparisonsThatReachedSimLimit = 0;
 
+  // Reused for every batch of simulations this task runs
+  private final GameScoreAccumulator accumulator = new GameScoreAccumulator();
+  private final GameScoreAccumulator pairedScoresA = new GameScoreAccumulator();
+  private final GameScoreAccumulator pairedScoresB = new GameScoreAccumulator();
+  private final ControlVariateAccumulator controlVariateAccumulator = new ControlVariateAccumulator();
+  private final ControlVariateAccumulator pairedDifferences = new ControlVariateAccumulator();
+
   private SummaryStatisticsTransform transform;
 
-  public TTestTask(List<LineupComposite> toTest, int inningsPerGame, double alpha,
-      SummaryStatisticsTransform transform, boolean lowest) {
-    this.inningsPerGame = inningsPerGame;
+  /**
+   * @param transform applied to each lineup's stats before they're compared, may be null
+   */
+  public TTestTask(List<LineupComposite> toTest, SummaryStatisticsTransform transform, Options options) {
     this.toTest = toTest;
-    this.alpha = alpha;
     this.transform = transform;
-    this.lowest = lowest;
-  }
-
-  public TTestTask(List<LineupComposite> toTest, int inningsPerGame, double alpha, boolean lowest) {
-    this(toTest, inningsPerGame, alpha, null, lowest);
+    this.inningsPerGame = options.inningsPerGame;
+    this.alpha = options.alpha;
+    this.lowest = options.lowest;
+    this.paired = options.paired;
+    this.controlVariates = options.controlVariates;
+    this.indifferenceZone = Math.abs(options.indifferenceZone);
+    this.splitter = options.splitter;
+    NormalDistribution normal = new NormalDistribution(null, 0, 1);
+    this.twoSidedCriticalValue = normal.inverseCumulativeProbability(1 - alpha / 2);
+    this.oneSidedCriticalValue = normal.inverseCumulativeProbability(1 - alpha);
   }
 
   @Override
   public TTestTaskResult call() {
-    // Run simulations for the lineups if they have none.
-    for (LineupComposite toEvaluate : toTest) {
-      // T-test requires at least 2 toEvaluate
-      if (toEvaluate.getStats().getN() < 2) {
-        simulateGames(INITIAL_GAMES_TO_SIMULATE, inningsPerGame, toEvaluate);
-      }
-    }
-
     LineupComposite bestSoFar = null;
     Set<LineupComposite> eliminatedLineups = new HashSet<>();
     for (LineupComposite toEvaluate : toTest) {
@@ -69,80 +107,330 @@ public class TTestTask implements Callable<TTestTaskResult> {
         continue;
       }
 
-      // Run simulations until the difference in mean runs scored is statistically significant
-      StatisticalSummary statsA;
-      StatisticalSummary statsB;
+      LineupComposite winner = compare(bestSoFar, toEvaluate);
+      if (winner == toEvaluate) {
+        eliminatedLineups.add(bestSoFar);
+        bestSoFar = toEvaluate;
+      } else {
+        eliminatedLineups.add(toEvaluate);
+      }
+    }
 
-      while (true) {
-        statsA = bestSoFar.getStats();
-        statsB = toEvaluate.getStats();
+    return new TTestTaskResult(bestSoFar, eliminatedLineups, simulationsRequired, comparisonsThatReachedSimLimit,
+        simulationsSaved);
+  }
 
-        // Transform the SummaryStatistics to alter the nature of the tTest, if necessary
-        if (this.transform != null) {
-          Pair<StatisticalSummary, StatisticalSummary> transformed = this.transform.transform(statsA, statsB);
-          statsA = transformed.getFirst();
-          statsB = transformed.getSecond();
-        }
+  /**
+   * Runs simulations until the difference in mean runs scored by the two lineups is statistically
+   * significant (or we reach MAX_ITERATIONS games) and adds them to the lineups' stats. This doesn't
+   * allocate, so it can be called in a tight loop with the same task. The counts returned by
+   * {@link #getSimulationsRequired()} etc. include every comparison this task has made.
+   *
+   * @return whichever of champion or challenger scores more (or fewer, if this task is looking for
+   *         the lowest score) runs. Ties go to the champion.
+   */
+  public LineupComposite compare(LineupComposite champion, LineupComposite challenger) {
+    double difference;
+    if (paired) {
+      // Paired comparisons generate their own samples
+      difference = runPairedComparison(champion, challenger);
+    } else {
+      // T-test requires at least 2 samples for each lineup
+      if (champion.getStats().getN() < 2) {
+        simulateGames(INITIAL_GAMES_TO_SIMULATE, inningsPerGame, champion);
+      }
+      if (challenger.getStats().getN() < 2) {
+        simulateGames(INITIAL_GAMES_TO_SIMULATE, inningsPerGame, challenger);
+      }
+      difference = runUnpairedComparison(champion, challenger);
+    }
+
+    // Has the new lineup we are testing de-throned the champion?
+    if (this.lowest ? difference < 0 : difference > 0) {
+      return challenger;
+    }
+    return champion;
+  }
 
-        double pValue = tester.tTest(statsA, statsB);
-        // Logger.log(statsA.getN() + " " + statsB.getN() + " " + statsA.getMean() + " " + statsB.getMean()
-        // + " " + pValue);
+  /**
+   * Simulates more games for whichever lineup has fewer until a t-test on the two lineups' (control
+   * variate adjusted, if enabled) stats is significant or both reach MAX_ITERATIONS games.
+   *
+   * @return the difference in means, b - a, shifted by this task's transform if it has one
+   */
+  private double runUnpairedComparison(LineupComposite a, LineupComposite b) {
+    while (true) {
+      double meanA = controlVariates ? a.getAdjustedMean() : a.getStats().getMean();
+      double meanB = controlVariates ? b.getAdjustedMean() : b.getStats().getMean();
+      double varianceA = controlVariates ? a.getAdjustedVariance() : a.getStats().getVariance();
+      double varianceB = controlVariates ? b.getAdjustedVariance() : b.getStats().getVariance();
+      long nA = controlVariates ? a.getAdjustedN() : a.getStats().getN();
+      long nB = controlVariates ? b.getAdjustedN() : b.getStats().getN();
 
-        // Check if we have a large enough sample size to determine that populations are different
-        if (pValue <= alpha) {
-          break;
-        }
+      // Transform the difference to alter the nature of the tTest, if necessary
+      double adjustment = this.transform == null ? 0 : this.transform.getDifferenceAdjustment(meanA, meanB);
 
-        // Check if we've exceeded the maximum number of allowed samples
-        if (statsA.getN() >= MAX_ITERATIONS && statsB.getN() >= MAX_ITERATIONS) {
-          comparisonsThatReachedSimLimit++;
-          Logger.log("WARN: Reached simulation limit " + statsA.getMean() + " " + statsB.getMean() + " " + pValue); // PIZZA
-          break;
-        }
+      double pValue = WelchTTest.pValue(meanA, varianceA, nA, meanB + adjustment, varianceB, nB);
+      // Logger.log(nA + " " + nB + " " + meanA + " " + meanB + " " + pValue);
 
-        // We need more samples, lets calculate them for whichever lineup we have less samples for
-        if (statsA.getN() < statsB.getN()) {
-          // Do more simulations for the "bestSoFar" lineup
-          simulateGames(SAMPLE_CHUNK_SIZE, inningsPerGame, bestSoFar);
-        } else {
-          // Do more simulations for the "toEvaluate" lineup
-          simulateGames(SAMPLE_CHUNK_SIZE, inningsPerGame, toEvaluate);
-        }
+      // Check if we have a large enough sample size to determine that populations are different
+      if (pValue <= alpha) {
+        return meanB + adjustment - meanA;
       }
 
-      if (this.lowest) {
-        // Has the new lineup we are testing de-throned the champion? - we are looking for the lowest
-        // scroing lineup
-        if (statsB.getMean() < statsA.getMean()) {
-          eliminatedLineups.add(bestSoFar);
-          bestSoFar = toEvaluate;
+      // Or that they are close enough that it doesn't matter
+      if (indifferenceZone > 0 && WelchTTest.equivalencePValue(meanA, varianceA, nA, meanB, varianceB, nB,
+          indifferenceZone) <= alpha) {
+        return meanB + adjustment - meanA;
+      }
+
+      // Check if we've exceeded the maximum number of allowed samples
+      if (a.getStats().getN() >= MAX_ITERATIONS && b.getStats().getN() >= MAX_ITERATIONS) {
+        comparisonsThatReachedSimLimit++;
+        Logger.log("WARN: Reached simulation limit " + meanA + " " + (meanB + adjustment) + " " + pValue);
+        return meanB + adjustment - meanA;
+      }
+
+      // We need more samples. Split them between the lineups in proportion to their standard deviations,
+      // which minimizes the total number of games needed to reach the target standard error.
+      double targetStandardError = getTargetStandardError(meanB + adjustment - meanA, meanB - meanA);
+      double standardDeviationA = Math.sqrt(varianceA);
+      double standardDeviationB = Math.sqrt(varianceB);
+      double totalStandardDeviation = standardDeviationA + standardDeviationB;
+      long gamesForA = getGamesToSimulate(a.getStats().getN(),
+          standardDeviationA * totalStandardDeviation / (targetStandardError * targetStandardError));
+      long gamesForB = getGamesToSimulate(b.getStats().getN(),
+          standardDeviationB * totalStandardDeviation / (targetStandardError * targetStandardError));
+
+      if (gamesForA == 0 && gamesForB == 0) {
+        // The prediction says we already have enough, but it's an approximation, so simulate a chunk for
+        // whichever lineup we have less samples for
+        if (a.getStats().getN() < b.getStats().getN()) {
+          gamesForA = Math.min(SAMPLE_CHUNK_SIZE, MAX_ITERATIONS - a.getStats().getN());
         } else {
-          eliminatedLineups.add(toEvaluate);
+          gamesForB = Math.min(SAMPLE_CHUNK_SIZE, MAX_ITERATIONS - b.getStats().getN());
         }
+      }
+      if (gamesForA > 0) {
+        simulateGames((int) gamesForA, inningsPerGame, a);
+      }
+      if (gamesForB > 0) {
+        simulateGames((int) gamesForB, inningsPerGame, b);
+      }
+    }
+  }
+
+  /**
+   * Simulates both lineups with common random numbers until a paired t-test on the per-game
+   * differences is significant or we reach MAX_ITERATIONS games. The games are added to each lineup's
+   * stats afterwards.
+   *
+   * @return the difference in means of just the paired games, b - a, shifted by this task's transform
+   *         if it has one
+   */
+  private double runPairedComparison(LineupComposite a, LineupComposite b) {
+    pairedScoresA.clear();
+    pairedScoresB.clear();
+    pairedDifferences.clear();
+    simulatePairedGames(INITIAL_GAMES_TO_SIMULATE, a, b);
+
+    double meanA;
+    double meanB;
+    double varianceOfDifferences;
+    double adjustment;
+    while (true) {
+      meanA = pairedScoresA.getMean();
+      meanB = pairedScoresB.getMean();
+      double meanOfDifferences;
+      if (controlVariates) {
+        // Keep B's mean consistent with the adjusted difference so the winner agrees with the test
+        meanOfDifferences = pairedDifferences.getAdjustedMean();
+        varianceOfDifferences = pairedDifferences.getAdjustedVariance();
+        meanB = meanA + meanOfDifferences;
       } else {
-        // Has the new lineup we are testing de-throned the champion? - we are looking for the highest
-        // scroing lineup
-        if (statsB.getMean() > statsA.getMean()) {
-          eliminatedLineups.add(bestSoFar);
-          bestSoFar = toEvaluate;
-        } else {
-          eliminatedLineups.add(toEvaluate);
-        }
+        meanOfDifferences = pairedDifferences.getMean();
+        varianceOfDifferences = pairedDifferences.getVariance();
       }
+
+      // A transform shifts the means apart, shift the mean of the differences by the same amount
+      adjustment = this.transform == null ? 0 : this.transform.getDifferenceAdjustment(meanA, meanB);
+
+      // Tests whether mean(B - A) + adjustment = 0
+      double pValue =
+          WelchTTest.oneSamplePValue(-adjustment, meanOfDifferences, varianceOfDifferences, pairedDifferences.getN());
+
+      if (pValue <= alpha) {
+        break;
+      }
+
+      // Tests whether |mean(B - A)| is less than the indifference zone
+      if (indifferenceZone > 0 && WelchTTest.oneSampleEquivalencePValue(meanOfDifferences, varianceOfDifferences,
+          pairedDifferences.getN(), indifferenceZone) <= alpha) {
+        break;
+      }
+
+      if (pairedDifferences.getN() >= MAX_ITERATIONS) {
+        comparisonsThatReachedSimLimit++;
+        Logger.log("WARN: Reached simulation limit " + meanA + " " + (meanB + adjustment) + " " + pValue);
+        break;
+      }
+
+      double targetStandardError = getTargetStandardError(meanOfDifferences + adjustment, meanOfDifferences);
+      long games = getGamesToSimulate(pairedDifferences.getN(),
+          varianceOfDifferences / (targetStandardError * targetStandardError));
+      simulatePairedGames((int) Math.max(games, Math.min(SAMPLE_CHUNK_SIZE, MAX_ITERATIONS - pairedDifferences.getN())),
+          a, b);
     }
 
-    return new TTestTaskResult(bestSoFar, eliminatedLineups, simulationsRequired, comparisonsThatReachedSimLimit);
+    a.addSamples(pairedScoresA);
+    b.addSamples(pairedScoresB);
+    simulationsSaved += getSimulationsSaved(pairedScoresA.getVariance(), pairedScoresB.getVariance(),
+        varianceOfDifferences, pairedDifferences.getN());
+    return meanB + adjustment - meanA;
+  }
+
+  /**
+   * @param testedDifference the difference in means the t-test is run on, including any transform
+   * @param difference the actual difference in means, which is what the indifference zone applies to
+   * @return the standard error of the difference at which we expect the t-test to become significant or
+   *         the lineups to be shown to be within the indifference zone, whichever comes first
+   */
+  private double getTargetStandardError(double testedDifference, double difference) {
+    double forSignificance = Math.abs(testedDifference) / twoSidedCriticalValue;
+    double forEquivalence = (indifferenceZone - Math.abs(difference)) / oneSidedCriticalValue;
+    return Math.max(forSignificance, forEquivalence);
   }
 
-  private List<Double> simulateGames(int numberOfGamesToSimulate, int inningsPerGame, LineupComposite composite) {
-    List<Double> simulatedGames = new ArrayList<>(numberOfGamesToSimulate);
-    for (int i = 0; i < numberOfGamesToSimulate; i++) {
-      double score =
-          MonteCarloGameSimulation.simulateGame(composite.getLineup(), inningsPerGame, composite.getHitGenerator());
-      composite.addSample(score);
-      simulatedGames.add(score);
+  /**
+   * @param n the number of games simulated so far
+   * @param predictedN the number of games we expect to need in total, which may be infinite or NaN if
+   *        the sample gives us nothing to go on
+   * @return how many more games to simulate, limited by MAX_GROWTH_FACTOR and MAX_ITERATIONS
+   */
+  private static long getGamesToSimulate(long n, double predictedN) {
+    long limit = Math.min(Math.max(n, 1) * (MAX_GROWTH_FACTOR - 1), MAX_ITERATIONS - n);
+    if (Double.isNaN(predictedN) || predictedN - n > limit) {
+      return Math.max(limit, 0);
     }
+    return Math.max((long) Math.ceil(predictedN - n), 0);
+  }
+
+  public long getSimulationsRequired() {
+    return simulationsRequired;
+  }
+
+  public long getSimulationsSaved() {
+    return simulationsSaved;
+  }
+
+  public long getComparisonsThatReachedSimLimit() {
+    return comparisonsThatReachedSimLimit;
+  }
+
+  /**
+   * A plain unpaired t-test with n games per lineup has a standard error of sqrt((varA + varB) / n),
+   * the paired test's is sqrt(varDiff / n), where varDiff is the (control variate adjusted, if
+   * enabled) variance of the differences. So to be as confident as n paired games, independent
+   * simulations would need n * (varA + varB) / varDiff games per lineup (up to the simulation limit).
+   *
+   * @return the estimated number of simulations a plain unpaired comparison would have needed, minus
+   *         the number the paired comparison actually used. Negative if pairing made things worse.
+   */
+  static long getSimulationsSaved(double varianceA, double varianceB, double varianceOfDifferences, long n) {
+    double unpairedGamesPerLineup = varianceOfDifferences > 0
+        ? n * (varianceA + varianceB) / varianceOfDifferences
+        : Double.POSITIVE_INFINITY;
+    long unpairedSimulations = 2 * (long) Math.min(unpairedGamesPerLineup, MAX_ITERATIONS);
+    return unpairedSimulations - 2 * n;
+  }
+
+  private void simulatePairedGames(int numberOfGamesToSimulate, LineupComposite a, LineupComposite b) {
+    if (splitter != null) {
+      splitter.simulatePairedGames(a.getCompiledLineup(), b.getCompiledLineup(), inningsPerGame,
+          numberOfGamesToSimulate, pairedScoresA, pairedScoresB, pairedDifferences);
+    } else {
+      MonteCarloGameSimulation.simulatePairedGames(a.getCompiledLineup(), b.getCompiledLineup(), inningsPerGame,
+          numberOfGamesToSimulate, pairedScoresA, pairedScoresB, pairedDifferences);
+    }
+    simulationsRequired += 2 * numberOfGamesToSimulate;
+  }
+
+  private void simulateGames(int numberOfGamesToSimulate, int inningsPerGame, LineupComposite composite) {
+    if (controlVariates) {
+      // Covariates come from individual plate appearances, so these always use the plate appearance engine
+      controlVariateAccumulator.clear();
+      if (splitter != null) {
+        splitter.simulateGames(composite.getCompiledLineup(), inningsPerGame, numberOfGamesToSimulate,
+            controlVariateAccumulator);
+      } else {
+        MonteCarloGameSimulation.simulateGames(composite.getCompiledLineup(), inningsPerGame,
+            numberOfGamesToSimulate, controlVariateAccumulator);
+      }
+      composite.addSamples(controlVariateAccumulator);
+      simulationsRequired += numberOfGamesToSimulate;
+      return;
+    }
+    accumulator.clear();
+    if (splitter != null) {
+      splitter.simulateGames(composite.getSimulator(), inningsPerGame, numberOfGamesToSimulate, accumulator);
+    } else {
+      composite.getSimulator().simulateGames(inningsPerGame, numberOfGamesToSimulate, accumulator);
+    }
+    composite.addSamples(accumulator);
     simulationsRequired += numberOfGamesToSimulate;
-    return simulatedGames;
   }
+
+  /**
+   * How a {@link TTestTask} compares lineups. Everything but the innings and alpha is optional, by
+   * default the highest scoring lineup wins an unpaired test without control variates or an
+   * indifference zone, simulated on the calling thread. Tasks copy the options when they're created,
+   * so one instance can be reused for many tasks.
+   */
+  public static class Options {
+    private final int inningsPerGame;
+    private final double alpha;
+    private boolean lowest = false;
+    private boolean paired = false;
+    private boolean controlVariates = false;
+    private double indifferenceZone = 0;
+    private BatchSplitter splitter = null;
+
+    public Options(int inningsPerGame, double alpha) {
+      this.inningsPerGame = inningsPerGame;
+      this.alpha = alpha;
+    }
+
+    public Options lowest(boolean lowest) {
+      this.lowest = lowest;
+      return this;
+    }
+
+    public Options paired(boolean paired) {
+      this.paired = paired;
+      return this;
+    }
+
+    public Options controlVariates(boolean controlVariates) {
+      this.controlVariates = controlVariates;
+      return this;
+    }
+
+    /**
+     * @param indifferenceZone lineups whose mean scores are shown to be within this many runs per game
+     *        of each other are considered equally good, 0 to always require a significant difference
+     */
+    public Options indifferenceZone(double indifferenceZone) {
+      this.indifferenceZone = indifferenceZone;
+      return this;
+    }
+
+    /**
+     * @param splitter spreads batches of games over idle threads, null to simulate on the calling thread
+     */
+    public Options splitter(BatchSplitter splitter) {
+      this.splitter = splitter;
+      return this;
+    }
+  }
+
 }
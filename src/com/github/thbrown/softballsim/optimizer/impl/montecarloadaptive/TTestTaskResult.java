@@ -12,13 +12,15 @@ public class TTestTaskResult {
   private Set<LineupComposite> eliminatedLineupComposites;
   private long simulationsRequired;
   private long comparisonsThatReachedSimLimit;
+  private long simulationsSaved;
 
   public TTestTaskResult(LineupComposite bestLineupComposite, Set<LineupComposite> eliminatedLineupComposites,
-      long simulationsRequired, long comparisonsThatReachedSimLimit) {
+      long simulationsRequired, long comparisonsThatReachedSimLimit, long simulationsSaved) {
     this.bestLineupComposite = bestLineupComposite;
     this.eliminatedLineupComposites = eliminatedLineupComposites;
     this.simulationsRequired = simulationsRequired;
     this.comparisonsThatReachedSimLimit = comparisonsThatReachedSimLimit;
+    this.simulationsSaved = simulationsSaved;
   }
 
   public LineupComposite getBestLineupComposite() {
@@ -41,6 +43,15 @@ public class TTestTaskResult {
     return this.comparisonsThatReachedSimLimit;
   }
 
+  /**
+   * @return the estimated number of simulations that paired (common random number) comparisons saved
+   *         over plain unpaired ones, including any savings from control variates. Zero if the ttest
+   *         was unpaired.
+   */
+  public long getSimulationsSaved() {
+    return this.simulationsSaved;
+  }
+
   @Override
   public String toString() {
     return bestLineupComposite.getStats().getMean() + " "
@@ -12,8 +12,9 @@ public class TTestTaskResultWithNewLineups extends TTestTaskResult {
 
   public TTestTaskResultWithNewLineups(LineupComposite bestLineupComposite,
       Set<LineupComposite> eliminatedLineupComposites,
-      long simulationsRequired, long comparisonsThatReachedSimLimit, long newTasksAdded) {
-    super(bestLineupComposite, eliminatedLineupComposites, simulationsRequired, comparisonsThatReachedSimLimit);
+      long simulationsRequired, long comparisonsThatReachedSimLimit, long simulationsSaved, long newTasksAdded) {
+    super(bestLineupComposite, eliminatedLineupComposites, simulationsRequired, comparisonsThatReachedSimLimit,
+        simulationsSaved);
     this.newLineupsProcessed = newTasksAdded;
   }
 
@@ -1,39 +1,80 @@
 package com.github.thbrown.softballsim.optimizer.impl.montecarloadaptive;
 
-import java.util.List;
+import java.util.ArrayList;
+import com.github.thbrown.softballsim.lineupindexer.BattingLineupIndexer;
+import com.github.thbrown.softballsim.lineupindexer.LineupCursor;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive.HitGenerator;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive.SimulationEngineEnum;
 
+/**
+ * Tests a few candidates from a {@link CandidateStore} and a range of lineups that haven't been
+ * tested yet against the best lineup so far. The task only holds the candidates' handles and the
+ * range's indexes until it runs, that's when their lineups and simulators are built.
+ */
 public class TTestTaskWithBestLineup extends TTestTask {
 
-  SynchronizedLineupCompositeWrapper overallBestLineup;
+  ChampionReference overallBestLineup;
   long newLineupsAdded;
 
-  public TTestTaskWithBestLineup(SynchronizedLineupCompositeWrapper bestLineup, List<LineupComposite> toTest,
-      int inningsPerGame, double alpha, long newLineupsAdded, boolean lowest) {
-    super(toTest, inningsPerGame, alpha, lowest);
+  private final CandidateStore candidates;
+  private final long[] candidateHandles;
+  private final long firstNewLineupIndex;
+  private final BattingLineupIndexer<?> indexer;
+  private final HitGenerator hitGenerator;
+  private final SimulationEngineEnum engine;
+
+  /**
+   * @param candidateHandles candidates that won earlier tasks
+   * @param firstNewLineupIndex the first of newLineupsAdded consecutive lineups, which aren't candidates
+   *        yet, to test
+   */
+  public TTestTaskWithBestLineup(ChampionReference bestLineup, CandidateStore candidates, long[] candidateHandles,
+      long firstNewLineupIndex, long newLineupsAdded, BattingLineupIndexer<?> indexer, HitGenerator hitGenerator,
+      SimulationEngineEnum engine, Options options) {
+    super(new ArrayList<>(candidateHandles.length + (int) newLineupsAdded + 1), null, options);
     this.overallBestLineup = bestLineup;
     this.newLineupsAdded = newLineupsAdded;
+    this.candidates = candidates;
+    this.candidateHandles = candidateHandles;
+    this.firstNewLineupIndex = firstNewLineupIndex;
+    this.indexer = indexer;
+    this.hitGenerator = hitGenerator;
+    this.engine = engine;
   }
 
   @Override
   public TTestTaskResult call() {
 
+    for (long handle : candidateHandles) {
+      super.toTest.add(candidates.getComposite(handle, indexer, hitGenerator, engine));
+    }
+    if (newLineupsAdded > 0) {
+      LineupCursor<?> cursor = indexer.getCursor(firstNewLineupIndex);
+      for (long i = 0; i < newLineupsAdded; i++) {
+        super.toTest.add(new LineupComposite(cursor.getLineup(), hitGenerator, firstNewLineupIndex + i, engine));
+        cursor.next();
+      }
+    }
+
     // { Before we do the t-test, get a copy of the best lineup so far and add it to the list of lineups
     // to be t-tested }
-    LineupComposite bestLineupBeforeSimulations = overallBestLineup.getCopyOfBestLineupComposite();
+    LineupComposite bestLineupBeforeSimulations = overallBestLineup.getCopy();
     super.toTest.add(0, bestLineupBeforeSimulations);
 
     // Run the ttest!
     TTestTaskResult result = super.call();
 
     // We have the result! Check to see if the best lineup from the ttest matches overallBestLineup, if
-    // so add all the sampling data we just calculated to overallBestLineup
-    boolean wasUpdated = overallBestLineup.updateIfEqual(result.getBestLineupComposite());
+    // so add all the games we just simulated for it to overallBestLineup
+    boolean wasUpdated = bestLineupBeforeSimulations.equals(result.getBestLineupComposite())
+        && overallBestLineup.mergeSamples(bestLineupBeforeSimulations);
 
     // Since there will be no change to the overallBestLineup, we'll return a null best lineup to
     // indicate no change is required
     if (wasUpdated) {
       return new TTestTaskResultWithNewLineups(null, result.getEliminatedLineupComposites(),
-          result.getSimulationsRequired(), result.getComparisonsThatReachedSimLimit(), this.newLineupsAdded);
+          result.getSimulationsRequired(), result.getComparisonsThatReachedSimLimit(), result.getSimulationsSaved(),
+          this.newLineupsAdded);
     }
 
     if (bestLineupBeforeSimulations.equals(result.getBestLineupComposite())) {
@@ -43,13 +84,15 @@ public class TTestTaskWithBestLineup extends TTestTask {
       // of the lineups in this task can be the best
       // lineup.
       return new TTestTaskResultWithNewLineups(null, result.getEliminatedLineupComposites(),
-          result.getSimulationsRequired(), result.getComparisonsThatReachedSimLimit(), this.newLineupsAdded);
+          result.getSimulationsRequired(), result.getComparisonsThatReachedSimLimit(), result.getSimulationsSaved(),
+          this.newLineupsAdded);
     } else {
       // Our ttest found a lineup which was better than bestLineupBeforeSimulations! Return this result so
       // either the overallBestLineup will be updated, or
       // the result lineup will continue to be evaluated against the current overallBestLineup.
       return new TTestTaskResultWithNewLineups(result.getBestLineupComposite(), result.getEliminatedLineupComposites(),
-          result.getSimulationsRequired(), result.getComparisonsThatReachedSimLimit(), this.newLineupsAdded);
+          result.getSimulationsRequired(), result.getComparisonsThatReachedSimLimit(), result.getSimulationsSaved(),
+          this.newLineupsAdded);
     }
 
   }
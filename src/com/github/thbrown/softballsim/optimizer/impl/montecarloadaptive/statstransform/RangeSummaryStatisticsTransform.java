@@ -1,29 +1,31 @@
 package com.github.thbrown.softballsim.optimizer.impl.montecarloadaptive.statstransform;
 
-import org.apache.commons.math3.stat.descriptive.StatisticalSummary;
-import org.apache.commons.math3.stat.descriptive.SummaryStatistics;
-import org.apache.commons.math3.util.Pair;
-
 /**
- * Pushes the distributions of two SummaryStatistics away from each other by some range.
+ * Pushes the distributions of two samples away from each other by some range.
  * 
  * This is useful for performing tTests that determine if some mean is within some range of another
  * mean. Larger ranges require fewer sample points to reach a statistically significant results.
  */
 public class RangeSummaryStatisticsTransform implements SummaryStatisticsTransform {
 
-  private final double range;
+  private double range;
 
   public RangeSummaryStatisticsTransform(double range) {
+    setRange(range);
+  }
+
+  /**
+   * Lets a single transform be reused while the range changes (e.g. as the temperature drops during
+   * annealing). Don't call this while the transform is shared between threads.
+   */
+  public void setRange(double range) {
     this.range = Math.abs(range);
   }
 
-  public Pair<StatisticalSummary, StatisticalSummary> transform(StatisticalSummary a, StatisticalSummary b) {
-    if (a.getMean() > b.getMean()) {
-      return new Pair<StatisticalSummary, StatisticalSummary>(new MeanAdjustedSummaryStatistics(a, this.range), b);
-    } else {
-      return new Pair<StatisticalSummary, StatisticalSummary>(a, new MeanAdjustedSummaryStatistics(b, this.range));
-    }
+  @Override
+  public double getDifferenceAdjustment(double meanA, double meanB) {
+    // Whichever mean is already larger gets pushed up
+    return meanA > meanB ? -this.range : this.range;
   }
 
 }
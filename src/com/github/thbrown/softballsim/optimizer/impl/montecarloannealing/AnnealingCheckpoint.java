@@ -0,0 +1,223 @@
+package com.github.thbrown.softballsim.optimizer.impl.montecarloannealing;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloadaptive.AdaptiveCheckpoint;
+
+/**
+ * Everything the annealing optimizer needs to pick up where it left off: the max temperature of the
+ * cooling schedule and, for each thread, how far along the schedule it is, the index of its active
+ * lineup and the n, mean and sum of squared deviations (M2) of the games simulated for that lineup.
+ * It also keeps the best lineup any thread has held so far. Resuming from a checkpoint continues each
+ * thread's schedule at the same temperature without re-sampling the lineup landscape.
+ *
+ * The binary form is gzipped and non-negative longs are written as varints, like
+ * {@link AdaptiveCheckpoint}.
+ */
+public class AnnealingCheckpoint {
+
+  private static final int VERSION = 1;
+
+  private final double maxTemperature;
+
+  // One entry per thread
+  private final long[] elapsedMs;
+  private final long[] lineupIndexes;
+  private final long[] n;
+  private final double[] means;
+  private final double[] m2s;
+  private final long[] simulationsRequired;
+  private final long[] simulationsSaved;
+
+  // Simulations the optimizer ran outside of the threads
+  private final long otherSimulationsRequired;
+
+  private final boolean hasBest;
+  private final long bestIndex;
+  private final long bestN;
+  private final double bestMean;
+  private final double bestM2;
+
+  AnnealingCheckpoint(double maxTemperature, long[] elapsedMs, long[] lineupIndexes, long[] n, double[] means,
+      double[] m2s, long[] simulationsRequired, long[] simulationsSaved, long otherSimulationsRequired,
+      boolean hasBest, long bestIndex, long bestN, double bestMean, double bestM2) {
+    this.maxTemperature = maxTemperature;
+    this.elapsedMs = elapsedMs;
+    this.lineupIndexes = lineupIndexes;
+    this.n = n;
+    this.means = means;
+    this.m2s = m2s;
+    this.simulationsRequired = simulationsRequired;
+    this.simulationsSaved = simulationsSaved;
+    this.otherSimulationsRequired = otherSimulationsRequired;
+    this.hasBest = hasBest;
+    this.bestIndex = bestIndex;
+    this.bestN = bestN;
+    this.bestMean = bestMean;
+    this.bestM2 = bestM2;
+  }
+
+  public byte[] toBytes() {
+    try {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      try (DataOutputStream out = new DataOutputStream(new GZIPOutputStream(bytes))) {
+        out.writeByte(VERSION);
+        out.writeDouble(maxTemperature);
+        writeVarLong(out, lineupIndexes.length);
+        for (int i = 0; i < lineupIndexes.length; i++) {
+          writeVarLong(out, elapsedMs[i]);
+          writeVarLong(out, lineupIndexes[i]);
+          writeVarLong(out, n[i]);
+          out.writeDouble(means[i]);
+          out.writeDouble(m2s[i]);
+          writeVarLong(out, simulationsRequired[i]);
+          writeVarLong(out, simulationsSaved[i]);
+        }
+        writeVarLong(out, otherSimulationsRequired);
+        out.writeBoolean(hasBest);
+        if (hasBest) {
+          writeVarLong(out, bestIndex);
+          writeVarLong(out, bestN);
+          out.writeDouble(bestMean);
+          out.writeDouble(bestM2);
+        }
+      }
+      return bytes.toByteArray();
+    } catch (IOException e) {
+      // Nothing here does real I/O
+      throw new RuntimeException(e);
+    }
+  }
+
+  public static AnnealingCheckpoint fromBytes(byte[] data) {
+    try (DataInputStream in = new DataInputStream(new GZIPInputStream(new ByteArrayInputStream(data)))) {
+      int version = in.readUnsignedByte();
+      if (version != VERSION) {
+        throw new IllegalArgumentException("Unsupported checkpoint version " + version);
+      }
+      double maxTemperature = in.readDouble();
+      int size = Math.toIntExact(readVarLong(in));
+      long[] elapsedMs = new long[size];
+      long[] lineupIndexes = new long[size];
+      long[] n = new long[size];
+      double[] means = new double[size];
+      double[] m2s = new double[size];
+      long[] simulationsRequired = new long[size];
+      long[] simulationsSaved = new long[size];
+      for (int i = 0; i < size; i++) {
+        elapsedMs[i] = readVarLong(in);
+        lineupIndexes[i] = readVarLong(in);
+        n[i] = readVarLong(in);
+        means[i] = in.readDouble();
+        m2s[i] = in.readDouble();
+        simulationsRequired[i] = readVarLong(in);
+        simulationsSaved[i] = readVarLong(in);
+      }
+      long otherSimulationsRequired = readVarLong(in);
+      boolean hasBest = in.readBoolean();
+      long bestIndex = hasBest ? readVarLong(in) : 0;
+      long bestN = hasBest ? readVarLong(in) : 0;
+      double bestMean = hasBest ? in.readDouble() : 0;
+      double bestM2 = hasBest ? in.readDouble() : 0;
+      return new AnnealingCheckpoint(maxTemperature, elapsedMs, lineupIndexes, n, means, m2s, simulationsRequired,
+          simulationsSaved, otherSimulationsRequired, hasBest, bestIndex, bestN, bestMean, bestM2);
+    } catch (IOException e) {
+      throw new IllegalArgumentException("Unable to read checkpoint", e);
+    }
+  }
+
+  /**
+   * Writes a non-negative value seven bits at a time, low bits first
+   */
+  private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+    while ((value & ~0x7FL) != 0) {
+      out.writeByte((int) ((value & 0x7F) | 0x80));
+      value >>>= 7;
+    }
+    out.writeByte((int) value);
+  }
+
+  private static long readVarLong(DataInputStream in) throws IOException {
+    long value = 0;
+    for (int shift = 0; shift < Long.SIZE; shift += 7) {
+      int b = in.readUnsignedByte();
+      value |= (long) (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+    }
+    throw new IOException("Malformed varint");
+  }
+
+  public double getMaxTemperature() {
+    return maxTemperature;
+  }
+
+  /**
+   * @return the number of threads
+   */
+  public int size() {
+    return lineupIndexes.length;
+  }
+
+  /**
+   * @return how far along the cooling schedule the thread is
+   */
+  public long getElapsedMs(int thread) {
+    return elapsedMs[thread];
+  }
+
+  public long getLineupIndex(int thread) {
+    return lineupIndexes[thread];
+  }
+
+  public long getN(int thread) {
+    return n[thread];
+  }
+
+  public double getMean(int thread) {
+    return means[thread];
+  }
+
+  public double getM2(int thread) {
+    return m2s[thread];
+  }
+
+  public long getSimulationsRequired(int thread) {
+    return simulationsRequired[thread];
+  }
+
+  public long getSimulationsSaved(int thread) {
+    return simulationsSaved[thread];
+  }
+
+  public long getOtherSimulationsRequired() {
+    return otherSimulationsRequired;
+  }
+
+  public boolean hasBest() {
+    return hasBest;
+  }
+
+  public long getBestIndex() {
+    return bestIndex;
+  }
+
+  public long getBestN() {
+    return bestN;
+  }
+
+  public double getBestMean() {
+    return bestMean;
+  }
+
+  public double getBestM2() {
+    return bestM2;
+  }
+
+}
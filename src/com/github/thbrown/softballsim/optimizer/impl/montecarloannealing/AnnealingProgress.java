@@ -0,0 +1,276 @@
+package com.github.thbrown.softballsim.optimizer.impl.montecarloannealing;
+
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.function.Supplier;
+import org.apache.commons.math3.stat.descriptive.StatisticalSummary;
+import com.github.thbrown.softballsim.Result;
+import com.github.thbrown.softballsim.ResultStatusEnum;
+import com.github.thbrown.softballsim.datasource.ProgressTracker;
+import com.github.thbrown.softballsim.lineup.BattingLineup;
+import com.github.thbrown.softballsim.lineupindexer.BattingLineupIndexer;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloadaptive.LineupComposite;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive.HitGenerator;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive.SimulationEngineEnum;
+
+/**
+ * Collects the state of every annealing thread so progress results can carry an
+ * {@link AnnealingCheckpoint}, and holds the checkpoint the run resumed from, if any. Every thread locks
+ * this, so threads keep their state to themselves and only record it here when the progress tracker is
+ * due for a result or once in a while for checkpoints. The checkpoint is only built when a result is.
+ *
+ * This class is thread safe.
+ */
+public class AnnealingProgress {
+
+  // Fewer games than this give a mean that's too noisy to be considered the best lineup
+  static final long MIN_GAMES_FOR_BEST = 1000;
+
+  private final BattingLineupIndexer<?> indexer;
+  private final boolean lowest;
+  private final long durationMs;
+  private final AnnealingCheckpoint resumeFrom;
+  private final long previousElapsedTimeMs;
+  private final long startTimestamp = System.currentTimeMillis();
+
+  private double maxTemperature = Double.NaN;
+
+  // One entry per thread, lineups are null until the thread records its state
+  private final long[] elapsedMs;
+  private final BattingLineup[] lineups;
+  private final long[] n;
+  private final double[] means;
+  private final double[] m2s;
+  private final long[] simulationsRequired;
+  private final long[] simulationsSaved;
+  private long otherSimulationsRequired;
+
+  private BattingLineup bestLineup;
+  private long bestN;
+  private double bestMean;
+  private double bestM2;
+
+  /**
+   * @param existingResult the run resumes from this result's checkpoint, if it has one
+   */
+  public AnnealingProgress(BattingLineupIndexer<?> indexer, int threads, boolean lowest, long durationMs,
+      Result existingResult) {
+    this.indexer = indexer;
+    this.lowest = lowest;
+    this.durationMs = durationMs;
+    this.resumeFrom = Optional.ofNullable(existingResult).map(Result::getCheckpoint)
+        .map(AnnealingCheckpoint::fromBytes).orElse(null);
+    // Without a checkpoint the time spent before doesn't count, the run starts over
+    this.previousElapsedTimeMs = resumeFrom == null ? 0 : existingResult.getElapsedTimeMs();
+    this.elapsedMs = new long[threads];
+    this.lineups = new BattingLineup[threads];
+    this.n = new long[threads];
+    this.means = new double[threads];
+    this.m2s = new double[threads];
+    this.simulationsRequired = new long[threads];
+    this.simulationsSaved = new long[threads];
+
+    if (resumeFrom != null) {
+      maxTemperature = resumeFrom.getMaxTemperature();
+      for (int i = 0; i < Math.min(threads, resumeFrom.size()); i++) {
+        elapsedMs[i] = resumeFrom.getElapsedMs(i);
+        lineups[i] = indexer.getLineup(resumeFrom.getLineupIndex(i));
+        n[i] = resumeFrom.getN(i);
+        means[i] = resumeFrom.getMean(i);
+        m2s[i] = resumeFrom.getM2(i);
+        simulationsRequired[i] = resumeFrom.getSimulationsRequired(i);
+        simulationsSaved[i] = resumeFrom.getSimulationsSaved(i);
+      }
+      otherSimulationsRequired = resumeFrom.getOtherSimulationsRequired();
+      if (resumeFrom.hasBest()) {
+        bestLineup = indexer.getLineup(resumeFrom.getBestIndex());
+        bestN = resumeFrom.getBestN();
+        bestMean = resumeFrom.getBestMean();
+        bestM2 = resumeFrom.getBestM2();
+      }
+    }
+  }
+
+  /**
+   * Copies the state recorded so far, see {@link #snapshot()}
+   */
+  private AnnealingProgress(AnnealingProgress other) {
+    this.indexer = other.indexer;
+    this.lowest = other.lowest;
+    this.durationMs = other.durationMs;
+    this.resumeFrom = other.resumeFrom;
+    this.previousElapsedTimeMs = other.previousElapsedTimeMs;
+    this.maxTemperature = other.maxTemperature;
+    this.elapsedMs = other.elapsedMs.clone();
+    this.lineups = other.lineups.clone();
+    this.n = other.n.clone();
+    this.means = other.means.clone();
+    this.m2s = other.m2s.clone();
+    this.simulationsRequired = other.simulationsRequired.clone();
+    this.simulationsSaved = other.simulationsSaved.clone();
+    this.otherSimulationsRequired = other.otherSimulationsRequired;
+    this.bestLineup = other.bestLineup;
+    this.bestN = other.bestN;
+    this.bestMean = other.bestMean;
+    this.bestM2 = other.bestM2;
+  }
+
+  /**
+   * @return the checkpoint this run resumes from, or null if it starts fresh
+   */
+  public AnnealingCheckpoint getResumeFrom() {
+    return resumeFrom;
+  }
+
+  public synchronized void setMaxTemperature(double maxTemperature) {
+    this.maxTemperature = maxTemperature;
+  }
+
+  /**
+   * Records a thread's position on the cooling schedule, its active lineup and the games simulated for
+   * that lineup. The simulation counts include the ones from before the run resumed.
+   */
+  public synchronized void update(int thread, long elapsedMs, BattingLineup lineup, StatisticalSummary stats,
+      long simulationsRequired, long simulationsSaved) {
+    this.elapsedMs[thread] = elapsedMs;
+    this.lineups[thread] = lineup;
+    this.n[thread] = stats.getN();
+    this.means[thread] = getMean(stats);
+    this.m2s[thread] = getM2(stats);
+    this.simulationsRequired[thread] = simulationsRequired;
+    this.simulationsSaved[thread] = simulationsSaved;
+  }
+
+  /**
+   * Counts simulations the optimizer ran outside of the threads
+   */
+  public synchronized void addSimulationsRequired(long simulations) {
+    otherSimulationsRequired += simulations;
+  }
+
+  /**
+   * Makes the lineup the best one if enough games were simulated for it and its mean is better, or if
+   * it's already the best one and more games were simulated for it.
+   */
+  public synchronized void offerBest(BattingLineup lineup, StatisticalSummary stats) {
+    if (stats.getN() < MIN_GAMES_FOR_BEST) {
+      return;
+    }
+    boolean better = bestLineup == null || (lowest ? stats.getMean() < bestMean : stats.getMean() > bestMean);
+    boolean moreAccurate = lineup.equals(bestLineup) && stats.getN() > bestN;
+    if (better || moreAccurate) {
+      setBest(lineup, stats);
+    }
+  }
+
+  /**
+   * Makes the lineup the best one no matter how it compares to the current best
+   */
+  public synchronized void setBest(BattingLineup lineup, StatisticalSummary stats) {
+    bestLineup = lineup;
+    bestN = stats.getN();
+    bestMean = getMean(stats);
+    bestM2 = getM2(stats);
+  }
+
+  /**
+   * @return a new composite with the best lineup's games, or null if there isn't a best lineup yet
+   */
+  public synchronized LineupComposite getBest(HitGenerator hitGenerator, SimulationEngineEnum engine) {
+    if (bestLineup == null) {
+      return null;
+    }
+    LineupComposite composite = new LineupComposite(bestLineup, hitGenerator, null, engine);
+    composite.restoreSamples(bestN, bestMean, bestM2);
+    return composite;
+  }
+
+  /**
+   * @return the checkpoint for the recorded state, or null if some thread hasn't recorded its state yet
+   */
+  public synchronized AnnealingCheckpoint toCheckpoint() {
+    if (Double.isNaN(maxTemperature) || Arrays.asList(lineups).contains(null)) {
+      return null;
+    }
+    long[] lineupIndexes = new long[lineups.length];
+    for (int i = 0; i < lineups.length; i++) {
+      lineupIndexes[i] = getIndex(indexer, lineups[i]);
+    }
+    return new AnnealingCheckpoint(maxTemperature, elapsedMs.clone(), lineupIndexes, n.clone(), means.clone(),
+        m2s.clone(), simulationsRequired.clone(), simulationsSaved.clone(), otherSimulationsRequired,
+        bestLineup != null, bestLineup == null ? 0 : getIndex(indexer, bestLineup), bestN, bestMean, bestM2);
+  }
+
+  /**
+   * @return an in progress result for the recorded state. It has the best lineup, or the lineup with
+   *         the most games if there isn't a best one yet, and a checkpoint if every thread has recorded
+   *         its state.
+   */
+  public synchronized Result toResult() {
+    return toResult(getElapsedTimeMs());
+  }
+
+  /**
+   * @return builds the same result as {@link #toResult()} for the state recorded so far. Later updates
+   *         don't change what it builds, so it can be handed to
+   *         {@link ProgressTracker#updateProgress(Supplier)}.
+   */
+  public synchronized Supplier<Result> snapshot() {
+    AnnealingProgress copy = new AnnealingProgress(this);
+    long elapsedTimeMs = getElapsedTimeMs();
+    return () -> copy.toResult(elapsedTimeMs);
+  }
+
+  private synchronized Result toResult(long elapsedTimeMs) {
+    BattingLineup lineup = bestLineup;
+    double score = bestMean;
+    long maxN = -1;
+    long countCompleted = durationMs;
+    for (int i = 0; i < lineups.length; i++) {
+      if (lineups[i] == null) {
+        countCompleted = 0;
+        continue;
+      }
+      if (bestLineup == null && n[i] > maxN) {
+        lineup = lineups[i];
+        score = means[i];
+        maxN = n[i];
+      }
+      countCompleted = Math.min(countCompleted, elapsedMs[i]);
+    }
+    AnnealingCheckpoint checkpoint = toCheckpoint();
+    return new MonteCarloAnnealingResult(lineup, score, durationMs, countCompleted, elapsedTimeMs,
+        ResultStatusEnum.IN_PROGRESS, getSimulationsRequired(), getSimulationsSaved(),
+        checkpoint == null ? null : checkpoint.toBytes());
+  }
+
+  /**
+   * @return the time spent on this optimization, including before it resumed
+   */
+  public long getElapsedTimeMs() {
+    return previousElapsedTimeMs + System.currentTimeMillis() - startTimestamp;
+  }
+
+  public synchronized long getSimulationsRequired() {
+    return Arrays.stream(simulationsRequired).sum() + otherSimulationsRequired;
+  }
+
+  public synchronized long getSimulationsSaved() {
+    return Arrays.stream(simulationsSaved).sum();
+  }
+
+  // The recorded lineups all came from the indexer, so they're its lineup type
+  @SuppressWarnings("unchecked")
+  private static <T extends BattingLineup> long getIndex(BattingLineupIndexer<T> indexer, BattingLineup lineup) {
+    return indexer.getIndex((T) lineup);
+  }
+
+  private static double getMean(StatisticalSummary stats) {
+    return stats.getN() == 0 ? 0 : stats.getMean();
+  }
+
+  private static double getM2(StatisticalSummary stats) {
+    return stats.getN() < 2 ? 0 : stats.getVariance() * (stats.getN() - 1);
+  }
+
+}
@@ -0,0 +1,111 @@
+package com.github.thbrown.softballsim.optimizer.impl.montecarloannealing;
+
+import java.util.Arrays;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloadaptive.LineupComposite;
+
+/**
+ * Bounded cache of the lineups an annealing thread has simulated games for, keyed by the lineup's
+ * slots. Lookups take a long key computed from the slots (see {@link #getKey(int[])}) along with the
+ * slots themselves, which settle any lineups that share a key.
+ *
+ * Keys are kept in a primitive open addressing table so looking up a lineup doesn't box, hash objects
+ * or allocate map entries. A key can only live in the few table positions after the one it hashes to.
+ * When all of those are taken, the lineup with the fewest simulated games among them is evicted, those
+ * are the cheapest to simulate again.
+ *
+ * This class is not thread safe, each thread should use its own cache.
+ */
+public class LineupCompositeCache {
+
+  // Number of table positions a key can live in
+  private static final int PROBES = 8;
+
+  // Slots of lineups with up to this many players fit in a long at 4 bits each
+  private static final int MAX_PACKED_PLAYERS = 16;
+
+  private final long[] keys;
+  private final int[][] keySlots;
+  private final LineupComposite[] composites;
+  private final int mask;
+  private final int shift;
+
+  /**
+   * @param size the number of lineups the cache can hold, this is rounded up to a power of two
+   */
+  public LineupCompositeCache(int size) {
+    int capacity = Math.max(PROBES, Integer.highestOneBit(size - 1) << 1);
+    this.keys = new long[capacity];
+    this.keySlots = new int[capacity][];
+    this.composites = new LineupComposite[capacity];
+    this.mask = capacity - 1;
+    this.shift = Long.SIZE - Integer.numberOfTrailingZeros(capacity);
+  }
+
+  /**
+   * @param slots a lineup's slots, as produced by a
+   *        {@link com.github.thbrown.softballsim.lineupindexer.LineupCursor}
+   * @return a key for the slots. Keys are unique among all arrangements of up to 16 players, larger
+   *         lineups may share a key.
+   */
+  public static long getKey(int[] slots) {
+    long key = 0;
+    if (slots.length > MAX_PACKED_PLAYERS) {
+      for (int slot : slots) {
+        key = (key + slot + 1) * 0x9E3779B97F4A7C15L;
+      }
+      return key;
+    }
+    for (int slot : slots) {
+      key = (key << 4) | slot;
+    }
+    return key;
+  }
+
+  /**
+   * @param key {@link #getKey(int[])} of the slots
+   * @return the cached composite for the slots, or null if there isn't one
+   */
+  public LineupComposite get(long key, int[] slots) {
+    int start = getStart(key);
+    for (int i = 0; i < PROBES; i++) {
+      int position = (start + i) & mask;
+      if (composites[position] == null) {
+        // Nothing is ever removed without being replaced, so the key can't be further along
+        return null;
+      }
+      if (keys[position] == key && Arrays.equals(keySlots[position], slots)) {
+        return composites[position];
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Caches composite under the slots, which must not already be cached. The slots are copied.
+   *
+   * @param key {@link #getKey(int[])} of the slots
+   */
+  public void put(long key, int[] slots, LineupComposite composite) {
+    int start = getStart(key);
+    int evict = start;
+    for (int i = 0; i < PROBES; i++) {
+      int position = (start + i) & mask;
+      if (composites[position] == null) {
+        evict = position;
+        break;
+      }
+      if (composites[position].getStats().getN() < composites[evict].getStats().getN()) {
+        evict = position;
+      }
+    }
+    keys[evict] = key;
+    keySlots[evict] = slots.clone();
+    composites[evict] = composite;
+  }
+
+  private int getStart(long key) {
+    // Fibonacci hashing, packed keys of neighboring lineups only differ in a few bits
+    return (int) ((key * 0x9E3779B97F4A7C15L) >>> shift);
+  }
+
+}
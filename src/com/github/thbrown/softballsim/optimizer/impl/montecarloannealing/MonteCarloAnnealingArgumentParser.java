@@ -1,6 +1,7 @@
 package com.github.thbrown.softballsim.optimizer.impl.montecarloannealing;
 
 import java.util.Map;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive.SimulationEngineEnum;
 
 public class MonteCarloAnnealingArgumentParser {
 
@@ -9,18 +10,33 @@ public class MonteCarloAnnealingArgumentParser {
   public final static String LOWEST_SCORE = "L";
   public final static String ALPHA = "A";
   public final static String THREADS = "T";
+  public final static String ENGINE = "E";
+  public final static String UNPAIRED = "U";
+  public final static String RAW_MEANS = "R";
+  public final static String INDIFFERENCE_ZONE = "Z";
+  public final static String PARALLEL_TEMPERING = "P";
 
   private final int duration;
   private final int innings;
   private final boolean lowestScore;
   private final double alpha;
   private final int threads;
+  private final SimulationEngineEnum engine;
+  private final boolean paired;
+  private final boolean controlVariates;
+  private final double indifferenceZone;
+  private final boolean parallelTempering;
 
   public MonteCarloAnnealingArgumentParser(Map<String, String> args) {
     duration = Integer.parseInt(args.get(DURATION));
     innings = Integer.parseInt(args.get(INNINGS));
     alpha = Double.parseDouble(args.get(ALPHA));
     lowestScore = Boolean.parseBoolean(args.get(LOWEST_SCORE));
+    engine = SimulationEngineEnum.getEnumFromName(args.get(ENGINE));
+    paired = !Boolean.parseBoolean(args.get(UNPAIRED));
+    controlVariates = !Boolean.parseBoolean(args.get(RAW_MEANS));
+    indifferenceZone = Double.parseDouble(args.get(INDIFFERENCE_ZONE));
+    parallelTempering = Boolean.parseBoolean(args.get(PARALLEL_TEMPERING));
 
     String threadsString = args.get(THREADS);
     if (threadsString == null) {
@@ -49,4 +65,38 @@ public class MonteCarloAnnealingArgumentParser {
   public int getThreads() {
     return threads;
   }
+
+  public SimulationEngineEnum getEngine() {
+    return engine;
+  }
+
+  /**
+   * @return true if lineups should be compared using common random numbers and a paired t-test
+   */
+  public boolean isPaired() {
+    return paired;
+  }
+
+  /**
+   * @return true if t-tests should use control variate adjusted means and variances
+   */
+  public boolean isControlVariates() {
+    return controlVariates;
+  }
+
+  /**
+   * @return lineups shown to be within this many runs per game of each other are considered equally
+   *         good, 0 if comparisons should always run until there is a significant difference
+   */
+  public double getIndifferenceZone() {
+    return indifferenceZone;
+  }
+
+  /**
+   * @return true if each thread should anneal at its own fixed temperature and swap lineups with the
+   *         threads at neighboring temperatures, see {@link ReplicaExchange}
+   */
+  public boolean isParallelTempering() {
+    return parallelTempering;
+  }
 }
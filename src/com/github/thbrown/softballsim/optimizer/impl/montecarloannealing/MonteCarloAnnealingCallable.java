@@ -1,12 +1,8 @@
 package com.github.thbrown.softballsim.optimizer.impl.montecarloannealing;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
-import java.util.*;
+import java.util.Collections;
 import java.util.concurrent.ThreadLocalRandom;
-import org.apache.commons.math3.stat.descriptive.SummaryStatistics;
-import org.apache.commons.math3.util.Pair;
+import org.apache.commons.math3.stat.descriptive.StatisticalSummary;
 import com.github.thbrown.softballsim.Result;
 import com.github.thbrown.softballsim.ResultStatusEnum;
 import com.github.thbrown.softballsim.datasource.ProgressTracker;
@@ -14,14 +10,14 @@ import com.github.thbrown.softballsim.lineup.BattingLineup;
 import com.github.thbrown.softballsim.lineupindexer.BattingLineupIndexer;
 import com.github.thbrown.softballsim.optimizer.impl.montecarloadaptive.LineupComposite;
 import com.github.thbrown.softballsim.optimizer.impl.montecarloadaptive.TTestTask;
-import com.github.thbrown.softballsim.optimizer.impl.montecarloadaptive.TTestTaskResult;
 import com.github.thbrown.softballsim.optimizer.impl.montecarloadaptive.statstransform.RangeSummaryStatisticsTransform;
-import com.github.thbrown.softballsim.optimizer.impl.montecarloadaptive.statstransform.SummaryStatisticsTransform;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive.GameScoreAccumulator;
 import com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive.HitGenerator;
-import com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive.MonteCarloGameSimulation;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive.SimulationEngineEnum;
 import com.github.thbrown.softballsim.util.Logger;
-import com.github.thbrown.softballsim.util.MiscUtils;
+import com.github.thbrown.softballsim.util.LandscapeStatistics;
 import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
 
 public class MonteCarloAnnealingCallable implements Callable<Result> {
 
@@ -29,9 +25,13 @@ public class MonteCarloAnnealingCallable implements Callable<Result> {
   private static final int PRELIMINARY_DATA_SAMPLE_SIZE = 100;
   private static final int PRELIMINARY_DATA_GAME_SIMULATIONS = 10000;
 
-  private static final int FINAL_RESULT_ITERATIONS = 1000000;
+  static final int FINAL_RESULT_ITERATIONS = 1000000;
   private static final int MAX_CACHE_SIZE = 10000;
 
+  // How often our state is copied into the shared progress when the tracker isn't due for a result,
+  // so checkpoints built from another thread's update aren't far behind
+  private static final long RECORD_INTERVAL_MS = 1000;
+
   // [0-1] A value closer to 0 results in a steeper decline in temperature near
   // the beginning
   private static final double SKEW = 1;
@@ -41,18 +41,69 @@ public class MonteCarloAnnealingCallable implements Callable<Result> {
   private int INNINGS;
   private long DURATION;
   private int THREADS;
-  private BattingLineupIndexer indexer;
+  private SimulationEngineEnum ENGINE;
+  private boolean PAIRED;
+  private boolean CONTROL_VARIATES;
+  private double INDIFFERENCE_ZONE;
+  private BattingLineupIndexer<?> indexer;
   private ProgressTracker progressTracker;
 
+  // Null unless this callable is one replica of a parallel tempering ladder
+  private ReplicaExchange exchange;
+  private int replica;
+
+  // Null if this callable doesn't pool its samples with other threads
+  private SharedLineupStatistics sharedStatistics;
+
+  // Where this callable records its state for checkpoints, and where it may resume from
+  private AnnealingProgress progress;
+
   public MonteCarloAnnealingCallable(double ALPHA, boolean LOWEST, int INNINGS, long DURATION,
-      BattingLineupIndexer indexer, int THREADS, ProgressTracker progressTracker) {
+      BattingLineupIndexer<?> indexer, int THREADS, SimulationEngineEnum ENGINE, boolean PAIRED,
+      boolean CONTROL_VARIATES, double INDIFFERENCE_ZONE, ProgressTracker progressTracker) {
+    this(ALPHA, LOWEST, INNINGS, DURATION, indexer, THREADS, ENGINE, PAIRED, CONTROL_VARIATES, INDIFFERENCE_ZONE,
+        progressTracker, null, 0, null, new AnnealingProgress(indexer, 1, LOWEST, DURATION * 1000, null));
+  }
+
+  /**
+   * @param exchange if not null, this callable runs at the replica's fixed temperature on the exchange's
+   *        ladder instead of following a cooling schedule, see {@link ReplicaExchange}
+   * @param sharedStatistics if not null, the games simulated for each lineup are pooled with the games
+   *        other threads simulated for it
+   * @param progress this callable records its state here as the replica'th thread, and resumes from the
+   *        replica'th thread's state if progress has a checkpoint to resume from
+   */
+  public MonteCarloAnnealingCallable(double ALPHA, boolean LOWEST, int INNINGS, long DURATION,
+      BattingLineupIndexer<?> indexer, int THREADS, SimulationEngineEnum ENGINE, boolean PAIRED,
+      boolean CONTROL_VARIATES, double INDIFFERENCE_ZONE, ProgressTracker progressTracker,
+      ReplicaExchange exchange, int replica, SharedLineupStatistics sharedStatistics, AnnealingProgress progress) {
     this.ALPHA = ALPHA;
     this.LOWEST = LOWEST;
     this.INNINGS = INNINGS;
     this.DURATION = DURATION;
     this.indexer = indexer;
     this.THREADS = THREADS;
+    this.ENGINE = ENGINE;
+    this.PAIRED = PAIRED;
+    this.CONTROL_VARIATES = CONTROL_VARIATES;
+    this.INDIFFERENCE_ZONE = INDIFFERENCE_ZONE;
     this.progressTracker = progressTracker;
+    this.exchange = exchange;
+    this.replica = replica;
+    this.sharedStatistics = sharedStatistics;
+    this.progress = progress;
+  }
+
+  /**
+   * Uses summary statistics about a sampling of all possible lineups to determine the highest
+   * temperature worth annealing at. Every thread needs the same statistics, so they're computed by all
+   * the threads together, plus up to helperCount tasks submitted to helpers if that's not null.
+   */
+  static double getMaxTemperature(BattingLineupIndexer<?> indexer, int innings, Executor helpers, int helperCount,
+      ProgressTracker progressTracker) {
+    StatisticalSummary dataStats = LandscapeStatistics.get(indexer, innings, PRELIMINARY_DATA_SAMPLE_SIZE,
+        PRELIMINARY_DATA_GAME_SIMULATIONS, helpers, helperCount, progressTracker);
+    return dataStats.getStandardDeviation() * 3;
   }
 
   @Override
@@ -60,117 +111,180 @@ public class MonteCarloAnnealingCallable implements Callable<Result> {
     // Start the timer
     long startTimestamp = System.currentTimeMillis();
 
-    // Calc next progress repor time
-    long nextUpdateTime = startTimestamp + 1000 * ThreadLocalRandom.current().nextInt(0, THREADS * 2);
-
-    // Use summary statistics about a sampling of all possible lineups to determine out annealing
-    // parameters
-    SummaryStatistics dataStats = MiscUtils.getSummaryStatisticsForIndexer(indexer, PRELIMINARY_DATA_SAMPLE_SIZE,
-        PRELIMINARY_DATA_GAME_SIMULATIONS, INNINGS);
-    double maxTemperature = dataStats.getStandardDeviation() * 3;
+    // A checkpoint has the schedule's temperature, so the landscape doesn't need to be sampled again
+    AnnealingCheckpoint checkpoint = progress.getResumeFrom();
+    boolean resume = checkpoint != null && replica < checkpoint.size();
+
+    // Determine our annealing parameters
+    double maxTemperature = checkpoint != null ? checkpoint.getMaxTemperature()
+        : getMaxTemperature(indexer, INNINGS, null, 0, progressTracker);
+    progress.setMaxTemperature(maxTemperature);
+
+    // Choose a random lineup, or pick up the one we had. Annealing moves through neighboring lineups by
+    // rearranging these slots in place, see BattingLineupIndexer.moveToRandomNeighbor(...)
+    long startIndex =
+        resume ? checkpoint.getLineupIndex(replica) : ThreadLocalRandom.current().nextLong(0, indexer.size());
+    int[] slots = indexer.getCursor(startIndex).getSlots().clone();
+    int[] undo = new int[slots.length];
+    BattingLineup activeLineup = indexer.getLineup(slots);
+    // All neighbors contain the same players, so they can all share this HitGenerator
+    HitGenerator hitGenerator =
+        exchange == null ? new HitGenerator(activeLineup.asList()) : exchange.getHitGenerator();
+    LineupComposite activeComposite = new LineupComposite(activeLineup, hitGenerator, null, ENGINE);
+    if (resume) {
+      activeComposite.restoreSamples(checkpoint.getN(replica), checkpoint.getMean(replica),
+          checkpoint.getM2(replica));
+    }
 
-    // Choose a random lineup
-    long activeLineupIndex = ThreadLocalRandom.current().nextLong(0, indexer.size());
-    BattingLineup activeLineup = indexer.getLineup(activeLineupIndex);
-    HitGenerator activeLineupHitGenerator = new HitGenerator(activeLineup.asList());
-    LineupComposite activeComposite = new LineupComposite(activeLineup, activeLineupHitGenerator, activeLineupIndex);
+    // Continue the schedule where it left off. Threads that weren't in the checkpoint join the first
+    // thread's schedule.
+    final long previousElapsedMs = checkpoint == null ? 0 : checkpoint.getElapsedMs(resume ? replica : 0);
+    final long previousSimulationsRequired = resume ? checkpoint.getSimulationsRequired(replica) : 0;
+    final long previousSimulationsSaved = resume ? checkpoint.getSimulationsSaved(replica) : 0;
 
     // We are pretty much guaranteed to hit the same lineups multiple times, especially at the end of
     // the optimization, so we'll cache our most recent computations for a speed increase
-    LinkedHashMap<Long, LineupComposite> cachedLineups =
-        new LinkedHashMap<>() {
-          @Override
-          protected boolean removeEldestEntry(Map.Entry<Long, LineupComposite> eldest) {
-            return size() > MAX_CACHE_SIZE;
-          }
-        };
+    LineupCompositeCache cachedLineups = new LineupCompositeCache(MAX_CACHE_SIZE);
+    int[] activeSlots = slots.clone();
+    long activeKey = LineupCompositeCache.getKey(activeSlots);
+    cachedLineups.put(activeKey, activeSlots, activeComposite);
+
+    // Other threads may have already simulated games for the lineups we visit
+    SharedLineupStatistics.Client shared = sharedStatistics == null ? null : sharedStatistics.newClient();
+    if (shared != null) {
+      shared.load(activeKey, activeSlots, activeComposite);
+    }
 
-    long totalSimulations = 0;
+    // One task and transform are reused for every comparison so the loop doesn't create garbage
+    RangeSummaryStatisticsTransform transform = new RangeSummaryStatisticsTransform(maxTemperature);
+    TTestTask task = new TTestTask(Collections.emptyList(), transform, new TTestTask.Options(INNINGS, ALPHA)
+        .lowest(LOWEST).paired(PAIRED).controlVariates(CONTROL_VARIATES).indifferenceZone(INDIFFERENCE_ZONE));
 
     final long durationMs = this.DURATION * 1000;
     final long startTime = System.currentTimeMillis();
-    for (long i = 0; i < durationMs; i = System.currentTimeMillis() - startTime) {
-
-      double temperature = this.getTemperature(maxTemperature, 0, durationMs, i);
+    long nextExchangeTime = startTime + ReplicaExchange.EXCHANGE_INTERVAL_MS;
+    long nextRecordTime = startTime + RECORD_INTERVAL_MS;
+    // The best lineup we've held, it's offered to the shared progress along with the rest of our state
+    LineupComposite bestComposite = null;
+    progress.update(replica, previousElapsedMs, activeComposite.getLineup(), activeComposite.getStats(),
+        previousSimulationsRequired, previousSimulationsSaved);
+    try {
+      for (long i = previousElapsedMs; i < durationMs; i =
+          previousElapsedMs + System.currentTimeMillis() - startTime) {
+
+        double temperature = exchange == null ? this.getTemperature(maxTemperature, 0, durationMs, i)
+            : exchange.getTemperature(replica);
+
+        // Move to a random neighbor, this is undone below if the neighbor isn't accepted
+        if (!indexer.moveToRandomNeighbor(slots, undo)) {
+          // A single player lineup has nothing to compare
+          break;
+        }
 
-      // Get a random neighbor
-      Pair<Long, BattingLineup> comparisonPair = indexer.getRandomNeighbor(activeComposite.getIndex());
+        long comparisonKey = LineupCompositeCache.getKey(slots);
+        LineupComposite comparisonComposite = cachedLineups.get(comparisonKey, slots);
+        if (comparisonComposite == null) {
+          comparisonComposite = new LineupComposite(indexer.getLineup(slots), hitGenerator, null, ENGINE);
+          cachedLineups.put(comparisonKey, slots, comparisonComposite);
+          if (shared != null) {
+            shared.load(comparisonKey, slots, comparisonComposite);
+          }
+        } else if (shared != null) {
+          // Pick up the games other threads simulated for it since we last looked
+          shared.pool(comparisonKey, slots, comparisonComposite);
+        }
+        // Otherwise, we've already done some game simulations on this lineup. Re-use lineup
+        // composite so we don't have to re-compute everything
 
-      long comparisonLinupIndex = comparisonPair.getFirst();
-      BattingLineup comparisonLineup = comparisonPair.getSecond();
-      HitGenerator comparisonLineupHitGenerator = new HitGenerator(comparisonLineup.asList());
-      LineupComposite comparisonComposite = new LineupComposite(comparisonLineup, comparisonLineupHitGenerator,
-          comparisonLinupIndex);
+        if (shared != null) {
+          shared.pool(activeKey, activeSlots, activeComposite);
+        }
 
-      if (cachedLineups.containsKey(comparisonLinupIndex)) {
-        // We've already done some game simulations on this lineup. Re-use lineup
-        // composite so we don't have to re-compute everything
-        comparisonComposite = cachedLineups.get(comparisonLinupIndex);
-      } else {
-        cachedLineups.put(comparisonLinupIndex, comparisonComposite);
-      }
+        // Simulate both until we achieve a small enough t-value (or we reach the max number of allowed
+        // optimizations). The transform modifies the tTest such that it now tells us the confidence that
+        // the means of the two populations are within 'temperature' of each other. This requires a smaller
+        // sample size to determine.
+        transform.setRange(temperature);
+        task.compare(activeComposite, comparisonComposite);
+
+        // Share the games we just simulated
+        if (shared != null) {
+          shared.pool(activeKey, activeSlots, activeComposite);
+          shared.pool(comparisonKey, slots, comparisonComposite);
+        }
 
-      // Simulate both until we achieve a small enough t-value (or we reach the max number of allowed
-      // optimizations)
-      List<LineupComposite> lineupsToTTest = new ArrayList<>(2);
-      lineupsToTTest.add(activeComposite);
-      lineupsToTTest.add(comparisonComposite);
-
-      // This transform modifies the tTest such that it now tells us the confidence that the means of the
-      // two populations are within 'temperature' of each other. This requires a smaller sample size to
-      // determine.
-      SummaryStatisticsTransform transform = new RangeSummaryStatisticsTransform(temperature);
-      TTestTask task = new TTestTask(lineupsToTTest, INNINGS, ALPHA, transform, LOWEST);
-      TTestTaskResult result = task.call();
-
-      totalSimulations += result.getSimulationsRequired();
-
-      // Update the two lineupComposites under test TTest returns the best lineup composite, we'll need to
-      // check whether that one is the active or comparison
-      if (result.getBestLineupComposite().equals(activeComposite)) {
-        activeComposite = result.getBestLineupComposite();
-        comparisonComposite = result.getEliminatedLineupComposites().iterator().next(); // Should only have one element
-      } else {
-        comparisonComposite = result.getBestLineupComposite();
-        activeComposite = result.getEliminatedLineupComposites().iterator().next(); // Should only have one element
-      }
+        // Accept the comparisonLineup if the mean difference in runs is less than the temperature
+        double diff = 0;
+        if (LOWEST) {
+          diff = comparisonComposite.getAdjustedMean() - activeComposite.getAdjustedMean();
+        } else {
+          diff = activeComposite.getAdjustedMean() - comparisonComposite.getAdjustedMean();
+        }
 
-      // Accept the comparisonLineup if the mean difference in runs is less than the temperature
-      // this.getTemperature(maxTemperature, annealingStartTimestamp, annealingStartTimestamp +
-      // parsedArguments.getDuration(), System.currentTimeMillis());
-      double diff = 0;
-      if (LOWEST) {
-        diff = comparisonComposite.getStats().getMean() - activeComposite.getStats().getMean();
-      } else {
-        diff = activeComposite.getStats().getMean() - comparisonComposite.getStats().getMean();
-      }
+        if (diff < temperature) {
+          // Logger.log(comparisonComposite.getStats().getMean() + " is better than " +
+          // activeComposite.getStats().getMean());
+          activeComposite = comparisonComposite;
+          activeKey = comparisonKey;
+          System.arraycopy(slots, 0, activeSlots, 0, slots.length);
+        } else {
+          indexer.undoMove(slots, undo);
+        }
 
-      if (diff < temperature) {
-        // Logger.log(comparisonComposite.getStats().getMean() + " is better than " +
-        // activeComposite.getStats().getMean());
-        activeComposite = comparisonComposite;
-      }
+        // Give the neighboring replicas on the ladder a chance to swap lineups with this one
+        if (exchange != null && System.currentTimeMillis() >= nextExchangeTime) {
+          LineupComposite exchanged = exchange.exchange(replica, slots, activeComposite);
+          if (exchanged != activeComposite) {
+            System.arraycopy(slots, 0, activeSlots, 0, slots.length);
+            activeKey = LineupCompositeCache.getKey(activeSlots);
+            activeComposite = cachedLineups.get(activeKey, activeSlots);
+            if (activeComposite == null) {
+              activeComposite = exchanged;
+              cachedLineups.put(activeKey, activeSlots, activeComposite);
+            }
+          }
+          nextExchangeTime = System.currentTimeMillis() + ReplicaExchange.EXCHANGE_INTERVAL_MS;
+        }
 
-      // Update the progress if it's time and our result is better than current best one
-      if (progressTracker != null && System.currentTimeMillis() > nextUpdateTime) {
-        Result newResult =
-            new MonteCarloAnnealingResult(activeComposite.getLineup(),
-                activeComposite.getStats().getMean(), (long) durationMs, (long) i,
-                System.currentTimeMillis() - startTimestamp, ResultStatusEnum.IN_PROGRESS);
+        if (activeComposite.getStats().getN() >= AnnealingProgress.MIN_GAMES_FOR_BEST
+            && (bestComposite == null || isBetter(activeComposite, bestComposite))) {
+          bestComposite = activeComposite;
+        }
 
-        Result r = progressTracker.getCurrentResult();
-        if (newResult.getCountCompleted() > r.getCountCompleted()) {
-          progressTracker.updateProgress(newResult);
+        // The shared progress is locked by every thread, so our state is only copied into it when the
+        // tracker is due for a result or once in a while for checkpoints
+        boolean updateDue = progressTracker != null && progressTracker.isUpdateDue();
+        if (updateDue || System.currentTimeMillis() >= nextRecordTime) {
+          progress.update(replica, i, activeComposite.getLineup(), activeComposite.getStats(),
+              previousSimulationsRequired + task.getSimulationsRequired(),
+              previousSimulationsSaved + task.getSimulationsSaved());
+          if (bestComposite != null) {
+            progress.offerBest(bestComposite.getLineup(), bestComposite.getStats());
+          }
+          if (updateDue) {
+            progressTracker.updateProgress(progress.snapshot());
+          }
+          nextRecordTime = System.currentTimeMillis() + RECORD_INTERVAL_MS;
         }
-        nextUpdateTime = startTimestamp + 1000 * ThreadLocalRandom.current().nextInt(0, THREADS * 2);
+      }
+    } finally {
+      if (exchange != null) {
+        exchange.leave(replica);
       }
     }
 
     // Make sure the final result has at least FINAL_RESULT_ITERATIONS iterations
-    for (long i = activeComposite.getStats().getN(); i < FINAL_RESULT_ITERATIONS; i++) {
-      double score = MonteCarloGameSimulation.simulateGame(activeComposite.getLineup(), INNINGS,
-          activeComposite.getHitGenerator());
-      activeComposite.addSample(score);
+    if (activeComposite.getStats().getN() < FINAL_RESULT_ITERATIONS) {
+      GameScoreAccumulator accumulator = new GameScoreAccumulator();
+      activeComposite.getSimulator().simulateGames(INNINGS,
+          FINAL_RESULT_ITERATIONS - activeComposite.getStats().getN(), accumulator);
+      activeComposite.addSamples(accumulator);
+    }
+    progress.update(replica, durationMs, activeComposite.getLineup(), activeComposite.getStats(),
+        previousSimulationsRequired + task.getSimulationsRequired(),
+        previousSimulationsSaved + task.getSimulationsSaved());
+    if (bestComposite != null) {
+      progress.offerBest(bestComposite.getLineup(), bestComposite.getStats());
     }
 
     /*
@@ -181,10 +295,17 @@ public class MonteCarloAnnealingCallable implements Callable<Result> {
 
     return new MonteCarloAnnealingResult(activeComposite.getLineup(),
         activeComposite.getStats().getMean(), (long) durationMs, (long) durationMs,
-        System.currentTimeMillis() - startTimestamp, ResultStatusEnum.COMPLETE);
+        System.currentTimeMillis() - startTimestamp, ResultStatusEnum.COMPLETE,
+        previousSimulationsRequired + task.getSimulationsRequired(),
+        previousSimulationsSaved + task.getSimulationsSaved());
   };
 
 
+  private boolean isBetter(LineupComposite composite, LineupComposite other) {
+    return LOWEST ? composite.getStats().getMean() < other.getStats().getMean()
+        : composite.getStats().getMean() > other.getStats().getMean();
+  }
+
   private double getTemperature(double maxTemperature, long startIndex, long endIndex, long activeIndex) {
     // Determine alpha value such that the temperature is maxTemperature at
     // startIndex and nearly 0
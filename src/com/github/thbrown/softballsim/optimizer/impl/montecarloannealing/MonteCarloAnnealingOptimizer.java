@@ -1,6 +1,7 @@
 package com.github.thbrown.softballsim.optimizer.impl.montecarloannealing;
 
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ThreadPoolExecutor;
@@ -10,12 +11,19 @@ import com.github.thbrown.softballsim.datasource.ProgressTracker;
 import com.github.thbrown.softballsim.lineupindexer.BattingLineupIndexer;
 import com.github.thbrown.softballsim.lineupindexer.LineupTypeEnum;
 import com.github.thbrown.softballsim.optimizer.Optimizer;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloadaptive.BatchSplitter;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloadaptive.LineupComposite;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive.GameScoreAccumulator;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive.HitGenerator;
+import com.github.thbrown.softballsim.util.Logger;
 import java.util.concurrent.Callable;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 
 public class MonteCarloAnnealingOptimizer implements Optimizer<Result> {
 
+  private static final int SHARED_STATISTICS_SIZE_PER_THREAD = 10000;
+
   @Override
   public Result optimize(List<String> playersInLineup, LineupTypeEnum lineupType, DataStats battingData,
       Map<String, String> arguments, ProgressTracker progressTracker, Result existingResult) {
@@ -28,45 +36,117 @@ public class MonteCarloAnnealingOptimizer implements Optimizer<Result> {
 
     // Get the arguments as their expected types
     MonteCarloAnnealingArgumentParser parsedArguments = new MonteCarloAnnealingArgumentParser(arguments);
-    BattingLineupIndexer indexer = lineupType.getLineupIndexer(battingData, playersInLineup);
+    BattingLineupIndexer<?> indexer = lineupType.getLineupIndexer(battingData, playersInLineup);
     final double ALPHA = parsedArguments.getAlpha();
     final boolean LOWEST = parsedArguments.isLowestScore();
     final int THREADS = parsedArguments.getThreads();
     final int INNINGS = parsedArguments.getInnings();
     final long DURATION = parsedArguments.getDuration();
 
+    // Orders results from worst to best score
+    Comparator<Result> byScore = Comparator.comparingDouble(Result::getLineupScore);
+    Comparator<Result> byQuality = LOWEST ? byScore.reversed() : byScore;
+
     // We'll apply some simple parallelization - just run a different instance of
     // the optimizer on each
     // thread
     ThreadPoolExecutor executor = (ThreadPoolExecutor) Executors.newFixedThreadPool(THREADS);
+    try {
+      // Every instance records its state here for checkpoints and resumes from the existing result's
+      // checkpoint, if it has one
+      AnnealingProgress progress = new AnnealingProgress(indexer, THREADS, LOWEST, DURATION * 1000, existingResult);
+      AnnealingCheckpoint checkpoint = progress.getResumeFrom();
+
+      // With parallel tempering, the instances are replicas at different temperatures that swap lineups.
+      // A ladder needs at least two rungs, a single thread just follows the cooling schedule.
+      ReplicaExchange exchange = null;
+      if (parsedArguments.isParallelTempering() && THREADS > 1) {
+        double maxTemperature = checkpoint != null ? checkpoint.getMaxTemperature()
+            : MonteCarloAnnealingCallable.getMaxTemperature(indexer, INNINGS, executor, THREADS - 1, progressTracker);
+        exchange = new ReplicaExchange(maxTemperature, THREADS, LOWEST, new HitGenerator(indexer.getPlayers()));
+      }
 
-    // Run an instance of the optimizer for thread
-    List<Callable<Result>> tasks = new ArrayList<>();
-    for (int i = 0; i < THREADS; i++) {
-      MonteCarloAnnealingCallable task = new MonteCarloAnnealingCallable(ALPHA, LOWEST, INNINGS, DURATION, indexer,
-          THREADS, progressTracker);
-      tasks.add(task);
-    }
+      // The instances pool the games they simulate for each lineup
+      SharedLineupStatistics sharedStatistics = new SharedLineupStatistics(SHARED_STATISTICS_SIZE_PER_THREAD * THREADS);
+
+      // Run an instance of the optimizer for thread
+      List<Callable<Result>> tasks = new ArrayList<>();
+      for (int i = 0; i < THREADS; i++) {
+        MonteCarloAnnealingCallable task = new MonteCarloAnnealingCallable(ALPHA, LOWEST, INNINGS, DURATION, indexer,
+            THREADS, parsedArguments.getEngine(), parsedArguments.isPaired(),
+            parsedArguments.isControlVariates(), parsedArguments.getIndifferenceZone(), progressTracker, exchange, i,
+            sharedStatistics, progress);
+        tasks.add(task);
+      }
 
-    try {
-      // Run the tasks then shutdown the executor
+      // Run the tasks
       List<Future<Result>> list = executor.invokeAll(tasks);
-      executor.shutdown();
 
-      // Of all the results, return the best one
-      Result bestResult = null;
+      // Of all the results, return the best one along with the simulation counts from every thread (see
+      // AnnealingProgress)
+      MonteCarloAnnealingResult bestResult = null;
       for (Future<Result> future : list) {
-        Result compare = future.get();
-        bestResult = bestResult == null || compare.getLineupScore() > bestResult.getLineupScore() ? compare
-            : bestResult;
+        MonteCarloAnnealingResult compare = (MonteCarloAnnealingResult) future.get();
+        bestResult = bestResult == null || byQuality.compare(compare, bestResult) > 0 ? compare : bestResult;
       }
-      return bestResult;
+      Logger.log(sharedStatistics.getReport());
+
+      // The best lineup any instance held may have been left behind before the end, so score it the same
+      // way as the final lineups and see if it beats them. The checkpoint keeps its final score, so
+      // resuming a finished optimization doesn't simulate it again.
+      HitGenerator hitGenerator =
+          exchange != null ? exchange.getHitGenerator() : new HitGenerator(indexer.getPlayers());
+      LineupComposite best = progress.getBest(hitGenerator, parsedArguments.getEngine());
+      if (best != null) {
+        progress.addSimulationsRequired(simulateFinalGames(best, INNINGS, executor));
+        progress.setBest(best.getLineup(), best.getStats());
+      }
+      // Likewise for the best lineup any replica held, which may have been lost to a swap
+      if (exchange != null) {
+        Logger.log("Replica swaps accepted: " + exchange.getSwapsAccepted() + "/" + exchange.getSwapsAttempted());
+        LineupComposite replicaBest = exchange.getBest();
+        if (replicaBest != null) {
+          progress.addSimulationsRequired(simulateFinalGames(replicaBest, INNINGS, executor));
+          progress.offerBest(replicaBest.getLineup(), replicaBest.getStats());
+        }
+      }
+      best = progress.getBest(hitGenerator, parsedArguments.getEngine());
+      if (best != null) {
+        MonteCarloAnnealingResult compare = new MonteCarloAnnealingResult(best.getLineup(),
+            best.getStats().getMean(), bestResult.getCountTotal(), bestResult.getCountCompleted(),
+            bestResult.getElapsedTimeMs(), bestResult.getStatus());
+        bestResult = byQuality.compare(compare, bestResult) > 0 ? compare : bestResult;
+      }
+
+      AnnealingCheckpoint finalCheckpoint = progress.toCheckpoint();
+      return new MonteCarloAnnealingResult(bestResult.getLineup(), bestResult.getLineupScore(),
+          bestResult.getCountTotal(), bestResult.getCountCompleted(), progress.getElapsedTimeMs(),
+          bestResult.getStatus(), progress.getSimulationsRequired(), progress.getSimulationsSaved(),
+          finalCheckpoint == null ? null : finalCheckpoint.toBytes());
     } catch (Exception e) {
       throw new RuntimeException(e);
+    } finally {
+      executor.shutdown();
     }
 
   }
 
+  /**
+   * Simulates games for the composite until it has as many as the instances' final lineups
+   *
+   * @return the number of games simulated
+   */
+  private static long simulateFinalGames(LineupComposite composite, int innings, ThreadPoolExecutor executor) {
+    long games = MonteCarloAnnealingCallable.FINAL_RESULT_ITERATIONS - composite.getStats().getN();
+    if (games <= 0) {
+      return 0;
+    }
+    GameScoreAccumulator accumulator = new GameScoreAccumulator();
+    new BatchSplitter(executor).simulateGames(composite.getSimulator(), innings, games, accumulator);
+    composite.addSamples(accumulator);
+    return accumulator.getN();
+  }
+
   private void validateData(DataStats battingData, List<String> playersInLineup) {
     // TODO Auto-generated method stub
 
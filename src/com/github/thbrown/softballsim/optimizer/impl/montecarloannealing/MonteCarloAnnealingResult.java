@@ -7,14 +7,88 @@ import com.github.thbrown.softballsim.optimizer.OptimizerEnum;
 
 public class MonteCarloAnnealingResult extends Result {
 
+  private long simulationsRequired;
+  private long simulationsSaved;
+
+  // See AnnealingCheckpoint, persisted by the data source instead of as JSON
+  private final transient byte[] checkpoint;
+
   public MonteCarloAnnealingResult(BattingLineup lineup, double lineupScore, long countTotal,
       long countCompleted, long elapsedTimeMs, ResultStatusEnum status) {
+    this(lineup, lineupScore, countTotal, countCompleted, elapsedTimeMs, status, 0, 0);
+  }
+
+  public MonteCarloAnnealingResult(BattingLineup lineup, double lineupScore, long countTotal,
+      long countCompleted, long elapsedTimeMs, ResultStatusEnum status, long simulationsRequired,
+      long simulationsSaved) {
+    this(lineup, lineupScore, countTotal, countCompleted, elapsedTimeMs, status, simulationsRequired,
+        simulationsSaved, null);
+  }
+
+  public MonteCarloAnnealingResult(BattingLineup lineup, double lineupScore, long countTotal,
+      long countCompleted, long elapsedTimeMs, ResultStatusEnum status, long simulationsRequired,
+      long simulationsSaved, byte[] checkpoint) {
     super(OptimizerEnum.MONTE_CARLO_ANNEALING, lineup, lineupScore, countTotal, countCompleted, elapsedTimeMs, status);
-    // No additional behavior for now
+    this.simulationsRequired = simulationsRequired;
+    this.simulationsSaved = simulationsSaved;
+    this.checkpoint = checkpoint;
   }
 
   public MonteCarloAnnealingResult(long duration) {
     super(OptimizerEnum.MONTE_CARLO_EXHAUSTIVE, null, 0, 0, 0, 0, ResultStatusEnum.ESTIMATE, null,
         duration);
+    this.checkpoint = null;
+  }
+
+  private MonteCarloAnnealingResult(MonteCarloAnnealingResult toCopy, ResultStatusEnum status, String statusMessage,
+      Long estimatedTimeRemainingMs) {
+    this(toCopy, status, statusMessage, estimatedTimeRemainingMs, toCopy.checkpoint);
+  }
+
+  private MonteCarloAnnealingResult(MonteCarloAnnealingResult toCopy, ResultStatusEnum status, String statusMessage,
+      Long estimatedTimeRemainingMs, byte[] checkpoint) {
+    super(toCopy, status, statusMessage, estimatedTimeRemainingMs);
+    this.simulationsRequired = toCopy.simulationsRequired;
+    this.simulationsSaved = toCopy.simulationsSaved;
+    this.checkpoint = checkpoint;
+  }
+
+  @Override
+  protected Result copy(ResultStatusEnum status, String statusMessage, Long estimatedTimeRemainingMs) {
+    return new MonteCarloAnnealingResult(this, status, statusMessage, estimatedTimeRemainingMs);
+  }
+
+  @Override
+  public byte[] getCheckpoint() {
+    return checkpoint;
+  }
+
+  @Override
+  public Result withCheckpoint(byte[] checkpoint) {
+    return new MonteCarloAnnealingResult(this, getStatus(), getStatusMessage(), getEstimatedTimeRemainingMs(),
+        checkpoint);
+  }
+
+  public long getSimulationsRequired() {
+    return simulationsRequired;
+  }
+
+  /**
+   * @return the estimated number of simulations saved by comparing lineups with common random numbers and
+   *         control variates
+   */
+  public long getSimulationsSaved() {
+    return simulationsSaved;
+  }
+
+  @Override
+  public String getHumanReadableDetails() {
+    StringBuilder sb = new StringBuilder(super.getHumanReadableDetails());
+    sb.append("Simulations run: ");
+    sb.append(this.simulationsRequired);
+    sb.append("\n");
+    sb.append("Simulations saved by variance reduction (est): ");
+    sb.append(this.simulationsSaved);
+    return sb.toString();
   }
 }
@@ -0,0 +1,187 @@
+package com.github.thbrown.softballsim.optimizer.impl.montecarloannealing;
+
+import java.util.concurrent.ThreadLocalRandom;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloadaptive.LineupComposite;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive.HitGenerator;
+
+/**
+ * Coordinates the annealing threads when they run as a parallel tempering ladder. Instead of every
+ * thread following the same cooling schedule, each thread holds one replica at a fixed temperature.
+ * The coldest replica only accepts neighbors that aren't worse, the hottest accepts neighbors up to
+ * three landscape standard deviations worse (like the start of the normal schedule) and the ones in
+ * between each accept half as much as the next hotter one.
+ *
+ * Roughly every {@link #EXCHANGE_INTERVAL_MS} each replica calls {@link #exchange}, which never
+ * waits. If a neighboring replica on the ladder has an offer posted, the two try to swap lineups with
+ * the Metropolis criterion. Otherwise the replica posts its own lineup as an offer for a neighbor to
+ * pick up. A replica whose offer was accepted receives the neighbor's lineup at its next exchange.
+ * This way a replica that's stuck in a long comparison never holds the others up, lineups that were
+ * found while exploring at high temperatures still work their way down to the cold replicas that
+ * refine them, and the best lineup any replica has offered is recorded as the shared best.
+ *
+ * Lineup composites are never shared between threads. Offers and swapped lineups are handed over as
+ * copies.
+ */
+public class ReplicaExchange {
+
+  public static final long EXCHANGE_INTERVAL_MS = 200;
+
+  private final double[] temperatures;
+  private final boolean lowest;
+  private final HitGenerator hitGenerator;
+
+  // Guarded by this. Offers waiting for a neighbor, and lineups waiting for the replica they were
+  // swapped to.
+  private final int[][] offeredSlots;
+  private final LineupComposite[] offers;
+  private final int[][] deliveredSlots;
+  private final LineupComposite[] deliveries;
+
+  private LineupComposite best;
+  private long swapsAttempted;
+  private long swapsAccepted;
+
+  /**
+   * @param maxTemperature the temperature of the hottest replica
+   * @param replicas the number of replicas, one per thread, this must be at least 2
+   * @param hitGenerator every replica must compile its lineups with this, so that lineups that change
+   *        replicas can still be compared with paired simulations
+   */
+  public ReplicaExchange(double maxTemperature, int replicas, boolean lowest, HitGenerator hitGenerator) {
+    if (replicas < 2) {
+      throw new IllegalArgumentException("Parallel tempering requires at least two replicas");
+    }
+    this.temperatures = new double[replicas];
+    for (int i = 1; i < replicas; i++) {
+      temperatures[i] = maxTemperature / Math.pow(2, replicas - 1 - i);
+    }
+    this.lowest = lowest;
+    this.hitGenerator = hitGenerator;
+    this.offeredSlots = new int[replicas][];
+    this.offers = new LineupComposite[replicas];
+    this.deliveredSlots = new int[replicas][];
+    this.deliveries = new LineupComposite[replicas];
+  }
+
+  public int getReplicas() {
+    return temperatures.length;
+  }
+
+  public double getTemperature(int replica) {
+    return temperatures[replica];
+  }
+
+  public HitGenerator getHitGenerator() {
+    return hitGenerator;
+  }
+
+  /**
+   * Gives the neighboring replicas a chance to swap lineups with this one without waiting for them.
+   *
+   * @param replicaSlots this replica's slots, these are overwritten if the replica received another
+   *        lineup
+   * @param composite this replica's lineup
+   * @return the composite for the lineup in replicaSlots, which is a copy owned by the calling thread
+   *         if the replica received another lineup
+   */
+  public synchronized LineupComposite exchange(int replica, int[] replicaSlots, LineupComposite composite) {
+    // A neighbor took our last offer, the lineup we're holding now continues on the neighbor's replica
+    // in its place
+    if (deliveries[replica] != null) {
+      LineupComposite delivered = deliveries[replica];
+      System.arraycopy(deliveredSlots[replica], 0, replicaSlots, 0, replicaSlots.length);
+      deliveries[replica] = null;
+      deliveredSlots[replica] = null;
+      return delivered;
+    }
+
+    updateBest(composite);
+    offers[replica] = null;
+    offeredSlots[replica] = null;
+
+    int neighbor = getOfferingNeighbor(replica);
+    if (neighbor >= 0) {
+      LineupComposite offer = offers[neighbor];
+      int[] offerSlots = offeredSlots[neighbor];
+      offers[neighbor] = null;
+      offeredSlots[neighbor] = null;
+      swapsAttempted++;
+      if (acceptSwap(replica, composite, neighbor, offer)) {
+        swapsAccepted++;
+        deliveries[neighbor] = new LineupComposite(composite);
+        deliveredSlots[neighbor] = replicaSlots.clone();
+        System.arraycopy(offerSlots, 0, replicaSlots, 0, replicaSlots.length);
+        return offer;
+      }
+    }
+
+    offers[replica] = new LineupComposite(composite);
+    offeredSlots[replica] = replicaSlots.clone();
+    return composite;
+  }
+
+  /**
+   * Must be called by each replica's thread once it stops annealing, even if it failed, so its
+   * neighbors don't swap with a replica that's no longer running.
+   */
+  public synchronized void leave(int replica) {
+    offers[replica] = null;
+    offeredSlots[replica] = null;
+    deliveries[replica] = null;
+    deliveredSlots[replica] = null;
+  }
+
+  /**
+   * @return a copy of the best lineup any replica held at an exchange, or null if there isn't one yet.
+   *         Only call this once every replica has left.
+   */
+  public synchronized LineupComposite getBest() {
+    return best;
+  }
+
+  public synchronized long getSwapsAttempted() {
+    return swapsAttempted;
+  }
+
+  public synchronized long getSwapsAccepted() {
+    return swapsAccepted;
+  }
+
+  /**
+   * @return the neighbor on the ladder that has an offer posted, a random one if both do, or -1 if
+   *         neither does
+   */
+  private int getOfferingNeighbor(int replica) {
+    boolean colder = replica > 0 && offers[replica - 1] != null;
+    boolean hotter = replica + 1 < temperatures.length && offers[replica + 1] != null;
+    if (colder && hotter) {
+      return ThreadLocalRandom.current().nextBoolean() ? replica - 1 : replica + 1;
+    }
+    return colder ? replica - 1 : hotter ? replica + 1 : -1;
+  }
+
+  /**
+   * Metropolis criterion for exchanging the lineups of replicas i and j: accept with probability
+   * min(1, exp((1/Ti - 1/Tj) * (Ei - Ej))) where the energy E is the negated mean score (or the mean
+   * score if we're looking for the lowest scoring lineup).
+   */
+  private boolean acceptSwap(int i, LineupComposite compositeI, int j, LineupComposite compositeJ) {
+    double exponent = (1 / temperatures[i] - 1 / temperatures[j]) * (getEnergy(compositeI) - getEnergy(compositeJ));
+    // NaN if a zero temperature replica's lineup is as good as the other, swapping changes nothing then
+    return !(exponent < 0) || ThreadLocalRandom.current().nextDouble() < Math.exp(exponent);
+  }
+
+  private double getEnergy(LineupComposite composite) {
+    return lowest ? composite.getAdjustedMean() : -composite.getAdjustedMean();
+  }
+
+  private void updateBest(LineupComposite composite) {
+    if (composite.getStats().getN() < AnnealingProgress.MIN_GAMES_FOR_BEST) {
+      return;
+    }
+    if (best == null || getEnergy(composite) < getEnergy(best)) {
+      best = new LineupComposite(composite);
+    }
+  }
+
+}
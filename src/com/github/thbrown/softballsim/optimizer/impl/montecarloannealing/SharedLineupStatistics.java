@@ -0,0 +1,248 @@
+package com.github.thbrown.softballsim.optimizer.impl.montecarloannealing;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloadaptive.LineupComposite;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive.ControlVariateAccumulator;
+import com.github.thbrown.softballsim.util.StringUtils;
+import com.github.thbrown.softballsim.util.WelfordAccumulator;
+
+/**
+ * The games every annealing thread has simulated for each lineup, so threads that search the same
+ * part of the lineup space don't simulate the same lineups from scratch. Each thread still keeps its
+ * own {@link LineupComposite}s (which aren't thread safe) and pools their samples here, see
+ * {@link LineupComposite#poolSamples}. Lineups are keyed by their slots and looked up by
+ * {@link LineupCompositeCache#getKey(int[])}.
+ *
+ * The table is split into stripes that are each guarded by their own lock, so threads only contend
+ * when they pool lineups that hash to the same stripe. Each stripe holds a bounded number of lineups
+ * in a primitive open addressing table and evicts with the CLOCK algorithm: a hand sweeps the table,
+ * clearing the referenced bit of each lineup it passes, and evicts the first lineup that hasn't been
+ * used since the hand last passed it.
+ *
+ * Each thread pools through its own {@link Client}, which counts that thread's hits and how often it
+ * had to wait for a lock, see {@link #getReport()}.
+ */
+public class SharedLineupStatistics {
+
+  private static final int STRIPE_BITS = 6;
+
+  private final Stripe[] stripes = new Stripe[1 << STRIPE_BITS];
+  private final List<Client> clients = new ArrayList<>();
+
+  /**
+   * @param size the number of lineups to keep, this is split evenly between the stripes
+   */
+  public SharedLineupStatistics(int size) {
+    int stripeSize = Math.max(1, (size + stripes.length - 1) / stripes.length);
+    for (int i = 0; i < stripes.length; i++) {
+      stripes[i] = new Stripe(stripeSize);
+    }
+  }
+
+  /**
+   * @return a new client for the calling thread
+   */
+  public synchronized Client newClient() {
+    Client client = new Client();
+    clients.add(client);
+    return client;
+  }
+
+  /**
+   * @return hit rate and lock contention for each client and in total. Only call this once the clients
+   *         are done.
+   */
+  public synchronized String getReport() {
+    StringBuilder sb = new StringBuilder("Shared lineup statistics:");
+    long lookups = 0;
+    long hits = 0;
+    long acquisitions = 0;
+    long contended = 0;
+    for (int i = 0; i < clients.size(); i++) {
+      Client client = clients.get(i);
+      sb.append("\n  Thread ").append(i).append(": ");
+      appendCounts(sb, client.hits, client.lookups, client.contended, client.acquisitions);
+      lookups += client.lookups;
+      hits += client.hits;
+      acquisitions += client.acquisitions;
+      contended += client.contended;
+    }
+    sb.append("\n  Total: ");
+    appendCounts(sb, hits, lookups, contended, acquisitions);
+    return sb.toString();
+  }
+
+  private static void appendCounts(StringBuilder sb, long hits, long lookups, long contended, long acquisitions) {
+    sb.append(hits).append("/").append(lookups).append(" hits (")
+        .append(StringUtils.formatDecimal(lookups == 0 ? 0 : 100.0 * hits / lookups, 2)).append("%), ")
+        .append(contended).append("/").append(acquisitions).append(" contended locks (")
+        .append(StringUtils.formatDecimal(acquisitions == 0 ? 0 : 100.0 * contended / acquisitions, 2))
+        .append("%)");
+  }
+
+  private static long hash(long key) {
+    return key * 0x9E3779B97F4A7C15L;
+  }
+
+  /**
+   * The high bits of the hash pick the stripe, these lower (but still well mixed) bits pick the
+   * position in the stripe
+   */
+  private static int getPositionHash(long hash) {
+    return (int) (hash >>> 20);
+  }
+
+  /**
+   * One thread's view of the shared statistics. This class is not thread safe.
+   */
+  public class Client {
+    private long lookups;
+    private long hits;
+    private long acquisitions;
+    private long contended;
+
+    private Client() {}
+
+    /**
+     * Same as {@link #pool(long, int[], LineupComposite)}, for a composite this thread just created. Counts as
+     * a hit if some thread (including this one, before the composite was evicted from its own cache)
+     * already simulated games for the lineup.
+     */
+    public void load(long key, int[] slots, LineupComposite composite) {
+      lookups++;
+      if (poolInternal(key, slots, composite)) {
+        hits++;
+      }
+    }
+
+    /**
+     * Pools the composite's samples with every other thread's samples for the same lineup, see
+     * {@link LineupComposite#poolSamples}
+     *
+     * @param key {@link LineupCompositeCache#getKey(int[])} of the composite's slots
+     */
+    public void pool(long key, int[] slots, LineupComposite composite) {
+      poolInternal(key, slots, composite);
+    }
+
+    /**
+     * @return true if the lineup already had samples
+     */
+    private boolean poolInternal(long key, int[] slots, LineupComposite composite) {
+      long hash = hash(key);
+      Stripe stripe = stripes[(int) (hash >>> (Long.SIZE - STRIPE_BITS))];
+      if (!stripe.lock.tryLock()) {
+        contended++;
+        stripe.lock.lock();
+      }
+      acquisitions++;
+      try {
+        Entry entry = stripe.get(key, slots, getPositionHash(hash));
+        boolean hit = entry != null && entry.stats.getN() > 0;
+        if (entry == null) {
+          entry = stripe.insert(key, slots, getPositionHash(hash));
+        }
+        composite.poolSamples(entry.stats, entry.controlVariates);
+        return hit;
+      } finally {
+        stripe.lock.unlock();
+      }
+    }
+  }
+
+  private static class Entry {
+    final int[] slots;
+    final WelfordAccumulator stats = new WelfordAccumulator();
+    final ControlVariateAccumulator controlVariates = new ControlVariateAccumulator();
+
+    Entry(int[] slots) {
+      this.slots = slots.clone();
+    }
+  }
+
+  /**
+   * Open addressing table with linear probing. Removals shift later entries back instead of leaving
+   * tombstones, so lookups can stop at the first empty position.
+   */
+  private static class Stripe {
+    final ReentrantLock lock = new ReentrantLock();
+
+    private final long[] keys;
+    private final Entry[] entries;
+    private final boolean[] referenced;
+    private final int mask;
+    private final int maxSize;
+    private int size;
+    private int hand;
+
+    Stripe(int maxSize) {
+      // At most half full
+      int capacity = Integer.highestOneBit(maxSize) << 2;
+      this.keys = new long[capacity];
+      this.entries = new Entry[capacity];
+      this.referenced = new boolean[capacity];
+      this.mask = capacity - 1;
+      this.maxSize = maxSize;
+    }
+
+    Entry get(long key, int[] slots, int hash) {
+      for (int i = hash & mask; entries[i] != null; i = (i + 1) & mask) {
+        if (keys[i] == key && Arrays.equals(entries[i].slots, slots)) {
+          referenced[i] = true;
+          return entries[i];
+        }
+      }
+      return null;
+    }
+
+    Entry insert(long key, int[] slots, int hash) {
+      if (size == maxSize) {
+        evict();
+      }
+      int i = hash & mask;
+      while (entries[i] != null) {
+        i = (i + 1) & mask;
+      }
+      keys[i] = key;
+      entries[i] = new Entry(slots);
+      referenced[i] = true;
+      size++;
+      return entries[i];
+    }
+
+    private void evict() {
+      while (true) {
+        if (entries[hand] != null) {
+          if (!referenced[hand]) {
+            // Whatever gets shifted into this position is looked at next
+            remove(hand);
+            return;
+          }
+          referenced[hand] = false;
+        }
+        hand = (hand + 1) & mask;
+      }
+    }
+
+    private void remove(int position) {
+      entries[position] = null;
+      size--;
+      int empty = position;
+      for (int i = (position + 1) & mask; entries[i] != null; i = (i + 1) & mask) {
+        // Move the entry back if the empty position is between where it belongs and where it is
+        int home = getPositionHash(hash(keys[i])) & mask;
+        if (((i - home) & mask) >= ((i - empty) & mask)) {
+          keys[empty] = keys[i];
+          entries[empty] = entries[i];
+          referenced[empty] = referenced[i];
+          entries[i] = null;
+          empty = i;
+        }
+      }
+    }
+  }
+
+}
@@ -4,6 +4,12 @@ public class BasesUtil {
 
   private static HitResult[] hitResults = new HitResult[32];
 
+  // The same results packed into primitives for the allocation-free simulation path. Bits 0-2 are the
+  // runners on base after the hit (same layout as the index) and the remaining bits are runs scored.
+  private static final int[] transitions = new int[32];
+  private static final int BASES_MASK = 0b111;
+  private static final int RUNS_SHIFT = 3;
+
   static {
     for (int i = 0; i < 32; i++) {
       // First three bits represent if a runner is present (1) on each base or not (0)
@@ -26,6 +32,7 @@ public class BasesUtil {
 
       // Save the results in a map for quick later lookup
       hitResults[i] = new HitResult(first, second, third, runsResultingFromHit);
+      transitions[i] = (runsResultingFromHit << RUNS_SHIFT) | (first ? 1 : 0) | (second ? 2 : 0) | (third ? 4 : 0);
     }
   }
 
@@ -52,6 +59,25 @@ public class BasesUtil {
     return result.runsScored;
   }
 
+  /**
+   * Primitive equivalent of {@link #updateRunsAndBasesAfterHit(int, BasesState)}. The runners on base
+   * are represented as a 3 bit mask (1 - first, 2 - second, 4 - third).
+   * 
+   * @param numBases must be between 1 and 4 inclusive, outs don't change the state of the bases
+   * @return a packed transition, use {@link #getBasesMask(int)} and {@link #getRuns(int)} to read it
+   */
+  public static int getTransition(int basesMask, int numBases) {
+    return transitions[basesMask | ((numBases - 1) << 3)];
+  }
+
+  public static int getBasesMask(int transition) {
+    return transition & BASES_MASK;
+  }
+
+  public static int getRuns(int transition) {
+    return transition >>> RUNS_SHIFT;
+  }
+
   // Class that holds info about what the field and score look like.
   public static class HitResult {
     HitResult(boolean first, boolean second, boolean third, int runsScored) {
@@ -0,0 +1,275 @@
+package com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Simulates 64 games at once, one game per bit of a long.
+ *
+ * The batter for a game's nth plate appearance is always the player at position n % length in the
+ * batting order, no matter what happened earlier in the game. So if every game starts at the top of
+ * the batting order at the same time, all 64 games (lanes) have the same batter at every step and can
+ * be simulated in lockstep. Game state is stored as bit planes: one long for runners on first, one
+ * for second, etc., where bit i of each long belongs to lane i. Base running, outs, and run counting
+ * are then a handful of bitwise operations per plate appearance for all lanes together, with no
+ * branches on the outcome.
+ *
+ * Outcomes are drawn for all lanes at once by comparing a random 32 bit fraction per lane against the
+ * batter's cumulative outcome probabilities, most significant bit first. Each random long supplies one
+ * bit to every lane, and since almost every lane's comparison is decided within the first few bits,
+ * a plate appearance for 64 lanes usually costs about 8 random longs instead of 64.
+ *
+ * When a lane's game ends it sits idle until the batting order comes back around to the top, then
+ * starts a new game if there are any left to simulate. The results have the same distribution as
+ * {@link MonteCarloGameSimulation#simulateGames}, including the cap on runs per inning.
+ *
+ * This class is immutable and may be shared between threads.
+ */
+public class BitSlicedGameSimulator implements GameSimulator {
+
+  private static final int LANES = 64;
+  private static final int OUTCOMES = HitGenerator.OUTCOMES;
+  private static final int FRACTION_BITS = 32;
+  private static final long ALWAYS_LESS = 1L << FRACTION_BITS;
+
+  // A grand slam can take an inning at most 3 runs past the cap
+  private static final int MAX_INNING_RUNS = MonteCarloGameSimulation.MAX_RUNS_PER_INNING + 3;
+  private static final int INNING_RUN_PLANES = bitsFor(MAX_INNING_RUNS);
+
+  private final int battingOrderLength;
+
+  // For position 'p', entry [p * (OUTCOMES - 1) + i] is the probability (as a 32 bit fraction) that
+  // the batter earns i or fewer bases. The probability of earning 4 or fewer bases is always 1, so it
+  // isn't stored.
+  private final long[] cumulativeThresholds;
+
+  public BitSlicedGameSimulator(CompiledLineup lineup) {
+    this.battingOrderLength = lineup.getBattingOrderLength();
+    this.cumulativeThresholds = new long[battingOrderLength * (OUTCOMES - 1)];
+    HitGenerator hitGenerator = lineup.getHitGenerator();
+    for (int position = 0; position < battingOrderLength; position++) {
+      int ordinal = lineup.getOrdinal(position);
+      double cumulative = 0;
+      for (int numBases = 0; numBases < OUTCOMES - 1; numBases++) {
+        cumulative += hitGenerator.getOutcomeProbability(ordinal, numBases);
+        cumulativeThresholds[position * (OUTCOMES - 1) + numBases] =
+            Math.min(ALWAYS_LESS, Math.round(cumulative * ALWAYS_LESS));
+      }
+    }
+  }
+
+  @Override
+  public void simulateGames(int inningsPerGame, long numberOfGames, GameScoreAccumulator accumulator) {
+    if (inningsPerGame <= 0) {
+      for (long game = 0; game < numberOfGames; game++) {
+        accumulator.add(0);
+      }
+      return;
+    }
+
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    long[] gameRuns = new long[bitsFor(inningsPerGame * MAX_INNING_RUNS)];
+    long[] inningRuns = new long[INNING_RUN_PLANES];
+    long[] inningsPlayed = new long[bitsFor(inningsPerGame)];
+
+    long first = 0;
+    long second = 0;
+    long third = 0;
+    long outs0 = 0; // Outs this inning, low bit
+    long outs1 = 0; // Outs this inning, high bit
+    long alive = 0; // Lanes with a game in progress
+    long finished = 0; // Lanes with a finished game that hasn't been recorded yet
+    long gamesStarted = 0;
+    int position = 0;
+
+    while (true) {
+      if (position == 0) {
+        // Record finished games and start new ones in any idle lanes
+        if (finished != 0) {
+          recordScores(finished, gameRuns, accumulator);
+          finished = 0;
+        }
+        long idle = ~alive;
+        long toStart = lowestBits(idle, Math.min(Long.bitCount(idle), numberOfGames - gamesStarted));
+        gamesStarted += Long.bitCount(toStart);
+        alive |= toStart;
+        if (alive == 0) {
+          return;
+        }
+      }
+
+      // Draw an outcome for every lane, less[i] marks the lanes that earned i or fewer bases
+      int offset = position * (OUTCOMES - 1);
+      long threshold0 = cumulativeThresholds[offset];
+      long threshold1 = cumulativeThresholds[offset + 1];
+      long threshold2 = cumulativeThresholds[offset + 2];
+      long threshold3 = cumulativeThresholds[offset + 3];
+      long less0 = threshold0 == ALWAYS_LESS ? -1L : 0;
+      long less1 = threshold1 == ALWAYS_LESS ? -1L : 0;
+      long less2 = threshold2 == ALWAYS_LESS ? -1L : 0;
+      long less3 = threshold3 == ALWAYS_LESS ? -1L : 0;
+      long equal0 = ~less0;
+      long equal1 = ~less1;
+      long equal2 = ~less2;
+      long equal3 = ~less3;
+      for (int bit = FRACTION_BITS - 1; bit >= 0 && (equal0 | equal1 | equal2 | equal3) != 0; bit--) {
+        long r = random.nextLong();
+        long m0 = -((threshold0 >>> bit) & 1L);
+        long m1 = -((threshold1 >>> bit) & 1L);
+        long m2 = -((threshold2 >>> bit) & 1L);
+        long m3 = -((threshold3 >>> bit) & 1L);
+        less0 |= equal0 & ~r & m0;
+        less1 |= equal1 & ~r & m1;
+        less2 |= equal2 & ~r & m2;
+        less3 |= equal3 & ~r & m3;
+        equal0 &= ~(r ^ m0);
+        equal1 &= ~(r ^ m1);
+        equal2 &= ~(r ^ m2);
+        equal3 &= ~(r ^ m3);
+      }
+      long out = less0 & alive;
+      long single = less1 & ~less0 & alive;
+      long doubleHit = less2 & ~less1 & alive;
+      long triple = less3 & ~less2 & alive;
+      long homerun = ~less3 & alive;
+
+      // Runners advance exactly as many bases as the batter, see BasesUtil. Count the runners that
+      // score (plus the batter on a homerun) as a 3 bit number per lane.
+      long scoreA = third & (single | doubleHit | triple | homerun);
+      long scoreB = second & (doubleHit | triple | homerun);
+      long scoreC = first & (triple | homerun);
+      long partialSum = scoreA ^ scoreB ^ scoreC;
+      long partialCarry = (scoreA & scoreB) | (scoreC & (scoreA ^ scoreB));
+      long runs0 = partialSum ^ homerun;
+      long carry = partialSum & homerun;
+      long runs1 = partialCarry ^ carry;
+      long runs2 = partialCarry & carry;
+      add(gameRuns, runs0, runs1, runs2);
+      add(inningRuns, runs0, runs1, runs2);
+
+      long newThird = (third & out) | (second & single) | (first & doubleHit) | triple;
+      long newSecond = (second & out) | (first & single) | doubleHit;
+      long newFirst = (first & out) | single;
+      first = newFirst;
+      second = newSecond;
+      third = newThird;
+
+      // The third out (outs were 2) or reaching the run cap ends the inning
+      long inningOver = (out & outs1) | (atLeast(inningRuns, MonteCarloGameSimulation.MAX_RUNS_PER_INNING) & alive);
+      long outIncrement = out & ~inningOver;
+      outs1 ^= outs0 & outIncrement;
+      outs0 ^= outIncrement;
+
+      if (inningOver != 0) {
+        long keep = ~inningOver;
+        first &= keep;
+        second &= keep;
+        third &= keep;
+        outs0 &= keep;
+        outs1 &= keep;
+        for (int i = 0; i < inningRuns.length; i++) {
+          inningRuns[i] &= keep;
+        }
+        add(inningsPlayed, inningOver, 0, 0);
+
+        long gameOver = equalTo(inningsPlayed, inningsPerGame) & inningOver;
+        if (gameOver != 0) {
+          alive &= ~gameOver;
+          finished |= gameOver;
+          for (int i = 0; i < inningsPlayed.length; i++) {
+            inningsPlayed[i] &= ~gameOver;
+          }
+        }
+      }
+
+      position++;
+      if (position == battingOrderLength) {
+        position = 0;
+      }
+    }
+  }
+
+  /**
+   * Adds each lane's game score to the accumulator and resets the score planes for those lanes
+   */
+  private static void recordScores(long lanes, long[] gameRuns, GameScoreAccumulator accumulator) {
+    for (long remaining = lanes; remaining != 0; remaining &= remaining - 1) {
+      int lane = Long.numberOfTrailingZeros(remaining);
+      int score = 0;
+      for (int i = 0; i < gameRuns.length; i++) {
+        score |= (int) ((gameRuns[i] >>> lane) & 1L) << i;
+      }
+      accumulator.add(score);
+    }
+    for (int i = 0; i < gameRuns.length; i++) {
+      gameRuns[i] &= ~lanes;
+    }
+  }
+
+  /**
+   * Adds a 3 bit per lane value (bit0, bit1, bit2) to a bit sliced counter
+   */
+  private static void add(long[] planes, long bit0, long bit1, long bit2) {
+    long carry = 0;
+    for (int i = 0; i < planes.length; i++) {
+      long addend = i == 0 ? bit0 : i == 1 ? bit1 : i == 2 ? bit2 : 0;
+      if (i > 2 && carry == 0) {
+        return;
+      }
+      long plane = planes[i];
+      planes[i] = plane ^ addend ^ carry;
+      carry = (plane & addend) | (carry & (plane ^ addend));
+    }
+  }
+
+  /**
+   * @return the lanes where the bit sliced counter is greater than or equal to the value
+   */
+  private static long atLeast(long[] planes, int value) {
+    long greater = 0;
+    long equal = -1L;
+    for (int i = planes.length - 1; i >= 0; i--) {
+      if ((value >>> i & 1) == 1) {
+        equal &= planes[i];
+      } else {
+        greater |= equal & planes[i];
+        equal &= ~planes[i];
+      }
+    }
+    return greater | equal;
+  }
+
+  /**
+   * @return the lanes where the bit sliced counter is equal to the value
+   */
+  private static long equalTo(long[] planes, int value) {
+    long equal = -1L;
+    for (int i = 0; i < planes.length; i++) {
+      equal &= (value >>> i & 1) == 1 ? planes[i] : ~planes[i];
+    }
+    return equal;
+  }
+
+  /**
+   * @return a mask of the count lowest set bits of mask
+   */
+  private static long lowestBits(long mask, long count) {
+    if (count >= Long.bitCount(mask)) {
+      return mask;
+    }
+    long result = 0;
+    for (long i = 0; i < count; i++) {
+      long lowest = mask & -mask;
+      result |= lowest;
+      mask ^= lowest;
+    }
+    return result;
+  }
+
+  /**
+   * @return the number of bits needed to represent every value from 0 to max inclusive
+   */
+  private static int bitsFor(int max) {
+    return Math.max(1, LANES - Long.numberOfLeadingZeros(max));
+  }
+
+}
@@ -0,0 +1,98 @@
+package com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive;
+
+import com.github.thbrown.softballsim.data.gson.DataPlayer;
+import com.github.thbrown.softballsim.lineup.BattingLineup;
+
+/**
+ * A batting lineup compiled down to the primitive form used by the game simulation. Each position in
+ * one full trip through the batting order is mapped to the ordinal its player was assigned by the
+ * {@link HitGenerator}, so simulating a plate appearance requires no object lookups, hashing, or
+ * boxing.
+ *
+ * The HitGenerator is built once per set of players and can be shared by every lineup of those
+ * players. Compiling a lineup is cheap, it only allocates a small int array.
+ *
+ * This class is immutable and may be shared between threads.
+ */
+public class CompiledLineup implements GameSimulator {
+
+  private final BattingLineup lineup;
+  private final HitGenerator hitGenerator;
+  private final int[] battingOrder;
+
+  // Expected value of each plate appearance's control variate covariates, by position
+  private final double[] onBaseProbabilities;
+  private final double[] expectedBases;
+
+  public CompiledLineup(BattingLineup lineup, HitGenerator hitGenerator) {
+    this.lineup = lineup;
+    this.hitGenerator = hitGenerator;
+    this.battingOrder = new int[lineup.getBattingOrderLength()];
+    this.onBaseProbabilities = new double[battingOrder.length];
+    this.expectedBases = new double[battingOrder.length];
+    for (int i = 0; i < battingOrder.length; i++) {
+      battingOrder[i] = hitGenerator.getOrdinal(lineup.getBatter(i).getId());
+      onBaseProbabilities[i] = 1 - hitGenerator.getOutcomeProbability(battingOrder[i], 0);
+      for (int numBases = 1; numBases < HitGenerator.OUTCOMES; numBases++) {
+        expectedBases[i] += numBases * hitGenerator.getOutcomeProbability(battingOrder[i], numBases);
+      }
+    }
+  }
+
+  public BattingLineup getLineup() {
+    return lineup;
+  }
+
+  public HitGenerator getHitGenerator() {
+    return hitGenerator;
+  }
+
+  /**
+   * @return the number of plate appearances before the batting order repeats
+   */
+  public int getBattingOrderLength() {
+    return battingOrder.length;
+  }
+
+  /**
+   * @return the HitGenerator ordinal of the player batting at the given position, position must be
+   *         in the range [0, getBattingOrderLength())
+   */
+  public int getOrdinal(int position) {
+    return battingOrder[position];
+  }
+
+  /**
+   * @return the probability that the player batting at the given position doesn't make an out
+   */
+  public double getOnBaseProbability(int position) {
+    return onBaseProbabilities[position];
+  }
+
+  /**
+   * @return the expected number of bases earned by a plate appearance from the player batting at the
+   *         given position
+   */
+  public double getExpectedBases(int position) {
+    return expectedBases[position];
+  }
+
+  /**
+   * Samples the outcome of a plate appearance for the player batting at the given position.
+   *
+   * @return the number of bases earned (0 for an out)
+   */
+  public int hit(int position) {
+    return hitGenerator.hit(battingOrder[position]);
+  }
+
+  @Override
+  public void simulateGames(int inningsPerGame, long numberOfGames, GameScoreAccumulator accumulator) {
+    MonteCarloGameSimulation.simulateGames(this, inningsPerGame, numberOfGames, accumulator);
+  }
+
+  DataPlayer getBatter(int position) {
+    return lineup.getBatter(position);
+  }
+
+}
@@ -0,0 +1,225 @@
+package com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive;
+
+import org.apache.commons.math3.stat.descriptive.StatisticalSummary;
+import org.apache.commons.math3.stat.descriptive.StatisticalSummaryValues;
+
+/**
+ * Accumulates game scores along with two per-game covariates whose expected value is known to be
+ * zero, and uses them as control variates to estimate the mean score with less variance.
+ *
+ * The covariates produced by {@link MonteCarloGameSimulation} are the game's times on base and total
+ * bases, each minus what the batters who came to the plate would have been expected to earn. A game
+ * that scored a lot of runs usually did so because its batters got lucky, so regressing the score on
+ * the covariates and removing the part explained by luck leaves an estimate of the same mean with a
+ * fraction of the variance. The regression coefficients are estimated from the same samples, which
+ * introduces a bias that is negligible for the sample sizes we use.
+ *
+ * Only sums are stored, so accumulators can be merged and nothing is allocated per game. This class
+ * is not thread safe.
+ */
+public class ControlVariateAccumulator {
+
+  // If the covariates are this close to collinear, use fewer of them
+  private static final double COLLINEARITY_TOLERANCE = 1e-9;
+
+  private long n;
+  private double sumY;
+  private double sumYY;
+  private double sumX1;
+  private double sumX2;
+  private double sumX1X1;
+  private double sumX2X2;
+  private double sumX1X2;
+  private double sumX1Y;
+  private double sumX2Y;
+  private double min = Double.POSITIVE_INFINITY;
+  private double max = Double.NEGATIVE_INFINITY;
+
+  // Scratch space for the regression coefficients so reading the adjusted stats doesn't allocate
+  private double beta1;
+  private double beta2;
+
+  public ControlVariateAccumulator() {}
+
+  public ControlVariateAccumulator(ControlVariateAccumulator toCopy) {
+    merge(toCopy);
+  }
+
+  /**
+   * @param y the game score (or difference in game scores)
+   * @param x1 first covariate, must have an expected value of zero
+   * @param x2 second covariate, must have an expected value of zero
+   */
+  public void add(double y, double x1, double x2) {
+    n++;
+    sumY += y;
+    sumYY += y * y;
+    sumX1 += x1;
+    sumX2 += x2;
+    sumX1X1 += x1 * x1;
+    sumX2X2 += x2 * x2;
+    sumX1X2 += x1 * x2;
+    sumX1Y += x1 * y;
+    sumX2Y += x2 * y;
+    if (y < min) {
+      min = y;
+    }
+    if (y > max) {
+      max = y;
+    }
+  }
+
+  public void merge(ControlVariateAccumulator other) {
+    n += other.n;
+    sumY += other.sumY;
+    sumYY += other.sumYY;
+    sumX1 += other.sumX1;
+    sumX2 += other.sumX2;
+    sumX1X1 += other.sumX1X1;
+    sumX2X2 += other.sumX2X2;
+    sumX1X2 += other.sumX1X2;
+    sumX1Y += other.sumX1Y;
+    sumX2Y += other.sumX2Y;
+    min = Math.min(min, other.min);
+    max = Math.max(max, other.max);
+  }
+
+  public void clear() {
+    n = 0;
+    sumY = 0;
+    sumYY = 0;
+    sumX1 = 0;
+    sumX2 = 0;
+    sumX1X1 = 0;
+    sumX2X2 = 0;
+    sumX1X2 = 0;
+    sumX1Y = 0;
+    sumX2Y = 0;
+    min = Double.POSITIVE_INFINITY;
+    max = Double.NEGATIVE_INFINITY;
+  }
+
+  public long getN() {
+    return n;
+  }
+
+  /**
+   * @return the plain sample mean of y
+   */
+  public double getMean() {
+    return n == 0 ? Double.NaN : sumY / n;
+  }
+
+  public double getMin() {
+    return min;
+  }
+
+  public double getMax() {
+    return max;
+  }
+
+  /**
+   * @return the sum of squared deviations of y from its mean
+   */
+  public double getSumOfSquaredDeviations() {
+    return n == 0 ? 0 : Math.max(0, sumYY - sumY * sumY / n);
+  }
+
+  /**
+   * @return the plain bias corrected sample variance of y
+   */
+  public double getVariance() {
+    if (n == 0) {
+      return Double.NaN;
+    }
+    if (n == 1) {
+      return 0;
+    }
+    return Math.max(0, (sumYY - sumY * sumY / n) / (n - 1));
+  }
+
+  /**
+   * @return the control variate estimate of the mean of y
+   */
+  public double getAdjustedMean() {
+    if (!calculateCoefficients()) {
+      return getMean();
+    }
+    return (sumY - beta1 * sumX1 - beta2 * sumX2) / n;
+  }
+
+  /**
+   * @return the variance of the residuals of y after removing the part explained by the covariates.
+   *         Dividing this by n gives the variance of {@link #getAdjustedMean()}, the same way the plain
+   *         variance relates to the plain mean.
+   */
+  public double getAdjustedVariance() {
+    if (!calculateCoefficients()) {
+      return getVariance();
+    }
+    double syy = sumYY - sumY * sumY / n;
+    double s1y = sumX1Y - sumX1 * sumY / n;
+    double s2y = sumX2Y - sumX2 * sumY / n;
+    int parameters = (beta1 == 0 ? 0 : 1) + (beta2 == 0 ? 0 : 1);
+    return Math.max(0, (syy - beta1 * s1y - beta2 * s2y) / (n - 1 - parameters));
+  }
+
+  /**
+   * @return an immutable snapshot of the plain statistics of y
+   */
+  public StatisticalSummary toStatisticalSummary() {
+    if (n == 0) {
+      return new StatisticalSummaryValues(0, 0, 0, 0, 0, 0);
+    }
+    return new StatisticalSummaryValues(getMean(), getVariance(), n, max, min, sumY);
+  }
+
+  /**
+   * @return an immutable snapshot with the control variate adjusted mean and variance, suitable for
+   *         passing to a t-test in place of {@link #toStatisticalSummary()}
+   */
+  public StatisticalSummary toAdjustedStatisticalSummary() {
+    if (n == 0) {
+      return new StatisticalSummaryValues(0, 0, 0, 0, 0, 0);
+    }
+    double mean = getAdjustedMean();
+    return new StatisticalSummaryValues(mean, getAdjustedVariance(), n, max, min, mean * n);
+  }
+
+  /**
+   * Least squares coefficients of y on the covariates. Falls back to a single covariate if the two are
+   * (nearly) collinear.
+   *
+   * @return true if the coefficients for x1 and x2 were stored in beta1 and beta2, false if there
+   *         aren't enough samples or the covariates never vary
+   */
+  private boolean calculateCoefficients() {
+    if (n < 4) {
+      return false;
+    }
+    double s11 = sumX1X1 - sumX1 * sumX1 / n;
+    double s22 = sumX2X2 - sumX2 * sumX2 / n;
+    double s12 = sumX1X2 - sumX1 * sumX2 / n;
+    double s1y = sumX1Y - sumX1 * sumY / n;
+    double s2y = sumX2Y - sumX2 * sumY / n;
+
+    double determinant = s11 * s22 - s12 * s12;
+    if (determinant > COLLINEARITY_TOLERANCE * s11 * s22) {
+      beta1 = (s22 * s1y - s12 * s2y) / determinant;
+      beta2 = (s11 * s2y - s12 * s1y) / determinant;
+      return true;
+    }
+    if (s22 > 0) {
+      beta1 = 0;
+      beta2 = s2y / s22;
+      return true;
+    }
+    if (s11 > 0) {
+      beta1 = s1y / s11;
+      beta2 = 0;
+      return true;
+    }
+    return false;
+  }
+
+}
@@ -0,0 +1,303 @@
+package com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.ToDoubleFunction;
+import com.github.thbrown.softballsim.data.gson.DataStats;
+import com.github.thbrown.softballsim.lineup.BattingLineup;
+import com.github.thbrown.softballsim.lineupindexer.BattingLineupIndexer;
+import com.github.thbrown.softballsim.lineupindexer.LineupCursor;
+
+/**
+ * Scores every lineup of an indexer in parallel and keeps track of the best lineup, the worst (a.k.a.
+ * opposite of optimal) lineup, and a histogram of the scores.
+ *
+ * The index range is split into chunks that worker threads claim in order as they become free, so a
+ * slow lineup only holds up the worker scoring it. Each worker walks its chunk with a
+ * {@link LineupCursor} and summarizes it with primitives (best, worst, histogram counts). Finished
+ * chunks are handed to the calling thread, which merges them in index order, so the merged summary
+ * always covers exactly the lineups in [0, countCompleted). That's what lets a paused optimization
+ * resume from countCompleted.
+ *
+ * Chunks that finish ahead of a slower chunk with a lower index wait to be merged. Workers may only
+ * claim a chunk while fewer than {@link #MAX_CHUNKS_AHEAD_PER_THREAD} per thread are claimed but not
+ * merged, so a single slow chunk stalls the workers instead of piling up finished chunks.
+ */
+public class ExhaustiveSearchDriver {
+
+  // Aim for at least this many chunks per thread so the work stays balanced at the end of the range
+  private static final int CHUNKS_PER_THREAD = 16;
+  private static final int MAX_CHUNK_SIZE = 256;
+
+  // Bounds the chunks that are claimed but not yet merged, see the class comment
+  private static final int MAX_CHUNKS_AHEAD_PER_THREAD = 8;
+
+  // How often the calling thread checks the workers for errors while waiting for chunks
+  private static final long POLL_INTERVAL_MS = 100;
+
+  private final BattingLineupIndexer<?> indexer;
+  private final int threads;
+  private final boolean lowestScore;
+
+  public ExhaustiveSearchDriver(BattingLineupIndexer<?> indexer, int threads, boolean lowestScore) {
+    this.indexer = indexer;
+    this.threads = threads;
+    this.lowestScore = lowestScore;
+  }
+
+  /**
+   * Scores all the lineups that the initial summary doesn't already cover.
+   *
+   * @param initial summary of the lineups already scored by a previous run, or an empty summary
+   * @param scorer scores a lineup, this is called concurrently from multiple threads
+   * @param progressListener called on the calling thread whenever more lineups have been merged into
+   *        the summary. The summary passed to it keeps changing after the call returns, so it must not
+   *        be retained, see {@link Summary#copy()}.
+   * @return the summary of all lineups, this is the initial summary object
+   */
+  public Summary run(Summary initial, ToDoubleFunction<BattingLineup> scorer, Consumer<Summary> progressListener)
+      throws InterruptedException, ExecutionException {
+    final long end = indexer.size();
+    final long start = initial.getCountCompleted();
+    final long chunkSize =
+        Math.max(1, Math.min(MAX_CHUNK_SIZE, (end - start) / ((long) threads * CHUNKS_PER_THREAD)));
+
+    AtomicLong nextChunk = new AtomicLong(start);
+    Semaphore unmergedChunks = new Semaphore(threads * MAX_CHUNKS_AHEAD_PER_THREAD);
+    BlockingQueue<Chunk> finishedChunks = new LinkedBlockingQueue<>();
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<?>> workers = new ArrayList<>(threads);
+      for (int i = 0; i < threads; i++) {
+        workers.add(executor.submit(() -> {
+          while (true) {
+            // Released once the chunk is merged
+            unmergedChunks.acquire();
+            long chunkStart = nextChunk.getAndAdd(chunkSize);
+            if (chunkStart >= end) {
+              return null;
+            }
+            long chunkEnd = Math.min(end, chunkStart + chunkSize);
+            Summary summary = new Summary(lowestScore);
+            LineupCursor<?> cursor = indexer.getCursor(chunkStart);
+            for (long l = chunkStart; l < chunkEnd; l++, cursor.next()) {
+              BattingLineup lineup = cursor.getLineup();
+              summary.add(lineup, scorer.applyAsDouble(lineup));
+            }
+            finishedChunks.add(new Chunk(chunkStart, chunkEnd, summary));
+          }
+        }));
+      }
+
+      // Chunks that finished before one with a lower index, keyed by their start index. There are fewer
+      // of these than unmergedChunks' permits.
+      Map<Long, Chunk> pending = new HashMap<>();
+      long merged = start;
+      while (merged < end) {
+        Chunk chunk = finishedChunks.poll(POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        if (chunk == null) {
+          // Surface any exception thrown by a worker, otherwise we'd wait forever for its chunk
+          for (Future<?> worker : workers) {
+            if (worker.isDone()) {
+              worker.get();
+            }
+          }
+          continue;
+        }
+        pending.put(chunk.start, chunk);
+        long mergedBefore = merged;
+        while ((chunk = pending.remove(merged)) != null) {
+          initial.merge(chunk.summary);
+          merged = chunk.end;
+          unmergedChunks.release();
+        }
+        if (merged != mergedBefore) {
+          progressListener.accept(initial);
+        }
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    return initial;
+  }
+
+  private static class Chunk {
+    private final long start;
+    private final long end;
+    private final Summary summary;
+
+    private Chunk(long start, long end, Summary summary) {
+      this.start = start;
+      this.end = end;
+      this.summary = summary;
+    }
+  }
+
+  /**
+   * Best and worst lineups, score histogram, and count of a set of scored lineups. Histogram keys are
+   * the score times 10, truncated (scores are never negative). This class is not thread safe.
+   */
+  public static class Summary {
+
+    private static final int INITIAL_HISTOGRAM_SIZE = 128;
+
+    private final boolean lowestScore;
+    private BattingLineup optimalLineup;
+    private double optimalScore;
+    private BattingLineup oppositeOfOptimalLineup;
+    private double oppositeOfOptimalScore;
+    private long[] histogram = new long[INITIAL_HISTOGRAM_SIZE];
+    private long countCompleted;
+
+    /**
+     * An empty summary
+     */
+    public Summary(boolean lowestScore) {
+      this.lowestScore = lowestScore;
+      this.optimalScore = lowestScore ? Double.POSITIVE_INFINITY : Double.NEGATIVE_INFINITY;
+      this.oppositeOfOptimalScore = lowestScore ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * A summary of the lineups scored by a previous run, as saved in its result. The result's lineups
+     * are populated with the players' stats (the serialized result does not save them).
+     */
+    public Summary(boolean lowestScore, MonteCarloExhaustiveResult existingResult, DataStats battingData) {
+      this(lowestScore);
+      if (existingResult == null) {
+        return;
+      }
+      this.countCompleted = existingResult.getCountCompleted();
+      if (existingResult.getLineup() != null) {
+        existingResult.getLineup().populateStats(battingData);
+        this.optimalLineup = existingResult.getLineup();
+        this.optimalScore = existingResult.getLineupScore();
+      }
+      if (existingResult.getOppositeOfOptimalLineup() != null) {
+        existingResult.getOppositeOfOptimalLineup().populateStats(battingData);
+        this.oppositeOfOptimalLineup = existingResult.getOppositeOfOptimalLineup();
+        this.oppositeOfOptimalScore = existingResult.getOppositeOfOptimalScore();
+      }
+      if (existingResult.getHistogram() != null) {
+        for (Map.Entry<Long, Long> entry : existingResult.getHistogram().entrySet()) {
+          addToHistogram(entry.getKey().intValue(), entry.getValue());
+        }
+      }
+    }
+
+    private Summary(Summary toCopy) {
+      this.lowestScore = toCopy.lowestScore;
+      this.optimalLineup = toCopy.optimalLineup;
+      this.optimalScore = toCopy.optimalScore;
+      this.oppositeOfOptimalLineup = toCopy.oppositeOfOptimalLineup;
+      this.oppositeOfOptimalScore = toCopy.oppositeOfOptimalScore;
+      this.histogram = toCopy.histogram.clone();
+      this.countCompleted = toCopy.countCompleted;
+    }
+
+    /**
+     * @return a copy of this summary that won't change when this one does, e.g. to build a progress
+     *         result from later on another thread
+     */
+    public Summary copy() {
+      return new Summary(this);
+    }
+
+    public void add(BattingLineup lineup, double score) {
+      if (optimalLineup == null || isBetter(score, optimalScore)) {
+        optimalLineup = lineup;
+        optimalScore = score;
+      }
+      if (oppositeOfOptimalLineup == null || isBetter(oppositeOfOptimalScore, score)) {
+        oppositeOfOptimalLineup = lineup;
+        oppositeOfOptimalScore = score;
+      }
+      addToHistogram((int) (score * 10), 1);
+      countCompleted++;
+    }
+
+    /**
+     * Adds the lineups summarized by other to this summary. If both summaries have lineups with the
+     * same best (or worst) score, this summary's lineup is kept, so merging summaries in index order
+     * gives the same result as adding each lineup in index order.
+     */
+    public void merge(Summary other) {
+      if (other.optimalLineup != null && (optimalLineup == null || isBetter(other.optimalScore, optimalScore))) {
+        optimalLineup = other.optimalLineup;
+        optimalScore = other.optimalScore;
+      }
+      if (other.oppositeOfOptimalLineup != null
+          && (oppositeOfOptimalLineup == null || isBetter(oppositeOfOptimalScore, other.oppositeOfOptimalScore))) {
+        oppositeOfOptimalLineup = other.oppositeOfOptimalLineup;
+        oppositeOfOptimalScore = other.oppositeOfOptimalScore;
+      }
+      if (other.histogram.length > histogram.length) {
+        histogram = Arrays.copyOf(histogram, other.histogram.length);
+      }
+      for (int i = 0; i < other.histogram.length; i++) {
+        histogram[i] += other.histogram[i];
+      }
+      countCompleted += other.countCompleted;
+    }
+
+    public BattingLineup getOptimalLineup() {
+      return optimalLineup;
+    }
+
+    public double getOptimalScore() {
+      return optimalScore;
+    }
+
+    public BattingLineup getOppositeOfOptimalLineup() {
+      return oppositeOfOptimalLineup;
+    }
+
+    public double getOppositeOfOptimalScore() {
+      return oppositeOfOptimalScore;
+    }
+
+    public long getCountCompleted() {
+      return countCompleted;
+    }
+
+    /**
+     * @return a new map of histogram key to the number of lineups with that key, in the format used by
+     *         {@link MonteCarloExhaustiveResult}
+     */
+    public Map<Long, Long> getHistogram() {
+      Map<Long, Long> map = new HashMap<>();
+      for (int i = 0; i < histogram.length; i++) {
+        if (histogram[i] != 0) {
+          map.put((long) i, histogram[i]);
+        }
+      }
+      return map;
+    }
+
+    private boolean isBetter(double score, double than) {
+      return lowestScore ? score < than : score > than;
+    }
+
+    private void addToHistogram(int key, long count) {
+      if (key >= histogram.length) {
+        histogram = Arrays.copyOf(histogram, Math.max(key + 1, histogram.length * 2));
+      }
+      histogram[key] += count;
+    }
+
+  }
+
+}
@@ -0,0 +1,107 @@
+package com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive;
+
+import org.apache.commons.math3.stat.descriptive.StatisticalSummary;
+import org.apache.commons.math3.stat.descriptive.StatisticalSummaryValues;
+
+/**
+ * Caller supplied sink for {@link MonteCarloGameSimulation#simulateGames}. Game scores are whole
+ * numbers of runs so the sum and sum of squares are kept as longs, which are exact and don't allocate
+ * no matter how many games are added.
+ *
+ * This class is not thread safe, each thread should use its own accumulator.
+ */
+public class GameScoreAccumulator {
+
+  private long n;
+  private long sum;
+  private long sumOfSquares;
+  private int min = Integer.MAX_VALUE;
+  private int max = Integer.MIN_VALUE;
+
+  public void add(int gameScore) {
+    n++;
+    sum += gameScore;
+    sumOfSquares += (long) gameScore * gameScore;
+    if (gameScore < min) {
+      min = gameScore;
+    }
+    if (gameScore > max) {
+      max = gameScore;
+    }
+  }
+
+  /**
+   * Adds the games accumulated by other, e.g. on another thread
+   */
+  public void merge(GameScoreAccumulator other) {
+    n += other.n;
+    sum += other.sum;
+    sumOfSquares += other.sumOfSquares;
+    min = Math.min(min, other.min);
+    max = Math.max(max, other.max);
+  }
+
+  public void clear() {
+    n = 0;
+    sum = 0;
+    sumOfSquares = 0;
+    min = Integer.MAX_VALUE;
+    max = Integer.MIN_VALUE;
+  }
+
+  public long getN() {
+    return n;
+  }
+
+  public long getSum() {
+    return sum;
+  }
+
+  public long getSumOfSquares() {
+    return sumOfSquares;
+  }
+
+  public int getMin() {
+    return min;
+  }
+
+  public int getMax() {
+    return max;
+  }
+
+  public double getMean() {
+    return n == 0 ? Double.NaN : (double) sum / n;
+  }
+
+  /**
+   * @return the sum of squared deviations from the mean
+   */
+  public double getSumOfSquaredDeviations() {
+    return n == 0 ? 0 : sumOfSquares - (double) sum * sum / n;
+  }
+
+  /**
+   * @return the bias corrected sample variance, matching commons-math's SummaryStatistics
+   */
+  public double getVariance() {
+    if (n == 0) {
+      return Double.NaN;
+    }
+    if (n == 1) {
+      return 0;
+    }
+    return (sumOfSquares - (double) sum * sum / n) / (n - 1);
+  }
+
+  /**
+   * @return an immutable snapshot of the games accumulated so far that can be aggregated with other
+   *         commons-math statistics
+   */
+  public StatisticalSummary toStatisticalSummary() {
+    if (n == 0) {
+      return new StatisticalSummaryValues(0, 0, 0, 0, 0, 0);
+    }
+    return new StatisticalSummaryValues(getMean(), getVariance(), n, max, min, sum);
+  }
+
+}
@@ -0,0 +1,17 @@
+package com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive;
+
+/**
+ * Something that can simulate games for a single lineup. See {@link SimulationEngineEnum} for the
+ * available implementations.
+ * 
+ * Implementations must be safe to call from multiple threads as long as each thread supplies its own
+ * accumulator.
+ */
+public interface GameSimulator {
+
+  /**
+   * Simulate numberOfGames games and add the score of each game to the accumulator.
+   */
+  public void simulateGames(int inningsPerGame, long numberOfGames, GameScoreAccumulator accumulator);
+
+}
@@ -1,55 +1,174 @@
 package com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive;
 
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ThreadLocalRandom;
+import com.github.thbrown.softballsim.Msg;
 import com.github.thbrown.softballsim.data.gson.DataPlayer;
 
 /**
  * Class that simulates hits for a player based of their stats.
- * 
+ *
+ * Each player is assigned a dense int ordinal on construction and their outcome distribution is
+ * compiled into an alias table (Vose's method). Sampling an outcome by ordinal costs one random
+ * number, two primitive array reads, and no hashing or boxing. Use {@link CompiledLineup} to map
+ * positions in a batting order to these ordinals.
+ *
  * This class must remain immutable so the hit method can be called from multiple threads.
  */
 public class HitGenerator {
 
-  private final Map<String, Integer[]> hitValues = new HashMap<>();
+  // Outcomes are the number of bases earned: out, single, double, triple, homerun
+  public static final int OUTCOMES = 5;
+
+  // Alias table thresholds are unsigned 32 bit fractions, a threshold of 2^32 always accepts
+  private static final long ALWAYS_ACCEPT = 1L << 32;
+  private static final long LOW_BITS = 0xFFFFFFFFL;
+
+  private final Map<String, Integer> ordinals = new HashMap<>();
+
+  // Alias tables for all players, player 'p' occupies indexes [p * OUTCOMES, (p + 1) * OUTCOMES)
+  private final long[] thresholds;
+  private final int[] aliases;
+
+  // Same layout as the alias tables, for consumers that work with exact probabilities
+  private final double[] probabilities;
 
   public HitGenerator(List<DataPlayer> players) {
+    this.thresholds = new long[players.size() * OUTCOMES];
+    this.aliases = new int[players.size() * OUTCOMES];
+    this.probabilities = new double[players.size() * OUTCOMES];
 
     for (DataPlayer player : players) {
-      List<Integer> resultBucket = new ArrayList<>();
-
-      for (int i = 0; i < player.getHomerunCount(); i++) {
-        resultBucket.add(4);
-      }
-      for (int i = 0; i < player.getTripleCount(); i++) {
-        resultBucket.add(3);
+      if (ordinals.containsKey(player.getId())) {
+        continue;
       }
-      for (int i = 0; i < player.getDoubleCount(); i++) {
-        resultBucket.add(2);
-      }
-      for (int i = 0; i < (player.getSingleCount() + player.getWalkCount()); i++) {
-        resultBucket.add(1);
+      int ordinal = ordinals.size();
+      ordinals.put(player.getId(), ordinal);
+
+      buildAliasTable(player, ordinal * OUTCOMES, getOutcomeCounts(player));
+    }
+  }
+
+  /**
+   * @return how many times the player's plate appearances resulted in each outcome, indexed by the
+   *         number of bases earned (0 - out, 1 - single or walk, 2 - double, 3 - triple, 4 - homerun)
+   */
+  public static long[] getOutcomeCounts(DataPlayer player) {
+    long[] counts = new long[OUTCOMES];
+    counts[0] = player.getOutCount() + player.getSacCount();
+    counts[1] = player.getSingleCount() + player.getWalkCount();
+    counts[2] = player.getDoubleCount();
+    counts[3] = player.getTripleCount();
+    counts[4] = player.getHomerunCount();
+    return counts;
+  }
+
+  /**
+   * Vose's alias method using exact integer arithmetic. Each column's weight is scaled by OUTCOMES so
+   * that the average column weight is exactly the player's plate appearance count.
+   */
+  private void buildAliasTable(DataPlayer player, int offset, long[] counts) {
+    long total = 0;
+    for (long count : counts) {
+      total += count;
+    }
+    if (total == 0) {
+      throw new IllegalArgumentException(Msg.PLAYER_HAS_NO_PA.args(player.getName(), player.getId()));
+    }
+    for (int i = 0; i < OUTCOMES; i++) {
+      probabilities[offset + i] = (double) counts[i] / total;
+    }
+
+    long[] scaled = new long[OUTCOMES];
+    int[] small = new int[OUTCOMES];
+    int[] large = new int[OUTCOMES];
+    int smallSize = 0;
+    int largeSize = 0;
+    for (int i = 0; i < OUTCOMES; i++) {
+      scaled[i] = counts[i] * OUTCOMES;
+      if (scaled[i] < total) {
+        small[smallSize++] = i;
+      } else {
+        large[largeSize++] = i;
       }
-      for (int i = 0; i < (player.getOutCount() + player.getSacCount()); i++) {
-        resultBucket.add(0);
+    }
+
+    while (smallSize > 0 && largeSize > 0) {
+      int lesser = small[--smallSize];
+      int greater = large[--largeSize];
+      thresholds[offset + lesser] = (long) ((double) scaled[lesser] / total * ALWAYS_ACCEPT);
+      aliases[offset + lesser] = greater;
+      scaled[greater] -= total - scaled[lesser];
+      if (scaled[greater] < total) {
+        small[smallSize++] = greater;
+      } else {
+        large[largeSize++] = greater;
       }
+    }
 
-      // We get slightly better access performance from an array over an ArrayList
-      Integer[] resultBucketArray = new Integer[resultBucket.size()];
-      hitValues.put(player.getId(), resultBucket.toArray(resultBucketArray));
+    // Whatever remains has a weight of exactly the average
+    while (largeSize > 0) {
+      int column = large[--largeSize];
+      thresholds[offset + column] = ALWAYS_ACCEPT;
+      aliases[offset + column] = column;
     }
+    while (smallSize > 0) {
+      int column = small[--smallSize];
+      thresholds[offset + column] = ALWAYS_ACCEPT;
+      aliases[offset + column] = column;
+    }
+  }
 
+  /**
+   * @return the dense ordinal assigned to this player, ordinals are in the range [0, number of
+   *         players)
+   */
+  public int getOrdinal(String playerId) {
+    Integer ordinal = ordinals.get(playerId);
+    if (ordinal == null) {
+      throw new IllegalArgumentException("Player " + playerId + " is not known to this HitGenerator");
+    }
+    return ordinal;
+  }
+
+  /**
+   * @return the number of distinct players known to this HitGenerator, which is one more than the
+   *         largest ordinal
+   */
+  public int getPlayerCount() {
+    return ordinals.size();
+  }
+
+  /**
+   * @return the probability that a plate appearance by the player with the given ordinal earns
+   *         numBases bases (0 for an out)
+   */
+  public double getOutcomeProbability(int ordinal, int numBases) {
+    return probabilities[ordinal * OUTCOMES + numBases];
   }
 
   public int hit(String playerId) {
-    // TODO: Using a length that is a power of 2 is about 25% faster, there could be some optimization
-    // vector here.
-    Integer[] hitBucket = hitValues.get(playerId);
-    int randomValue = ThreadLocalRandom.current().nextInt(hitBucket.length);
-    return hitBucket[randomValue];
+    return hit(getOrdinal(playerId));
+  }
+
+  /**
+   * @return the number of bases earned by a randomly sampled plate appearance from the player with the
+   *         given ordinal (0 for an out)
+   */
+  public int hit(int ordinal) {
+    return hit(ordinal, ThreadLocalRandom.current().nextLong());
+  }
+
+  /**
+   * Same as {@link #hit(int)} but driven by a caller supplied 64 bit random value. The same value always
+   * produces the same outcome for the same player.
+   */
+  public int hit(int ordinal, long random) {
+    int column = (int) (((random >>> 32) * OUTCOMES) >>> 32);
+    int index = ordinal * OUTCOMES + column;
+    return (random & LOW_BITS) < thresholds[index] ? column : aliases[index];
   }
 
 }
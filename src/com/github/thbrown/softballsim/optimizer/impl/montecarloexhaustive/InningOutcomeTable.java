@@ -0,0 +1,240 @@
+package com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Simulates games one inning at a time instead of one plate appearance at a time.
+ *
+ * For a fixed lineup, the result of an inning depends only on which position in the batting order
+ * leads it off. On construction we calculate, for every leadoff position, the exact joint
+ * distribution of (runs scored, leadoff position of the next inning) and compile each distribution
+ * into an alias table. Simulating a game then takes one random draw per inning.
+ *
+ * The distributions are calculated with the same rules as
+ * {@link MonteCarloGameSimulation#simulateGames}, including the cap on runs per inning. We don't need
+ * to track runs as part of the state: every batter that doesn't make an out either scores or is still
+ * on base, so after k plate appearances runs = k - outs - (runners on base). Plate appearances are
+ * followed until the chance the inning is still in progress is negligible.
+ *
+ * This class is immutable and may be shared between threads.
+ */
+public class InningOutcomeTable implements GameSimulator {
+
+  private static final int OUTS_PER_INNING = 3;
+  private static final int BASE_STATES = 8;
+
+  // Stop following an inning once the probability that it is still in progress drops below this
+  private static final double EPSILON = 1e-12;
+
+  // Alias table thresholds are unsigned 32 bit fractions, a threshold of 2^32 always accepts
+  private static final long ALWAYS_ACCEPT = 1L << 32;
+  private static final long LOW_BITS = 0xFFFFFFFFL;
+
+  // Outcomes for leadoff position 'p' occupy indexes [offsets[p], offsets[p + 1])
+  private final int[] offsets;
+  private final int[] runs;
+  private final int[] nextLeadoff;
+  private final long[] thresholds;
+  private final int[] aliases;
+
+  public InningOutcomeTable(CompiledLineup lineup) {
+    int battingOrderLength = lineup.getBattingOrderLength();
+    HitGenerator hitGenerator = lineup.getHitGenerator();
+
+    // Outcome probabilities by batting order position
+    double[][] p = new double[battingOrderLength][HitGenerator.OUTCOMES];
+    for (int i = 0; i < battingOrderLength; i++) {
+      for (int j = 0; j < HitGenerator.OUTCOMES; j++) {
+        p[i][j] = hitGenerator.getOutcomeProbability(lineup.getOrdinal(i), j);
+      }
+    }
+
+    // Runs can exceed the cap by at most 3 (a grand slam with one run to go)
+    int maxRuns = MonteCarloGameSimulation.MAX_RUNS_PER_INNING + 3;
+    double[][] distributions = new double[battingOrderLength][];
+    int outcomeCount = 0;
+    for (int leadoff = 0; leadoff < battingOrderLength; leadoff++) {
+      distributions[leadoff] = getInningDistribution(leadoff, p, maxRuns);
+      for (double probability : distributions[leadoff]) {
+        if (probability > 0) {
+          outcomeCount++;
+        }
+      }
+    }
+
+    this.offsets = new int[battingOrderLength + 1];
+    this.runs = new int[outcomeCount];
+    this.nextLeadoff = new int[outcomeCount];
+    this.thresholds = new long[outcomeCount];
+    this.aliases = new int[outcomeCount];
+
+    int index = 0;
+    for (int leadoff = 0; leadoff < battingOrderLength; leadoff++) {
+      offsets[leadoff] = index;
+      double[] distribution = distributions[leadoff];
+      for (int i = 0; i < distribution.length; i++) {
+        if (distribution[i] > 0) {
+          runs[index] = i / battingOrderLength;
+          nextLeadoff[index] = i % battingOrderLength;
+          index++;
+        }
+      }
+      offsets[leadoff + 1] = index;
+      buildAliasTable(offsets[leadoff], index, distribution);
+    }
+  }
+
+  /**
+   * @return the probability of each inning outcome for an inning started by the given leadoff
+   *         position, indexed by runs * battingOrderLength + nextLeadoff
+   */
+  private static double[] getInningDistribution(int leadoff, double[][] p, int maxRuns) {
+    int battingOrderLength = p.length;
+    double[] distribution = new double[(maxRuns + 1) * battingOrderLength];
+
+    // Probability of being in each (outs, bases) state after k plate appearances
+    double[] current = new double[OUTS_PER_INNING * BASE_STATES];
+    double[] next = new double[OUTS_PER_INNING * BASE_STATES];
+    current[0] = 1;
+
+    int position = leadoff;
+    for (int k = 1; true; k++) {
+      double[] batter = p[position];
+      position++;
+      if (position == battingOrderLength) {
+        position = 0;
+      }
+      Arrays.fill(next, 0);
+
+      for (int outs = 0; outs < OUTS_PER_INNING; outs++) {
+        for (int bases = 0; bases < BASE_STATES; bases++) {
+          double stateProbability = current[outs * BASE_STATES + bases];
+          if (stateProbability == 0) {
+            continue;
+          }
+
+          // Out
+          if (batter[0] > 0) {
+            if (outs + 1 == OUTS_PER_INNING) {
+              int inningRuns = k - OUTS_PER_INNING - Integer.bitCount(bases);
+              distribution[inningRuns * battingOrderLength + position] += stateProbability * batter[0];
+            } else {
+              next[(outs + 1) * BASE_STATES + bases] += stateProbability * batter[0];
+            }
+          }
+
+          // Hits
+          for (int numBases = 1; numBases < HitGenerator.OUTCOMES; numBases++) {
+            if (batter[numBases] == 0) {
+              continue;
+            }
+            int newBases = BasesUtil.getBasesMask(BasesUtil.getTransition(bases, numBases));
+            int inningRuns = k - outs - Integer.bitCount(newBases);
+            double transitionProbability = stateProbability * batter[numBases];
+            if (inningRuns >= MonteCarloGameSimulation.MAX_RUNS_PER_INNING) {
+              distribution[inningRuns * battingOrderLength + position] += transitionProbability;
+            } else {
+              next[outs * BASE_STATES + newBases] += transitionProbability;
+            }
+          }
+        }
+      }
+
+      double[] temp = current;
+      current = next;
+      next = temp;
+
+      double inProgress = 0;
+      for (double stateProbability : current) {
+        inProgress += stateProbability;
+      }
+      if (inProgress < EPSILON) {
+        return distribution;
+      }
+    }
+  }
+
+  /**
+   * Vose's alias method over the non-zero entries of the distribution, which have already been
+   * assigned indexes [start, end). The tiny amount of probability we stopped following is spread
+   * proportionally over the outcomes we did.
+   */
+  private void buildAliasTable(int start, int end, double[] distribution) {
+    int count = end - start;
+    double[] scaled = new double[count];
+    double total = 0;
+    int j = 0;
+    for (double probability : distribution) {
+      if (probability > 0) {
+        scaled[j++] = probability;
+        total += probability;
+      }
+    }
+
+    int[] small = new int[count];
+    int[] large = new int[count];
+    int smallSize = 0;
+    int largeSize = 0;
+    for (int i = 0; i < count; i++) {
+      scaled[i] = scaled[i] * count / total;
+      if (scaled[i] < 1) {
+        small[smallSize++] = i;
+      } else {
+        large[largeSize++] = i;
+      }
+    }
+
+    while (smallSize > 0 && largeSize > 0) {
+      int lesser = small[--smallSize];
+      int greater = large[--largeSize];
+      thresholds[start + lesser] = (long) (scaled[lesser] * ALWAYS_ACCEPT);
+      aliases[start + lesser] = start + greater;
+      scaled[greater] -= 1 - scaled[lesser];
+      if (scaled[greater] < 1) {
+        small[smallSize++] = greater;
+      } else {
+        large[largeSize++] = greater;
+      }
+    }
+
+    // Whatever remains has a weight of (approximately, due to rounding) the average
+    while (largeSize > 0) {
+      int column = large[--largeSize];
+      thresholds[start + column] = ALWAYS_ACCEPT;
+      aliases[start + column] = start + column;
+    }
+    while (smallSize > 0) {
+      int column = small[--smallSize];
+      thresholds[start + column] = ALWAYS_ACCEPT;
+      aliases[start + column] = start + column;
+    }
+  }
+
+  /**
+   * @return the index of a randomly sampled outcome of an inning started by the given leadoff position
+   */
+  private int sampleInning(int leadoff, ThreadLocalRandom random) {
+    int start = offsets[leadoff];
+    int count = offsets[leadoff + 1] - start;
+    long value = random.nextLong();
+    int index = start + (int) (((value >>> 32) * count) >>> 32);
+    return (value & LOW_BITS) < thresholds[index] ? index : aliases[index];
+  }
+
+  @Override
+  public void simulateGames(int inningsPerGame, long numberOfGames, GameScoreAccumulator accumulator) {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    for (long game = 0; game < numberOfGames; game++) {
+      int gameScore = 0;
+      int leadoff = 0;
+      for (int inning = 0; inning < inningsPerGame; inning++) {
+        int outcome = sampleInning(leadoff, random);
+        gameScore += runs[outcome];
+        leadoff = nextLeadoff[outcome];
+      }
+      accumulator.add(gameScore);
+    }
+  }
+
+}
@@ -4,20 +4,26 @@ import java.util.Map;
 
 public class MonteCarloExhaustiveArgumentParser {
 
+  public final static String COLLAPSE_IDENTICAL_PLAYERS = "C";
+  public final static String ENGINE = "E";
   public final static String GAMES = "G";
   public final static String INNINGS = "I";
   public final static String LOWEST_SCORE = "L";
   public final static String THREADS = "T";
 
+  private final SimulationEngineEnum engine;
   private final long games;
   private final int innings;
   private final boolean lowestScore;
+  private final boolean collapseIdenticalPlayers;
   private final int threads;
 
   public MonteCarloExhaustiveArgumentParser(Map<String, String> args) {
+    engine = SimulationEngineEnum.getEnumFromName(args.get(ENGINE));
     games = Long.parseLong(args.get(GAMES));
     innings = Integer.parseInt(args.get(INNINGS));
     lowestScore = Boolean.parseBoolean(args.get(LOWEST_SCORE));
+    collapseIdenticalPlayers = Boolean.parseBoolean(args.get(COLLAPSE_IDENTICAL_PLAYERS));
 
     String threadsString = args.get(THREADS);
     if (threadsString == null) {
@@ -27,6 +33,10 @@ public class MonteCarloExhaustiveArgumentParser {
     }
   }
 
+  public SimulationEngineEnum getEngine() {
+    return engine;
+  }
+
   public long getGames() {
     return games;
   }
@@ -39,6 +49,10 @@ public class MonteCarloExhaustiveArgumentParser {
     return lowestScore;
   }
 
+  public boolean isCollapseIdenticalPlayers() {
+    return collapseIdenticalPlayers;
+  }
+
   public int getThreads() {
     return threads;
   }
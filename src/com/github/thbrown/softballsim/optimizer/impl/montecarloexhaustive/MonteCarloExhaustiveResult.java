@@ -47,6 +47,22 @@ public class MonteCarloExhaustiveResult extends Result {
     this.oppositeOfOptimalScore = 0;
   }
 
+  /**
+   * Copy constructor, see {@link Result#copy(ResultStatusEnum, String, Long)}
+   */
+  protected MonteCarloExhaustiveResult(MonteCarloExhaustiveResult toCopy, ResultStatusEnum status,
+      String statusMessage, Long estimatedTimeRemainingMs) {
+    super(toCopy, status, statusMessage, estimatedTimeRemainingMs);
+    this.histogram = toCopy.histogram;
+    this.oppositeOfOptimalLineup = toCopy.oppositeOfOptimalLineup;
+    this.oppositeOfOptimalScore = toCopy.oppositeOfOptimalScore;
+  }
+
+  @Override
+  protected Result copy(ResultStatusEnum status, String statusMessage, Long estimatedTimeRemainingMs) {
+    return new MonteCarloExhaustiveResult(this, status, statusMessage, estimatedTimeRemainingMs);
+  }
+
   public Map<Long, Long> getHistogram() {
     return histogram;
   }
@@ -1,8 +1,8 @@
 package com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive;
 
+import java.util.concurrent.ThreadLocalRandom;
 import com.github.thbrown.softballsim.data.gson.DataPlayer;
 import com.github.thbrown.softballsim.lineup.BattingLineup;
-import com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive.BasesUtil.BasesState;
 import com.github.thbrown.softballsim.util.Logger;
 import com.github.thbrown.softballsim.util.StringUtils;
 
@@ -15,30 +15,147 @@ public class MonteCarloGameSimulation {
   final private static boolean VERBOSE = false;
   private static final int NAME_PADDING = 24; // Just for formatting verbose output
 
-  private static final int MAX_RUNS_PER_INNING = 100;
+  static final int MAX_RUNS_PER_INNING = 100;
+
+  // SplitMix64 constants for the common random number streams, see simulatePairedGames
+  private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+  private static final long STREAM_SPACING = 0xD1B54A32D192ED03L;
+
+  // Every simulation that isn't paired shares this source so the call in playGame only ever sees two
+  // implementations
+  private static final OutcomeSource UNSEEDED = ordinal -> ThreadLocalRandom.current().nextLong();
 
   public static double simulateGame(BattingLineup lineup, int inningsPerGame, HitGenerator hitGenerator) {
+    return simulateGame(new CompiledLineup(lineup, hitGenerator), inningsPerGame);
+  }
+
+  /**
+   * Simulates a single game. Callers that simulate the same lineup many times should compile it once
+   * and reuse the {@link CompiledLineup}, or use
+   * {@link #simulateGames(CompiledLineup, int, long, GameScoreAccumulator)}.
+   */
+  public static double simulateGame(CompiledLineup lineup, int inningsPerGame) {
+    return playGame(lineup, inningsPerGame, UNSEEDED, null);
+  }
 
-    // Game
-    BasesState bases = new BasesState();
+  /**
+   * Simulates numberOfGames games back to back and adds each game's score to the accumulator. All
+   * game state lives in local primitives so nothing is allocated no matter how many games are
+   * simulated.
+   */
+  public static void simulateGames(CompiledLineup lineup, int inningsPerGame, long numberOfGames,
+      GameScoreAccumulator accumulator) {
+    for (long game = 0; game < numberOfGames; game++) {
+      accumulator.add(playGame(lineup, inningsPerGame, UNSEEDED, null));
+    }
+  }
+
+  /**
+   * Same as {@link #simulateGames(CompiledLineup, int, long, GameScoreAccumulator)} but reproducible,
+   * every game is played from its own seed derived from the given seed, so the same seed always
+   * produces the same scores.
+   */
+  public static void simulateGames(CompiledLineup lineup, int inningsPerGame, long numberOfGames, long seed,
+      GameScoreAccumulator accumulator) {
+    PlayerStreams streams = new PlayerStreams(lineup.getHitGenerator().getPlayerCount());
+    for (long game = 0; game < numberOfGames; game++) {
+      streams.reset(mix64(seed + game * GOLDEN_GAMMA));
+      accumulator.add(playGame(lineup, inningsPerGame, streams, null));
+    }
+  }
+
+  /**
+   * Same as {@link #simulateGames(CompiledLineup, int, long, GameScoreAccumulator)} but also records
+   * each game's control variate covariates: the batters' times on base and total bases, each minus
+   * their expected value given who came to the plate. Every plate appearance's contribution to either
+   * covariate has an expected value of zero no matter what happened before it, so each covariate's
+   * expected value for a whole game is zero too.
+   */
+  public static void simulateGames(CompiledLineup lineup, int inningsPerGame, long numberOfGames,
+      ControlVariateAccumulator accumulator) {
+    double[] covariates = new double[2];
+    for (long game = 0; game < numberOfGames; game++) {
+      int gameScore = playGame(lineup, inningsPerGame, UNSEEDED, covariates);
+      accumulator.add(gameScore, covariates[0], covariates[1]);
+    }
+  }
+
+  /**
+   * Simulates numberOfGames games for each of two lineups using common random numbers. Both lineups
+   * play each game from the same seed and every player draws their plate appearance outcomes from
+   * their own random stream derived from that seed, so a player's nth plate appearance of a game has
+   * the same outcome in both lineups. Differences between the two scores are then caused mostly by
+   * the batting order rather than by luck, which lets a paired t-test on the differences reach
+   * significance with far fewer games than an unpaired test on independent simulations.
+   *
+   * Both lineups must have been compiled with the same HitGenerator. Each game's scores are added to
+   * scoresA and scoresB. The difference (B - A) is added to differences along with the differences in
+   * the control variate covariates (see
+   * {@link #simulateGames(CompiledLineup, int, long, ControlVariateAccumulator)}).
+   */
+  public static void simulatePairedGames(CompiledLineup lineupA, CompiledLineup lineupB, int inningsPerGame,
+      long numberOfGames, GameScoreAccumulator scoresA, GameScoreAccumulator scoresB,
+      ControlVariateAccumulator differences) {
+    if (lineupA.getHitGenerator() != lineupB.getHitGenerator()) {
+      throw new IllegalArgumentException("Paired lineups must be compiled with the same HitGenerator");
+    }
+    PlayerStreams streams = new PlayerStreams(lineupA.getHitGenerator().getPlayerCount());
+    double[] covariatesA = new double[2];
+    double[] covariatesB = new double[2];
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    for (long game = 0; game < numberOfGames; game++) {
+      long seed = random.nextLong();
+      streams.reset(seed);
+      int scoreA = playGame(lineupA, inningsPerGame, streams, covariatesA);
+      streams.reset(seed);
+      int scoreB = playGame(lineupB, inningsPerGame, streams, covariatesB);
+      scoresA.add(scoreA);
+      scoresB.add(scoreB);
+      differences.add(scoreB - scoreA, covariatesB[0] - covariatesA[0], covariatesB[1] - covariatesA[1]);
+    }
+  }
+
+  /**
+   * Simulates one game. This is the only place the rules of the game are applied, every method above
+   * only decides where the randomness comes from and where the results go.
+   *
+   * @param outcomes the random bits behind each plate appearance
+   * @param covariates if not null, receives the game's control variate covariates (times on base and
+   *        total bases, see {@link #simulateGames(CompiledLineup, int, long, ControlVariateAccumulator)})
+   * @return the number of runs scored
+   */
+  private static int playGame(CompiledLineup lineup, int inningsPerGame, OutcomeSource outcomes,
+      double[] covariates) {
+    HitGenerator hitGenerator = lineup.getHitGenerator();
+    int battingOrderLength = lineup.getBattingOrderLength();
+    double onBase = 0;
+    double totalBases = 0;
     int gameScore = 0;
-    int batterIndex = 0;
-    for (int inning = 0; inningsPerGame > inning; inning++) {
+    int position = 0;
+    for (int inning = 0; inning < inningsPerGame; inning++) {
 
       // Inning
+      int bases = 0;
       int outs = 0;
       int runsThisInning = 0;
       while (outs < 3 && runsThisInning < MAX_RUNS_PER_INNING) {
-        DataPlayer p = lineup.getBatter(batterIndex);
-        batterIndex++;
-        int numBases = hitGenerator.hit(p.getId());
+        int ordinal = lineup.getOrdinal(position);
+        int numBases = hitGenerator.hit(ordinal, outcomes.next(ordinal));
+        if (covariates != null) {
+          onBase -= lineup.getOnBaseProbability(position);
+          totalBases += numBases - lineup.getExpectedBases(position);
+        }
         if (numBases > 0) {
-          runsThisInning += BasesUtil.updateRunsAndBasesAfterHit(numBases, bases);
+          onBase++;
+          int transition = BasesUtil.getTransition(bases, numBases);
+          runsThisInning += BasesUtil.getRuns(transition);
+          bases = BasesUtil.getBasesMask(transition);
         } else {
           outs++;
         }
 
         if (VERBOSE) {
+          DataPlayer p = lineup.getBatter(position);
           String message =
               StringUtils.padRight(p.getName(), NAME_PADDING) +
                   "\t hit:" + mapBasesToHitType(numBases) +
@@ -46,24 +163,67 @@ public class MonteCarloGameSimulation {
                   "\t score:" + (gameScore + runsThisInning);
           Logger.log(message);
         }
+
+        position++;
+        if (position == battingOrderLength) {
+          position = 0;
+        }
       }
       gameScore += runsThisInning;
       if (VERBOSE) {
         Logger.log("--------------");
       }
-      clearBases(bases);
     }
     if (VERBOSE) {
       Logger.log("Runs Scored: " + gameScore);
       Logger.log("=============================================================");
     }
+    if (covariates != null) {
+      covariates[0] = onBase;
+      covariates[1] = totalBases;
+    }
     return gameScore;
   }
 
-  private static void clearBases(BasesState bases) {
-    bases.first = false;
-    bases.second = false;
-    bases.third = false;
+  /**
+   * Supplies the random bits behind each plate appearance, given the HitGenerator ordinal of the
+   * player at the plate (see {@link HitGenerator#hit(int, long)})
+   */
+  private interface OutcomeSource {
+    long next(int ordinal);
+  }
+
+  /**
+   * Gives each player their own SplitMix64 stream seeded from a game seed and the player's ordinal, see
+   * {@link MonteCarloGameSimulation#simulatePairedGames}. Reset the streams before every game.
+   */
+  private static final class PlayerStreams implements OutcomeSource {
+    private final long[] streams;
+
+    PlayerStreams(int playerCount) {
+      this.streams = new long[playerCount];
+    }
+
+    void reset(long seed) {
+      for (int ordinal = 0; ordinal < streams.length; ordinal++) {
+        streams[ordinal] = mix64(seed + (ordinal + 1) * STREAM_SPACING);
+      }
+    }
+
+    @Override
+    public long next(int ordinal) {
+      streams[ordinal] += GOLDEN_GAMMA;
+      return mix64(streams[ordinal]);
+    }
+  }
+
+  /**
+   * SplitMix64's output function
+   */
+  private static long mix64(long z) {
+    z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+    z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+    return z ^ (z >>> 31);
   }
 
   private static String mapBasesToHitType(int bases) {
@@ -15,9 +15,15 @@ public class MonteCarloMultiGameSimulationTask implements Callable<TaskResult> {
   private int inningsPerGame;
 
   private HitGenerator hitGenerator;
+  private SimulationEngineEnum engine;
 
   public MonteCarloMultiGameSimulationTask(BattingLineup lineup, long numberOfGamesToSimulate, int inningsPerGame,
       HitGenerator hitGenerator) {
+    this(lineup, numberOfGamesToSimulate, inningsPerGame, hitGenerator, SimulationEngineEnum.PLATE_APPEARANCE);
+  }
+
+  public MonteCarloMultiGameSimulationTask(BattingLineup lineup, long numberOfGamesToSimulate, int inningsPerGame,
+      HitGenerator hitGenerator, SimulationEngineEnum engine) {
     if (lineup == null) {
       Logger.log("NULL LINEUP");
     }
@@ -25,6 +31,7 @@ public class MonteCarloMultiGameSimulationTask implements Callable<TaskResult> {
     this.numberOfGamesToSimulate = numberOfGamesToSimulate;
     this.inningsPerGame = inningsPerGame;
     this.hitGenerator = hitGenerator;
+    this.engine = engine;
   }
 
   public TaskResult call() {
@@ -34,12 +41,10 @@ public class MonteCarloMultiGameSimulationTask implements Callable<TaskResult> {
   public TaskResult run() {
     // Simulate *numberOfGamesToSimulate* games, average the runs scored, return the result of the
     // simulation
-    double totalScore = 0;
-    for (int i = 0; i < numberOfGamesToSimulate; i++) {
-      double gameScore = MonteCarloGameSimulation.simulateGame(lineup, inningsPerGame, hitGenerator);
-      totalScore += gameScore;
-    }
-    double meanScore = totalScore / numberOfGamesToSimulate;
+    CompiledLineup compiledLineup = new CompiledLineup(lineup, hitGenerator);
+    GameScoreAccumulator accumulator = new GameScoreAccumulator();
+    engine.getSimulator(compiledLineup).simulateGames(inningsPerGame, numberOfGamesToSimulate, accumulator);
+    double meanScore = accumulator.getMean();
 
     TaskResult result = new TaskResult(meanScore, lineup);
     return result;
@@ -0,0 +1,57 @@
+package com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive;
+
+import java.util.Arrays;
+import java.util.function.Function;
+
+/**
+ * The ways a lineup's games can be simulated. All engines sample from the same distribution of game
+ * scores, they differ only in speed and in how much work is done up front.
+ */
+public enum SimulationEngineEnum {
+
+  /**
+   * Simulates every plate appearance. Nothing to build, so this is the best choice for lineups that
+   * will only be simulated a few thousand times.
+   */
+  PLATE_APPEARANCE(lineup -> lineup),
+
+  /**
+   * Precomputes the exact distribution of (runs scored, next leadoff batter) for every possible leadoff
+   * batter, then simulates one random draw per inning. Building the table costs about as much as a
+   * few hundred plate appearance games, after which each game is several times cheaper.
+   */
+  INNING(lineup -> new InningOutcomeTable(lineup)),
+
+  /**
+   * Simulates plate appearances for 64 games at once using one bit of a long per game. Nothing to
+   * build, but games are simulated in batches of 64, so this is best for lineups that will be
+   * simulated tens of thousands of times.
+   */
+  BIT_SLICED(lineup -> new BitSlicedGameSimulator(lineup));
+
+  private final Function<CompiledLineup, GameSimulator> factory;
+
+  private SimulationEngineEnum(Function<CompiledLineup, GameSimulator> factory) {
+    this.factory = factory;
+  }
+
+  public GameSimulator getSimulator(CompiledLineup lineup) {
+    return factory.apply(lineup);
+  }
+
+  /**
+   * Gets the enum with the given name, or the default engine (PLATE_APPEARANCE) if the name is null.
+   */
+  public static SimulationEngineEnum getEnumFromName(String name) {
+    if (name == null) {
+      return PLATE_APPEARANCE;
+    }
+    try {
+      return SimulationEngineEnum.valueOf(name);
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException(
+          "Invalid simulation engine " + name + ". Valid options are " + Arrays.toString(values()));
+    }
+  }
+
+}
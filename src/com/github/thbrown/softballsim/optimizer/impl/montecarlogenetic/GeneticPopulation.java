@@ -0,0 +1,505 @@
+package com.github.thbrown.softballsim.optimizer.impl.montecarlogenetic;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.IntStream;
+import org.apache.commons.math3.distribution.TDistribution;
+import com.github.thbrown.softballsim.lineup.BattingLineup;
+import com.github.thbrown.softballsim.lineupindexer.BattingLineupIndexer;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive.CompiledLineup;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive.GameScoreAccumulator;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive.HitGenerator;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive.MonteCarloGameSimulation;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive.SimulationEngineEnum;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloracing.RaceRounds;
+import com.github.thbrown.softballsim.util.MathUtil;
+
+/**
+ * A population of lineups that evolves one generation at a time. Each generation, the members of the
+ * population breed as many offspring as there are members and a race decides which members and
+ * offspring (candidates) make up the next population.
+ *
+ * Offspring are bred by crossover of two random members followed by a random number of mutations,
+ * both of which only produce lineups of the indexer's type:
+ * <ul>
+ * <li>Crossover is order crossover (OX) that respects the indexer's groups (see
+ * {@link BattingLineupIndexer#getGroup(int)}). The child keeps the first parent's players in a random
+ * range of batting positions and which group bats in every other position. The other positions are
+ * filled, starting after the range and wrapping around, with the remaining players of the position's
+ * group in the order they bat for the second parent (also starting after the range).</li>
+ * <li>Mutation moves the lineup to a random neighbor (see
+ * {@link BattingLineupIndexer#moveToRandomNeighbor(int[], int[])}) and then keeps doing so with
+ * probability mutationRate.</li>
+ * </ul>
+ * Lineups that are already candidates aren't bred again.
+ *
+ * The race is played in the same rounds as
+ * {@link com.github.thbrown.softballsim.optimizer.impl.montecarloracing.LineupRace}'s (see {@link RaceRounds}),
+ * except that each candidate's mean score is given a two-sided confidence interval, and candidates are
+ * decided once their intervals separate them from enough others. The intervals are Bonferroni corrected
+ * for every candidate and every time the race checks them, so the chance that any interval in the race
+ * misses its candidate's true mean, and so the chance of any wrong decision, is at most alpha. A
+ * candidate whose
+ * interval is entirely above the intervals of as many candidates as will be left out is in the next
+ * population, one whose interval is entirely below the intervals of as many candidates as will be kept
+ * is out. Only undecided candidates play each round. Members keep the games they played in earlier
+ * generations, so a good lineup that survives many generations has a tight interval and decides the
+ * newcomers quickly. If the race runs out of games before every place is decided, the undecided
+ * candidates with the best mean scores fill the remaining places. The leader, the member with the best
+ * mean score, is always kept by a generation's race (but not by the final race), so the best lineup
+ * found so far can't be lost to an unlucky race in some later generation.
+ *
+ * Candidates' games are tallied by {@link RaceRounds}, in candidate order. Rounds must not overlap.
+ */
+public class GeneticPopulation {
+
+  // Tries per offspring to breed a lineup that isn't already a candidate
+  private static final int BREEDING_ATTEMPTS = 100;
+
+  private static final int UNDECIDED = 0;
+  private static final int KEPT = 1;
+  private static final int DROPPED = 2;
+
+  private final BattingLineupIndexer<?> indexer;
+  private final HitGenerator hitGenerator;
+  private final SimulationEngineEnum engine;
+  private final int inningsPerGame;
+  private final boolean lowestScore;
+  private final double alpha;
+  private final double mutationRate;
+  private final long initialBatchSize;
+  private final int groupCount;
+  private final Long seed;
+  private final Random random;
+
+  // Members are candidates [0, members), offspring are [members, candidates)
+  private final int[][] slots;
+  private final long[] n;
+  private final RaceRounds raceRounds;
+  private final int[] decisions;
+  private int members;
+  private int candidates;
+
+  // The race for the current generation
+  private int places;
+  private long maxGamesPerRace;
+  private double intervalAlpha;
+  private long raceGames;
+  private final int[] playing;
+  private int playingCount;
+
+  private long generations;
+
+  /**
+   * @param populationSize the number of members in every generation, this may be more than there are
+   *        lineups, in which case the population has as many lineups as can be found
+   */
+  public GeneticPopulation(BattingLineupIndexer<?> indexer, HitGenerator hitGenerator, SimulationEngineEnum engine,
+      int inningsPerGame, boolean lowestScore, double alpha, double mutationRate, int populationSize,
+      long initialBatchSize) {
+    this(indexer, hitGenerator, engine, inningsPerGame, lowestScore, alpha, mutationRate, populationSize,
+        initialBatchSize, null);
+  }
+
+  /**
+   * @param seed if not null, every random choice the population makes and every game it simulates is
+   *        drawn from this seed, so populations with the same seed that are driven the same way evolve
+   *        the same way. Seeded games are always simulated plate appearance by plate appearance, the
+   *        engine is ignored.
+   */
+  public GeneticPopulation(BattingLineupIndexer<?> indexer, HitGenerator hitGenerator, SimulationEngineEnum engine,
+      int inningsPerGame, boolean lowestScore, double alpha, double mutationRate, int populationSize,
+      long initialBatchSize, Long seed) {
+    this.indexer = indexer;
+    this.hitGenerator = hitGenerator;
+    this.engine = engine;
+    this.inningsPerGame = inningsPerGame;
+    this.lowestScore = lowestScore;
+    this.alpha = alpha;
+    this.mutationRate = mutationRate;
+    this.initialBatchSize = Math.max(2, initialBatchSize);
+    this.groupCount = IntStream.range(0, indexer.getPlayers().size()).map(indexer::getGroup).max().orElse(0) + 1;
+    this.seed = seed;
+    this.random = seed == null ? null : new Random(seed);
+
+    int capacity = populationSize * 2;
+    this.slots = new int[capacity][];
+    this.n = new long[capacity];
+    this.raceRounds = new RaceRounds(capacity, this.initialBatchSize);
+    this.decisions = new int[capacity];
+    this.playing = new int[capacity];
+
+    // Random lineups make up the first population
+    Set<Slots> lineups = new HashSet<>();
+    for (int attempt = 0; attempt < populationSize * BREEDING_ATTEMPTS && members < populationSize; attempt++) {
+      int[] lineup = indexer.getCursor(MathUtil.nextLong(getRandom(), indexer.size())).getSlots().clone();
+      if (lineups.add(new Slots(lineup))) {
+        slots[members++] = lineup;
+      }
+    }
+    this.candidates = members;
+  }
+
+  /**
+   * Puts the lineup in the population in place of a random member, unless it's already a member. Use
+   * this to carry a lineup over from an earlier run. Only call this before the first generation.
+   */
+  public void addMember(int[] lineup) {
+    for (int i = 0; i < members; i++) {
+      if (Arrays.equals(slots[i], lineup)) {
+        return;
+      }
+    }
+    int member = members < slots.length / 2 ? members++ : getRandom().nextInt(members);
+    slots[member] = lineup.clone();
+    candidates = members;
+  }
+
+  /**
+   * Breeds this generation's offspring and starts the race for the next population
+   *
+   * @param maxGamesPerRace once the undecided candidates have played this many games in the race, the
+   *        best of them take the remaining places
+   */
+  public void startGeneration(long maxGamesPerRace) {
+    breed();
+    startRace(members, maxGamesPerRace, generations > 0);
+  }
+
+  /**
+   * Starts a race between the members, without offspring, that only keeps the given number of them
+   */
+  public void startFinalRace(int places, long maxGamesPerRace) {
+    candidates = members;
+    startRace(Math.min(places, members), maxGamesPerRace, false);
+  }
+
+  private void startRace(int places, long maxGamesPerRace, boolean keepLeader) {
+    this.places = places;
+    this.maxGamesPerRace = maxGamesPerRace;
+    this.raceGames = 0;
+    raceRounds.setBatchSize(initialBatchSize);
+
+    // Intervals are checked now and after every round
+    int checks = 1 + RaceRounds.getRoundCount(initialBatchSize, maxGamesPerRace);
+    this.intervalAlpha = alpha / ((long) candidates * checks);
+
+    for (int i = 0; i < candidates; i++) {
+      decisions[i] = UNDECIDED;
+    }
+    if (keepLeader) {
+      decisions[0] = KEPT;
+    }
+    decide();
+  }
+
+  private void breed() {
+    int[] undo = new int[slots[0].length];
+    Set<Slots> lineups = new HashSet<>();
+    for (int i = 0; i < members; i++) {
+      lineups.add(new Slots(slots[i]));
+    }
+    candidates = members;
+    int attempts = members * BREEDING_ATTEMPTS;
+    Random random = getRandom();
+    while (candidates < members * 2 && attempts-- > 0) {
+      int[] child = new int[undo.length];
+      crossover(slots[random.nextInt(members)], slots[random.nextInt(members)], child);
+      if (indexer.moveToRandomNeighbor(child, undo, random)) {
+        while (random.nextDouble() < mutationRate) {
+          indexer.moveToRandomNeighbor(child, undo, random);
+        }
+      }
+      if (lineups.add(new Slots(child))) {
+        slots[candidates] = child;
+        n[candidates] = 0;
+        raceRounds.set(candidates, 0, 0);
+        candidates++;
+      }
+    }
+  }
+
+  /**
+   * Order crossover that keeps each batting position's group, see the class comment. The parents may
+   * be the same lineup.
+   */
+  private void crossover(int[] first, int[] second, int[] child) {
+    int length = first.length;
+    Random random = getRandom();
+    int start = random.nextInt(length);
+    int end = start + 1 + random.nextInt(length - start);
+
+    boolean[] used = new boolean[length];
+    for (int i = start; i < end; i++) {
+      child[i] = first[i];
+      used[first[i]] = true;
+    }
+
+    // Where each group's next player comes from in the second parent
+    int[] next = new int[groupCount];
+    Arrays.fill(next, end % length);
+    for (int offset = 0; offset < length - (end - start); offset++) {
+      int position = (end + offset) % length;
+      int group = indexer.getGroup(first[position]);
+      int from = next[group];
+      while (used[second[from]] || indexer.getGroup(second[from]) != group) {
+        from = (from + 1) % length;
+      }
+      child[position] = second[from];
+      used[second[from]] = true;
+      next[group] = (from + 1) % length;
+    }
+  }
+
+  /**
+   * @return tasks that each play this round's batch of games for a range of the undecided candidates.
+   *         All of them must finish before {@link #endRound()} is called.
+   */
+  public List<Callable<Void>> startRound(int taskCount) {
+    playingCount = 0;
+    for (int i = 0; i < candidates; i++) {
+      if (decisions[i] == UNDECIDED) {
+        playing[playingCount++] = i;
+      }
+    }
+    return raceRounds.startRound(playingCount, maxGamesPerRace - raceGames, taskCount, this::play);
+  }
+
+  private void play(int from, int to, long games) {
+    GameScoreAccumulator accumulator = new GameScoreAccumulator();
+    for (int i = from; i < to; i++) {
+      int candidate = playing[i];
+      accumulator.clear();
+      CompiledLineup lineup = new CompiledLineup(indexer.getLineup(slots[candidate]), hitGenerator);
+      if (seed == null) {
+        engine.getSimulator(lineup).simulateGames(inningsPerGame, games, accumulator);
+      } else {
+        // A batch is seeded by the population's seed, the lineup and the number of games the lineup has
+        // played so far, so populations with the same seed play the same games
+        long gamesSeed = 31 * (31 * seed + Arrays.hashCode(slots[candidate])) + n[candidate];
+        MonteCarloGameSimulation.simulateGames(lineup, inningsPerGame, games, gamesSeed, accumulator);
+      }
+      n[candidate] += games;
+      raceRounds.add(candidate, accumulator);
+    }
+  }
+
+  /**
+   * Decides the candidates whose confidence intervals separate them from enough others
+   */
+  public void endRound() {
+    raceGames += raceRounds.getRoundBatchSize();
+    raceRounds.endRound();
+    decide();
+  }
+
+  private void decide() {
+    if (places >= candidates) {
+      for (int i = 0; i < candidates; i++) {
+        decisions[i] = KEPT;
+      }
+      return;
+    }
+
+    // Candidates without enough games for an interval can't be told apart from anything
+    Map<Long, Double> criticalValues = new HashMap<>();
+    double[] lower = new double[candidates];
+    double[] upper = new double[candidates];
+    for (int i = 0; i < candidates; i++) {
+      if (n[i] < 2) {
+        lower[i] = Double.NEGATIVE_INFINITY;
+        upper[i] = Double.POSITIVE_INFINITY;
+        continue;
+      }
+      double criticalValue = criticalValues.computeIfAbsent(n[i],
+          games -> new TDistribution(games - 1).inverseCumulativeProbability(1 - intervalAlpha / 2));
+      double halfWidth = criticalValue * Math.sqrt(getVariance(i) / n[i]);
+      lower[i] = getObjective(i) - halfWidth;
+      upper[i] = getObjective(i) + halfWidth;
+    }
+
+    for (int i = 0; i < candidates; i++) {
+      if (decisions[i] != UNDECIDED) {
+        continue;
+      }
+      int below = 0;
+      int above = 0;
+      for (int j = 0; j < candidates; j++) {
+        if (upper[j] < lower[i]) {
+          below++;
+        } else if (lower[j] > upper[i]) {
+          above++;
+        }
+      }
+      if (below >= candidates - places) {
+        decisions[i] = KEPT;
+      } else if (above >= places) {
+        decisions[i] = DROPPED;
+      }
+    }
+  }
+
+  /**
+   * @return true once every place is decided or the undecided candidates have played the maximum
+   *         number of games
+   */
+  public boolean isRaceFinished() {
+    int kept = 0;
+    int dropped = 0;
+    for (int i = 0; i < candidates; i++) {
+      if (decisions[i] == KEPT) {
+        kept++;
+      } else if (decisions[i] == DROPPED) {
+        dropped++;
+      }
+    }
+    return kept >= places || dropped >= candidates - places || raceGames >= maxGamesPerRace;
+  }
+
+  /**
+   * Makes the kept candidates, and the best undecided ones if there are places left, the new members.
+   * Members are ordered by mean score, best first.
+   */
+  public void endGeneration() {
+    // Kept candidates first and dropped ones last, the best undecided ones are in between
+    List<Integer> order = new ArrayList<>();
+    for (int i = 0; i < candidates; i++) {
+      order.add(i);
+    }
+    Comparator<Integer> byObjective = (a, b) -> Double.compare(getObjectiveOrWorst(b), getObjectiveOrWorst(a));
+    order.sort(Comparator.<Integer>comparingInt(i -> getRank(decisions[i])).thenComparing(byObjective));
+    List<Integer> kept = new ArrayList<>(order.subList(0, places));
+    kept.sort(byObjective);
+
+    int[][] keptSlots = new int[places][];
+    long[] keptN = new long[places];
+    long[] keptSums = new long[places];
+    long[] keptSumsOfSquares = new long[places];
+    for (int i = 0; i < places; i++) {
+      int candidate = kept.get(i);
+      keptSlots[i] = slots[candidate];
+      keptN[i] = n[candidate];
+      keptSums[i] = raceRounds.getSum(candidate);
+      keptSumsOfSquares[i] = raceRounds.getSumOfSquares(candidate);
+    }
+    Arrays.fill(slots, null);
+    System.arraycopy(keptSlots, 0, slots, 0, places);
+    System.arraycopy(keptN, 0, n, 0, places);
+    for (int i = 0; i < places; i++) {
+      raceRounds.set(i, keptSums[i], keptSumsOfSquares[i]);
+    }
+    members = places;
+    candidates = places;
+    generations++;
+  }
+
+  /**
+   * The population's random, or the current thread's if the population isn't seeded. Only the thread
+   * that drives the population may use it.
+   */
+  private Random getRandom() {
+    return random != null ? random : ThreadLocalRandom.current();
+  }
+
+  private static int getRank(int decision) {
+    return decision == KEPT ? 0 : decision == UNDECIDED ? 1 : 2;
+  }
+
+  private double getMean(int candidate) {
+    return raceRounds.getMean(candidate, n[candidate]);
+  }
+
+  private double getObjective(int candidate) {
+    return lowestScore ? -getMean(candidate) : getMean(candidate);
+  }
+
+  private double getObjectiveOrWorst(int candidate) {
+    return n[candidate] == 0 ? Double.NEGATIVE_INFINITY : getObjective(candidate);
+  }
+
+  private double getVariance(int candidate) {
+    return raceRounds.getVariance(candidate, n[candidate]);
+  }
+
+  /**
+   * @return the member with the best mean score as of the last generation, or null before the first
+   *         generation ends
+   */
+  public BattingLineup getLeader() {
+    return generations == 0 ? null : indexer.getLineup(slots[0]);
+  }
+
+  public double getLeaderMean() {
+    return generations == 0 ? 0 : getMean(0);
+  }
+
+  /**
+   * @return the number of games the leader has played
+   */
+  public long getLeaderGames() {
+    return generations == 0 ? 0 : n[0];
+  }
+
+  /**
+   * @return the slots of each member, best first as of the last generation
+   */
+  public int[][] getMembers() {
+    int[][] result = new int[members][];
+    for (int i = 0; i < members; i++) {
+      result[i] = slots[i].clone();
+    }
+    return result;
+  }
+
+  /**
+   * @return the number of candidates in the current race, members and offspring
+   */
+  public int getCandidates() {
+    return candidates;
+  }
+
+  public long getSimulationsRun() {
+    return raceRounds.getSimulationsRun();
+  }
+
+  public long getGenerations() {
+    return generations;
+  }
+
+  public long getRounds() {
+    return raceRounds.getRounds();
+  }
+
+  /**
+   * Compares lineups by their slots, so lineups can be told apart no matter how many players they have
+   */
+  private static final class Slots {
+    private final int[] slots;
+    private final int hash;
+
+    Slots(int[] slots) {
+      this.slots = slots;
+      this.hash = Arrays.hashCode(slots);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      return other instanceof Slots && Arrays.equals(slots, ((Slots) other).slots);
+    }
+  }
+
+}
@@ -0,0 +1,90 @@
+package com.github.thbrown.softballsim.optimizer.impl.montecarlogenetic;
+
+import java.util.Map;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive.SimulationEngineEnum;
+
+public class MonteCarloGeneticArgumentParser {
+
+  public final static String ALPHA = "A";
+  public final static String DURATION = "D";
+  public final static String ENGINE = "E";
+  public final static String GAMES = "G";
+  public final static String INNINGS = "I";
+  public final static String LOWEST_SCORE = "L";
+  public final static String MUTATION_RATE = "M";
+  public final static String POPULATION = "P";
+  public final static String THREADS = "T";
+
+  private final double alpha;
+  private final long duration;
+  private final SimulationEngineEnum engine;
+  private final int games;
+  private final int innings;
+  private final boolean lowestScore;
+  private final double mutationRate;
+  private final int population;
+  private final int threads;
+
+  public MonteCarloGeneticArgumentParser(Map<String, String> args) {
+    alpha = Double.parseDouble(args.get(ALPHA));
+    duration = Integer.parseInt(args.get(DURATION));
+    engine = SimulationEngineEnum.getEnumFromName(args.get(ENGINE));
+    games = Integer.parseInt(args.get(GAMES));
+    innings = Integer.parseInt(args.get(INNINGS));
+    lowestScore = Boolean.parseBoolean(args.get(LOWEST_SCORE));
+    mutationRate = Double.parseDouble(args.get(MUTATION_RATE));
+    population = Integer.parseInt(args.get(POPULATION));
+
+    String threadsString = args.get(THREADS);
+    if (threadsString == null) {
+      threads = Runtime.getRuntime().availableProcessors();
+    } else {
+      threads = Integer.parseInt(args.get(THREADS));
+    }
+  }
+
+  public double getAlpha() {
+    return alpha;
+  }
+
+  /**
+   * @return how long the optimization should run for, in seconds
+   */
+  public long getDuration() {
+    return duration;
+  }
+
+  public SimulationEngineEnum getEngine() {
+    return engine;
+  }
+
+  /**
+   * @return the number of games simulated for each undecided lineup in the first round of a generation
+   */
+  public int getGames() {
+    return games;
+  }
+
+  public int getInnings() {
+    return innings;
+  }
+
+  public boolean isLowestScore() {
+    return lowestScore;
+  }
+
+  public double getMutationRate() {
+    return mutationRate;
+  }
+
+  /**
+   * @return the number of lineups kept from one generation to the next
+   */
+  public int getPopulation() {
+    return population;
+  }
+
+  public int getThreads() {
+    return threads;
+  }
+}
@@ -0,0 +1,225 @@
+package com.github.thbrown.softballsim.optimizer.impl.montecarlogenetic;
+
+import java.text.DecimalFormat;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import com.github.thbrown.softballsim.Msg;
+import com.github.thbrown.softballsim.Result;
+import com.github.thbrown.softballsim.ResultStatusEnum;
+import com.github.thbrown.softballsim.data.gson.DataPlayer;
+import com.github.thbrown.softballsim.data.gson.DataStats;
+import com.github.thbrown.softballsim.datasource.ProgressTracker;
+import com.github.thbrown.softballsim.lineup.BattingLineup;
+import com.github.thbrown.softballsim.lineupindexer.BattingLineupIndexer;
+import com.github.thbrown.softballsim.lineupindexer.LineupTypeEnum;
+import com.github.thbrown.softballsim.optimizer.Optimizer;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloadaptive.TTestTask;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive.CompiledLineup;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive.GameScoreAccumulator;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive.HitGenerator;
+import com.github.thbrown.softballsim.util.Logger;
+
+/**
+ * Evolves a population of lineups for a fixed amount of time, see {@link GeneticPopulation}. Once the
+ * time is up, a final race picks the best member of the population.
+ *
+ * A run resumed from an existing result only evolves for the rest of the duration. The existing
+ * result's lineup joins the first population, and its simulation and generation counts carry over.
+ */
+public class MonteCarloGeneticOptimizer implements Optimizer<MonteCarloGeneticResult> {
+
+  // Only a generation's undecided candidates play a round, often just a few dozen lineups, so a few tasks
+  // per thread are enough to keep every thread busy while each task still plays several lineups
+  private static final int TASKS_PER_THREAD = 4;
+
+  // Rounds in a generation's race before the undecided places are filled by mean score. Batches double
+  // each round, so the undecided lineups play 2^ROUNDS - 1 times the first batch.
+  private static final int ROUNDS_PER_GENERATION = 5;
+
+  // Games each member may play in the final race
+  private static final long MAX_FINAL_RACE_GAMES = 20000;
+
+  @Override
+  public MonteCarloGeneticResult optimize(List<String> playersInLineup, LineupTypeEnum lineupType,
+      DataStats battingData, Map<String, String> arguments, ProgressTracker progressTracker,
+      MonteCarloGeneticResult existingResult) {
+
+    // Start the timer, time spent before the run resumed counts towards the duration
+    long previousElapsedTime = Optional.ofNullable(existingResult).map(Result::getElapsedTimeMs).orElse(0L);
+    long startTimestamp = System.currentTimeMillis() - previousElapsedTime;
+    long previousSimulations =
+        Optional.ofNullable(existingResult).map(MonteCarloGeneticResult::getSimulationsRequired).orElse(0L);
+    long previousGenerations =
+        Optional.ofNullable(existingResult).map(MonteCarloGeneticResult::getGenerations).orElse(0L);
+
+    // Check that the batting data we have is sufficient to run this optimizer
+    validateData(battingData, playersInLineup);
+
+    // Get the arguments as their expected types
+    MonteCarloGeneticArgumentParser parsedArguments = new MonteCarloGeneticArgumentParser(arguments);
+
+    BattingLineupIndexer<?> indexer = lineupType.getLineupIndexer(battingData, playersInLineup);
+    HitGenerator hitGenerator = new HitGenerator(indexer.getPlayers());
+    long durationMs = parsedArguments.getDuration() * 1000;
+    long maxGamesPerGeneration = parsedArguments.getGames() * ((1L << ROUNDS_PER_GENERATION) - 1);
+
+    // The reported score is the mean of this many games, as many as the adaptive optimizer simulates for a
+    // lineup before it stops comparing it
+    final long FINAL_RESULT_GAMES = TTestTask.MAX_ITERATIONS;
+
+    // Print the details before we start
+    DecimalFormat formatter = new DecimalFormat("#,###");
+    Logger.log("Possible lineups: \t\t" + formatter.format(indexer.size()));
+    Logger.log("Population: \t\t\t" + parsedArguments.getPopulation());
+    Logger.log("Mutation rate: \t\t\t" + parsedArguments.getMutationRate());
+    Logger.log("Games in the first round: \t" + parsedArguments.getGames());
+    Logger.log("Innings per game: \t\t" + parsedArguments.getInnings());
+    Logger.log("Alpha: \t\t\t\t" + parsedArguments.getAlpha());
+    Logger.log("Duration: \t\t\t" + parsedArguments.getDuration() + " seconds");
+    Logger.log("Threads used: \t\t\t" + parsedArguments.getThreads());
+    Logger.log("Lowest?: \t\t\t" + parsedArguments.isLowestScore());
+    Logger.log("Engine: \t\t\t" + parsedArguments.getEngine());
+    Logger.log("*********************************************************************");
+
+    // The serialized result does not save the players stats
+    BattingLineup previousLineup = Optional.ofNullable(existingResult).map(MonteCarloGeneticResult::getLineup)
+        .map(lineup -> {
+          lineup.populateStats(battingData);
+          return lineup;
+        }).orElse(null);
+
+    // A finished optimization has nothing left to do
+    if (previousLineup != null && previousElapsedTime >= durationMs) {
+      Logger.log("The optimization already ran for its full duration");
+      return new MonteCarloGeneticResult(previousLineup, existingResult.getLineupScore(), durationMs, durationMs,
+          previousElapsedTime, ResultStatusEnum.COMPLETE, previousSimulations, previousGenerations);
+    }
+
+    GeneticPopulation population = new GeneticPopulation(indexer, hitGenerator, parsedArguments.getEngine(),
+        parsedArguments.getInnings(), parsedArguments.isLowestScore(), parsedArguments.getAlpha(),
+        parsedArguments.getMutationRate(), parsedArguments.getPopulation(), parsedArguments.getGames());
+    if (previousLineup != null) {
+      population.addMember(getSlots(indexer, previousLineup));
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(parsedArguments.getThreads());
+    try {
+      // Generations stop when time is up, even mid race, the members are then the best lineups so far
+      while (System.currentTimeMillis() - startTimestamp < durationMs) {
+        population.startGeneration(maxGamesPerGeneration);
+        while (!population.isRaceFinished() && System.currentTimeMillis() - startTimestamp < durationMs) {
+          playRound(population, parsedArguments.getThreads(), executor, progressTracker, startTimestamp, durationMs,
+              previousSimulations, previousGenerations);
+        }
+        population.endGeneration();
+
+        if (population.getGenerations() % 100 == 0) {
+          Logger.log("Generation " + (previousGenerations + population.getGenerations()) + ": leader "
+              + population.getLeaderMean() + " after " + formatter.format(population.getLeaderGames()) + " games");
+        }
+      }
+
+      // Members that joined in the last few generations may have played few games, race them against
+      // each other before picking one
+      population.startFinalRace(1, MAX_FINAL_RACE_GAMES);
+      while (!population.isRaceFinished()) {
+        playRound(population, parsedArguments.getThreads(), executor, progressTracker, startTimestamp, durationMs,
+            previousSimulations, previousGenerations);
+      }
+      population.endGeneration();
+    } catch (InterruptedException | ExecutionException e) {
+      throw new RuntimeException(e);
+    } finally {
+      executor.shutdownNow();
+    }
+
+    // Play enough games that the reported score is accurate. These aren't part of the search so they
+    // aren't counted as simulations run.
+    BattingLineup bestLineup = population.getLeader();
+    double score = population.getLeaderMean();
+    long games = population.getLeaderGames();
+    if (games < FINAL_RESULT_GAMES) {
+      GameScoreAccumulator accumulator = new GameScoreAccumulator();
+      parsedArguments.getEngine().getSimulator(new CompiledLineup(bestLineup, hitGenerator))
+          .simulateGames(parsedArguments.getInnings(), FINAL_RESULT_GAMES - games, accumulator);
+      score = (score * games + accumulator.getSum()) / FINAL_RESULT_GAMES;
+    }
+
+    long generations = previousGenerations + population.getGenerations();
+    Logger.log("Generations: " + generations + ", rounds: " + population.getRounds());
+    long elapsedTime = System.currentTimeMillis() - startTimestamp;
+    MonteCarloGeneticResult finalResult = new MonteCarloGeneticResult(bestLineup, score, durationMs, durationMs,
+        elapsedTime, ResultStatusEnum.COMPLETE, previousSimulations + population.getSimulationsRun(), generations);
+    progressTracker.updateProgress(finalResult);
+    return finalResult;
+  }
+
+  /**
+   * Plays one round of the population's current race on the executor, reporting progress as tasks
+   * finish
+   *
+   * @param previousSimulations simulations run before the optimization resumed, likewise for
+   *        previousGenerations
+   */
+  private void playRound(GeneticPopulation population, int threads, ExecutorService executor,
+      ProgressTracker progressTracker, long startTimestamp, long durationMs, long previousSimulations,
+      long previousGenerations) throws InterruptedException, ExecutionException {
+    // The leader and counts don't change until the round ends
+    BattingLineup leader = population.getLeader();
+    double leaderMean = population.getLeaderMean();
+    long simulationsRun = previousSimulations + population.getSimulationsRun();
+    long generations = previousGenerations + population.getGenerations();
+
+    Queue<Future<Void>> futures = new ArrayDeque<>();
+    for (Callable<Void> task : population.startRound(threads * TASKS_PER_THREAD)) {
+      futures.add(executor.submit(task));
+    }
+    while (!futures.isEmpty()) {
+      futures.poll().get();
+      long elapsedTime = System.currentTimeMillis() - startTimestamp;
+      progressTracker.updateProgress(() -> new MonteCarloGeneticResult(leader, leaderMean, durationMs,
+          Math.min(elapsedTime, durationMs), elapsedTime, ResultStatusEnum.IN_PROGRESS, simulationsRun, generations));
+    }
+    population.endRound();
+  }
+
+  // The lineup came from a result for the same lineup type, so it's the indexer's lineup type
+  @SuppressWarnings("unchecked")
+  private static <T extends BattingLineup> int[] getSlots(BattingLineupIndexer<T> indexer, BattingLineup lineup) {
+    return indexer.getCursor(indexer.getIndex((T) lineup)).getSlots();
+  }
+
+  private void validateData(DataStats data, List<String> playersInLineup) {
+    // All players in the lineup must have at least one plate appearance
+    for (String playerId : playersInLineup) {
+      DataPlayer player = data.getPlayerById(playerId);
+      if (player.getPlateAppearanceCount() == 0) {
+        throw new RuntimeException(Msg.PLAYER_HAS_NO_PA.args(player.getName(), player.getId()));
+      }
+    }
+  }
+
+  @Override
+  public Class<? extends Result> getResultClass() {
+    return MonteCarloGeneticResult.class;
+  }
+
+  @Override
+  public Result estimate(List<String> playersInLineup, LineupTypeEnum lineupType, DataStats battingData,
+      Map<String, String> arguments, MonteCarloGeneticResult existingResult) throws Exception {
+    validateData(battingData, playersInLineup);
+    MonteCarloGeneticArgumentParser parsedArguments = new MonteCarloGeneticArgumentParser(arguments);
+
+    // The optimization runs for a fixed amount of time
+    return new MonteCarloGeneticResult(parsedArguments.getDuration() * 1000);
+  }
+
+}
@@ -0,0 +1,64 @@
+package com.github.thbrown.softballsim.optimizer.impl.montecarlogenetic;
+
+import com.github.thbrown.softballsim.Result;
+import com.github.thbrown.softballsim.ResultStatusEnum;
+import com.github.thbrown.softballsim.lineup.BattingLineup;
+import com.github.thbrown.softballsim.optimizer.OptimizerEnum;
+
+public class MonteCarloGeneticResult extends Result {
+
+  private final long simulationsRequired;
+  private final long generations;
+
+  public MonteCarloGeneticResult(BattingLineup lineup, double lineupScore, long countTotal, long countCompleted,
+      long elapsedTimeMs, ResultStatusEnum status, long simulationsRequired, long generations) {
+    super(OptimizerEnum.MONTE_CARLO_GENETIC, lineup, lineupScore, countTotal, countCompleted, elapsedTimeMs, status);
+    this.simulationsRequired = simulationsRequired;
+    this.generations = generations;
+  }
+
+  /**
+   * Estimate for a run of the given duration, in milliseconds
+   */
+  public MonteCarloGeneticResult(long duration) {
+    super(OptimizerEnum.MONTE_CARLO_GENETIC, null, 0, 0, 0, 0, ResultStatusEnum.ESTIMATE, null, duration);
+    this.simulationsRequired = 0;
+    this.generations = 0;
+  }
+
+  private MonteCarloGeneticResult(MonteCarloGeneticResult toCopy, ResultStatusEnum status, String statusMessage,
+      Long estimatedTimeRemainingMs) {
+    super(toCopy, status, statusMessage, estimatedTimeRemainingMs);
+    this.simulationsRequired = toCopy.simulationsRequired;
+    this.generations = toCopy.generations;
+  }
+
+  @Override
+  protected Result copy(ResultStatusEnum status, String statusMessage, Long estimatedTimeRemainingMs) {
+    return new MonteCarloGeneticResult(this, status, statusMessage, estimatedTimeRemainingMs);
+  }
+
+  /**
+   * @return the number of games simulated across all lineups, comparable to
+   *         MonteCarloAdaptiveResult's simulationsRequired
+   */
+  public long getSimulationsRequired() {
+    return simulationsRequired;
+  }
+
+  public long getGenerations() {
+    return generations;
+  }
+
+  @Override
+  public String getHumanReadableDetails() {
+    StringBuilder sb = new StringBuilder(super.getHumanReadableDetails());
+    sb.append("Simulations run: ");
+    sb.append(this.simulationsRequired);
+    sb.append("\n");
+    sb.append("Generations: ");
+    sb.append(this.generations);
+    return sb.toString();
+  }
+
+}
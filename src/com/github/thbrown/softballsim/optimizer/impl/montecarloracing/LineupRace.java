@@ -0,0 +1,257 @@
+package com.github.thbrown.softballsim.optimizer.impl.montecarloracing;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import org.apache.commons.math3.distribution.TDistribution;
+import com.github.thbrown.softballsim.lineup.BattingLineup;
+import com.github.thbrown.softballsim.lineupindexer.BattingLineupIndexer;
+import com.github.thbrown.softballsim.lineupindexer.LineupCursor;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive.CompiledLineup;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive.GameScoreAccumulator;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive.HitGenerator;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive.SimulationEngineEnum;
+
+/**
+ * Races every lineup of an indexer against each other. Each round, every lineup still in the race
+ * (a survivor) plays the same batch of games, then every survivor whose mean score is significantly
+ * worse than the leader's (the survivor with the best mean) is eliminated by a one sided Welch t-test.
+ * Each batch is twice the size of the one before it, so the games spent per round stay about the same
+ * as the survivors thin out. The race ends when one lineup is left or every survivor has played the
+ * maximum number of games.
+ *
+ * Every survivor is compared with the leader after every round, so alpha is split evenly across every
+ * comparison the race could make (Bonferroni correction): each test is run at alpha divided by the
+ * number of lineups other than the leader and the number of rounds. The chance that the race ever
+ * eliminates a lineup that's as good as the leader is then at most alpha.
+ *
+ * Unlike the Monte Carlo Adaptive optimizer, each lineup is compared against the best of all the
+ * others, not whichever lineup happened to be the best when it was drawn.
+ *
+ * A race can be saved between rounds as a {@link RaceCheckpoint} and resumed from it.
+ *
+ * The rounds are played, and survivors' games tallied, by {@link RaceRounds}. Rounds must not overlap.
+ */
+public class LineupRace {
+
+  private final BattingLineupIndexer<?> indexer;
+  private final HitGenerator hitGenerator;
+  private final SimulationEngineEnum engine;
+  private final int inningsPerGame;
+  private final boolean lowestScore;
+  private final double comparisonAlpha;
+  private final long maxGamesPerLineup;
+
+  // The lineup index of each survivor, null until the first elimination (survivor i is lineup i)
+  private long[] indexes;
+
+  // Every survivor has played gamesPerLineup games, tallied in survivor order
+  private RaceRounds rounds;
+  private int survivors;
+  private long gamesPerLineup;
+  private int leader;
+
+  public LineupRace(BattingLineupIndexer<?> indexer, HitGenerator hitGenerator, SimulationEngineEnum engine,
+      int inningsPerGame, boolean lowestScore, double alpha, long initialBatchSize, long maxGamesPerLineup) {
+    if (indexer.size() > Integer.MAX_VALUE) {
+      throw new RuntimeException(
+          "Can't race " + indexer.size() + " lineups, use fewer players or a different optimizer");
+    }
+    this.indexer = indexer;
+    this.hitGenerator = hitGenerator;
+    this.engine = engine;
+    this.inningsPerGame = inningsPerGame;
+    this.lowestScore = lowestScore;
+    this.maxGamesPerLineup = maxGamesPerLineup;
+
+    this.survivors = (int) indexer.size();
+    long batchSize = Math.max(1, initialBatchSize);
+    int roundCount = RaceRounds.getRoundCount(batchSize, maxGamesPerLineup);
+    this.comparisonAlpha = alpha / ((double) Math.max(1, survivors - 1) * Math.max(1, roundCount));
+    this.rounds = new RaceRounds(survivors, batchSize);
+  }
+
+  /**
+   * Picks up a race where the checkpoint left off. Only call this before the first round.
+   */
+  public void resume(RaceCheckpoint checkpoint) {
+    if (checkpoint.getLineupIndexes() == null ? checkpoint.size() != survivors : checkpoint.size() > survivors) {
+      throw new IllegalArgumentException("The checkpoint doesn't match this race's " + survivors + " lineups");
+    }
+    gamesPerLineup = checkpoint.getGamesPerLineup();
+    indexes = checkpoint.getLineupIndexes() == null ? null : checkpoint.getLineupIndexes().clone();
+    survivors = checkpoint.size();
+    rounds = new RaceRounds(survivors, checkpoint.getBatchSize());
+    rounds.restore(checkpoint.getBatchSize(), checkpoint.getSimulationsRun(), checkpoint.getRounds());
+    for (int i = 0; i < survivors; i++) {
+      rounds.set(i, checkpoint.getSums()[i], checkpoint.getSumsOfSquares()[i]);
+    }
+    if (gamesPerLineup > 0) {
+      pickLeader();
+    }
+  }
+
+  /**
+   * @return the survivors and their games as of the last round
+   */
+  public RaceCheckpoint toCheckpoint() {
+    long[] sums = new long[survivors];
+    long[] sumsOfSquares = new long[survivors];
+    for (int i = 0; i < survivors; i++) {
+      sums[i] = rounds.getSum(i);
+      sumsOfSquares[i] = rounds.getSumOfSquares(i);
+    }
+    return new RaceCheckpoint(gamesPerLineup, rounds.getBatchSize(), rounds.getSimulationsRun(), rounds.getRounds(),
+        indexes == null ? null : Arrays.copyOf(indexes, survivors), sums, sumsOfSquares);
+  }
+
+  /**
+   * @return tasks that each play this round's batch of games for a range of survivors. All of them must
+   *         finish before {@link #endRound()} is called.
+   */
+  public List<Callable<Void>> startRound(int taskCount) {
+    return rounds.startRound(survivors, maxGamesPerLineup - gamesPerLineup, taskCount, this::play);
+  }
+
+  private void play(int from, int to, long games) {
+    GameScoreAccumulator accumulator = new GameScoreAccumulator();
+    LineupCursor<?> cursor = indexes == null ? indexer.getCursor(from) : null;
+    for (int i = from; i < to; i++) {
+      BattingLineup lineup = cursor == null ? indexer.getLineup(indexes[i]) : cursor.getLineup();
+      accumulator.clear();
+      engine.getSimulator(new CompiledLineup(lineup, hitGenerator)).simulateGames(inningsPerGame, games,
+          accumulator);
+      rounds.add(i, accumulator);
+      if (cursor != null) {
+        cursor.next();
+      }
+    }
+  }
+
+  /**
+   * Picks the leader and eliminates the survivors that are significantly worse than it
+   */
+  public void endRound() {
+    gamesPerLineup += rounds.getRoundBatchSize();
+    rounds.endRound();
+
+    pickLeader();
+    if (gamesPerLineup < 2) {
+      return;
+    }
+
+    // Every survivor has the same number of games, so the critical value is the same for every
+    // comparison. n - 1 degrees of freedom is the fewest the Welch test could use.
+    double criticalValue = new TDistribution(gamesPerLineup - 1).inverseCumulativeProbability(1 - comparisonAlpha);
+    double leaderObjective = getObjective(leader);
+    double leaderVariance = getVariance(leader);
+    int kept = 0;
+    for (int i = 0; i < survivors; i++) {
+      if (!isEliminated(i, criticalValue, leaderObjective, leaderVariance)) {
+        kept++;
+      }
+    }
+    if (kept == survivors) {
+      return;
+    }
+
+    // Survivors are moved to the front of the arrays, keeping their order
+    long[] keptIndexes = indexes == null ? new long[kept] : indexes;
+    int next = 0;
+    for (int i = 0; i < survivors; i++) {
+      if (isEliminated(i, criticalValue, leaderObjective, leaderVariance)) {
+        continue;
+      }
+      if (i == leader) {
+        leader = next;
+      }
+      keptIndexes[next] = getIndex(i);
+      rounds.move(i, next);
+      next++;
+    }
+    indexes = keptIndexes;
+    survivors = kept;
+
+    // Release the memory held by eliminated lineups once most of it is unused
+    if (survivors < rounds.getCapacity() / 4) {
+      indexes = Arrays.copyOf(indexes, survivors);
+      rounds.trim(survivors);
+    }
+  }
+
+  private void pickLeader() {
+    leader = 0;
+    for (int i = 1; i < survivors; i++) {
+      if (getObjective(i) > getObjective(leader)) {
+        leader = i;
+      }
+    }
+  }
+
+  /**
+   * @return true if the survivor's mean is significantly worse than the leader's
+   */
+  private boolean isEliminated(int survivor, double criticalValue, double leaderObjective, double leaderVariance) {
+    if (survivor == leader) {
+      return false;
+    }
+    double difference = leaderObjective - getObjective(survivor);
+    double standardError = Math.sqrt((leaderVariance + getVariance(survivor)) / gamesPerLineup);
+    return difference > criticalValue * standardError;
+  }
+
+  /**
+   * @return true once one lineup is left or every survivor has played the maximum number of games
+   */
+  public boolean isFinished() {
+    return survivors == 1 || gamesPerLineup >= maxGamesPerLineup;
+  }
+
+  private double getMean(int survivor) {
+    return rounds.getMean(survivor, gamesPerLineup);
+  }
+
+  private double getObjective(int survivor) {
+    return lowestScore ? -getMean(survivor) : getMean(survivor);
+  }
+
+  private double getVariance(int survivor) {
+    return rounds.getVariance(survivor, gamesPerLineup);
+  }
+
+  private long getIndex(int survivor) {
+    return indexes == null ? survivor : indexes[survivor];
+  }
+
+  /**
+   * @return the survivor with the best mean score as of the last round
+   */
+  public BattingLineup getLeader() {
+    return rounds.getRounds() == 0 ? null : indexer.getLineup(getIndex(leader));
+  }
+
+  public long getLeaderIndex() {
+    return getIndex(leader);
+  }
+
+  public double getLeaderMean() {
+    return rounds.getRounds() == 0 ? 0 : getMean(leader);
+  }
+
+  public int getSurvivors() {
+    return survivors;
+  }
+
+  public long getGamesPerLineup() {
+    return gamesPerLineup;
+  }
+
+  public long getSimulationsRun() {
+    return rounds.getSimulationsRun();
+  }
+
+  public long getRounds() {
+    return rounds.getRounds();
+  }
+
+}
@@ -0,0 +1,63 @@
+package com.github.thbrown.softballsim.optimizer.impl.montecarloracing;
+
+import java.util.Map;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive.SimulationEngineEnum;
+
+public class MonteCarloRacingArgumentParser {
+
+  public final static String ALPHA = "A";
+  public final static String ENGINE = "E";
+  public final static String GAMES = "G";
+  public final static String INNINGS = "I";
+  public final static String LOWEST_SCORE = "L";
+  public final static String THREADS = "T";
+
+  private final double alpha;
+  private final SimulationEngineEnum engine;
+  private final int games;
+  private final int innings;
+  private final boolean lowestScore;
+  private final int threads;
+
+  public MonteCarloRacingArgumentParser(Map<String, String> args) {
+    alpha = Double.parseDouble(args.get(ALPHA));
+    engine = SimulationEngineEnum.getEnumFromName(args.get(ENGINE));
+    games = Integer.parseInt(args.get(GAMES));
+    innings = Integer.parseInt(args.get(INNINGS));
+    lowestScore = Boolean.parseBoolean(args.get(LOWEST_SCORE));
+
+    String threadsString = args.get(THREADS);
+    if (threadsString == null) {
+      threads = Runtime.getRuntime().availableProcessors();
+    } else {
+      threads = Integer.parseInt(args.get(THREADS));
+    }
+  }
+
+  public double getAlpha() {
+    return alpha;
+  }
+
+  public SimulationEngineEnum getEngine() {
+    return engine;
+  }
+
+  /**
+   * @return the number of games simulated for each lineup in the first round
+   */
+  public int getGames() {
+    return games;
+  }
+
+  public int getInnings() {
+    return innings;
+  }
+
+  public boolean isLowestScore() {
+    return lowestScore;
+  }
+
+  public int getThreads() {
+    return threads;
+  }
+}
@@ -0,0 +1,188 @@
+package com.github.thbrown.softballsim.optimizer.impl.montecarloracing;
+
+import java.text.DecimalFormat;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import com.github.thbrown.softballsim.Msg;
+import com.github.thbrown.softballsim.Result;
+import com.github.thbrown.softballsim.ResultStatusEnum;
+import com.github.thbrown.softballsim.data.gson.DataPlayer;
+import com.github.thbrown.softballsim.data.gson.DataStats;
+import com.github.thbrown.softballsim.datasource.ProgressTracker;
+import com.github.thbrown.softballsim.lineup.BattingLineup;
+import com.github.thbrown.softballsim.lineupindexer.BattingLineupIndexer;
+import com.github.thbrown.softballsim.lineupindexer.LineupTypeEnum;
+import com.github.thbrown.softballsim.optimizer.Optimizer;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloadaptive.TTestTask;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive.CompiledLineup;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive.GameScoreAccumulator;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive.HitGenerator;
+import com.github.thbrown.softballsim.util.Logger;
+
+/**
+ * Finds the best lineup by racing all of them against each other, see {@link LineupRace}. Progress
+ * results carry a {@link RaceCheckpoint} of the last finished round, so an interrupted race resumes
+ * after that round, and a finished race isn't run again.
+ */
+public class MonteCarloRacingOptimizer implements Optimizer<MonteCarloRacingResult> {
+
+  // Early rounds play every possible lineup, and some lineups' games run much longer than others'. Many
+  // small tasks let threads that finish their share early take more.
+  private static final int TASKS_PER_THREAD = 16;
+
+  @Override
+  public MonteCarloRacingResult optimize(List<String> playersInLineup, LineupTypeEnum lineupType,
+      DataStats battingData, Map<String, String> arguments, ProgressTracker progressTracker,
+      MonteCarloRacingResult existingResult) {
+
+    // Start the timer. Without a checkpoint the time spent before doesn't count, the race starts over.
+    RaceCheckpoint resumeFrom = Optional.ofNullable(existingResult).map(Result::getCheckpoint)
+        .map(RaceCheckpoint::fromBytes).orElse(null);
+    boolean complete = existingResult != null && existingResult.getStatus() == ResultStatusEnum.COMPLETE;
+    long previousElapsedTime = resumeFrom != null || complete ? existingResult.getElapsedTimeMs() : 0;
+    long startTimestamp = System.currentTimeMillis() - previousElapsedTime;
+
+    // Check that the batting data we have is sufficient to run this optimizer
+    validateData(battingData, playersInLineup);
+
+    // Get the arguments as their expected types
+    MonteCarloRacingArgumentParser parsedArguments = new MonteCarloRacingArgumentParser(arguments);
+
+    BattingLineupIndexer<?> indexer = lineupType.getLineupIndexer(battingData, playersInLineup);
+    HitGenerator hitGenerator = new HitGenerator(indexer.getPlayers());
+    long countTotal = indexer.size();
+
+    // Lineups still in the race after this many games each are too close to tell apart, the adaptive
+    // optimizer gives up on a comparison at the same point
+    final long MAX_GAMES_PER_LINEUP = TTestTask.MAX_ITERATIONS;
+
+    // Print the details before we start
+    DecimalFormat formatter = new DecimalFormat("#,###");
+    Logger.log("Possible lineups: \t\t" + formatter.format(countTotal));
+    Logger.log("Games in the first round: \t" + parsedArguments.getGames());
+    Logger.log("Innings per game: \t\t" + parsedArguments.getInnings());
+    Logger.log("Alpha: \t\t\t\t" + parsedArguments.getAlpha());
+    Logger.log("Threads used: \t\t\t" + parsedArguments.getThreads());
+    Logger.log("Lowest?: \t\t\t" + parsedArguments.isLowestScore());
+    Logger.log("Engine: \t\t\t" + parsedArguments.getEngine());
+    Logger.log("*********************************************************************");
+
+    // A finished race has nothing left to do. The serialized result doesn't save the players' stats.
+    if (complete) {
+      Logger.log("The race already finished");
+      BattingLineup lineup = existingResult.getLineup();
+      lineup.populateStats(battingData);
+      return new MonteCarloRacingResult(lineup, existingResult.getLineupScore(), countTotal, countTotal,
+          previousElapsedTime, ResultStatusEnum.COMPLETE, existingResult.getSimulationsRequired(),
+          existingResult.getRounds(), existingResult.getUndecidedLineups());
+    }
+
+    LineupRace race = new LineupRace(indexer, hitGenerator, parsedArguments.getEngine(),
+        parsedArguments.getInnings(), parsedArguments.isLowestScore(), parsedArguments.getAlpha(),
+        parsedArguments.getGames(), MAX_GAMES_PER_LINEUP);
+    byte[] checkpoint = null;
+    if (resumeFrom != null) {
+      race.resume(resumeFrom);
+      checkpoint = existingResult.getCheckpoint();
+      Logger.log("Resuming after round " + race.getRounds() + " with " + formatter.format(race.getSurvivors())
+          + " lineups left");
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(parsedArguments.getThreads());
+    try {
+      while (!race.isFinished()) {
+        // The leader and counts don't change until the round ends
+        BattingLineup leader = race.getLeader();
+        double leaderMean = race.getLeaderMean();
+        long countCompleted = countTotal - race.getSurvivors();
+        long simulationsRun = race.getSimulationsRun();
+        long rounds = race.getRounds();
+        byte[] roundCheckpoint = checkpoint;
+
+        Queue<Future<Void>> futures = new ArrayDeque<>();
+        for (Callable<Void> task : race.startRound(parsedArguments.getThreads() * TASKS_PER_THREAD)) {
+          futures.add(executor.submit(task));
+        }
+        while (!futures.isEmpty()) {
+          futures.poll().get();
+          // There's no leader until the first round ends
+          if (rounds == 0) {
+            continue;
+          }
+          long elapsedTime = System.currentTimeMillis() - startTimestamp;
+          progressTracker.updateProgress(() -> new MonteCarloRacingResult(leader, leaderMean, countTotal,
+              countCompleted, elapsedTime, ResultStatusEnum.IN_PROGRESS, simulationsRun, rounds, 0,
+              roundCheckpoint));
+        }
+        race.endRound();
+
+        Logger.log("Round " + race.getRounds() + ": " + formatter.format(race.getSurvivors())
+            + " lineups left after " + formatter.format(race.getGamesPerLineup()) + " games each");
+
+        // The results reported during the next round carry this round's checkpoint, so an interrupted race
+        // resumes after the last round that finished
+        if (!race.isFinished()) {
+          checkpoint = race.toCheckpoint().toBytes();
+          progressTracker.updateProgress(new MonteCarloRacingResult(race.getLeader(), race.getLeaderMean(),
+              countTotal, countTotal - race.getSurvivors(), System.currentTimeMillis() - startTimestamp,
+              ResultStatusEnum.IN_PROGRESS, race.getSimulationsRun(), race.getRounds(), 0, checkpoint));
+        }
+      }
+    } catch (InterruptedException | ExecutionException e) {
+      throw new RuntimeException(e);
+    } finally {
+      executor.shutdownNow();
+    }
+
+    // The leader's mean may be based on only a few games if the others were eliminated quickly, play
+    // enough games that the reported score is accurate. These aren't part of the race so they aren't
+    // counted as simulations run.
+    BattingLineup bestLineup = race.getLeader();
+    double score = race.getLeaderMean();
+    if (race.getGamesPerLineup() < MAX_GAMES_PER_LINEUP) {
+      GameScoreAccumulator accumulator = new GameScoreAccumulator();
+      parsedArguments.getEngine().getSimulator(new CompiledLineup(bestLineup, hitGenerator))
+          .simulateGames(parsedArguments.getInnings(), MAX_GAMES_PER_LINEUP - race.getGamesPerLineup(), accumulator);
+      score = (score * race.getGamesPerLineup() + accumulator.getSum()) / MAX_GAMES_PER_LINEUP;
+    }
+
+    long elapsedTime = System.currentTimeMillis() - startTimestamp;
+    MonteCarloRacingResult finalResult = new MonteCarloRacingResult(bestLineup, score, countTotal, countTotal,
+        elapsedTime, ResultStatusEnum.COMPLETE, race.getSimulationsRun(), race.getRounds(),
+        race.getSurvivors() - 1);
+    progressTracker.updateProgress(finalResult);
+    return finalResult;
+  }
+
+  private void validateData(DataStats data, List<String> playersInLineup) {
+    // All players in the lineup must have at least one plate appearance
+    for (String playerId : playersInLineup) {
+      DataPlayer player = data.getPlayerById(playerId);
+      if (player.getPlateAppearanceCount() == 0) {
+        throw new RuntimeException(Msg.PLAYER_HAS_NO_PA.args(player.getName(), player.getId()));
+      }
+    }
+  }
+
+  @Override
+  public Class<? extends Result> getResultClass() {
+    return MonteCarloRacingResult.class;
+  }
+
+  @Override
+  public Result estimate(List<String> playersInLineup, LineupTypeEnum lineupType, DataStats battingData,
+      Map<String, String> arguments, MonteCarloRacingResult existingResult) throws Exception {
+    // How many rounds the race takes depends on how close the best lineups are, which isn't known
+    // ahead of time
+    return null;
+  }
+
+}
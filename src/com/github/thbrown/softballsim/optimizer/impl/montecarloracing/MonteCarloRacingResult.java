@@ -0,0 +1,101 @@
+package com.github.thbrown.softballsim.optimizer.impl.montecarloracing;
+
+import com.github.thbrown.softballsim.Result;
+import com.github.thbrown.softballsim.ResultStatusEnum;
+import com.github.thbrown.softballsim.lineup.BattingLineup;
+import com.github.thbrown.softballsim.optimizer.OptimizerEnum;
+import com.github.thbrown.softballsim.util.StringUtils;
+
+public class MonteCarloRacingResult extends Result {
+
+  private final long simulationsRequired;
+  private final long rounds;
+  private final long undecidedLineups;
+
+  // See RaceCheckpoint, persisted by the data source instead of as JSON
+  private final transient byte[] checkpoint;
+
+  public MonteCarloRacingResult(BattingLineup lineup, double lineupScore, long countTotal, long countCompleted,
+      long elapsedTimeMs, ResultStatusEnum status, long simulationsRequired, long rounds, long undecidedLineups) {
+    this(lineup, lineupScore, countTotal, countCompleted, elapsedTimeMs, status, simulationsRequired, rounds,
+        undecidedLineups, null);
+  }
+
+  public MonteCarloRacingResult(BattingLineup lineup, double lineupScore, long countTotal, long countCompleted,
+      long elapsedTimeMs, ResultStatusEnum status, long simulationsRequired, long rounds, long undecidedLineups,
+      byte[] checkpoint) {
+    super(OptimizerEnum.MONTE_CARLO_RACING, lineup, lineupScore, countTotal, countCompleted, elapsedTimeMs, status);
+    this.simulationsRequired = simulationsRequired;
+    this.rounds = rounds;
+    this.undecidedLineups = undecidedLineups;
+    this.checkpoint = checkpoint;
+  }
+
+  private MonteCarloRacingResult(MonteCarloRacingResult toCopy, ResultStatusEnum status, String statusMessage,
+      Long estimatedTimeRemainingMs) {
+    this(toCopy, status, statusMessage, estimatedTimeRemainingMs, toCopy.checkpoint);
+  }
+
+  private MonteCarloRacingResult(MonteCarloRacingResult toCopy, ResultStatusEnum status, String statusMessage,
+      Long estimatedTimeRemainingMs, byte[] checkpoint) {
+    super(toCopy, status, statusMessage, estimatedTimeRemainingMs);
+    this.simulationsRequired = toCopy.simulationsRequired;
+    this.rounds = toCopy.rounds;
+    this.undecidedLineups = toCopy.undecidedLineups;
+    this.checkpoint = checkpoint;
+  }
+
+  @Override
+  protected Result copy(ResultStatusEnum status, String statusMessage, Long estimatedTimeRemainingMs) {
+    return new MonteCarloRacingResult(this, status, statusMessage, estimatedTimeRemainingMs);
+  }
+
+  @Override
+  public byte[] getCheckpoint() {
+    return checkpoint;
+  }
+
+  @Override
+  public Result withCheckpoint(byte[] checkpoint) {
+    return new MonteCarloRacingResult(this, getStatus(), getStatusMessage(), getEstimatedTimeRemainingMs(),
+        checkpoint);
+  }
+
+  /**
+   * @return the number of games simulated across all lineups, comparable to
+   *         MonteCarloAdaptiveResult's simulationsRequired
+   */
+  public long getSimulationsRequired() {
+    return simulationsRequired;
+  }
+
+  public long getRounds() {
+    return rounds;
+  }
+
+  /**
+   * @return the number of lineups, besides the reported one, that were still in the race when every
+   *         lineup reached the simulation limit
+   */
+  public long getUndecidedLineups() {
+    return undecidedLineups;
+  }
+
+  @Override
+  public String getHumanReadableDetails() {
+    StringBuilder sb = new StringBuilder(super.getHumanReadableDetails());
+    sb.append("Simulations run: ");
+    sb.append(this.simulationsRequired);
+    sb.append("\n");
+    sb.append("Avg simulations run per lineup: ");
+    sb.append(StringUtils.formatDecimal((double) this.simulationsRequired / (double) super.getCountTotal(), 2));
+    sb.append("\n");
+    sb.append("Rounds: ");
+    sb.append(this.rounds);
+    sb.append("\n");
+    sb.append("Lineups undecided at the simulation limit: ");
+    sb.append(this.undecidedLineups);
+    return sb.toString();
+  }
+
+}
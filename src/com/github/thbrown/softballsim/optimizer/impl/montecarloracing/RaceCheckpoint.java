@@ -0,0 +1,161 @@
+package com.github.thbrown.softballsim.optimizer.impl.montecarloracing;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Everything a {@link LineupRace} needs to pick up where it left off after a round: the batch size and
+ * games played so far, and each survivor's lineup index with the sum and sum of squares of its scores.
+ * Resuming from a checkpoint doesn't re-simulate any of those games.
+ *
+ * The binary form is gzipped. Survivors are in lineup index order, so each index is written as a
+ * varint of the gap from the previous one. Before the first elimination every lineup is a survivor and
+ * the indexes aren't written at all.
+ */
+public class RaceCheckpoint {
+
+  private static final int VERSION = 1;
+
+  private final long gamesPerLineup;
+  private final long batchSize;
+  private final long simulationsRun;
+  private final long rounds;
+
+  // Null if every lineup is a survivor
+  private final long[] lineupIndexes;
+  private final long[] sums;
+  private final long[] sumsOfSquares;
+
+  RaceCheckpoint(long gamesPerLineup, long batchSize, long simulationsRun, long rounds, long[] lineupIndexes,
+      long[] sums, long[] sumsOfSquares) {
+    this.gamesPerLineup = gamesPerLineup;
+    this.batchSize = batchSize;
+    this.simulationsRun = simulationsRun;
+    this.rounds = rounds;
+    this.lineupIndexes = lineupIndexes;
+    this.sums = sums;
+    this.sumsOfSquares = sumsOfSquares;
+  }
+
+  public byte[] toBytes() {
+    try {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      try (DataOutputStream out = new DataOutputStream(new GZIPOutputStream(bytes))) {
+        out.writeByte(VERSION);
+        writeVarLong(out, gamesPerLineup);
+        writeVarLong(out, batchSize);
+        writeVarLong(out, simulationsRun);
+        writeVarLong(out, rounds);
+        writeVarLong(out, sums.length);
+        out.writeBoolean(lineupIndexes != null);
+        long previousIndex = 0;
+        for (int i = 0; i < sums.length; i++) {
+          if (lineupIndexes != null) {
+            writeVarLong(out, lineupIndexes[i] - previousIndex);
+            previousIndex = lineupIndexes[i];
+          }
+          writeVarLong(out, sums[i]);
+          writeVarLong(out, sumsOfSquares[i]);
+        }
+      }
+      return bytes.toByteArray();
+    } catch (IOException e) {
+      // Nothing here does real I/O
+      throw new RuntimeException(e);
+    }
+  }
+
+  public static RaceCheckpoint fromBytes(byte[] data) {
+    try (DataInputStream in = new DataInputStream(new GZIPInputStream(new ByteArrayInputStream(data)))) {
+      int version = in.readUnsignedByte();
+      if (version != VERSION) {
+        throw new IllegalArgumentException("Unsupported checkpoint version " + version);
+      }
+      long gamesPerLineup = readVarLong(in);
+      long batchSize = readVarLong(in);
+      long simulationsRun = readVarLong(in);
+      long rounds = readVarLong(in);
+      int size = Math.toIntExact(readVarLong(in));
+      long[] lineupIndexes = in.readBoolean() ? new long[size] : null;
+      long[] sums = new long[size];
+      long[] sumsOfSquares = new long[size];
+      long previousIndex = 0;
+      for (int i = 0; i < size; i++) {
+        if (lineupIndexes != null) {
+          lineupIndexes[i] = previousIndex + readVarLong(in);
+          previousIndex = lineupIndexes[i];
+        }
+        sums[i] = readVarLong(in);
+        sumsOfSquares[i] = readVarLong(in);
+      }
+      return new RaceCheckpoint(gamesPerLineup, batchSize, simulationsRun, rounds, lineupIndexes, sums,
+          sumsOfSquares);
+    } catch (IOException e) {
+      throw new IllegalArgumentException("Unable to read checkpoint", e);
+    }
+  }
+
+  /**
+   * Writes a non-negative value seven bits at a time, low bits first
+   */
+  private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+    while ((value & ~0x7FL) != 0) {
+      out.writeByte((int) ((value & 0x7F) | 0x80));
+      value >>>= 7;
+    }
+    out.writeByte((int) value);
+  }
+
+  private static long readVarLong(DataInputStream in) throws IOException {
+    long value = 0;
+    for (int shift = 0; shift < Long.SIZE; shift += 7) {
+      int b = in.readUnsignedByte();
+      value |= (long) (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+    }
+    throw new IOException("Malformed varint");
+  }
+
+  long getGamesPerLineup() {
+    return gamesPerLineup;
+  }
+
+  long getBatchSize() {
+    return batchSize;
+  }
+
+  long getSimulationsRun() {
+    return simulationsRun;
+  }
+
+  long getRounds() {
+    return rounds;
+  }
+
+  long[] getLineupIndexes() {
+    return lineupIndexes;
+  }
+
+  long[] getSums() {
+    return sums;
+  }
+
+  long[] getSumsOfSquares() {
+    return sumsOfSquares;
+  }
+
+  /**
+   * @return the number of survivors
+   */
+  public int size() {
+    return sums.length;
+  }
+
+}
@@ -0,0 +1,168 @@
+package com.github.thbrown.softballsim.optimizer.impl.montecarloracing;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive.GameScoreAccumulator;
+
+/**
+ * The rounds a race is played in and the scores its lineups have tallied, shared by {@link LineupRace}
+ * and the genetic optimizer's population. Each round, every lineup that's still playing plays the same
+ * batch of games, and each batch is twice the size of the one before it.
+ *
+ * Scores are tallied as a sum and a sum of squares per lineup in primitive arrays, so a race can hold
+ * millions of lineups. The race keeps track of how many games each lineup has played. The tasks for a
+ * round each own a contiguous range of the lineups playing, so they can run on separate threads without
+ * locking. Rounds must not overlap.
+ */
+public class RaceRounds {
+
+  /**
+   * Plays the given number of games for the lineups at positions [from, to) of a round
+   */
+  public interface RangePlayer {
+    void play(int from, int to, long games);
+  }
+
+  private long[] sums;
+  private long[] sumsOfSquares;
+
+  private long batchSize;
+  private long roundBatchSize;
+  private int playing;
+  private long simulationsRun;
+  private long rounds;
+
+  public RaceRounds(int capacity, long initialBatchSize) {
+    this.sums = new long[capacity];
+    this.sumsOfSquares = new long[capacity];
+    this.batchSize = initialBatchSize;
+  }
+
+  /**
+   * @return the number of rounds a lineup plays before it reaches maxGames
+   */
+  public static int getRoundCount(long initialBatchSize, long maxGames) {
+    int rounds = 0;
+    long games = 0;
+    for (long batch = initialBatchSize; games < maxGames; batch *= 2) {
+      games += Math.min(batch, maxGames - games);
+      rounds++;
+    }
+    return rounds;
+  }
+
+  /**
+   * Starts the next round over with the given batch size, e.g. for a new race between the same lineups
+   */
+  public void setBatchSize(long batchSize) {
+    this.batchSize = batchSize;
+  }
+
+  /**
+   * @param lineups the number of lineups that play this round
+   * @param gamesLeft the batch is cut short so the lineups don't play more games than this
+   * @return tasks that each play this round's batch of games for a range of the lineups. All of them must
+   *         finish before {@link #endRound()} is called.
+   */
+  public List<Callable<Void>> startRound(int lineups, long gamesLeft, int taskCount, RangePlayer player) {
+    roundBatchSize = Math.min(batchSize, gamesLeft);
+    playing = lineups;
+    long games = roundBatchSize;
+    int rangeSize = Math.max(1, (lineups + taskCount - 1) / taskCount);
+    List<Callable<Void>> tasks = new ArrayList<>();
+    for (int from = 0; from < lineups; from += rangeSize) {
+      final int start = from;
+      final int end = Math.min(lineups, from + rangeSize);
+      tasks.add(() -> {
+        player.play(start, end, games);
+        return null;
+      });
+    }
+    return tasks;
+  }
+
+  public void endRound() {
+    simulationsRun += roundBatchSize * playing;
+    batchSize *= 2;
+    rounds++;
+  }
+
+  /**
+   * @return the number of games each lineup played in the last round that was started
+   */
+  public long getRoundBatchSize() {
+    return roundBatchSize;
+  }
+
+  public void add(int lineup, GameScoreAccumulator accumulator) {
+    sums[lineup] += accumulator.getSum();
+    sumsOfSquares[lineup] += accumulator.getSumOfSquares();
+  }
+
+  public void set(int lineup, long sum, long sumOfSquares) {
+    sums[lineup] = sum;
+    sumsOfSquares[lineup] = sumOfSquares;
+  }
+
+  public void move(int from, int to) {
+    set(to, sums[from], sumsOfSquares[from]);
+  }
+
+  /**
+   * Releases the memory held for lineups past the first size
+   */
+  public void trim(int size) {
+    sums = Arrays.copyOf(sums, size);
+    sumsOfSquares = Arrays.copyOf(sumsOfSquares, size);
+  }
+
+  public int getCapacity() {
+    return sums.length;
+  }
+
+  public long getSum(int lineup) {
+    return sums[lineup];
+  }
+
+  public long getSumOfSquares(int lineup) {
+    return sumsOfSquares[lineup];
+  }
+
+  /**
+   * @param games the number of games the lineup has played
+   */
+  public double getMean(int lineup, long games) {
+    return (double) sums[lineup] / games;
+  }
+
+  /**
+   * @param games the number of games the lineup has played, at least two
+   */
+  public double getVariance(int lineup, long games) {
+    return (sumsOfSquares[lineup] - (double) sums[lineup] * sums[lineup] / games) / (games - 1);
+  }
+
+  /**
+   * Picks up the counts where a saved race left off
+   */
+  public void restore(long batchSize, long simulationsRun, long rounds) {
+    this.batchSize = batchSize;
+    this.simulationsRun = simulationsRun;
+    this.rounds = rounds;
+  }
+
+  public long getBatchSize() {
+    return batchSize;
+  }
+
+  public long getSimulationsRun() {
+    return simulationsRun;
+  }
+
+  public long getRounds() {
+    return rounds;
+  }
+
+}
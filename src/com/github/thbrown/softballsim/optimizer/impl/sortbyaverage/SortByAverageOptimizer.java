@@ -2,6 +2,8 @@ package com.github.thbrown.softballsim.optimizer.impl.sortbyaverage;
 
 import com.github.thbrown.softballsim.optimizer.Optimizer;
 import com.github.thbrown.softballsim.optimizer.OptimizerEnum;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive.CompiledLineup;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive.GameScoreAccumulator;
 import com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive.HitGenerator;
 import com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive.MonteCarloGameSimulation;
 import com.github.thbrown.softballsim.util.Logger;
@@ -18,6 +20,7 @@ import com.github.thbrown.softballsim.data.gson.DataStats;
 import com.github.thbrown.softballsim.datasource.ProgressTracker;
 import com.github.thbrown.softballsim.lineup.BattingLineup;
 import com.github.thbrown.softballsim.lineupindexer.BattingLineupIndexer;
+import com.github.thbrown.softballsim.lineupindexer.LineupCursor;
 import com.github.thbrown.softballsim.lineupindexer.LineupTypeEnum;
 
 public class SortByAverageOptimizer implements Optimizer<SortByAverageResult> {
@@ -54,8 +57,9 @@ public class SortByAverageOptimizer implements Optimizer<SortByAverageResult> {
        * lineups types.
        */
       double bestScore = Integer.MAX_VALUE;
-      for (long l = 0; l < indexer.size(); l++) {
-        BattingLineup lineup = indexer.getLineup(l);
+      LineupCursor<?> cursor = indexer.getCursor(0);
+      for (long l = 0; l < indexer.size(); l++, cursor.next()) {
+        BattingLineup lineup = cursor.getLineup();
         double lineupScore = 0;
         for (int i = 1; i < lineup.size(); i++) {
           DataPlayer prev = lineup.asList().get(i - 1);
@@ -77,12 +81,11 @@ public class SortByAverageOptimizer implements Optimizer<SortByAverageResult> {
 
     // Estimate lineup score using monte carlo simulations
     HitGenerator hitGenerator = new HitGenerator(best.asList());
-    final double COUNT = 1000000;
-    double sum = 0;
-    for (int i = 0; i < COUNT; i++) {
-      sum += MonteCarloGameSimulation.simulateGame(best, 7, hitGenerator);
-    }
-    double estimatedScore = sum / COUNT;
+    CompiledLineup compiledLineup = new CompiledLineup(best, hitGenerator);
+    final long COUNT = 1000000;
+    GameScoreAccumulator accumulator = new GameScoreAccumulator();
+    MonteCarloGameSimulation.simulateGames(compiledLineup, 7, COUNT, accumulator);
+    double estimatedScore = accumulator.getMean();
     long elapsedTime = (System.currentTimeMillis() - startTimestamp);
 
     return new SortByAverageResult(best, estimatedScore, 1, 1, elapsedTime, ResultStatusEnum.COMPLETE);
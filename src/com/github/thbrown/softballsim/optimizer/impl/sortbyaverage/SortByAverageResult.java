@@ -16,4 +16,14 @@ public class SortByAverageResult extends Result {
     super(OptimizerEnum.SORT_BY_AVERAGE, timeMs);
   }
 
+  private SortByAverageResult(SortByAverageResult toCopy, ResultStatusEnum status, String statusMessage,
+      Long estimatedTimeRemainingMs) {
+    super(toCopy, status, statusMessage, estimatedTimeRemainingMs);
+  }
+
+  @Override
+  protected Result copy(ResultStatusEnum status, String statusMessage, Long estimatedTimeRemainingMs) {
+    return new SortByAverageResult(this, status, statusMessage, estimatedTimeRemainingMs);
+  }
+
 }
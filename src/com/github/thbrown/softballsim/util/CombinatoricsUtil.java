@@ -47,6 +47,70 @@ public class CombinatoricsUtil {
     return (factorial(n) / (factorial(k) * factorial(n - k)));
   }
 
+  /**
+   * Calculate how many distinct orderings there are of a multiset where element i appears counts[i]
+   * times (n! / (counts[0]! * counts[1]! * ...))
+   */
+  public static long multinomial(int[] counts) {
+    int n = 0;
+    long denominator = 1;
+    for (int count : counts) {
+      n += count;
+      denominator *= factorial(count);
+    }
+    return factorial(n) / denominator;
+  }
+
+  /**
+   * Gets the distinct ordering of a multiset at the given lexicographic index. The multiset contains
+   * counts[i] copies of the value i, index 0 is the ordering with the values sorted ascending.
+   */
+  public static int[] getIthMultisetPermutation(int[] counts, long index) {
+    int[] remaining = counts.clone();
+    int size = Arrays.stream(counts).sum();
+    int[] result = new int[size];
+    for (int i = 0; i < size; i++) {
+      for (int value = 0; value < remaining.length; value++) {
+        if (remaining[value] == 0) {
+          continue;
+        }
+        remaining[value]--;
+        long orderingsWithValue = multinomial(remaining);
+        if (index < orderingsWithValue) {
+          result[i] = value;
+          break;
+        }
+        index -= orderingsWithValue;
+        remaining[value]++;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Inverse of {@link #getIthMultisetPermutation(int[], long)}. Values must be in [0, valueCount).
+   */
+  public static long getMultisetPermutationIndex(int[] ordering, int valueCount) {
+    int[] remaining = new int[valueCount];
+    for (int value : ordering) {
+      remaining[value]++;
+    }
+    long index = 0;
+    for (int i = 0; i < ordering.length; i++) {
+      // Count the orderings that have a smaller value at this position
+      for (int value = 0; value < ordering[i]; value++) {
+        if (remaining[value] == 0) {
+          continue;
+        }
+        remaining[value]--;
+        index += multinomial(remaining);
+        remaining[value]++;
+      }
+      remaining[ordering[i]]--;
+    }
+    return index;
+  }
+
   /**
    * Maps each element of a list to a new list based of the specification in 'order' e.g. if the 1st
    * element of 'order' is 8, the 8th element of the return list will be the first element of 'list'
@@ -0,0 +1,248 @@
+package com.github.thbrown.softballsim.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.apache.commons.math3.stat.descriptive.StatisticalSummary;
+import org.apache.commons.math3.stat.descriptive.SummaryStatistics;
+import com.github.thbrown.softballsim.data.gson.DataPlayer;
+import com.github.thbrown.softballsim.datasource.ProgressTracker;
+import com.github.thbrown.softballsim.lineupindexer.BattingLineupIndexer;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive.CompiledLineup;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive.GameScoreAccumulator;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive.HitGenerator;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive.MonteCarloGameSimulation;
+
+/**
+ * Summary statistics of the mean scores of a random sample of the lineups an indexer can produce.
+ * Optimizers use the spread of these means to scale their parameters, e.g. the annealing
+ * optimizer's starting temperature.
+ *
+ * The statistics only depend on the players (and their stats), the lineup type, the number of innings
+ * and the sample size, so they're computed once for each of those. The most recently used few are
+ * kept in memory. Given a ProgressTracker, they're also saved through the data source (see
+ * {@link com.github.thbrown.softballsim.datasource.DataSource#readCacheEntry}) for later runs.
+ *
+ * Every thread that asks for statistics that are still being computed helps compute them. Each thread
+ * claims the next unsampled lineup until none are left and then waits for the lineups other threads
+ * claimed. So the annealing threads, which all need the same statistics at startup, share the work
+ * instead of each repeating it, and callers can add idle workers by passing an executor. If computing
+ * the statistics fails, every waiting thread gets the failure and the next caller starts over.
+ */
+public class LandscapeStatistics {
+
+  private static final String CACHE_ENTRY_PREFIX = "landscape-";
+
+  // A long running process (e.g. a server) sees many different rosters, so only the most recently
+  // used samplings are kept. Guarded by synchronizing on the map.
+  private static final int MAX_SAMPLINGS = 8;
+  private static final Map<String, Sampling> samplings = new LinkedHashMap<String, Sampling>(16, .75f, true) {
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, Sampling> eldest) {
+      return size() > MAX_SAMPLINGS;
+    }
+  };
+
+  /**
+   * @param sampleSize the number of random lineups to sample
+   * @param games the number of games to simulate for each sampled lineup
+   * @param helpers if not null, up to helperCount tasks that help compute the statistics are submitted
+   *        here
+   * @param cache if not null, the statistics are read from and saved to this tracker's data source
+   * @return summary statistics of the sampled lineups' mean scores
+   */
+  public static StatisticalSummary get(BattingLineupIndexer<?> indexer, int innings, int sampleSize, long games,
+      Executor helpers, int helperCount, ProgressTracker cache) {
+    String key = getKey(indexer, innings, sampleSize, games);
+    Sampling sampling = getSampling(key);
+    if (sampling == null) {
+      // Read outside the lock, several threads may read the same entry but only the first one's
+      // sampling is used
+      double[] savedMeans = readCacheEntry(cache, key, sampleSize);
+      Sampling newSampling =
+          savedMeans == null ? new Sampling(indexer, innings, games, sampleSize) : new Sampling(savedMeans);
+      synchronized (samplings) {
+        sampling = samplings.putIfAbsent(key, newSampling);
+        if (sampling == null) {
+          sampling = newSampling;
+        }
+      }
+    }
+
+    if (helpers != null) {
+      for (int i = 0; i < helperCount && sampling.hasUnclaimedLineups(); i++) {
+        helpers.execute(sampling::help);
+      }
+    }
+    StatisticalSummary result;
+    try {
+      result = sampling.await();
+    } catch (RuntimeException | Error e) {
+      synchronized (samplings) {
+        samplings.remove(key, sampling);
+      }
+      throw e;
+    }
+
+    if (cache != null && sampling.claimSave()) {
+      cache.writeCacheEntry(CACHE_ENTRY_PREFIX + key, GsonAccessor.getInstance().getDefault().toJson(sampling.means));
+    }
+    return result;
+  }
+
+  /**
+   * Same as {@link #get} with a single thread and no persistent cache
+   */
+  public static StatisticalSummary get(BattingLineupIndexer<?> indexer, int innings, int sampleSize, long games) {
+    return get(indexer, innings, sampleSize, games, null, 0, null);
+  }
+
+  private static Sampling getSampling(String key) {
+    synchronized (samplings) {
+      return samplings.get(key);
+    }
+  }
+
+  private static double[] readCacheEntry(ProgressTracker cache, String key, int sampleSize) {
+    if (cache == null) {
+      return null;
+    }
+    String value = cache.readCacheEntry(CACHE_ENTRY_PREFIX + key);
+    if (value == null) {
+      return null;
+    }
+    try {
+      double[] means = GsonAccessor.getInstance().getDefault().fromJson(value, double[].class);
+      return means != null && means.length == sampleSize ? means : null;
+    } catch (RuntimeException e) {
+      Logger.warn("Ignoring unreadable landscape statistics " + key + " because " + e.getMessage());
+      return null;
+    }
+  }
+
+  /**
+   * Identifies the sample by everything that affects it: the lineup type, the players and the outcome
+   * counts the simulations use, the number of innings, the sample size and games per lineup
+   */
+  private static String getKey(BattingLineupIndexer<?> indexer, int innings, int sampleSize, long games) {
+    List<DataPlayer> players = new ArrayList<>(indexer.getPlayers());
+    players.sort(Comparator.comparing(DataPlayer::getId));
+    StringBuilder description = new StringBuilder(indexer.getClass().getName());
+    for (DataPlayer player : players) {
+      description.append('|').append(player.getId()).append(player.getGender())
+          .append(Arrays.toString(HitGenerator.getOutcomeCounts(player)));
+    }
+    description.append('|').append(innings).append('|').append(sampleSize).append('|').append(games);
+    return StringUtils.calculateMd5AsHex(description.toString());
+  }
+
+  private static class Sampling {
+    private final BattingLineupIndexer<?> indexer;
+    private final int innings;
+    private final long games;
+
+    // Written by whichever thread claimed each lineup, read once all of them are counted down
+    private final double[] means;
+    private final AtomicInteger nextLineup = new AtomicInteger();
+    private final CountDownLatch remaining;
+    private final AtomicBoolean saved;
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+    Sampling(BattingLineupIndexer<?> indexer, int innings, long games, int sampleSize) {
+      this.indexer = indexer;
+      this.innings = innings;
+      this.games = games;
+      this.means = new double[sampleSize];
+      this.remaining = new CountDownLatch(sampleSize);
+      this.saved = new AtomicBoolean(false);
+    }
+
+    /**
+     * Already computed on an earlier run
+     */
+    Sampling(double[] means) {
+      this.indexer = null;
+      this.innings = 0;
+      this.games = 0;
+      this.means = means;
+      this.nextLineup.set(means.length);
+      this.remaining = new CountDownLatch(0);
+      this.saved = new AtomicBoolean(true);
+    }
+
+    boolean hasUnclaimedLineups() {
+      return nextLineup.get() < means.length;
+    }
+
+    /**
+     * Samples lineups until every lineup has been claimed by some thread. If sampling a lineup fails,
+     * no more lineups are claimed and the threads waiting for the statistics are released.
+     */
+    void help() {
+      try {
+        HitGenerator hitGenerator = null;
+        GameScoreAccumulator accumulator = null;
+        int lineup;
+        while ((lineup = nextLineup.getAndIncrement()) < means.length) {
+          if (hitGenerator == null) {
+            // Every lineup from an indexer contains the same players, so they can share a HitGenerator
+            hitGenerator = new HitGenerator(indexer.getPlayers());
+            accumulator = new GameScoreAccumulator();
+          }
+          long randomIndex = ThreadLocalRandom.current().nextLong(0, indexer.size());
+          CompiledLineup compiledLineup = new CompiledLineup(indexer.getLineup(randomIndex), hitGenerator);
+          accumulator.clear();
+          MonteCarloGameSimulation.simulateGames(compiledLineup, innings, games, accumulator);
+          means[lineup] = accumulator.getMean();
+          remaining.countDown();
+        }
+      } catch (RuntimeException | Error e) {
+        failure.compareAndSet(null, e);
+        nextLineup.set(means.length);
+        while (remaining.getCount() > 0) {
+          remaining.countDown();
+        }
+        throw e;
+      }
+    }
+
+    /**
+     * @throws RuntimeException if any thread failed to sample a lineup
+     */
+    StatisticalSummary await() {
+      help();
+      try {
+        remaining.await();
+      } catch (InterruptedException e) {
+        throw new RuntimeException(e);
+      }
+      if (failure.get() != null) {
+        throw new RuntimeException("Failed to sample the lineup landscape", failure.get());
+      }
+      SummaryStatistics result = new SummaryStatistics();
+      for (double mean : means) {
+        result.addValue(mean);
+      }
+      return result;
+    }
+
+    /**
+     * @return true for the one caller that should save these statistics
+     */
+    boolean claimSave() {
+      return saved.compareAndSet(false, true);
+    }
+  }
+
+}
@@ -2,6 +2,8 @@ package com.github.thbrown.softballsim.util;
 
 import java.io.IOException;
 import java.text.NumberFormat;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
 
 public class MathUtil {
   /**
@@ -17,6 +19,27 @@ public class MathUtil {
     return (int) ((x - a) * (d - c) / (b - a) + c);
   }
 
+  /**
+   * @return a uniformly distributed value between 0 (inclusive) and bound (exclusive), like
+   *         {@link ThreadLocalRandom#nextLong(long)} but for any Random
+   */
+  public static long nextLong(Random random, long bound) {
+    if (random instanceof ThreadLocalRandom) {
+      return ((ThreadLocalRandom) random).nextLong(bound);
+    }
+    if (bound <= 0) {
+      throw new IllegalArgumentException("bound must be positive");
+    }
+    // Rejects the values from the incomplete last multiple of bound so every result is equally likely
+    long bits;
+    long value;
+    do {
+      bits = random.nextLong() >>> 1;
+      value = bits % bound;
+    } while (bits - value + (bound - 1) < 0);
+    return value;
+  }
+
   public static String percentChange(double A, double B) throws IOException {
     NumberFormat nf = NumberFormat.getInstance();
     nf.setMaximumFractionDigits(3);
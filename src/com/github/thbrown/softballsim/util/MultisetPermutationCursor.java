@@ -0,0 +1,142 @@
+package com.github.thbrown.softballsim.util;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Steps through the distinct orderings of a group of elements where some elements are
+ * interchangeable, in the same order as {@link CombinatoricsUtil#getIthMultisetPermutation(int[],
+ * long)}.
+ *
+ * Each element belongs to a class and elements of the same class are interchangeable, so only the
+ * sequence of classes matters. That sequence is advanced with the usual lexicographic next
+ * permutation step, which only changes a suffix of the sequence. The order exposed by
+ * {@link #getOrder()} turns the sequence back into elements by giving the class's elements out in
+ * ascending order, i.e. interchangeable elements always appear in their original relative order.
+ *
+ * This class is not thread safe.
+ */
+public class MultisetPermutationCursor implements OrderCursor {
+
+  private final int size;
+  private final long count;
+
+  // The elements of each class, ascending
+  private final int[][] members;
+  private final int[] classes;
+  private final int[] used;
+  private final int[] order;
+  private long index;
+
+  private int[] mirror;
+  private int[] mirrorPositions;
+  private int mirrorOffset;
+
+  /**
+   * @param elementClasses the class of each element, classes must be numbered from 0 with no gaps
+   */
+  public MultisetPermutationCursor(int[] elementClasses, long index) {
+    int classCount = Arrays.stream(elementClasses).max().orElse(-1) + 1;
+    int[] counts = new int[classCount];
+    for (int elementClass : elementClasses) {
+      counts[elementClass]++;
+    }
+    this.size = elementClasses.length;
+    this.count = CombinatoricsUtil.multinomial(counts);
+    if (index < 0 || index >= count) {
+      throw new IllegalArgumentException("Ordering index " + index + " is out of range, there are " + count);
+    }
+    this.members = new int[classCount][];
+    for (int c = 0; c < classCount; c++) {
+      final int elementClass = c;
+      members[c] = IntStream.range(0, size).filter(e -> elementClasses[e] == elementClass).toArray();
+    }
+    this.classes = CombinatoricsUtil.getIthMultisetPermutation(counts, index);
+    this.used = new int[classCount];
+    this.order = new int[size];
+    this.index = index;
+    updateOrder(0);
+  }
+
+  /**
+   * @return the number of distinct orderings of elements with the given classes
+   */
+  public static long countOrderings(int[] elementClasses) {
+    int[] counts = new int[Arrays.stream(elementClasses).max().orElse(-1) + 1];
+    for (int elementClass : elementClasses) {
+      counts[elementClass]++;
+    }
+    return CombinatoricsUtil.multinomial(counts);
+  }
+
+  @Override
+  public int[] getOrder() {
+    return order;
+  }
+
+  @Override
+  public long getIndex() {
+    return index;
+  }
+
+  @Override
+  public boolean next() {
+    // Find the last position that can be increased, everything after it is non-increasing
+    int i = size - 2;
+    while (i >= 0 && classes[i] >= classes[i + 1]) {
+      i--;
+    }
+    if (i >= 0) {
+      int j = size - 1;
+      while (classes[j] <= classes[i]) {
+        j--;
+      }
+      CombinatoricsUtil.swap(i, j, classes);
+    }
+
+    // Reversing the suffix makes it ascending. If nothing could be increased this wraps to index 0.
+    for (int a = i + 1, b = size - 1; a < b; a++, b--) {
+      CombinatoricsUtil.swap(a, b, classes);
+    }
+    updateOrder(Math.max(i, 0));
+
+    index++;
+    if (index == count) {
+      index = 0;
+      return true;
+    }
+    return false;
+  }
+
+  @Override
+  public void setMirror(int[] target, int[] positions, int offset) {
+    this.mirror = target;
+    this.mirrorPositions = positions;
+    this.mirrorOffset = offset;
+    if (target != null) {
+      for (int i = 0; i < size; i++) {
+        target[positions[i]] = order[i] + offset;
+      }
+    }
+  }
+
+  /**
+   * Recomputes the order from the given position on, positions before it keep their elements
+   */
+  private void updateOrder(int from) {
+    Arrays.fill(used, 0);
+    for (int i = 0; i < from; i++) {
+      used[classes[i]]++;
+    }
+    for (int i = from; i < size; i++) {
+      int element = members[classes[i]][used[classes[i]]++];
+      if (order[i] != element) {
+        order[i] = element;
+        if (mirror != null) {
+          mirror[mirrorPositions[i]] = element + mirrorOffset;
+        }
+      }
+    }
+  }
+
+}
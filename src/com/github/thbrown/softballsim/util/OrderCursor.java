@@ -0,0 +1,31 @@
+package com.github.thbrown.softballsim.util;
+
+/**
+ * Steps through the orderings of a group of elements by index, mutating a small int array in place.
+ * See {@link PermutationCursor} and {@link MultisetPermutationCursor}.
+ */
+public interface OrderCursor {
+
+  /**
+   * @return the current ordering, order[i] is the element at position i. This array is updated in
+   *         place by {@link #next()} and must not be modified.
+   */
+  public int[] getOrder();
+
+  public long getIndex();
+
+  /**
+   * Moves to the next ordering, wrapping from the last one back to index 0.
+   *
+   * @return true if the cursor wrapped around to index 0
+   */
+  public boolean next();
+
+  /**
+   * Keeps target up to date with this ordering: target[positions[i]] is always order[i] + offset.
+   * The target is written in full now and then only where the ordering changes. Pass null to stop
+   * mirroring.
+   */
+  public void setMirror(int[] target, int[] positions, int offset);
+
+}
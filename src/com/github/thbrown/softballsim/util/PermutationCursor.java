@@ -0,0 +1,134 @@
+package com.github.thbrown.softballsim.util;
+
+/**
+ * Steps through permutations in the same order as {@link CombinatoricsUtil#getIthPermutation(int, long)}
+ * without unranking each one from scratch.
+ *
+ * getIthPermutation applies one swap per digit of a mixed radix representation of the index, where
+ * the least significant digit picks the first swap. Each swap can equally be thought of as exchanging
+ * two values (rather than two positions), applied last. So moving to the next index only has to undo
+ * and redo the outermost value swap, except when that digit carries into the next one, which happens
+ * once every 'size' steps. That makes {@link #next()} amortized O(1).
+ *
+ * The permutation can also be mirrored into a caller supplied array, see
+ * {@link #setMirror(int[], int[], int)}. This class is not thread safe.
+ */
+public class PermutationCursor implements OrderCursor {
+
+  private final int size;
+  private final long count;
+
+  // digits[k] is the digit with radix k, it selects the value swapped with k - 1
+  private final int[] digits;
+  private final int[] order;
+  private final int[] inverse;
+  private long index;
+
+  private int[] mirror;
+  private int[] mirrorPositions;
+  private int mirrorOffset;
+
+  public PermutationCursor(int size, long index) {
+    this.size = size;
+    this.count = CombinatoricsUtil.factorial(size);
+    if (index < 0 || index >= count) {
+      throw new IllegalArgumentException("Permutation index " + index + " is out of range for size " + size);
+    }
+    this.digits = new int[size + 1];
+    this.order = new int[size];
+    this.inverse = new int[size];
+    this.index = index;
+
+    // Same index adjustment as getIthPermutation, index 0 is the initial order
+    long rank = index == 0 ? count - 1 : index - 1;
+    for (int k = size; k > 0; k--) {
+      digits[k] = (int) (rank % k);
+      rank /= k;
+    }
+    for (int i = 0; i < size; i++) {
+      order[i] = i;
+      inverse[i] = i;
+    }
+    for (int k = 1; k <= size; k++) {
+      swapValues(k - 1, digits[k]);
+    }
+  }
+
+  /**
+   * @return the current permutation. This array is updated in place by {@link #next()} and must not
+   *         be modified.
+   */
+  @Override
+  public int[] getOrder() {
+    return order;
+  }
+
+  @Override
+  public long getIndex() {
+    return index;
+  }
+
+  /**
+   * Moves to the next permutation, wrapping from the last one back to index 0.
+   *
+   * @return true if the cursor wrapped around to index 0
+   */
+  @Override
+  public boolean next() {
+    if (size > 0) {
+      increment(size);
+    }
+    index++;
+    if (index == count) {
+      index = 0;
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Keeps target up to date with this permutation: target[positions[i]] is always order[i] + offset.
+   * The target is written in full now and then only where the permutation changes. Pass null to stop
+   * mirroring.
+   */
+  @Override
+  public void setMirror(int[] target, int[] positions, int offset) {
+    this.mirror = target;
+    this.mirrorPositions = positions;
+    this.mirrorOffset = offset;
+    if (target != null) {
+      for (int i = 0; i < size; i++) {
+        target[positions[i]] = order[i] + offset;
+      }
+    }
+  }
+
+  private void increment(int k) {
+    swapValues(k - 1, digits[k]);
+    digits[k]++;
+    if (digits[k] == k) {
+      digits[k] = 0;
+      if (k > 1) {
+        increment(k - 1);
+      }
+    }
+    swapValues(k - 1, digits[k]);
+  }
+
+  private void swapValues(int a, int b) {
+    if (a == b) {
+      return;
+    }
+    int positionA = inverse[a];
+    int positionB = inverse[b];
+    order[positionA] = b;
+    order[positionB] = a;
+    inverse[a] = positionB;
+    inverse[b] = positionA;
+    if (mirror != null) {
+      mirror[mirrorPositions[positionA]] = b + mirrorOffset;
+      mirror[mirrorPositions[positionB]] = a + mirrorOffset;
+    }
+  }
+
+}
@@ -0,0 +1,166 @@
+package com.github.thbrown.softballsim.util;
+
+import org.apache.commons.math3.special.Beta;
+import org.apache.commons.math3.util.FastMath;
+
+/**
+ * T-tests that take primitives and don't allocate: two sided tests of whether means differ, and
+ * equivalence tests (two one-sided tests, TOST) of whether means are within a margin of each other.
+ *
+ * commons-math's TTest builds a new TDistribution for every p-value it calculates, and the
+ * distribution evaluates the incomplete beta function through an anonymous ContinuedFraction. That's
+ * a lot of garbage for something the adaptive and annealing optimizers call after every batch of
+ * games. These methods follow the same steps with the same FastMath functions and constants, so the
+ * two sided tests return exactly the same values as TTest (see WelchTTestTest). TTest has no
+ * equivalence tests, they're built from the same t distribution.
+ */
+public class WelchTTest {
+
+  // Same as Beta.DEFAULT_EPSILON
+  private static final double EPSILON = 1e-14;
+
+  // Same as ContinuedFraction's
+  private static final double SMALL = 1e-50;
+
+  /**
+   * Same as TTest.tTest(m1, m2, v1, v2, n1, n2), the unequal variance test of whether two samples
+   * have the same mean.
+   *
+   * @return the p-value, or NaN if it can't be calculated (e.g. both samples have no variance)
+   */
+  public static double pValue(double mean1, double variance1, double n1, double mean2, double variance2,
+      double n2) {
+    double t = FastMath.abs(tStatistic(mean1, variance1, n1, mean2, variance2, n2));
+    double degreesOfFreedom = degreesOfFreedom(variance1, n1, variance2, n2);
+    return 2.0 * cumulativeProbability(-t, degreesOfFreedom);
+  }
+
+  /**
+   * Same as TTest.tTest(mu, sampleStats), the test of whether a sample's mean is mu.
+   */
+  public static double oneSamplePValue(double mu, double mean, double variance, double n) {
+    double t = FastMath.abs((mean - mu) / FastMath.sqrt(variance / n));
+    return 2.0 * cumulativeProbability(-t, n - 1);
+  }
+
+  /**
+   * Two one-sided tests of whether the means of two samples are within margin of each other, using
+   * the same unequal variance statistic as {@link #pValue}.
+   *
+   * @return the larger of the two one-sided p-values, the means are shown to be within margin at
+   *         level alpha if this is <= alpha
+   */
+  public static double equivalencePValue(double mean1, double variance1, double n1, double mean2,
+      double variance2, double n2, double margin) {
+    double standardError = FastMath.sqrt((variance1 / n1) + (variance2 / n2));
+    double degreesOfFreedom = degreesOfFreedom(variance1, n1, variance2, n2);
+    double difference = mean2 - mean1;
+    return FastMath.max(cumulativeProbability(-(difference + margin) / standardError, degreesOfFreedom),
+        cumulativeProbability((difference - margin) / standardError, degreesOfFreedom));
+  }
+
+  /**
+   * Two one-sided tests of whether a sample's mean is within margin of zero, e.g. for paired
+   * differences.
+   *
+   * @return the larger of the two one-sided p-values
+   */
+  public static double oneSampleEquivalencePValue(double mean, double variance, double n, double margin) {
+    double standardError = FastMath.sqrt(variance / n);
+    return FastMath.max(cumulativeProbability(-(mean + margin) / standardError, n - 1),
+        cumulativeProbability((mean - margin) / standardError, n - 1));
+  }
+
+  public static double tStatistic(double mean1, double variance1, double n1, double mean2, double variance2,
+      double n2) {
+    return (mean1 - mean2) / FastMath.sqrt((variance1 / n1) + (variance2 / n2));
+  }
+
+  /**
+   * Welch-Satterthwaite approximation of the degrees of freedom
+   */
+  public static double degreesOfFreedom(double variance1, double n1, double variance2, double n2) {
+    return (((variance1 / n1) + (variance2 / n2)) * ((variance1 / n1) + (variance2 / n2)))
+        / ((variance1 * variance1) / (n1 * n1 * (n1 - 1d)) + (variance2 * variance2) / (n2 * n2 * (n2 - 1d)));
+  }
+
+  /**
+   * Same as TDistribution.cumulativeProbability(x)
+   */
+  public static double cumulativeProbability(double x, double degreesOfFreedom) {
+    if (Double.isInfinite(x)) {
+      return x < 0 ? 0 : 1;
+    }
+    if (x == 0) {
+      return 0.5;
+    }
+    double t = regularizedBeta(degreesOfFreedom / (degreesOfFreedom + (x * x)), 0.5 * degreesOfFreedom, 0.5);
+    return x < 0.0 ? 0.5 * t : 1.0 - 0.5 * t;
+  }
+
+  /**
+   * Same as Beta.regularizedBeta(x, a, b), except that it returns NaN where commons-math would throw
+   * because the continued fraction diverged
+   */
+  public static double regularizedBeta(double x, double a, double b) {
+    if (Double.isNaN(x) || Double.isNaN(a) || Double.isNaN(b) || x < 0 || x > 1 || a <= 0 || b <= 0) {
+      return Double.NaN;
+    }
+    if (x > (a + 1) / (2 + b + a) && 1 - x <= (b + 1) / (2 + b + a)) {
+      return 1 - regularizedBeta(1 - x, b, a);
+    }
+    return FastMath.exp((a * FastMath.log(x)) + (b * FastMath.log1p(-x)) - FastMath.log(a) - Beta.logBeta(a, b))
+        * 1.0 / continuedFraction(x, a, b);
+  }
+
+  /**
+   * The continued fraction for the incomplete beta function, evaluated with the modified Lentz
+   * algorithm the same way ContinuedFraction.evaluate does
+   */
+  private static double continuedFraction(double x, double a, double b) {
+    double hPrev = 1.0;
+    double dPrev = 0.0;
+    double cPrev = hPrev;
+    double hN = hPrev;
+    for (int n = 1; n < Integer.MAX_VALUE; n++) {
+      double bN;
+      if (n % 2 == 0) {
+        double m = n / 2.0;
+        bN = (m * (b - m) * x) / ((a + (2 * m) - 1) * (a + (2 * m)));
+      } else {
+        double m = (n - 1.0) / 2.0;
+        bN = -((a + m) * (a + b + m) * x) / ((a + (2 * m)) * (a + (2 * m) + 1.0));
+      }
+
+      double dN = 1.0 + bN * dPrev;
+      if (isSmall(dN)) {
+        dN = SMALL;
+      }
+      double cN = 1.0 + bN / cPrev;
+      if (isSmall(cN)) {
+        cN = SMALL;
+      }
+      dN = 1 / dN;
+      double deltaN = cN * dN;
+      hN = hPrev * deltaN;
+      if (Double.isInfinite(hN) || Double.isNaN(hN)) {
+        return Double.NaN;
+      }
+      if (FastMath.abs(deltaN - 1.0) < EPSILON) {
+        break;
+      }
+      dPrev = dN;
+      cPrev = cN;
+      hPrev = hN;
+    }
+    return hN;
+  }
+
+  /**
+   * Same as Precision.equals(value, 0.0, SMALL)
+   */
+  private static boolean isSmall(double value) {
+    return value == 0.0 || FastMath.abs(value) <= SMALL;
+  }
+
+}
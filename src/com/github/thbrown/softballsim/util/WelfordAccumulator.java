@@ -0,0 +1,124 @@
+package com.github.thbrown.softballsim.util;
+
+import org.apache.commons.math3.stat.descriptive.StatisticalSummary;
+
+/**
+ * Running count, mean and sum of squared deviations from the mean (M2) of a sample, updated with
+ * Welford's algorithm. Accumulators are merged with Chan et al.'s pairwise formula, which is what
+ * commons-math's AggregateSummaryStatistics uses, but without allocating anything.
+ *
+ * Implements StatisticalSummary so it can be read wherever commons-math stats are expected. It's a
+ * live view, not a snapshot. This class is not thread safe.
+ */
+public class WelfordAccumulator implements StatisticalSummary {
+
+  private long n;
+  private double mean;
+  private double m2;
+  private double min = Double.NaN;
+  private double max = Double.NaN;
+
+  public WelfordAccumulator() {}
+
+  public WelfordAccumulator(WelfordAccumulator toCopy) {
+    merge(toCopy);
+  }
+
+  public void add(double value) {
+    n++;
+    double delta = value - mean;
+    mean += delta / n;
+    m2 += delta * (value - mean);
+    min = n == 1 ? value : Math.min(min, value);
+    max = n == 1 ? value : Math.max(max, value);
+  }
+
+  public void merge(WelfordAccumulator other) {
+    merge(other.n, other.mean, other.m2, other.min, other.max);
+  }
+
+  /**
+   * Merges in a sample described by its size, mean, sum of squared deviations from its mean, min and
+   * max.
+   */
+  public void merge(long otherN, double otherMean, double otherM2, double otherMin, double otherMax) {
+    if (otherN == 0) {
+      return;
+    }
+    if (n == 0) {
+      n = otherN;
+      mean = otherMean;
+      m2 = otherM2;
+      min = otherMin;
+      max = otherMax;
+      return;
+    }
+    long total = n + otherN;
+    double delta = otherMean - mean;
+    mean += delta * otherN / total;
+    m2 += otherM2 + delta * delta * ((double) n * otherN / total);
+    n = total;
+    min = Math.min(min, otherMin);
+    max = Math.max(max, otherMax);
+  }
+
+  public void clear() {
+    n = 0;
+    mean = 0;
+    m2 = 0;
+    min = Double.NaN;
+    max = Double.NaN;
+  }
+
+  @Override
+  public long getN() {
+    return n;
+  }
+
+  @Override
+  public double getMean() {
+    return n == 0 ? Double.NaN : mean;
+  }
+
+  /**
+   * @return the sum of squared deviations from the mean
+   */
+  public double getM2() {
+    return m2;
+  }
+
+  /**
+   * @return the bias corrected sample variance, matching commons-math's SummaryStatistics
+   */
+  @Override
+  public double getVariance() {
+    if (n == 0) {
+      return Double.NaN;
+    }
+    if (n == 1) {
+      return 0;
+    }
+    return m2 / (n - 1);
+  }
+
+  @Override
+  public double getStandardDeviation() {
+    return Math.sqrt(getVariance());
+  }
+
+  @Override
+  public double getMax() {
+    return max;
+  }
+
+  @Override
+  public double getMin() {
+    return min;
+  }
+
+  @Override
+  public double getSum() {
+    return n == 0 ? 0 : mean * n;
+  }
+
+}
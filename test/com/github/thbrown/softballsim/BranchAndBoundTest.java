@@ -0,0 +1,124 @@
+package com.github.thbrown.softballsim;
+
+import java.util.List;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.Options;
+import org.junit.Assert;
+import org.junit.Test;
+import com.github.thbrown.softballsim.data.gson.DataStats;
+import com.github.thbrown.softballsim.datasource.DataSourceEnum;
+import com.github.thbrown.softballsim.helpers.LineupTypeTestInfo;
+import com.github.thbrown.softballsim.lineupindexer.BattingLineupIndexer;
+import com.github.thbrown.softballsim.lineupindexer.LineupTypeEnum;
+import com.github.thbrown.softballsim.optimizer.impl.branchandbound.BranchAndBoundSearch;
+import com.github.thbrown.softballsim.optimizer.impl.branchandbound.BranchAndBoundSearch.Node;
+import com.github.thbrown.softballsim.optimizer.impl.branchandbound.ExpectedRunsBound;
+import com.github.thbrown.softballsim.optimizer.impl.branchandbound.LineupStructure;
+import com.github.thbrown.softballsim.optimizer.impl.expectedvalue.ExpectedValue;
+import com.github.thbrown.softballsim.util.Logger;
+
+public class BranchAndBoundTest {
+
+  private static final int INNINGS = 7;
+  private static final int MAX_BATTERS = 1000;
+
+  @Test
+  public void testDataSourceFileSystem() throws Exception {
+    final int LINEUP_TYPE = 0;
+    final int THREAD_COUNT = 4;
+
+    String[] args = {"-o", "BRANCH_AND_BOUND", "-f", "-l",
+        "1OiRCCmrn16iyK,Oscar,Molly,Nelly,1CV6WRyspDjA7Z,1MPJ24EEyS0g6p", "-B", String.valueOf(MAX_BATTERS), "-I",
+        String.valueOf(INNINGS), "-t", String.valueOf(LINEUP_TYPE), "-T", String.valueOf(THREAD_COUNT)};
+
+    Result result = SoftballSim.mainInternal(args);
+    Assert.assertNotNull("Expected the simulation to produce a result, but it produced null", result);
+    Assert.assertEquals(result.getCountTotal(), result.getCountCompleted());
+  }
+
+  @Test
+  public void slotRulesCountEveryLineup() {
+    DataStats stats = getStats();
+    for (LineupTypeEnum lineupType : LineupTypeEnum.values()) {
+      for (int length = 6; length <= 10; length++) {
+        List<String> players = LineupTypeTestInfo.getInstance().getTestLineup(lineupType, length, stats);
+        BattingLineupIndexer<?> indexer = lineupType.getLineupIndexer(stats, players);
+        LineupStructure structure = LineupStructure.forLineupType(lineupType, indexer);
+        Assert.assertEquals(lineupType + " " + length, indexer.size(), structure.countLineups());
+      }
+    }
+  }
+
+  @Test
+  public void branchAndBoundMatchesExhaustiveExpectedValue() {
+    DataStats stats = getStats();
+    for (LineupTypeEnum lineupType : LineupTypeEnum.values()) {
+      List<String> players = LineupTypeTestInfo.getInstance().getTestLineup(lineupType, 7, stats);
+      BattingLineupIndexer<?> indexer = lineupType.getLineupIndexer(stats, players);
+
+      double highest = -Double.MAX_VALUE;
+      double lowest = Double.MAX_VALUE;
+      for (long i = 0; i < indexer.size(); i++) {
+        double score = ExpectedValue.getExpectedValue(indexer.getLineup(i), INNINGS, MAX_BATTERS);
+        highest = Math.max(highest, score);
+        lowest = Math.min(lowest, score);
+      }
+
+      for (boolean lowestScore : new boolean[] {false, true}) {
+        double best = lowestScore ? lowest : highest;
+        LineupStructure structure = LineupStructure.forLineupType(lineupType, indexer);
+        ExpectedRunsBound bound =
+            new ExpectedRunsBound(indexer.getPlayers(), structure, INNINGS, MAX_BATTERS, lowestScore);
+        BranchAndBoundSearch search =
+            new BranchAndBoundSearch(indexer, structure, bound, INNINGS, MAX_BATTERS, lowestScore);
+        List<Node> nodes = search.split(search.getRoots(), 32);
+        search.dive(nodes.get(0));
+        for (Node node : nodes) {
+          search.search(node);
+        }
+
+        Logger.log(lineupType + " lowest=" + lowestScore + " exhaustive " + best + " branch and bound "
+            + search.getBestScore() + " scored " + search.getLineupsScored() + "/" + indexer.size() + " bounds "
+            + search.getBoundsComputed());
+        Assert.assertEquals(lineupType.toString(), best, search.getBestScore(), 1e-9);
+        Assert.assertEquals(indexer.size(), search.getCountCompleted());
+        Assert.assertEquals(best,
+            ExpectedValue.getExpectedValue(search.getBestLineup(), INNINGS, MAX_BATTERS), 1e-9);
+      }
+    }
+  }
+
+  @Test
+  public void boundPrunesMostLineups() {
+    DataStats stats = getStats();
+    List<String> players = LineupTypeTestInfo.getInstance().getTestLineup(LineupTypeEnum.STANDARD, 8, stats);
+    BattingLineupIndexer<?> indexer = LineupTypeEnum.STANDARD.getLineupIndexer(stats, players);
+    for (boolean lowestScore : new boolean[] {false, true}) {
+      LineupStructure structure = LineupStructure.forLineupType(LineupTypeEnum.STANDARD, indexer);
+      ExpectedRunsBound bound =
+          new ExpectedRunsBound(indexer.getPlayers(), structure, INNINGS, MAX_BATTERS, lowestScore);
+      BranchAndBoundSearch search =
+          new BranchAndBoundSearch(indexer, structure, bound, INNINGS, MAX_BATTERS, lowestScore);
+      List<Node> nodes = search.split(search.getRoots(), 32);
+      search.dive(nodes.get(0));
+      for (Node node : nodes) {
+        search.search(node);
+      }
+
+      Logger.log("lowest=" + lowestScore + " scored " + search.getLineupsScored() + " bounds "
+          + search.getBoundsComputed() + " of " + indexer.size() + " lineups");
+      Assert.assertEquals(indexer.size(), search.getCountCompleted());
+      Assert.assertTrue("Scored " + search.getLineupsScored(), search.getLineupsScored() < indexer.size() / 100);
+      // Bounding a partial lineup costs a few times as much as scoring a lineup
+      Assert.assertTrue("Bounded " + search.getBoundsComputed(), search.getBoundsComputed() < indexer.size() / 3);
+    }
+  }
+
+  private DataStats getStats() {
+    CommandLineOptions commandLineOptions = CommandLineOptions.getInstance();
+    Options commonOptions = commandLineOptions.getOptionsForFlags(DataSourceEnum.FILE_SYSTEM, null);
+    CommandLine commonCmd = commandLineOptions.parse(commonOptions, new String[0], true);
+    return DataSourceEnum.FILE_SYSTEM.getData(commonCmd);
+  }
+
+}
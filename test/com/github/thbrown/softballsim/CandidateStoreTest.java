@@ -0,0 +1,48 @@
+package com.github.thbrown.softballsim;
+
+import java.util.HashSet;
+import java.util.Set;
+import org.junit.Assert;
+import org.junit.Test;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloadaptive.CandidateStore;
+
+public class CandidateStoreTest {
+
+  @Test
+  public void removedSlotsAreReusedWithoutReviving() {
+    CandidateStore store = new CandidateStore();
+    long first = store.add(10);
+    long second = store.add(20);
+    Assert.assertEquals(2, store.size());
+    Assert.assertTrue(store.remove(first));
+    Assert.assertFalse(store.remove(first));
+
+    // The freed slot goes to the next lineup, but the old handle stays invalid
+    long third = store.add(30);
+    Assert.assertEquals((int) first, (int) third);
+    Assert.assertFalse(store.contains(first));
+    Assert.assertFalse(store.remove(first));
+    Assert.assertTrue(store.contains(third));
+    Assert.assertEquals(30, store.getLineupIndex(third));
+    Assert.assertEquals(20, store.getLineupIndex(second));
+    Assert.assertFalse(store.contains(CandidateStore.NO_HANDLE));
+  }
+
+  @Test
+  public void liveCandidatesAreListedAcrossPages() {
+    CandidateStore store = new CandidateStore();
+    Set<Long> expected = new HashSet<>();
+    long[] handles = new long[10000];
+    for (int i = 0; i < handles.length; i++) {
+      handles[i] = store.add(i);
+      expected.add((long) i);
+    }
+    for (int i = 0; i < handles.length; i += 3) {
+      store.remove(handles[i]);
+      expected.remove((long) i);
+    }
+    Assert.assertEquals(expected.size(), store.size());
+    Assert.assertEquals(expected, store.getLineupIndexes());
+  }
+
+}
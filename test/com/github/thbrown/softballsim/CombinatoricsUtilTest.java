@@ -1,5 +1,6 @@
 package com.github.thbrown.softballsim;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -9,6 +10,8 @@ import java.util.List;
 import java.util.Set;
 import org.junit.Test;
 import com.github.thbrown.softballsim.util.CombinatoricsUtil;
+import com.github.thbrown.softballsim.util.MultisetPermutationCursor;
+import com.github.thbrown.softballsim.util.PermutationCursor;
 
 public class CombinatoricsUtilTest {
 
@@ -44,6 +47,71 @@ public class CombinatoricsUtilTest {
     }
   }
 
+  @Test
+  public void permutationCursorMatchesIthPermutation() {
+    for (int length = 0; length <= 7; length++) {
+      long count = CombinatoricsUtil.factorial(length);
+      for (long start : new long[] {0, count / 3, count - 1}) {
+        PermutationCursor cursor = new PermutationCursor(length, start);
+        for (long step = 0; step <= count; step++) {
+          long i = (start + step) % count;
+          assertEquals(i, cursor.getIndex());
+          assertArrayEquals(CombinatoricsUtil.getIthPermutation(length, i), cursor.getOrder());
+          assertEquals(i == count - 1, cursor.next());
+        }
+      }
+    }
+
+    // Mirrored into every other slot, offset by 10
+    int[] mirror = new int[10];
+    int[] positions = {0, 2, 4, 6, 8};
+    PermutationCursor cursor = new PermutationCursor(5, 17);
+    cursor.setMirror(mirror, positions, 10);
+    for (int step = 0; step < 200; step++) {
+      for (int i = 0; i < positions.length; i++) {
+        assertEquals(cursor.getOrder()[i] + 10, mirror[positions[i]]);
+      }
+      cursor.next();
+    }
+  }
+
+  @Test
+  public void multisetPermutationCursorMatchesIthMultisetPermutation() {
+    int[] classes = {0, 1, 0, 2, 1, 0};
+    int[] counts = {3, 2, 1};
+    long count = CombinatoricsUtil.multinomial(counts);
+    assertEquals(60, count);
+    assertEquals(count, MultisetPermutationCursor.countOrderings(classes));
+
+    Set<String> dupDetector = new HashSet<>();
+    MultisetPermutationCursor cursor = new MultisetPermutationCursor(classes, 0);
+    int[] mirror = new int[classes.length];
+    cursor.setMirror(mirror, new int[] {0, 1, 2, 3, 4, 5}, 0);
+    for (long i = 0; i <= count; i++) {
+      long index = i % count;
+      int[] ordering = CombinatoricsUtil.getIthMultisetPermutation(counts, index);
+      assertEquals(index, CombinatoricsUtil.getMultisetPermutationIndex(ordering, counts.length));
+      assertEquals(index, cursor.getIndex());
+      assertArrayEquals(cursor.getOrder(), mirror);
+
+      // Elements of the same class stay in ascending order
+      int[] previous = {-1, -1, -1};
+      for (int position = 0; position < ordering.length; position++) {
+        int element = cursor.getOrder()[position];
+        assertEquals(ordering[position], classes[element]);
+        assertEquals(true, element > previous[classes[element]]);
+        previous[classes[element]] = element;
+      }
+      if (i < count) {
+        assertEquals(true, dupDetector.add(Arrays.toString(ordering)));
+      }
+
+      // Cursors positioned directly at an index agree with stepped ones
+      assertArrayEquals(new MultisetPermutationCursor(classes, index).getOrder(), cursor.getOrder());
+      assertEquals(index == count - 1, cursor.next());
+    }
+  }
+
   @Test
   public void generateNthCombination() {
     Set<String> dupDetector = new HashSet<>();
@@ -3,11 +3,24 @@ package com.github.thbrown.softballsim;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.Options;
 import org.junit.Assert;
 import org.junit.Test;
 import com.github.thbrown.softballsim.util.Logger;
 import com.github.thbrown.softballsim.data.gson.DataStats;
+import com.github.thbrown.softballsim.datasource.DataSourceEnum;
+import com.github.thbrown.softballsim.helpers.LineupTypeTestInfo;
+import com.github.thbrown.softballsim.lineup.BattingLineup;
+import com.github.thbrown.softballsim.lineupindexer.BattingLineupIndexer;
+import com.github.thbrown.softballsim.lineupindexer.LineupTypeEnum;
+import com.github.thbrown.softballsim.optimizer.impl.expectedvalue.ExpectedValue;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive.CompiledLineup;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive.GameScoreAccumulator;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive.HitGenerator;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive.MonteCarloGameSimulation;
 
 public class ExpectedValueTest {
 
@@ -26,4 +39,31 @@ public class ExpectedValueTest {
     Assert.assertNotNull("Expected the simulation to produce a result, but it produced null", result);
   }
 
+  @Test
+  public void expectedValueMatchesSimulation() {
+    CommandLineOptions commandLineOptions = CommandLineOptions.getInstance();
+    Options commonOptions = commandLineOptions.getOptionsForFlags(DataSourceEnum.FILE_SYSTEM, null);
+    CommandLine commonCmd = commandLineOptions.parse(commonOptions, new String[0], true);
+    DataStats stats = DataSourceEnum.FILE_SYSTEM.getData(commonCmd);
+
+    final int INNINGS = 7;
+    final int GAMES = 200000;
+    for (LineupTypeEnum lineupType : LineupTypeEnum.values()) {
+      List<String> players = LineupTypeTestInfo.getInstance().getTestLineup(lineupType, 9, stats);
+      BattingLineupIndexer<?> indexer = lineupType.getLineupIndexer(stats, players);
+      BattingLineup lineup = indexer.getLineup(indexer.size() / 3);
+
+      double expected = ExpectedValue.getExpectedValue(lineup, INNINGS, 1000);
+
+      CompiledLineup compiledLineup = new CompiledLineup(lineup, new HitGenerator(lineup.asList()));
+      GameScoreAccumulator accumulator = new GameScoreAccumulator();
+      MonteCarloGameSimulation.simulateGames(compiledLineup, INNINGS, GAMES, accumulator);
+
+      // Five standard errors, this should essentially never fail by chance
+      double tolerance = 5 * Math.sqrt(accumulator.getVariance() / GAMES);
+      Logger.log(lineupType + " expected " + expected + " simulated " + accumulator.getMean());
+      Assert.assertEquals(lineupType.toString(), accumulator.getMean(), expected, tolerance);
+    }
+  }
+
 }
@@ -0,0 +1,278 @@
+package com.github.thbrown.softballsim;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.Options;
+import org.apache.commons.math3.stat.descriptive.SummaryStatistics;
+import org.junit.Test;
+import com.github.thbrown.softballsim.data.gson.DataPlayer;
+import com.github.thbrown.softballsim.data.gson.DataStats;
+import com.github.thbrown.softballsim.datasource.DataSourceEnum;
+import com.github.thbrown.softballsim.helpers.LineupTypeTestInfo;
+import com.github.thbrown.softballsim.lineup.BattingLineup;
+import com.github.thbrown.softballsim.lineupindexer.BattingLineupIndexer;
+import com.github.thbrown.softballsim.lineupindexer.LineupTypeEnum;
+import com.github.thbrown.softballsim.optimizer.impl.expectedvalue.ExpectedValue;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive.BasesUtil;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive.BasesUtil.BasesState;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive.CompiledLineup;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive.ControlVariateAccumulator;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive.GameScoreAccumulator;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive.HitGenerator;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive.GameSimulator;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive.MonteCarloGameSimulation;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive.SimulationEngineEnum;
+
+public class GameSimulationTest {
+
+  private DataStats getStats() {
+    CommandLineOptions commandLineOptions = CommandLineOptions.getInstance();
+    Options commonOptions = commandLineOptions.getOptionsForFlags(DataSourceEnum.FILE_SYSTEM, null);
+    CommandLine commonCmd = commandLineOptions.parse(commonOptions, new String[0], true);
+    return DataSourceEnum.FILE_SYSTEM.getData(commonCmd);
+  }
+
+  @Test
+  public void hitGeneratorMatchesPlayerStats() {
+    DataStats stats = getStats();
+    List<String> players = LineupTypeTestInfo.getInstance().getTestLineup(LineupTypeEnum.STANDARD, 10, stats);
+    List<DataPlayer> dataPlayers = new ArrayList<>();
+    for (String playerId : players) {
+      dataPlayers.add(stats.getPlayerById(playerId));
+    }
+    HitGenerator hitGenerator = new HitGenerator(dataPlayers);
+
+    final int SAMPLES = 200000;
+    for (DataPlayer player : dataPlayers) {
+      double[] expected = new double[5];
+      expected[0] = player.getOutCount() + player.getSacCount();
+      expected[1] = player.getSingleCount() + player.getWalkCount();
+      expected[2] = player.getDoubleCount();
+      expected[3] = player.getTripleCount();
+      expected[4] = player.getHomerunCount();
+
+      long[] observed = new long[5];
+      int ordinal = hitGenerator.getOrdinal(player.getId());
+      for (int i = 0; i < SAMPLES; i++) {
+        observed[hitGenerator.hit(ordinal)]++;
+      }
+
+      for (int i = 0; i < expected.length; i++) {
+        double expectedFraction = expected[i] / player.getPlateAppearanceCount();
+        double observedFraction = (double) observed[i] / SAMPLES;
+        assertEquals(player.getName() + " outcome " + i, expectedFraction, observedFraction, .01);
+        if (expected[i] == 0) {
+          assertEquals(player.getName() + " outcome " + i, 0, observed[i]);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void compiledLineupMatchesBattingOrder() {
+    DataStats stats = getStats();
+    for (LineupTypeEnum lineupType : LineupTypeEnum.values()) {
+      List<String> players = LineupTypeTestInfo.getInstance().getTestLineup(lineupType, 9, stats);
+      BattingLineupIndexer<?> indexer = lineupType.getLineupIndexer(stats, players);
+      BattingLineup lineup = indexer.getLineup(indexer.size() / 2);
+      HitGenerator hitGenerator = new HitGenerator(lineup.asList());
+      CompiledLineup compiledLineup = new CompiledLineup(lineup, hitGenerator);
+
+      for (int i = 0; i < compiledLineup.getBattingOrderLength() * 3; i++) {
+        int position = i % compiledLineup.getBattingOrderLength();
+        assertEquals(lineupType + " position " + i, hitGenerator.getOrdinal(lineup.getBatter(i).getId()),
+            compiledLineup.getOrdinal(position));
+      }
+    }
+  }
+
+  @Test
+  public void packedTransitionsMatchBasesState() {
+    for (int mask = 0; mask < 8; mask++) {
+      for (int numBases = 1; numBases <= 4; numBases++) {
+        BasesState bases = new BasesState();
+        bases.first = (mask & 1) != 0;
+        bases.second = (mask & 2) != 0;
+        bases.third = (mask & 4) != 0;
+        int runs = BasesUtil.updateRunsAndBasesAfterHit(numBases, bases);
+        int expectedMask = (bases.first ? 1 : 0) | (bases.second ? 2 : 0) | (bases.third ? 4 : 0);
+
+        int transition = BasesUtil.getTransition(mask, numBases);
+        assertEquals("runs " + mask + " " + numBases, runs, BasesUtil.getRuns(transition));
+        assertEquals("bases " + mask + " " + numBases, expectedMask, BasesUtil.getBasesMask(transition));
+      }
+    }
+  }
+
+  @Test
+  public void batchSimulationMatchesSingleGameSimulation() {
+    DataStats stats = getStats();
+    List<String> players = LineupTypeTestInfo.getInstance().getTestLineup(LineupTypeEnum.STANDARD, 9, stats);
+    BattingLineupIndexer<?> indexer = LineupTypeEnum.STANDARD.getLineupIndexer(stats, players);
+    BattingLineup lineup = indexer.getLineup(0);
+    CompiledLineup compiledLineup = new CompiledLineup(lineup, new HitGenerator(lineup.asList()));
+
+    final int GAMES = 200000;
+    final int INNINGS = 7;
+    SummaryStatistics single = new SummaryStatistics();
+    for (int i = 0; i < GAMES; i++) {
+      single.addValue(MonteCarloGameSimulation.simulateGame(compiledLineup, INNINGS));
+    }
+    GameScoreAccumulator batch = new GameScoreAccumulator();
+    MonteCarloGameSimulation.simulateGames(compiledLineup, INNINGS, GAMES, batch);
+
+    assertEquals(GAMES, batch.getN());
+    // Four standard errors, this should essentially never fail by chance
+    double tolerance = 4 * Math.sqrt(single.getVariance() * 2 / GAMES);
+    assertEquals(single.getMean(), batch.getMean(), tolerance);
+    assertEquals(single.getVariance(), batch.getVariance(), single.getVariance() * .05);
+
+    // The accumulator's own statistics must agree with commons-math on the same data
+    SummaryStatistics reference = new SummaryStatistics();
+    GameScoreAccumulator accumulator = new GameScoreAccumulator();
+    for (int i = 0; i < 1000; i++) {
+      int score = (int) MonteCarloGameSimulation.simulateGame(compiledLineup, INNINGS);
+      reference.addValue(score);
+      accumulator.add(score);
+    }
+    assertEquals(reference.getMean(), accumulator.getMean(), 1e-9);
+    assertEquals(reference.getVariance(), accumulator.getVariance(), 1e-9);
+    assertEquals(reference.getMean(), accumulator.toStatisticalSummary().getMean(), 1e-9);
+  }
+
+  @Test
+  public void inningEngineMatchesPlateAppearanceEngine() {
+    DataStats stats = getStats();
+    for (LineupTypeEnum lineupType : LineupTypeEnum.values()) {
+      List<String> players = LineupTypeTestInfo.getInstance().getTestLineup(lineupType, 9, stats);
+      BattingLineupIndexer<?> indexer = lineupType.getLineupIndexer(stats, players);
+      BattingLineup lineup = indexer.getLineup(indexer.size() / 3);
+      CompiledLineup compiledLineup = new CompiledLineup(lineup, new HitGenerator(lineup.asList()));
+
+      final int GAMES = 200000;
+      final int INNINGS = 7;
+      GameScoreAccumulator plateAppearance = new GameScoreAccumulator();
+      SimulationEngineEnum.PLATE_APPEARANCE.getSimulator(compiledLineup).simulateGames(INNINGS, GAMES, plateAppearance);
+      GameSimulator inningSimulator = SimulationEngineEnum.INNING.getSimulator(compiledLineup);
+      GameScoreAccumulator inning = new GameScoreAccumulator();
+      inningSimulator.simulateGames(INNINGS, GAMES, inning);
+
+      assertEquals(GAMES, inning.getN());
+      double tolerance = 4 * Math.sqrt(plateAppearance.getVariance() * 2 / GAMES);
+      assertEquals(lineupType.toString(), plateAppearance.getMean(), inning.getMean(), tolerance);
+      assertEquals(lineupType.toString(), plateAppearance.getVariance(), inning.getVariance(),
+          plateAppearance.getVariance() * .05);
+    }
+  }
+
+  @Test
+  public void bitSlicedEngineMatchesPlateAppearanceEngine() {
+    DataStats stats = getStats();
+    for (LineupTypeEnum lineupType : LineupTypeEnum.values()) {
+      List<String> players = LineupTypeTestInfo.getInstance().getTestLineup(lineupType, 9, stats);
+      BattingLineupIndexer<?> indexer = lineupType.getLineupIndexer(stats, players);
+      BattingLineup lineup = indexer.getLineup(indexer.size() / 3);
+      CompiledLineup compiledLineup = new CompiledLineup(lineup, new HitGenerator(lineup.asList()));
+
+      // Not a multiple of 64, so the last batch leaves some lanes idle
+      final int GAMES = 200003;
+      final int INNINGS = 7;
+      GameScoreAccumulator plateAppearance = new GameScoreAccumulator();
+      SimulationEngineEnum.PLATE_APPEARANCE.getSimulator(compiledLineup).simulateGames(INNINGS, GAMES, plateAppearance);
+      GameScoreAccumulator bitSliced = new GameScoreAccumulator();
+      SimulationEngineEnum.BIT_SLICED.getSimulator(compiledLineup).simulateGames(INNINGS, GAMES, bitSliced);
+
+      assertEquals(GAMES, bitSliced.getN());
+      double tolerance = 4 * Math.sqrt(plateAppearance.getVariance() * 2 / GAMES);
+      assertEquals(lineupType.toString(), plateAppearance.getMean(), bitSliced.getMean(), tolerance);
+      assertEquals(lineupType.toString(), plateAppearance.getVariance(), bitSliced.getVariance(),
+          plateAppearance.getVariance() * .05);
+    }
+
+    // Small batches
+    BattingLineup lineup = LineupTypeEnum.STANDARD.getLineupIndexer(stats,
+        LineupTypeTestInfo.getInstance().getTestLineup(LineupTypeEnum.STANDARD, 9, stats)).getLineup(0);
+    GameSimulator simulator =
+        SimulationEngineEnum.BIT_SLICED.getSimulator(new CompiledLineup(lineup, new HitGenerator(lineup.asList())));
+    for (int games : new int[] {0, 1, 63, 64, 65}) {
+      GameScoreAccumulator accumulator = new GameScoreAccumulator();
+      simulator.simulateGames(7, games, accumulator);
+      assertEquals(games, accumulator.getN());
+    }
+  }
+
+  @Test
+  public void pairedSimulationUsesCommonRandomNumbers() {
+    DataStats stats = getStats();
+    List<String> players = LineupTypeTestInfo.getInstance().getTestLineup(LineupTypeEnum.STANDARD, 9, stats);
+    BattingLineupIndexer<?> indexer = LineupTypeEnum.STANDARD.getLineupIndexer(stats, players);
+    BattingLineup lineupA = indexer.getLineup(0);
+    BattingLineup lineupB = indexer.getLineup(indexer.size() / 2);
+    HitGenerator hitGenerator = new HitGenerator(lineupA.asList());
+    CompiledLineup compiledA = new CompiledLineup(lineupA, hitGenerator);
+    CompiledLineup compiledB = new CompiledLineup(lineupB, hitGenerator);
+
+    final int GAMES = 100000;
+    final int INNINGS = 7;
+
+    // A lineup paired with itself sees exactly the same outcomes
+    GameScoreAccumulator scores = new GameScoreAccumulator();
+    ControlVariateAccumulator differences = new ControlVariateAccumulator();
+    MonteCarloGameSimulation.simulatePairedGames(compiledA, compiledA, INNINGS, 1000, scores, scores, differences);
+    assertEquals(0, differences.toStatisticalSummary().getMin(), 0);
+    assertEquals(0, differences.toStatisticalSummary().getMax(), 0);
+
+    // Paired games are still unbiased, but the difference between lineups has much less variance
+    GameScoreAccumulator scoresA = new GameScoreAccumulator();
+    GameScoreAccumulator scoresB = new GameScoreAccumulator();
+    differences.clear();
+    MonteCarloGameSimulation.simulatePairedGames(compiledA, compiledB, INNINGS, GAMES, scoresA, scoresB, differences);
+    GameScoreAccumulator independentA = new GameScoreAccumulator();
+    GameScoreAccumulator independentB = new GameScoreAccumulator();
+    MonteCarloGameSimulation.simulateGames(compiledA, INNINGS, GAMES, independentA);
+    MonteCarloGameSimulation.simulateGames(compiledB, INNINGS, GAMES, independentB);
+
+    double tolerance = 4 * Math.sqrt(independentA.getVariance() * 2 / GAMES);
+    assertEquals(independentA.getMean(), scoresA.getMean(), tolerance);
+    assertEquals(independentB.getMean(), scoresB.getMean(), tolerance);
+    assertEquals(scoresB.getMean() - scoresA.getMean(), differences.getMean(), 1e-9);
+    assertTrue(differences.getVariance() < (scoresA.getVariance() + scoresB.getVariance()) / 2);
+  }
+
+  @Test
+  public void controlVariatesReduceVarianceWithoutBias() {
+    DataStats stats = getStats();
+    final int GAMES = 100000;
+    final int INNINGS = 7;
+    for (LineupTypeEnum lineupType : LineupTypeEnum.values()) {
+      List<String> players = LineupTypeTestInfo.getInstance().getTestLineup(lineupType, 9, stats);
+      BattingLineupIndexer<?> indexer = lineupType.getLineupIndexer(stats, players);
+      BattingLineup lineup = indexer.getLineup(indexer.size() / 4);
+      CompiledLineup compiledLineup = new CompiledLineup(lineup, new HitGenerator(lineup.asList()));
+
+      ControlVariateAccumulator accumulator = new ControlVariateAccumulator();
+      MonteCarloGameSimulation.simulateGames(compiledLineup, INNINGS, GAMES, accumulator);
+      double exact = ExpectedValue.getExpectedValue(lineup, INNINGS, Integer.MAX_VALUE);
+
+      // Five standard errors of the adjusted estimate. The run cap in the simulation doesn't matter at
+      // this level of precision.
+      double tolerance = 5 * Math.sqrt(accumulator.getAdjustedVariance() / GAMES);
+      assertEquals(lineupType.toString(), exact, accumulator.getAdjustedMean(), tolerance);
+      assertTrue(lineupType.toString(), accumulator.getAdjustedVariance() < accumulator.getVariance() / 2);
+    }
+
+    // Regression on a perfectly explained response leaves no residual variance
+    ControlVariateAccumulator exactFit = new ControlVariateAccumulator();
+    for (int i = 0; i < 100; i++) {
+      double x1 = Math.sin(i);
+      double x2 = Math.cos(i * 3);
+      exactFit.add(5 + 2 * x1 - 3 * x2, x1, x2);
+    }
+    assertEquals(0, exactFit.getAdjustedVariance(), 1e-9);
+    assertEquals(5, exactFit.getAdjustedMean(), 1e-9);
+  }
+
+}
@@ -16,6 +16,7 @@ import com.github.thbrown.softballsim.data.gson.DataPlayer;
 import com.github.thbrown.softballsim.data.gson.DataStats;
 import com.github.thbrown.softballsim.lineup.BattingLineup;
 import com.github.thbrown.softballsim.lineup.StandardBattingLineup;
+import com.github.thbrown.softballsim.optimizer.impl.expectedvalue.ExpectedValue;
 import com.github.thbrown.softballsim.util.Logger;
 import com.github.thbrown.softballsim.*;
 import com.github.thbrown.softballsim.lineupindexer.*;
@@ -59,6 +60,99 @@ public class LineupIndexerTest {
   }
 
 
+  @Test
+  public void cursorMatchesGetLineup() throws IOException, InterruptedException {
+    // Get data from file system
+    CommandLineOptions commandLineOptions = CommandLineOptions.getInstance();
+    Options commonOptions = commandLineOptions.getOptionsForFlags(DataSourceEnum.FILE_SYSTEM, null);
+    CommandLine commonCmd = commandLineOptions.parse(commonOptions, new String[0], true);
+    DataStats stats = DataSourceEnum.FILE_SYSTEM.getData(commonCmd);
+
+    for (LineupTypeEnum lineupType : LineupTypeEnum.values()) {
+      List<String> players = LineupTypeTestInfo.getInstance().getTestLineup(lineupType, 8, stats);
+
+      BattingLineupIndexer indexer = lineupType.getLineupIndexer(stats, players);
+      Logger.log(lineupType + " (" + indexer.size() + ")");
+
+      // Walk every lineup with one cursor and compare against a cursor positioned directly at the index
+      LineupCursor cursor = indexer.getCursor(0);
+      for (long i = 0; i < indexer.size(); i++) {
+        assertEquals(lineupType + " on index " + i, i, cursor.getIndex());
+        assertEquals(lineupType + " on index " + i, indexer.getLineup(i), cursor.getLineup());
+        assertEquals(lineupType + " on index " + i, indexer.getLineup(i),
+            indexer.getLineup(indexer.getCursor(i).getSlots()));
+        assertEquals(i < indexer.size() - 1, cursor.next());
+      }
+      assertEquals(indexer.size(), cursor.getIndex());
+      assertEquals(null, cursor.getLineup());
+      assertEquals(null, indexer.getCursor(indexer.size()).getLineup());
+
+      // Batches, including one that runs off the end
+      final int BATCH_SIZE = 50;
+      int[][] batch = new int[BATCH_SIZE][players.size()];
+      long[] starts = {0, ThreadLocalRandom.current().nextLong(indexer.size()), indexer.size() - BATCH_SIZE / 2};
+      for (long start : starts) {
+        int written = indexer.getLineups(start, BATCH_SIZE, batch);
+        assertEquals(Math.min(BATCH_SIZE, indexer.size() - start), written);
+        for (int i = 0; i < written; i++) {
+          assertEquals(indexer.getLineup(start + i), indexer.getLineup(batch[i]));
+        }
+      }
+      assertEquals(0, indexer.getLineups(indexer.size(), BATCH_SIZE, batch));
+    }
+  }
+
+  @Test
+  public void distinctLineupIndexerCoversEveryLineupOnce() throws IOException, InterruptedException {
+    // Get data from file system
+    CommandLineOptions commandLineOptions = CommandLineOptions.getInstance();
+    Options commonOptions = commandLineOptions.getOptionsForFlags(DataSourceEnum.FILE_SYSTEM, null);
+    CommandLine commonCmd = commandLineOptions.parse(commonOptions, new String[0], true);
+    DataStats stats = DataSourceEnum.FILE_SYSTEM.getData(commonCmd);
+
+    // Two pairs of women with the same outcome ratios (one woman in each pair also matches a man)
+    List<String> players = Arrays.asList("1OiRCCmrn16iyK", "1JJXc5XXjF6clp", "1xEfLbKTajFA4e", "5EW64hDcv928Jb",
+        "1LNzzN5LRnvdIW", "0t0HR3hwgzCoSC", "3J7WhRo0pA0lRf", "3VyeZeWyE0iF2k", "1ABalpYmcfhGyS");
+
+    for (LineupTypeEnum lineupType : LineupTypeEnum.values()) {
+      BattingLineupIndexer indexer = lineupType.getLineupIndexer(stats, players);
+      BattingLineupIndexer distinct = lineupType.getLineupIndexer(stats, players, true);
+      Logger.log(lineupType + " (" + indexer.size() + " -> " + distinct.size() + ")");
+
+      // The standard lineup can also swap the man, gendered lineups only swap within a gender
+      long expectedReduction = lineupType == LineupTypeEnum.STANDARD ? 3 * 2 * 2 : 2 * 2;
+      assertEquals(lineupType.toString(), indexer.size(), distinct.size() * expectedReduction);
+
+      // Every lineup maps to a representative with the same expected score, each representative is hit
+      // the same number of times
+      long[] hits = new long[(int) distinct.size()];
+      for (long i = 0; i < indexer.size(); i++) {
+        BattingLineup lineup = indexer.getLineup(i);
+        long index = distinct.getIndex(lineup);
+        hits[(int) index]++;
+        if (i % 997 == 0) {
+          assertEquals(lineupType + " on index " + i, ExpectedValue.getExpectedValue(lineup, 7, 100),
+              ExpectedValue.getExpectedValue(distinct.getLineup(index), 7, 100), 1e-9);
+        }
+      }
+      for (long count : hits) {
+        assertEquals(lineupType.toString(), expectedReduction, count);
+      }
+
+      LineupCursor cursor = distinct.getCursor(0);
+      for (long i = 0; i < distinct.size(); i++) {
+        BattingLineup lineup = distinct.getLineup(i);
+        assertEquals(lineupType + " on index " + i, lineup, cursor.getLineup());
+        assertEquals(lineupType + " on index " + i, lineup, distinct.getLineup(cursor.getSlots()));
+        assertEquals(lineupType + " on index " + i, i, distinct.getIndex(lineup));
+        assertEquals(i < distinct.size() - 1, cursor.next());
+
+        Pair<Long, BattingLineup> neighbor = distinct.getRandomNeighbor(i);
+        assertEquals(distinct.getLineup(neighbor.getFirst()), neighbor.getSecond());
+      }
+    }
+  }
+
   @Test
   public void lineupRandomNeighborTest() throws IOException, InterruptedException {
     // Get data from file system
@@ -81,6 +175,72 @@ public class LineupIndexerTest {
     }
   }
 
+  @Test
+  public void inPlaceNeighborMovesCanBeUndone() throws IOException, InterruptedException {
+    // Get data from file system
+    CommandLineOptions commandLineOptions = CommandLineOptions.getInstance();
+    Options commonOptions = commandLineOptions.getOptionsForFlags(DataSourceEnum.FILE_SYSTEM, null);
+    CommandLine commonCmd = commandLineOptions.parse(commonOptions, new String[0], true);
+    DataStats stats = DataSourceEnum.FILE_SYSTEM.getData(commonCmd);
+
+    for (LineupTypeEnum lineupType : LineupTypeEnum.values()) {
+      List<String> players = LineupTypeTestInfo.getInstance().getTestLineup(lineupType, 10, stats);
+
+      BattingLineupIndexer indexer = lineupType.getLineupIndexer(stats, players);
+      Logger.log(lineupType);
+      int[] slots = indexer.getCursor(ThreadLocalRandom.current().nextLong(indexer.size())).getSlots().clone();
+      int[] undo = new int[slots.length];
+      for (int i = 0; i < 1000; i++) {
+        BattingLineup lineup = indexer.getLineup(slots);
+        int[] before = slots.clone();
+
+        assertEquals(true, indexer.moveToRandomNeighbor(slots, undo));
+        BattingLineup neighbor = indexer.getLineup(slots);
+        assertNotEquals("Moved to the exact same lineup " + lineupType, lineup, neighbor);
+        // The neighbor must be one of the indexer's lineups
+        assertEquals(lineupType.toString(), neighbor, indexer.getLineup(indexer.getIndex(neighbor)));
+
+        // Undo every other move, keep the rest so the walk goes somewhere
+        if (i % 2 == 0) {
+          indexer.undoMove(slots, undo);
+          assertEquals(lineupType.toString(), Arrays.toString(before), Arrays.toString(slots));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void playersCanTradePlacesWithinTheirGroup() throws IOException, InterruptedException {
+    // Get data from file system
+    CommandLineOptions commandLineOptions = CommandLineOptions.getInstance();
+    Options commonOptions = commandLineOptions.getOptionsForFlags(DataSourceEnum.FILE_SYSTEM, null);
+    CommandLine commonCmd = commandLineOptions.parse(commonOptions, new String[0], true);
+    DataStats stats = DataSourceEnum.FILE_SYSTEM.getData(commonCmd);
+
+    for (LineupTypeEnum lineupType : LineupTypeEnum.values()) {
+      List<String> players = LineupTypeTestInfo.getInstance().getTestLineup(lineupType, 10, stats);
+
+      BattingLineupIndexer indexer = lineupType.getLineupIndexer(stats, players);
+      Logger.log(lineupType);
+      for (int i = 0; i < 1000; i++) {
+        int[] slots = indexer.getCursor(ThreadLocalRandom.current().nextLong(indexer.size())).getSlots().clone();
+
+        // Swap two random players that are in the same group
+        int first = ThreadLocalRandom.current().nextInt(slots.length);
+        int second = ThreadLocalRandom.current().nextInt(slots.length);
+        if (indexer.getGroup(slots[first]) != indexer.getGroup(slots[second])) {
+          continue;
+        }
+        int temp = slots[first];
+        slots[first] = slots[second];
+        slots[second] = temp;
+
+        BattingLineup lineup = indexer.getLineup(slots);
+        assertEquals(lineupType.toString(), lineup, indexer.getLineup(indexer.getIndex(lineup)));
+      }
+    }
+  }
+
   // @Test // Memory issues, need the opposite of a Bloom filter, whatever that is
   public void lineupsAreUnique() throws IOException, InterruptedException {
     // Get data from file system
@@ -1,7 +1,37 @@
 package com.github.thbrown.softballsim;
 
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.Options;
 import org.junit.Assert;
 import org.junit.Test;
+import com.github.thbrown.softballsim.data.gson.DataStats;
+import com.github.thbrown.softballsim.datasource.DataSourceEnum;
+import com.github.thbrown.softballsim.helpers.LineupTypeTestInfo;
+import com.github.thbrown.softballsim.lineupindexer.BattingLineupIndexer;
+import com.github.thbrown.softballsim.lineupindexer.LineupTypeEnum;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloadaptive.AdaptiveCheckpoint;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloadaptive.BatchSplitter;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloadaptive.CandidateStore;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloadaptive.ChampionReference;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloadaptive.LineupComposite;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloadaptive.MonteCarloAdaptiveResult;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloadaptive.TTestTask;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive.ControlVariateAccumulator;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive.GameScoreAccumulator;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive.HitGenerator;
 
 public class MonteCarloAdaptiveTest {
 
@@ -25,4 +55,187 @@ public class MonteCarloAdaptiveTest {
     Assert.assertNotNull("Expected the simulation to produce a result, but it produced null", result);
   }
 
+  @Test
+  public void gamesSimulatedForTheChampionOnEveryThreadAreKept() throws Exception {
+    final int THREAD_COUNT = 8;
+    final int GAMES_PER_THREAD = 1000;
+
+    CommandLineOptions commandLineOptions = CommandLineOptions.getInstance();
+    Options commonOptions = commandLineOptions.getOptionsForFlags(DataSourceEnum.FILE_SYSTEM, null);
+    CommandLine commonCmd = commandLineOptions.parse(commonOptions, new String[0], true);
+    DataStats stats = DataSourceEnum.FILE_SYSTEM.getData(commonCmd);
+    List<String> players = LineupTypeTestInfo.getInstance().getTestLineup(LineupTypeEnum.STANDARD, 6, stats);
+    BattingLineupIndexer<?> indexer = LineupTypeEnum.STANDARD.getLineupIndexer(stats, players);
+    HitGenerator hitGenerator = new HitGenerator(indexer.getPlayers());
+
+    ChampionReference champion =
+        new ChampionReference(new LineupComposite(indexer.getLineup(0), hitGenerator, 0L));
+    ExecutorService executor = Executors.newFixedThreadPool(THREAD_COUNT);
+    List<Future<Boolean>> merges = new ArrayList<>();
+    for (int i = 0; i < THREAD_COUNT; i++) {
+      merges.add(executor.submit(() -> {
+        LineupComposite copy = champion.getCopy();
+        GameScoreAccumulator accumulator = new GameScoreAccumulator();
+        copy.getSimulator().simulateGames(7, GAMES_PER_THREAD, accumulator);
+        copy.addSamples(accumulator);
+        return champion.mergeSamples(copy);
+      }));
+    }
+    for (Future<Boolean> merge : merges) {
+      Assert.assertTrue(merge.get());
+    }
+    executor.shutdown();
+    Assert.assertEquals(THREAD_COUNT * GAMES_PER_THREAD, champion.getCopy().getStats().getN());
+
+    // Once the champion is replaced, games for the old one are dropped
+    LineupComposite oldChampion = champion.getCopy();
+    LineupComposite challenger = new LineupComposite(indexer.getLineup(1), hitGenerator, 1L);
+    Assert.assertFalse(champion.replaceIfCurrentIsIn(challenger, Collections.emptySet()));
+    Assert.assertTrue(champion.replaceIfCurrentIsIn(challenger, Collections.singleton(oldChampion)));
+    GameScoreAccumulator accumulator = new GameScoreAccumulator();
+    oldChampion.getSimulator().simulateGames(7, GAMES_PER_THREAD, accumulator);
+    oldChampion.addSamples(accumulator);
+    Assert.assertFalse(champion.mergeSamples(oldChampion));
+    Assert.assertEquals(challenger.getLineup(), champion.getCopy().getLineup());
+    Assert.assertEquals(0, champion.getCopy().getStats().getN());
+  }
+
+  @Test
+  public void lineupsWithinTheIndifferenceZoneAreResolvedEarly() throws Exception {
+    final int INNINGS = 7;
+    final double ALPHA = .001;
+    final double INDIFFERENCE_ZONE = .25;
+
+    CommandLineOptions commandLineOptions = CommandLineOptions.getInstance();
+    Options commonOptions = commandLineOptions.getOptionsForFlags(DataSourceEnum.FILE_SYSTEM, null);
+    CommandLine commonCmd = commandLineOptions.parse(commonOptions, new String[0], true);
+    DataStats stats = DataSourceEnum.FILE_SYSTEM.getData(commonCmd);
+    List<String> players = LineupTypeTestInfo.getInstance().getTestLineup(LineupTypeEnum.STANDARD, 6, stats);
+    BattingLineupIndexer<?> indexer = LineupTypeEnum.STANDARD.getLineupIndexer(stats, players);
+    HitGenerator hitGenerator = new HitGenerator(indexer.getPlayers());
+
+    for (boolean paired : new boolean[] {true, false}) {
+      // The same lineup twice, so the t-test alone could never tell them apart
+      LineupComposite a = new LineupComposite(indexer.getLineup(0), hitGenerator, 0L);
+      LineupComposite b = new LineupComposite(indexer.getLineup(0), hitGenerator, 0L);
+      TTestTask task =
+          new TTestTask(Collections.emptyList(), null, new TTestTask.Options(INNINGS, ALPHA).paired(paired)
+              .controlVariates(true).indifferenceZone(INDIFFERENCE_ZONE));
+      task.compare(a, b);
+      Assert.assertEquals(0, task.getComparisonsThatReachedSimLimit());
+      Assert.assertTrue(task.getSimulationsRequired() + " simulations", task.getSimulationsRequired() < 100000);
+    }
+  }
+
+  @Test
+  public void checkpointKeepsCandidatesAndChampionStats() throws Exception {
+    CommandLineOptions commandLineOptions = CommandLineOptions.getInstance();
+    Options commonOptions = commandLineOptions.getOptionsForFlags(DataSourceEnum.FILE_SYSTEM, null);
+    CommandLine commonCmd = commandLineOptions.parse(commonOptions, new String[0], true);
+    DataStats stats = DataSourceEnum.FILE_SYSTEM.getData(commonCmd);
+    List<String> players = LineupTypeTestInfo.getInstance().getTestLineup(LineupTypeEnum.STANDARD, 6, stats);
+    BattingLineupIndexer<?> indexer = LineupTypeEnum.STANDARD.getLineupIndexer(stats, players);
+    HitGenerator hitGenerator = new HitGenerator(indexer.getPlayers());
+
+    LineupComposite champion = new LineupComposite(indexer.getLineup(5), hitGenerator, 5L);
+    GameScoreAccumulator accumulator = new GameScoreAccumulator();
+    champion.getSimulator().simulateGames(7, 1000, accumulator);
+    champion.addSamples(accumulator);
+
+    CandidateStore candidates = new CandidateStore();
+    long[] lineupIndexes = {700, 5, 3, 1L << 40};
+    for (int i = 0; i < lineupIndexes.length; i++) {
+      candidates.setStats(candidates.add(lineupIndexes[i]), i * 100, i + .5, i * 3.25);
+    }
+
+    AdaptiveCheckpoint checkpoint =
+        AdaptiveCheckpoint.fromBytes(AdaptiveCheckpoint.of(701, champion, candidates).toBytes());
+    Assert.assertEquals(701, checkpoint.getNextLineupIndex());
+    Assert.assertEquals(5, checkpoint.getChampionIndex());
+    Assert.assertEquals(champion.getStats().getN(), checkpoint.getChampionN());
+    Assert.assertEquals(champion.getStats().getMean(), checkpoint.getChampionMean(), 0);
+    Assert.assertEquals(champion.getStats().getVariance() * 999, checkpoint.getChampionM2(), 0);
+
+    // Candidates come back sorted by lineup index
+    long[] sorted = {3, 5, 700, 1L << 40};
+    int[] original = {2, 1, 0, 3};
+    Assert.assertEquals(sorted.length, checkpoint.size());
+    for (int i = 0; i < sorted.length; i++) {
+      Assert.assertEquals(sorted[i], checkpoint.getLineupIndex(i));
+      Assert.assertEquals(original[i] * 100, checkpoint.getN(i));
+      Assert.assertEquals(original[i] + .5, checkpoint.getMean(i), 0);
+      Assert.assertEquals(original[i] * 3.25, checkpoint.getM2(i), 0);
+    }
+  }
+
+  @Test
+  public void resumingFromACheckpointDoesNotResimulateTheChampion() throws Exception {
+    final String LINEUP = "1OiRCCmrn16iyK,Oscar,Molly,Nelly,1CV6WRyspDjA7Z,1MPJ24EEyS0g6p";
+    Path cache = Files.createTempDirectory("adaptive-checkpoint");
+    try {
+      String[] args = {"-o", "MONTE_CARLO_ADAPTIVE", "-l", LINEUP, "-t", "0", "-T", "2", "-z", cache.toString()};
+      Result first = SoftballSim.mainInternal(args);
+      Assert.assertNotNull(first.getCheckpoint());
+
+      // The cached result comes back with its checkpoint, so the champion's games aren't topped up again
+      Result second = SoftballSim.mainInternal(args);
+      Assert.assertEquals(first.getFlatLineup(), second.getFlatLineup());
+      Assert.assertEquals(first.getLineupScore(), second.getLineupScore(), 0);
+      Assert.assertEquals(((MonteCarloAdaptiveResult) first).getSimulationsRequired(),
+          ((MonteCarloAdaptiveResult) second).getSimulationsRequired());
+    } finally {
+      try (Stream<Path> files = Files.walk(cache)) {
+        files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+      }
+    }
+  }
+
+  @Test
+  public void splitBatchesAreMergedEvenWhenEveryWorkerSplits() throws Exception {
+    final int THREAD_COUNT = 4;
+    final int GAMES = 20000;
+
+    CommandLineOptions commandLineOptions = CommandLineOptions.getInstance();
+    Options commonOptions = commandLineOptions.getOptionsForFlags(DataSourceEnum.FILE_SYSTEM, null);
+    CommandLine commonCmd = commandLineOptions.parse(commonOptions, new String[0], true);
+    DataStats stats = DataSourceEnum.FILE_SYSTEM.getData(commonCmd);
+    List<String> players = LineupTypeTestInfo.getInstance().getTestLineup(LineupTypeEnum.STANDARD, 6, stats);
+    BattingLineupIndexer<?> indexer = LineupTypeEnum.STANDARD.getLineupIndexer(stats, players);
+    HitGenerator hitGenerator = new HitGenerator(indexer.getPlayers());
+    LineupComposite a = new LineupComposite(indexer.getLineup(0), hitGenerator, 0L);
+    LineupComposite b = new LineupComposite(indexer.getLineup(1), hitGenerator, 1L);
+
+    ThreadPoolExecutor executor = (ThreadPoolExecutor) Executors.newFixedThreadPool(THREAD_COUNT);
+    BatchSplitter splitter = new BatchSplitter(executor);
+    try {
+      // All workers are idle, so the batch is spread over all of them
+      GameScoreAccumulator scoresA = new GameScoreAccumulator();
+      GameScoreAccumulator scoresB = new GameScoreAccumulator();
+      ControlVariateAccumulator differences = new ControlVariateAccumulator();
+      splitter.simulatePairedGames(a.getCompiledLineup(), b.getCompiledLineup(), 7, GAMES + 1, scoresA, scoresB,
+          differences);
+      Assert.assertEquals(GAMES + 1, scoresA.getN());
+      Assert.assertEquals(GAMES + 1, scoresB.getN());
+      Assert.assertEquals(GAMES + 1, differences.getN());
+      Assert.assertEquals(scoresB.getMean() - scoresA.getMean(), differences.getMean(), 1e-9);
+
+      // Every worker splits at once, parts nobody picks up are run by the thread that split them
+      List<Future<Long>> batches = new ArrayList<>();
+      for (int i = 0; i < THREAD_COUNT; i++) {
+        batches.add(executor.submit(() -> {
+          ControlVariateAccumulator accumulator = new ControlVariateAccumulator();
+          splitter.simulateGames(a.getCompiledLineup(), 7, GAMES, accumulator);
+          GameScoreAccumulator plain = new GameScoreAccumulator();
+          splitter.simulateGames(a.getSimulator(), 7, GAMES, plain);
+          return accumulator.getN() + plain.getN();
+        }));
+      }
+      for (Future<Long> batch : batches) {
+        Assert.assertEquals(2 * GAMES, (long) batch.get(60, TimeUnit.SECONDS));
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
 }
@@ -1,7 +1,44 @@
 package com.github.thbrown.softballsim;
 
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.Options;
+import org.apache.commons.math3.stat.descriptive.StatisticalSummary;
 import org.junit.Assert;
 import org.junit.Test;
+import com.github.thbrown.softballsim.data.gson.DataStats;
+import com.github.thbrown.softballsim.datasource.DataSourceEnum;
+import com.github.thbrown.softballsim.datasource.ProgressTracker;
+import com.github.thbrown.softballsim.helpers.LineupTypeTestInfo;
+import com.github.thbrown.softballsim.helpers.TestUtil;
+import com.github.thbrown.softballsim.lineup.StandardBattingLineup;
+import com.github.thbrown.softballsim.lineupindexer.BattingLineupIndexer;
+import com.github.thbrown.softballsim.lineupindexer.LineupTypeEnum;
+import com.github.thbrown.softballsim.lineupindexer.StandardBattingLineupIndexer;
+import com.github.thbrown.softballsim.optimizer.OptimizerEnum;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloadaptive.LineupComposite;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloannealing.AnnealingCheckpoint;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloannealing.AnnealingProgress;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloannealing.LineupCompositeCache;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloannealing.MonteCarloAnnealingResult;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloannealing.ReplicaExchange;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloannealing.SharedLineupStatistics;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive.GameScoreAccumulator;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive.HitGenerator;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive.SimulationEngineEnum;
+import com.github.thbrown.softballsim.util.GsonAccessor;
+import com.github.thbrown.softballsim.util.LandscapeStatistics;
 
 public class MonteCarloAnnealingTest {
 
@@ -13,8 +50,10 @@ public class MonteCarloAnnealingTest {
     final int LINEUP_TYPE = 0;
     final String LINEUP = "1OiRCCmrn16iyK,Nelly,1CV6WRyspDjA7Z,1MPJ24EEyS0g6p,Devon,Jordyn";
 
+    Path cache = TestUtil.createTempCacheDirectory();
     String[] args = {"-o", "MONTE_CARLO_ANNEALING", "-l", LINEUP, "-A", String.valueOf(ALPHA), "-I",
-        String.valueOf(INNINGS), "-t", String.valueOf(LINEUP_TYPE), "-D", String.valueOf(DURATION), "-f"};
+        String.valueOf(INNINGS), "-t", String.valueOf(LINEUP_TYPE), "-D", String.valueOf(DURATION), "-f", "-z",
+        cache.toString()};
 
     String[] args2 = {"-o", "MONTE_CARLO_EXHAUSTIVE", "-l", LINEUP, "-A", String.valueOf(ALPHA), "-I",
         String.valueOf(INNINGS), "-t", String.valueOf(LINEUP_TYPE), "-D", String.valueOf(DURATION), "-f"};
@@ -22,8 +61,347 @@ public class MonteCarloAnnealingTest {
     String[] args3 = {"-o", "MONTE_CARLO_ADAPTIVE", "-l", LINEUP, "-A", String.valueOf(ALPHA), "-I",
         String.valueOf(INNINGS), "-t", String.valueOf(LINEUP_TYPE), "-D", String.valueOf(DURATION), "-f"};
 
-    Result result = SoftballSim.mainInternal(args);
-    Assert.assertNotNull("Expected the simulation to produce a result, but it produced null", result);
+    try {
+      Result result = SoftballSim.mainInternal(args);
+      Assert.assertNotNull("Expected the simulation to produce a result, but it produced null", result);
+    } finally {
+      TestUtil.deleteDirectory(cache);
+    }
+  }
+
+  @Test
+  public void landscapeStatisticsAreSharedBetweenThreadsAndSaved() throws Exception {
+    final int THREAD_COUNT = 4;
+    final int INNINGS = 6;
+    final int SAMPLE_SIZE = 37;
+    final int GAMES = 500;
+
+    CommandLineOptions commandLineOptions = CommandLineOptions.getInstance();
+    Options options = commandLineOptions.getOptionsForFlags(DataSourceEnum.FILE_SYSTEM, null);
+    DataStats stats = DataSourceEnum.FILE_SYSTEM.getData(commandLineOptions.parse(options, new String[0], true));
+    List<String> players = LineupTypeTestInfo.getInstance().getTestLineup(LineupTypeEnum.STANDARD, 6, stats);
+    BattingLineupIndexer<?> indexer = LineupTypeEnum.STANDARD.getLineupIndexer(stats, players);
+
+    Path cacheDirectory = TestUtil.createTempCacheDirectory();
+    ExecutorService executor = Executors.newFixedThreadPool(THREAD_COUNT);
+    try {
+      CommandLine cmd = commandLineOptions.parse(options, new String[] {"-z", cacheDirectory.toString()}, true);
+      ProgressTracker tracker =
+          new ProgressTracker(null, DataSourceEnum.FILE_SYSTEM, cmd, stats, OptimizerEnum.MONTE_CARLO_ANNEALING);
+
+      // Every thread gets the same sample, no matter which of them simulated it
+      List<Future<StatisticalSummary>> samples = new ArrayList<>();
+      for (int i = 0; i < THREAD_COUNT; i++) {
+        samples.add(executor.submit(() -> LandscapeStatistics.get(indexer, INNINGS, SAMPLE_SIZE, GAMES, null, 0,
+            tracker)));
+      }
+      StatisticalSummary expected = LandscapeStatistics.get(indexer, INNINGS, SAMPLE_SIZE, GAMES);
+      Assert.assertEquals(SAMPLE_SIZE, expected.getN());
+      for (Future<StatisticalSummary> sample : samples) {
+        Assert.assertEquals(expected.getMean(), sample.get().getMean(), 0);
+        Assert.assertEquals(expected.getStandardDeviation(), sample.get().getStandardDeviation(), 0);
+      }
+
+      // And it's saved in the cache directory for later runs
+      File[] entries = cacheDirectory.toFile().listFiles();
+      Assert.assertEquals(1, entries.length);
+      double[] means = GsonAccessor.getInstance().getDefault()
+          .fromJson(new String(Files.readAllBytes(entries[0].toPath())), double[].class);
+      Assert.assertEquals(SAMPLE_SIZE, means.length);
+    } finally {
+      executor.shutdown();
+      TestUtil.deleteDirectory(cacheDirectory);
+    }
+  }
+
+  @Test(timeout = 60000)
+  public void landscapeStatisticsFailureReachesEveryWaiter() throws Exception {
+    final int THREAD_COUNT = 3;
+
+    CommandLineOptions commandLineOptions = CommandLineOptions.getInstance();
+    Options options = commandLineOptions.getOptionsForFlags(DataSourceEnum.FILE_SYSTEM, null);
+    DataStats stats = DataSourceEnum.FILE_SYSTEM.getData(commandLineOptions.parse(options, new String[0], true));
+    List<String> players = LineupTypeTestInfo.getInstance().getTestLineup(LineupTypeEnum.STANDARD, 6, stats);
+    AtomicInteger lineupsBuilt = new AtomicInteger();
+    // Lineups aren't built until every caller is sampling, otherwise a late caller could start over
+    // after the failure and succeed
+    CountDownLatch callersSampling = new CountDownLatch(THREAD_COUNT);
+    ThreadLocal<Boolean> isCaller = ThreadLocal.withInitial(() -> false);
+    BattingLineupIndexer<?> indexer = new StandardBattingLineupIndexer(stats, players) {
+      @Override
+      public StandardBattingLineup getLineup(long index) {
+        if (isCaller.get()) {
+          isCaller.set(false);
+          callersSampling.countDown();
+        }
+        try {
+          callersSampling.await();
+        } catch (InterruptedException e) {
+          throw new RuntimeException(e);
+        }
+        if (lineupsBuilt.incrementAndGet() == 5) {
+          throw new IllegalStateException("Broken lineup");
+        }
+        return super.getLineup(index);
+      }
+    };
+
+    // Whichever thread hits the broken lineup, none of them wait forever. The helpers get their own
+    // threads so they can't hold up a caller.
+    ExecutorService executor = Executors.newFixedThreadPool(THREAD_COUNT);
+    ExecutorService helpers = Executors.newFixedThreadPool(THREAD_COUNT);
+    try {
+      List<Future<StatisticalSummary>> samples = new ArrayList<>();
+      for (int i = 0; i < THREAD_COUNT; i++) {
+        samples.add(executor.submit(() -> {
+          isCaller.set(true);
+          return LandscapeStatistics.get(indexer, 7, 50, 100, helpers, 1, null);
+        }));
+      }
+      for (Future<StatisticalSummary> sample : samples) {
+        try {
+          sample.get();
+          Assert.fail("Expected the broken lineup to fail every caller");
+        } catch (ExecutionException e) {
+          // Expected
+        }
+      }
+    } finally {
+      executor.shutdown();
+      helpers.shutdown();
+    }
+
+    // The failed sampling isn't kept, so the next caller starts over
+    Assert.assertEquals(50, LandscapeStatistics.get(indexer, 7, 50, 100).getN());
+  }
+
+  @Test
+  public void testParallelTempering() throws Exception {
+    final String LINEUP = "1OiRCCmrn16iyK,Nelly,1CV6WRyspDjA7Z,1MPJ24EEyS0g6p,Devon,Jordyn";
+
+    Path cache = TestUtil.createTempCacheDirectory();
+    String[] args = {"-o", "MONTE_CARLO_ANNEALING", "-l", LINEUP, "-D", "3", "-T", "3", "-P", "-f", "-z",
+        cache.toString()};
+
+    try {
+      Result result = SoftballSim.mainInternal(args);
+      Assert.assertNotNull("Expected the simulation to produce a result, but it produced null", result);
+      Assert.assertEquals(ResultStatusEnum.COMPLETE, result.getStatus());
+      Assert.assertNotNull(result.getLineup());
+    } finally {
+      TestUtil.deleteDirectory(cache);
+    }
+  }
+
+  @Test(timeout = 60000)
+  public void hotReplicaHandsBetterLineupToColdReplica() throws Exception {
+    CommandLineOptions commandLineOptions = CommandLineOptions.getInstance();
+    Options options = commandLineOptions.getOptionsForFlags(DataSourceEnum.FILE_SYSTEM, null);
+    DataStats stats = DataSourceEnum.FILE_SYSTEM.getData(commandLineOptions.parse(options, new String[0], true));
+    List<String> players = LineupTypeTestInfo.getInstance().getTestLineup(LineupTypeEnum.STANDARD, 6, stats);
+    BattingLineupIndexer<?> indexer = LineupTypeEnum.STANDARD.getLineupIndexer(stats, players);
+    HitGenerator hitGenerator = new HitGenerator(indexer.getPlayers());
+
+    ReplicaExchange exchange = new ReplicaExchange(1, 2, false, hitGenerator);
+    Assert.assertEquals(0, exchange.getTemperature(0), 0);
+    Assert.assertEquals(1, exchange.getTemperature(1), 0);
+
+    // The hot replica holds the better lineup, a zero temperature replica always takes that
+    int[] coldSlots = indexer.getCursor(0).getSlots().clone();
+    int[] hotSlots = indexer.getCursor(1).getSlots().clone();
+    LineupComposite cold = new LineupComposite(indexer.getLineup(coldSlots), hitGenerator, null);
+    cold.restoreSamples(2000, 5, 2000);
+    LineupComposite hot = new LineupComposite(indexer.getLineup(hotSlots), hitGenerator, null);
+    hot.restoreSamples(2000, 6, 2000);
+    int[] expectedColdSlots = hotSlots.clone();
+    int[] expectedHotSlots = coldSlots.clone();
+
+    // Neither replica waits for the other, the hot one posts an offer that the cold one picks up
+    Assert.assertSame(hot, exchange.exchange(1, hotSlots, hot));
+    LineupComposite coldResult = exchange.exchange(0, coldSlots, cold);
+    exchange.leave(0);
+    LineupComposite hotResult = exchange.exchange(1, hotSlots, hot);
+    exchange.leave(1);
+
+    // Each replica gets its own copy of the other's lineup
+    Assert.assertEquals(6, coldResult.getStats().getMean(), 0);
+    Assert.assertNotSame(hot, coldResult);
+    Assert.assertArrayEquals(expectedColdSlots, coldSlots);
+    Assert.assertEquals(5, hotResult.getStats().getMean(), 0);
+    Assert.assertNotSame(cold, hotResult);
+    Assert.assertArrayEquals(expectedHotSlots, hotSlots);
+
+    Assert.assertEquals(6, exchange.getBest().getStats().getMean(), 0);
+    Assert.assertEquals(1, exchange.getSwapsAttempted());
+    Assert.assertEquals(1, exchange.getSwapsAccepted());
+  }
+
+  @Test
+  public void sharedLineupStatisticsPoolSamplesBetweenThreads() throws Exception {
+    CommandLineOptions commandLineOptions = CommandLineOptions.getInstance();
+    Options options = commandLineOptions.getOptionsForFlags(DataSourceEnum.FILE_SYSTEM, null);
+    DataStats stats = DataSourceEnum.FILE_SYSTEM.getData(commandLineOptions.parse(options, new String[0], true));
+    List<String> players = LineupTypeTestInfo.getInstance().getTestLineup(LineupTypeEnum.STANDARD, 6, stats);
+    BattingLineupIndexer<?> indexer = LineupTypeEnum.STANDARD.getLineupIndexer(stats, players);
+    HitGenerator hitGenerator = new HitGenerator(indexer.getPlayers());
+
+    SharedLineupStatistics shared = new SharedLineupStatistics(100);
+    SharedLineupStatistics.Client clientA = shared.newClient();
+    SharedLineupStatistics.Client clientB = shared.newClient();
+    int[] slots = indexer.getCursor(0).getSlots();
+    long key = LineupCompositeCache.getKey(slots);
+
+    // A simulates some games before the lineup is shared
+    LineupComposite a = new LineupComposite(indexer.getLineup(slots), hitGenerator, null);
+    GameScoreAccumulator games = new GameScoreAccumulator();
+    a.getSimulator().simulateGames(7, 300, games);
+    a.addSamples(games);
+    clientA.load(key, slots, a);
+
+    // B starts with A's games
+    LineupComposite b = new LineupComposite(indexer.getLineup(slots), hitGenerator, null);
+    clientB.load(key, slots, b);
+    Assert.assertEquals(300, b.getStats().getN());
+    Assert.assertEquals(a.getStats().getMean(), b.getStats().getMean(), 1e-9);
+
+    // Both add games, neither's games are counted twice
+    games.clear();
+    b.getSimulator().simulateGames(7, 200, games);
+    b.addSamples(games);
+    clientB.pool(key, slots, b);
+    games.clear();
+    a.getSimulator().simulateGames(7, 100, games);
+    a.addSamples(games);
+    clientA.pool(key, slots, a);
+    clientB.pool(key, slots, b);
+    Assert.assertEquals(600, a.getStats().getN());
+    Assert.assertEquals(600, b.getStats().getN());
+    Assert.assertEquals(a.getStats().getMean(), b.getStats().getMean(), 1e-9);
+
+    // Lineups are evicted to stay within the size, every lineup is still poolable
+    for (long i = 1; i < indexer.size(); i++) {
+      int[] otherSlots = indexer.getCursor(i).getSlots();
+      LineupComposite other = new LineupComposite(indexer.getLineup(otherSlots), hitGenerator, null);
+      other.restoreSamples(10, 5, 1);
+      clientA.load(LineupCompositeCache.getKey(otherSlots), otherSlots, other);
+      Assert.assertEquals(10, other.getStats().getN());
+    }
+    Assert.assertTrue(shared.getReport().contains("Total: 1/" + (indexer.size() + 1) + " hits"));
+  }
+
+  @Test
+  public void lineupCompositeCacheTellsApartLineupsThatShareAKey() throws Exception {
+    CommandLineOptions commandLineOptions = CommandLineOptions.getInstance();
+    Options options = commandLineOptions.getOptionsForFlags(DataSourceEnum.FILE_SYSTEM, null);
+    DataStats stats = DataSourceEnum.FILE_SYSTEM.getData(commandLineOptions.parse(options, new String[0], true));
+    List<String> players = LineupTypeTestInfo.getInstance().getTestLineup(LineupTypeEnum.STANDARD, 6, stats);
+    BattingLineupIndexer<?> indexer = LineupTypeEnum.STANDARD.getLineupIndexer(stats, players);
+    HitGenerator hitGenerator = new HitGenerator(indexer.getPlayers());
+
+    // Two lineups forced under the same key
+    int[] slotsA = indexer.getCursor(0).getSlots().clone();
+    int[] slotsB = indexer.getCursor(1).getSlots().clone();
+    LineupComposite a = new LineupComposite(indexer.getLineup(slotsA), hitGenerator, null);
+    LineupComposite b = new LineupComposite(indexer.getLineup(slotsB), hitGenerator, null);
+    LineupCompositeCache cache = new LineupCompositeCache(16);
+    cache.put(42, slotsA, a);
+    Assert.assertNull(cache.get(42, slotsB));
+    cache.put(42, slotsB, b);
+    Assert.assertSame(a, cache.get(42, slotsA));
+    Assert.assertSame(b, cache.get(42, slotsB));
+
+    // Rosters too large to pack into a key still get one
+    int[] large = new int[24];
+    for (int i = 0; i < large.length; i++) {
+      large[i] = large.length - 1 - i;
+    }
+    int[] swapped = large.clone();
+    swapped[0] = large[1];
+    swapped[1] = large[0];
+    Assert.assertNotEquals(LineupCompositeCache.getKey(large), LineupCompositeCache.getKey(swapped));
+  }
+
+  @Test
+  public void annealingCheckpointKeepsEachThreadsScheduleAndLineup() throws Exception {
+    CommandLineOptions commandLineOptions = CommandLineOptions.getInstance();
+    Options options = commandLineOptions.getOptionsForFlags(DataSourceEnum.FILE_SYSTEM, null);
+    DataStats stats = DataSourceEnum.FILE_SYSTEM.getData(commandLineOptions.parse(options, new String[0], true));
+    List<String> players = LineupTypeTestInfo.getInstance().getTestLineup(LineupTypeEnum.STANDARD, 6, stats);
+    BattingLineupIndexer<?> indexer = LineupTypeEnum.STANDARD.getLineupIndexer(stats, players);
+    HitGenerator hitGenerator = new HitGenerator(indexer.getPlayers());
+
+    LineupComposite[] composites = new LineupComposite[2];
+    for (int i = 0; i < composites.length; i++) {
+      composites[i] = new LineupComposite(indexer.getLineup(100 + i), hitGenerator, null);
+      GameScoreAccumulator games = new GameScoreAccumulator();
+      composites[i].getSimulator().simulateGames(7, 1000 + i, games);
+      composites[i].addSamples(games);
+    }
+
+    AnnealingProgress progress = new AnnealingProgress(indexer, 2, false, 60000, null);
+    progress.setMaxTemperature(1.25);
+    progress.update(0, 3000, composites[0].getLineup(), composites[0].getStats(), 5000, 7);
+    // Not every thread has a lineup yet
+    Assert.assertNull(progress.toCheckpoint());
+    Assert.assertNull(progress.toResult().getCheckpoint());
+    // A snapshot isn't affected by later updates
+    Supplier<Result> snapshot = progress.snapshot();
+
+    progress.update(1, 2500, composites[1].getLineup(), composites[1].getStats(), 6000, 8);
+    progress.offerBest(composites[1].getLineup(), composites[1].getStats());
+    progress.addSimulationsRequired(100);
+    Result result = progress.toResult();
+    Assert.assertEquals(composites[1].getLineup(), result.getLineup());
+    Assert.assertEquals(2500, result.getCountCompleted());
+    Assert.assertNotNull(result.getCheckpoint());
+    Assert.assertEquals(composites[0].getLineup(), snapshot.get().getLineup());
+    Assert.assertEquals(0, snapshot.get().getCountCompleted());
+    Assert.assertNull(snapshot.get().getCheckpoint());
+
+    // The resumed run picks up every thread where it was
+    AnnealingProgress resumed = new AnnealingProgress(indexer, 2, false, 60000, result);
+    AnnealingCheckpoint checkpoint = resumed.getResumeFrom();
+    Assert.assertEquals(1.25, checkpoint.getMaxTemperature(), 0);
+    Assert.assertEquals(2, checkpoint.size());
+    long[] elapsedMs = {3000, 2500};
+    long[] simulationsRequired = {5000, 6000};
+    for (int i = 0; i < composites.length; i++) {
+      StatisticalSummary threadStats = composites[i].getStats();
+      Assert.assertEquals(elapsedMs[i], checkpoint.getElapsedMs(i));
+      Assert.assertEquals(100 + i, checkpoint.getLineupIndex(i));
+      Assert.assertEquals(threadStats.getN(), checkpoint.getN(i));
+      Assert.assertEquals(threadStats.getMean(), checkpoint.getMean(i), 0);
+      Assert.assertEquals(threadStats.getVariance() * (threadStats.getN() - 1), checkpoint.getM2(i), 1e-9);
+      Assert.assertEquals(simulationsRequired[i], checkpoint.getSimulationsRequired(i));
+    }
+    Assert.assertEquals(5000 + 6000 + 100, resumed.getSimulationsRequired());
+    Assert.assertEquals(7 + 8, resumed.getSimulationsSaved());
+
+    LineupComposite best = resumed.getBest(hitGenerator, SimulationEngineEnum.PLATE_APPEARANCE);
+    Assert.assertEquals(composites[1].getLineup(), best.getLineup());
+    Assert.assertEquals(composites[1].getStats().getN(), best.getStats().getN());
+    Assert.assertEquals(composites[1].getStats().getMean(), best.getStats().getMean(), 0);
+  }
+
+  @Test
+  public void resumingAFinishedAnnealingRunDoesNotResimulate() throws Exception {
+    final String LINEUP = "1OiRCCmrn16iyK,Oscar,Molly,Nelly,1CV6WRyspDjA7Z,1MPJ24EEyS0g6p";
+    Path cache = TestUtil.createTempCacheDirectory();
+    try {
+      String[] args = {"-o", "MONTE_CARLO_ANNEALING", "-l", LINEUP, "-D", "1", "-T", "2", "-z", cache.toString()};
+      Result first = SoftballSim.mainInternal(args);
+      Assert.assertNotNull(first.getCheckpoint());
+
+      // The cached result comes back with its checkpoint, so the schedule is already over and the final
+      // lineups already have their games
+      Result second = SoftballSim.mainInternal(args);
+      Assert.assertEquals(first.getFlatLineup(), second.getFlatLineup());
+      Assert.assertEquals(first.getLineupScore(), second.getLineupScore(), 0);
+      Assert.assertEquals(((MonteCarloAnnealingResult) first).getSimulationsRequired(),
+          ((MonteCarloAnnealingResult) second).getSimulationsRequired());
+    } finally {
+      TestUtil.deleteDirectory(cache);
+    }
   }
 
 }
@@ -1,7 +1,20 @@
 package com.github.thbrown.softballsim;
 
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToDoubleFunction;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.Options;
 import org.junit.Assert;
 import org.junit.Test;
+import com.github.thbrown.softballsim.data.gson.DataStats;
+import com.github.thbrown.softballsim.datasource.DataSourceEnum;
+import com.github.thbrown.softballsim.helpers.LineupTypeTestInfo;
+import com.github.thbrown.softballsim.lineup.BattingLineup;
+import com.github.thbrown.softballsim.lineupindexer.BattingLineupIndexer;
+import com.github.thbrown.softballsim.lineupindexer.LineupTypeEnum;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive.ExhaustiveSearchDriver;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive.ExhaustiveSearchDriver.Summary;
 
 public class MonteCarloExhaustiveTest {
 
@@ -20,4 +33,87 @@ public class MonteCarloExhaustiveTest {
     Assert.assertNotNull("Expected the simulation to produce a result, but it produced null", result);
   }
 
+  @Test
+  public void parallelDriverMatchesSequentialScan() throws Exception {
+    CommandLineOptions commandLineOptions = CommandLineOptions.getInstance();
+    Options commonOptions = commandLineOptions.getOptionsForFlags(DataSourceEnum.FILE_SYSTEM, null);
+    CommandLine commonCmd = commandLineOptions.parse(commonOptions, new String[0], true);
+    DataStats stats = DataSourceEnum.FILE_SYSTEM.getData(commonCmd);
+
+    List<String> players = LineupTypeTestInfo.getInstance().getTestLineup(LineupTypeEnum.STANDARD, 7, stats);
+    BattingLineupIndexer<?> indexer = LineupTypeEnum.STANDARD.getLineupIndexer(stats, players);
+
+    // Lots of ties, so the result depends on merging in index order
+    ToDoubleFunction<BattingLineup> scorer = lineup -> (lineup.hashCode() & 0x7F) / 10.0;
+
+    for (boolean lowest : new boolean[] {false, true}) {
+      Summary sequential = new Summary(lowest);
+      for (long i = 0; i < indexer.size(); i++) {
+        BattingLineup lineup = indexer.getLineup(i);
+        sequential.add(lineup, scorer.applyAsDouble(lineup));
+      }
+
+      ExhaustiveSearchDriver driver = new ExhaustiveSearchDriver(indexer, 4, lowest);
+      long[] lastProgress = {0};
+      Summary parallel = driver.run(new Summary(lowest), scorer, partial -> {
+        Assert.assertTrue(partial.getCountCompleted() > lastProgress[0]);
+        lastProgress[0] = partial.getCountCompleted();
+      });
+      assertSameSummary(sequential, parallel);
+
+      // Resuming from a partial summary gives the same answer
+      Summary resumed = new Summary(lowest);
+      for (long i = 0; i < indexer.size() / 3; i++) {
+        BattingLineup lineup = indexer.getLineup(i);
+        resumed.add(lineup, scorer.applyAsDouble(lineup));
+      }
+      assertSameSummary(sequential, driver.run(resumed, scorer, partial -> {
+      }));
+    }
+  }
+
+  @Test
+  public void slowChunkDoesNotLetOtherChunksPileUp() throws Exception {
+    CommandLineOptions commandLineOptions = CommandLineOptions.getInstance();
+    Options commonOptions = commandLineOptions.getOptionsForFlags(DataSourceEnum.FILE_SYSTEM, null);
+    CommandLine commonCmd = commandLineOptions.parse(commonOptions, new String[0], true);
+    DataStats stats = DataSourceEnum.FILE_SYSTEM.getData(commonCmd);
+
+    List<String> players = LineupTypeTestInfo.getInstance().getTestLineup(LineupTypeEnum.STANDARD, 8, stats);
+    BattingLineupIndexer<?> indexer = LineupTypeEnum.STANDARD.getLineupIndexer(stats, players);
+    BattingLineup first = indexer.getLineup(0);
+
+    // The first lineup takes long enough for the other workers to score every other lineup if nothing
+    // held them back
+    AtomicLong scored = new AtomicLong();
+    long[] scoredWhileSlow = {0};
+    ToDoubleFunction<BattingLineup> scorer = lineup -> {
+      if (lineup.equals(first)) {
+        try {
+          Thread.sleep(1000);
+        } catch (InterruptedException e) {
+          throw new RuntimeException(e);
+        }
+        scoredWhileSlow[0] = scored.get();
+      }
+      scored.incrementAndGet();
+      return 1;
+    };
+
+    Summary summary = new ExhaustiveSearchDriver(indexer, 4, false).run(new Summary(false), scorer, partial -> {
+    });
+    Assert.assertEquals(indexer.size(), summary.getCountCompleted());
+    Assert.assertTrue("Scored " + scoredWhileSlow[0] + " lineups while the first chunk was slow",
+        scoredWhileSlow[0] < indexer.size() / 2);
+  }
+
+  private void assertSameSummary(Summary expected, Summary actual) {
+    Assert.assertEquals(expected.getCountCompleted(), actual.getCountCompleted());
+    Assert.assertEquals(expected.getOptimalLineup(), actual.getOptimalLineup());
+    Assert.assertEquals(expected.getOptimalScore(), actual.getOptimalScore(), 0);
+    Assert.assertEquals(expected.getOppositeOfOptimalLineup(), actual.getOppositeOfOptimalLineup());
+    Assert.assertEquals(expected.getOppositeOfOptimalScore(), actual.getOppositeOfOptimalScore(), 0);
+    Assert.assertEquals(expected.getHistogram(), actual.getHistogram());
+  }
+
 }
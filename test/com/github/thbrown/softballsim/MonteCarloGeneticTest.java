@@ -0,0 +1,165 @@
+package com.github.thbrown.softballsim;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.Callable;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.Options;
+import org.junit.Assert;
+import org.junit.Test;
+import com.github.thbrown.softballsim.data.gson.DataStats;
+import com.github.thbrown.softballsim.datasource.DataSourceEnum;
+import com.github.thbrown.softballsim.helpers.LineupTypeTestInfo;
+import com.github.thbrown.softballsim.helpers.TestUtil;
+import com.github.thbrown.softballsim.lineup.BattingLineup;
+import com.github.thbrown.softballsim.lineupindexer.BattingLineupIndexer;
+import com.github.thbrown.softballsim.lineupindexer.LineupTypeEnum;
+import com.github.thbrown.softballsim.optimizer.impl.expectedvalue.ExpectedValue;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive.HitGenerator;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive.SimulationEngineEnum;
+import com.github.thbrown.softballsim.optimizer.impl.montecarlogenetic.GeneticPopulation;
+import com.github.thbrown.softballsim.optimizer.impl.montecarlogenetic.MonteCarloGeneticResult;
+import com.github.thbrown.softballsim.util.Logger;
+
+public class MonteCarloGeneticTest {
+
+  private static final int INNINGS = 7;
+  private static final int MAX_BATTERS = 1000;
+  private static final String LINEUP = "1OiRCCmrn16iyK,Oscar,Molly,Nelly,1CV6WRyspDjA7Z,1MPJ24EEyS0g6p";
+
+  // Seeded populations evolve the same way every run
+  private static final long SEED = 100;
+
+  @Test
+  public void testDataSourceFileSystem() throws Exception {
+    final int LINEUP_TYPE = 0;
+    final int THREAD_COUNT = 2;
+    final int DURATION = 2;
+
+    String[] args = {"-o", "MONTE_CARLO_GENETIC", "-f", "-l", LINEUP, "-I", String.valueOf(INNINGS), "-t",
+        String.valueOf(LINEUP_TYPE), "-T", String.valueOf(THREAD_COUNT), "-D", String.valueOf(DURATION)};
+
+    Result result = SoftballSim.mainInternal(args);
+    Assert.assertNotNull("Expected the simulation to produce a result, but it produced null", result);
+    Assert.assertEquals(result.getCountTotal(), result.getCountCompleted());
+    Assert.assertTrue(((MonteCarloGeneticResult) result).getSimulationsRequired() > 0);
+    Assert.assertTrue(((MonteCarloGeneticResult) result).getGenerations() > 0);
+  }
+
+  @Test
+  public void finishedRunIsResumedWithoutEvolvingAgain() throws Exception {
+    Path cache = TestUtil.createTempCacheDirectory();
+    String[] args =
+        {"-o", "MONTE_CARLO_GENETIC", "-l", LINEUP, "-I", String.valueOf(INNINGS), "-D", "1", "-z", cache.toString()};
+    try {
+      MonteCarloGeneticResult first = (MonteCarloGeneticResult) SoftballSim.mainInternal(args);
+      // The second run finds the first one's result in the cache
+      MonteCarloGeneticResult second = (MonteCarloGeneticResult) SoftballSim.mainInternal(args);
+      Assert.assertEquals(ResultStatusEnum.COMPLETE, second.getStatus());
+      Assert.assertEquals(first.getFlatLineup(), second.getFlatLineup());
+      Assert.assertEquals(first.getLineupScore(), second.getLineupScore(), 0);
+      Assert.assertEquals(first.getSimulationsRequired(), second.getSimulationsRequired());
+      Assert.assertEquals(first.getGenerations(), second.getGenerations());
+    } finally {
+      TestUtil.deleteDirectory(cache);
+    }
+  }
+
+  @Test
+  public void seededPopulationsEvolveTheSameWay() throws Exception {
+    DataStats stats = getStats();
+    List<String> players = LineupTypeTestInfo.getInstance().getTestLineup(LineupTypeEnum.STANDARD, 8, stats);
+    BattingLineupIndexer<?> indexer = LineupTypeEnum.STANDARD.getLineupIndexer(stats, players);
+    GeneticPopulation[] populations = new GeneticPopulation[2];
+    for (int i = 0; i < populations.length; i++) {
+      populations[i] = new GeneticPopulation(indexer, new HitGenerator(indexer.getPlayers()),
+          SimulationEngineEnum.PLATE_APPEARANCE, INNINGS, false, .05, .3, 8, 8, SEED);
+      for (int generation = 0; generation < 5; generation++) {
+        populations[i].startGeneration(8 * 31);
+        playRace(populations[i]);
+        populations[i].endGeneration();
+      }
+    }
+    Assert.assertArrayEquals(populations[0].getMembers(), populations[1].getMembers());
+    Assert.assertEquals(populations[0].getLeaderMean(), populations[1].getLeaderMean(), 0);
+    Assert.assertEquals(populations[0].getSimulationsRun(), populations[1].getSimulationsRun());
+  }
+
+  @Test
+  public void offspringAreValidLineupsOfEveryType() throws Exception {
+    DataStats stats = getStats();
+    for (LineupTypeEnum lineupType : LineupTypeEnum.values()) {
+      List<String> players = LineupTypeTestInfo.getInstance().getTestLineup(lineupType, 10, stats);
+      BattingLineupIndexer<?> indexer = lineupType.getLineupIndexer(stats, players);
+      GeneticPopulation population = new GeneticPopulation(indexer, new HitGenerator(indexer.getPlayers()),
+          SimulationEngineEnum.PLATE_APPEARANCE, INNINGS, false, .05, .3, 16, 8);
+
+      for (int generation = 0; generation < 20; generation++) {
+        population.startGeneration(8);
+        Assert.assertEquals(lineupType.toString(), 32, population.getCandidates());
+        playRace(population);
+        population.endGeneration();
+
+        // Every member must be one of the indexer's lineups
+        for (int[] slots : population.getMembers()) {
+          BattingLineup lineup = indexer.getLineup(slots);
+          Assert.assertEquals(lineupType.toString(), lineup, getLineup(indexer, lineup));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void evolvedLineupIsCloseToTheExpectedValueOptimum() throws Exception {
+    DataStats stats = getStats();
+    List<String> players = LineupTypeTestInfo.getInstance().getTestLineup(LineupTypeEnum.STANDARD, 6, stats);
+    for (boolean lowestScore : new boolean[] {false, true}) {
+      BattingLineupIndexer<?> indexer = LineupTypeEnum.STANDARD.getLineupIndexer(stats, players);
+
+      double best = lowestScore ? Double.MAX_VALUE : -Double.MAX_VALUE;
+      for (long i = 0; i < indexer.size(); i++) {
+        double score = ExpectedValue.getExpectedValue(indexer.getLineup(i), INNINGS, MAX_BATTERS);
+        best = lowestScore ? Math.min(best, score) : Math.max(best, score);
+      }
+
+      GeneticPopulation population = new GeneticPopulation(indexer, new HitGenerator(indexer.getPlayers()),
+          SimulationEngineEnum.PLATE_APPEARANCE, INNINGS, lowestScore, .05, .3, 16, 32, SEED);
+      for (int generation = 0; generation < 30; generation++) {
+        population.startGeneration(32 * 31);
+        playRace(population);
+        population.endGeneration();
+      }
+      population.startFinalRace(1, 200000);
+      playRace(population);
+      population.endGeneration();
+
+      // Lineups that are still tied at the simulation limit are within a few hundredths of a run
+      double winner = ExpectedValue.getExpectedValue(population.getLeader(), INNINGS, MAX_BATTERS);
+      Logger.log("lowest=" + lowestScore + " best " + best + " evolved " + winner + " after "
+          + population.getSimulationsRun() + " games");
+      Assert.assertEquals(best, winner, .05);
+    }
+  }
+
+  private static void playRace(GeneticPopulation population) throws Exception {
+    while (!population.isRaceFinished()) {
+      for (Callable<Void> task : population.startRound(4)) {
+        task.call();
+      }
+      population.endRound();
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <T extends BattingLineup> T getLineup(BattingLineupIndexer<T> indexer, BattingLineup lineup) {
+    return indexer.getLineup(indexer.getIndex((T) lineup));
+  }
+
+  private DataStats getStats() {
+    CommandLineOptions commandLineOptions = CommandLineOptions.getInstance();
+    Options commonOptions = commandLineOptions.getOptionsForFlags(DataSourceEnum.FILE_SYSTEM, null);
+    CommandLine commonCmd = commandLineOptions.parse(commonOptions, new String[0], true);
+    return DataSourceEnum.FILE_SYSTEM.getData(commonCmd);
+  }
+
+}
@@ -0,0 +1,130 @@
+package com.github.thbrown.softballsim;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.Callable;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.Options;
+import org.junit.Assert;
+import org.junit.Test;
+import com.github.thbrown.softballsim.data.gson.DataStats;
+import com.github.thbrown.softballsim.datasource.DataSourceEnum;
+import com.github.thbrown.softballsim.helpers.LineupTypeTestInfo;
+import com.github.thbrown.softballsim.helpers.TestUtil;
+import com.github.thbrown.softballsim.lineupindexer.BattingLineupIndexer;
+import com.github.thbrown.softballsim.lineupindexer.LineupTypeEnum;
+import com.github.thbrown.softballsim.optimizer.impl.expectedvalue.ExpectedValue;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive.HitGenerator;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive.SimulationEngineEnum;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloracing.LineupRace;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloracing.MonteCarloRacingResult;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloracing.RaceCheckpoint;
+import com.github.thbrown.softballsim.util.Logger;
+
+public class MonteCarloRacingTest {
+
+  private static final int INNINGS = 7;
+  private static final int MAX_BATTERS = 1000;
+  private static final String LINEUP = "1OiRCCmrn16iyK,Oscar,Molly,Nelly,1CV6WRyspDjA7Z,1MPJ24EEyS0g6p";
+
+  @Test
+  public void testDataSourceFileSystem() throws Exception {
+    final int LINEUP_TYPE = 0;
+    final int THREAD_COUNT = 4;
+
+    String[] args = {"-o", "MONTE_CARLO_RACING", "-f", "-l", LINEUP, "-I", String.valueOf(INNINGS), "-t",
+        String.valueOf(LINEUP_TYPE), "-T", String.valueOf(THREAD_COUNT)};
+
+    Result result = SoftballSim.mainInternal(args);
+    Assert.assertNotNull("Expected the simulation to produce a result, but it produced null", result);
+    Assert.assertEquals(result.getCountTotal(), result.getCountCompleted());
+    Assert.assertTrue(((MonteCarloRacingResult) result).getSimulationsRequired() > 0);
+  }
+
+  @Test
+  public void finishedRaceIsNotRunAgain() throws Exception {
+    Path cache = TestUtil.createTempCacheDirectory();
+    String[] args = {"-o", "MONTE_CARLO_RACING", "-l", LINEUP, "-I", String.valueOf(INNINGS), "-z", cache.toString()};
+    try {
+      MonteCarloRacingResult first = (MonteCarloRacingResult) SoftballSim.mainInternal(args);
+      // The second run finds the first one's result in the cache
+      MonteCarloRacingResult second = (MonteCarloRacingResult) SoftballSim.mainInternal(args);
+      Assert.assertEquals(ResultStatusEnum.COMPLETE, second.getStatus());
+      Assert.assertEquals(first.getFlatLineup(), second.getFlatLineup());
+      Assert.assertEquals(first.getLineupScore(), second.getLineupScore(), 0);
+      Assert.assertEquals(first.getSimulationsRequired(), second.getSimulationsRequired());
+      Assert.assertEquals(first.getRounds(), second.getRounds());
+    } finally {
+      TestUtil.deleteDirectory(cache);
+    }
+  }
+
+  @Test
+  public void resumedRaceMatchesTheRaceItWasSavedFrom() throws Exception {
+    DataStats stats = getStats();
+    List<String> players = LineupTypeTestInfo.getInstance().getTestLineup(LineupTypeEnum.STANDARD, 6, stats);
+    BattingLineupIndexer<?> indexer = LineupTypeEnum.STANDARD.getLineupIndexer(stats, players);
+    HitGenerator hitGenerator = new HitGenerator(indexer.getPlayers());
+    LineupRace race = new LineupRace(indexer, hitGenerator, SimulationEngineEnum.PLATE_APPEARANCE, INNINGS, false,
+        .05, 32, 200000);
+
+    // Checked after every round, including the first, when nothing is eliminated yet and the checkpoint
+    // has no lineup indexes
+    for (int round = 0; round < 8 && !race.isFinished(); round++) {
+      for (Callable<Void> task : race.startRound(8)) {
+        task.call();
+      }
+      race.endRound();
+
+      LineupRace resumed = new LineupRace(indexer, hitGenerator, SimulationEngineEnum.PLATE_APPEARANCE, INNINGS,
+          false, .05, 32, 200000);
+      resumed.resume(RaceCheckpoint.fromBytes(race.toCheckpoint().toBytes()));
+      Assert.assertEquals(race.getSurvivors(), resumed.getSurvivors());
+      Assert.assertEquals(race.getGamesPerLineup(), resumed.getGamesPerLineup());
+      Assert.assertEquals(race.getSimulationsRun(), resumed.getSimulationsRun());
+      Assert.assertEquals(race.getRounds(), resumed.getRounds());
+      Assert.assertEquals(race.getLeaderIndex(), resumed.getLeaderIndex());
+      Assert.assertEquals(race.getLeaderMean(), resumed.getLeaderMean(), 0);
+      Assert.assertArrayEquals(race.toCheckpoint().toBytes(), resumed.toCheckpoint().toBytes());
+    }
+  }
+
+  @Test
+  public void raceWinnerIsCloseToTheExpectedValueOptimum() throws Exception {
+    DataStats stats = getStats();
+    List<String> players = LineupTypeTestInfo.getInstance().getTestLineup(LineupTypeEnum.STANDARD, 6, stats);
+    for (boolean lowestScore : new boolean[] {false, true}) {
+      BattingLineupIndexer<?> indexer = LineupTypeEnum.STANDARD.getLineupIndexer(stats, players);
+
+      double best = lowestScore ? Double.MAX_VALUE : -Double.MAX_VALUE;
+      for (long i = 0; i < indexer.size(); i++) {
+        double score = ExpectedValue.getExpectedValue(indexer.getLineup(i), INNINGS, MAX_BATTERS);
+        best = lowestScore ? Math.min(best, score) : Math.max(best, score);
+      }
+
+      LineupRace race = new LineupRace(indexer, new HitGenerator(indexer.getPlayers()),
+          SimulationEngineEnum.PLATE_APPEARANCE, INNINGS, lowestScore, .001, 32, 200000);
+      while (!race.isFinished()) {
+        for (Callable<Void> task : race.startRound(8)) {
+          task.call();
+        }
+        race.endRound();
+      }
+
+      // Lineups that are still tied at the simulation limit are within a few hundredths of a run
+      double winner = ExpectedValue.getExpectedValue(race.getLeader(), INNINGS, MAX_BATTERS);
+      Logger.log("lowest=" + lowestScore + " best " + best + " race winner " + winner + " after "
+          + race.getSimulationsRun() + " games, " + race.getSurvivors() + " lineups left");
+      Assert.assertEquals(best, winner, .05);
+      Assert.assertEquals(indexer.getLineup(race.getLeaderIndex()).toString(), race.getLeader().toString());
+    }
+  }
+
+  private DataStats getStats() {
+    CommandLineOptions commandLineOptions = CommandLineOptions.getInstance();
+    Options commonOptions = commandLineOptions.getOptionsForFlags(DataSourceEnum.FILE_SYSTEM, null);
+    CommandLine commonCmd = commandLineOptions.parse(commonOptions, new String[0], true);
+    return DataSourceEnum.FILE_SYSTEM.getData(commonCmd);
+  }
+
+}
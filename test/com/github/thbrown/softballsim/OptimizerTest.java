@@ -21,8 +21,11 @@ import com.github.thbrown.softballsim.util.Logger;
 import com.github.thbrown.softballsim.*;
 import com.github.thbrown.softballsim.lineupindexer.*;
 import com.github.thbrown.softballsim.optimizer.OptimizerEnum;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloadaptive.MonteCarloAdaptiveResult;
 import com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive.HitGenerator;
 import com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive.MonteCarloGameSimulation;
+import com.github.thbrown.softballsim.optimizer.impl.montecarlogenetic.MonteCarloGeneticResult;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloracing.MonteCarloRacingResult;
 import com.github.thbrown.softballsim.datasource.*;
 import com.github.thbrown.softballsim.helpers.LineupTypeTestInfo;
 import org.apache.commons.cli.*;
@@ -82,9 +85,18 @@ public class OptimizerTest {
           }
           double estimatedScore = sum / COUNT;
 
-          // Save the results in memory
+          // Save the results in memory, along with the number of games simulated by optimizers that
+          // decide how many games each lineup needs
+          String simulations = "";
+          if (result instanceof MonteCarloAdaptiveResult) {
+            simulations = String.valueOf(((MonteCarloAdaptiveResult) result).getSimulationsRequired());
+          } else if (result instanceof MonteCarloRacingResult) {
+            simulations = String.valueOf(((MonteCarloRacingResult) result).getSimulationsRequired());
+          } else if (result instanceof MonteCarloGeneticResult) {
+            simulations = String.valueOf(((MonteCarloGeneticResult) result).getSimulationsRequired());
+          }
           results.add(optimizer + "\t" + lineupType + "\t" + i + "\t" + result.getElapsedTimeMs() + "\t"
-              + estimatedScore);
+              + estimatedScore + "\t" + simulations);
 
           // TODO: add estimate accuracy metric?
         }
@@ -6,10 +6,13 @@ import java.nio.file.Paths;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import com.github.thbrown.softballsim.data.gson.DataPlayer;
 import com.github.thbrown.softballsim.data.gson.DataStats;
 import com.github.thbrown.softballsim.lineup.BattingLineup;
 import com.github.thbrown.softballsim.lineup.StandardBattingLineup;
+import com.github.thbrown.softballsim.optimizer.impl.expectedvalue.ExpectedValueResult;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloadaptive.MonteCarloAdaptiveResult;
 import com.github.thbrown.softballsim.optimizer.impl.montecarloannealing.MonteCarloAnnealingResult;
 import com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive.MonteCarloExhaustiveResult;
 import com.github.thbrown.softballsim.util.GsonAccessor;
@@ -92,5 +95,35 @@ public class ResultCopyTest {
     assertNotEquals(rCopy.getLineup().getBatter(0).getBattingAverage(), 0);
     assertNotEquals(rCopy.getOppositeOfOptimalLineup().getBatter(0).getBattingAverage(), 0);
   }
-}
 
+  @Test
+  public void copyResultKeepsSubclassFields() throws IOException {
+    String json = new String(Files.readAllBytes(Paths.get("./stats/exampleData.json")));
+    DataStats dataStats = GsonAccessor.getInstance().getCustom().fromJson(json, DataStats.class);
+    List<DataPlayer> players =
+        Arrays.asList(dataStats.getPlayers().get(0), dataStats.getPlayers().get(1), dataStats.getPlayers().get(2));
+    BattingLineup lineup = new StandardBattingLineup(players);
+
+    MonteCarloAdaptiveResult adaptive = new MonteCarloAdaptiveResult(lineup, 10, 100, 50, 1000, Set.of(3L, 7L),
+        ResultStatusEnum.IN_PROGRESS, 400, 5, 60);
+    MonteCarloAdaptiveResult adaptiveCopy =
+        (MonteCarloAdaptiveResult) adaptive.copyWithNewStatus(ResultStatusEnum.PAUSED, null);
+    assertEquals(ResultStatusEnum.PAUSED, adaptiveCopy.getStatus());
+    assertEquals(adaptive.getLineup(), adaptiveCopy.getLineup());
+    assertEquals(adaptive.getCountCompleted(), adaptiveCopy.getCountCompleted());
+    assertEquals(adaptive.getElapsedTimeMs(), adaptiveCopy.getElapsedTimeMs());
+    assertEquals(adaptive.getCandidateLineups(), adaptiveCopy.getCandidateLineups());
+    assertEquals(adaptive.getSimulationsRequired(), adaptiveCopy.getSimulationsRequired());
+    assertEquals(adaptive.getComparisonsThatReachedSimLimit(), adaptiveCopy.getComparisonsThatReachedSimLimit());
+    assertEquals(adaptive.getSimulationsSaved(), adaptiveCopy.getSimulationsSaved());
+
+    // Subclasses of subclasses copy to their own class
+    Map<Long, Long> histogram = Map.of(10L, 2L);
+    Result expectedValue = new ExpectedValueResult(lineup, 10, 100, 50, 1000, histogram,
+        ResultStatusEnum.IN_PROGRESS, lineup, 1).copyWithNewEstimatedTimeRemainingMs(5L);
+    assertEquals(ExpectedValueResult.class, expectedValue.getClass());
+    assertEquals(histogram, ((ExpectedValueResult) expectedValue).getHistogram());
+    assertEquals(Long.valueOf(5L), expectedValue.getEstimatedTimeRemainingMs());
+    assertEquals(ResultStatusEnum.IN_PROGRESS, expectedValue.getStatus());
+  }
+}
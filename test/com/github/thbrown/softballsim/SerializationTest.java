@@ -1,9 +1,11 @@
 package com.github.thbrown.softballsim;
 
 import java.io.IOException;
+import java.nio.file.Path;
 import org.apache.commons.cli.MissingArgumentException;
 import org.junit.Assert;
 import org.junit.Test;
+import com.github.thbrown.softballsim.helpers.TestUtil;
 import com.github.thbrown.softballsim.util.GsonAccessor;
 import com.github.thbrown.softballsim.util.Logger;
 import com.google.gson.JsonObject;
@@ -17,9 +19,16 @@ public class SerializationTest {
     final int DURATION = 5;
     final int LINEUP_TYPE = 0;
     final String LINEUP = "1OiRCCmrn16iyK,Nelly,1CV6WRyspDjA7Z,1MPJ24EEyS0g6p";
+    Path cache = TestUtil.createTempCacheDirectory();
     String[] args = {"-v", "-o", "MONTE_CARLO_ANNEALING", "-l", LINEUP, "-I",
-        String.valueOf(INNINGS), "-t", String.valueOf(LINEUP_TYPE), "-D", String.valueOf(DURATION), "-f"};
-    Result result = SoftballSim.mainInternal(args);
+        String.valueOf(INNINGS), "-t", String.valueOf(LINEUP_TYPE), "-D", String.valueOf(DURATION), "-f", "-z",
+        cache.toString()};
+    Result result;
+    try {
+      result = SoftballSim.mainInternal(args);
+    } finally {
+      TestUtil.deleteDirectory(cache);
+    }
     Assert.assertNotNull("Expected the optimization to produce a result, but it produced null", result);
     String json = GsonAccessor.getInstance().getCustom().toJson(result);
     System.out.println("OUTPUT");
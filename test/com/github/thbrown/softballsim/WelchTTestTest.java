@@ -0,0 +1,127 @@
+package com.github.thbrown.softballsim;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.apache.commons.math3.distribution.TDistribution;
+import org.apache.commons.math3.special.Beta;
+import org.apache.commons.math3.stat.descriptive.AggregateSummaryStatistics;
+import org.apache.commons.math3.stat.descriptive.StatisticalSummary;
+import org.apache.commons.math3.stat.descriptive.StatisticalSummaryValues;
+import org.apache.commons.math3.stat.descriptive.SummaryStatistics;
+import org.apache.commons.math3.stat.inference.TTest;
+import org.junit.Assert;
+import org.junit.Test;
+import com.github.thbrown.softballsim.util.WelchTTest;
+import com.github.thbrown.softballsim.util.WelfordAccumulator;
+
+public class WelchTTestTest {
+
+  private static final TTest tester = new TTest();
+
+  @Test
+  public void twoSampleTestMatchesCommonsMath() {
+    Random random = new Random(1);
+    for (int i = 0; i < 10000; i++) {
+      StatisticalSummary a = randomSummary(random);
+      StatisticalSummary b = randomSummary(random);
+      double expected = tester.tTest(a, b);
+      double actual = WelchTTest.pValue(a.getMean(), a.getVariance(), a.getN(), b.getMean(), b.getVariance(),
+          b.getN());
+      Assert.assertEquals(a + " " + b, expected, actual, 0);
+    }
+  }
+
+  @Test
+  public void oneSampleTestMatchesCommonsMath() {
+    Random random = new Random(2);
+    for (int i = 0; i < 10000; i++) {
+      StatisticalSummary a = randomSummary(random);
+      double mu = random.nextGaussian();
+      Assert.assertEquals(a.toString(), tester.tTest(mu, a),
+          WelchTTest.oneSamplePValue(mu, a.getMean(), a.getVariance(), a.getN()), 0);
+    }
+  }
+
+  @Test
+  public void distributionMatchesCommonsMath() {
+    Random random = new Random(3);
+    for (int i = 0; i < 10000; i++) {
+      double degreesOfFreedom = 1 + random.nextDouble() * Math.pow(10, random.nextInt(7));
+      double x = random.nextGaussian() * Math.pow(10, random.nextInt(4) - 2);
+      Assert.assertEquals(new TDistribution(null, degreesOfFreedom).cumulativeProbability(x),
+          WelchTTest.cumulativeProbability(x, degreesOfFreedom), 0);
+
+      double a = random.nextDouble() * 100;
+      double b = random.nextDouble() * 100;
+      double p = random.nextDouble();
+      Assert.assertEquals(Beta.regularizedBeta(p, a, b), WelchTTest.regularizedBeta(p, a, b), 0);
+    }
+  }
+
+  @Test
+  public void equivalenceTestIsTheLargerOfTwoOneSidedTests() {
+    Random random = new Random(5);
+    for (int i = 0; i < 1000; i++) {
+      StatisticalSummary a = randomSummary(random);
+      StatisticalSummary b = randomSummary(random);
+      double margin = random.nextDouble();
+      double standardError = Math.sqrt(a.getVariance() / a.getN() + b.getVariance() / b.getN());
+      TDistribution distribution = new TDistribution(null,
+          WelchTTest.degreesOfFreedom(a.getVariance(), a.getN(), b.getVariance(), b.getN()));
+      double difference = b.getMean() - a.getMean();
+      double expected = Math.max(1 - distribution.cumulativeProbability((difference + margin) / standardError),
+          distribution.cumulativeProbability((difference - margin) / standardError));
+      Assert.assertEquals(expected, WelchTTest.equivalencePValue(a.getMean(), a.getVariance(), a.getN(),
+          b.getMean(), b.getVariance(), b.getN(), margin), 1e-12);
+
+      TDistribution oneSample = new TDistribution(null, a.getN() - 1);
+      double oneSampleError = Math.sqrt(a.getVariance() / a.getN());
+      expected = Math.max(1 - oneSample.cumulativeProbability((a.getMean() + margin) / oneSampleError),
+          oneSample.cumulativeProbability((a.getMean() - margin) / oneSampleError));
+      Assert.assertEquals(expected,
+          WelchTTest.oneSampleEquivalencePValue(a.getMean(), a.getVariance(), a.getN(), margin), 1e-12);
+    }
+  }
+
+  @Test
+  public void welfordAccumulatorMatchesSummaryStatistics() {
+    Random random = new Random(4);
+    SummaryStatistics reference = new SummaryStatistics();
+    WelfordAccumulator accumulator = new WelfordAccumulator();
+    List<StatisticalSummary> parts = new ArrayList<>();
+    WelfordAccumulator merged = new WelfordAccumulator();
+    for (int part = 0; part < 20; part++) {
+      SummaryStatistics partReference = new SummaryStatistics();
+      WelfordAccumulator partAccumulator = new WelfordAccumulator();
+      for (int i = 0; i < 1 + random.nextInt(1000); i++) {
+        double value = random.nextInt(20);
+        reference.addValue(value);
+        accumulator.add(value);
+        partReference.addValue(value);
+        partAccumulator.add(value);
+      }
+      parts.add(partReference);
+      merged.merge(partAccumulator);
+    }
+    StatisticalSummaryValues aggregate = AggregateSummaryStatistics.aggregate(parts);
+    for (StatisticalSummary expected : new StatisticalSummary[] {reference, aggregate}) {
+      for (WelfordAccumulator actual : new WelfordAccumulator[] {accumulator, merged}) {
+        Assert.assertEquals(expected.getN(), actual.getN());
+        Assert.assertEquals(expected.getMean(), actual.getMean(), 1e-12);
+        Assert.assertEquals(expected.getVariance(), actual.getVariance(), 1e-10);
+        Assert.assertEquals(expected.getMin(), actual.getMin(), 0);
+        Assert.assertEquals(expected.getMax(), actual.getMax(), 0);
+        Assert.assertEquals(expected.getSum(), actual.getSum(), 1e-6);
+      }
+    }
+  }
+
+  private static StatisticalSummary randomSummary(Random random) {
+    long n = 2 + random.nextInt(1000000);
+    double mean = random.nextDouble() * 10;
+    double variance = random.nextDouble() * 20;
+    return new StatisticalSummaryValues(mean, variance, n, 0, 0, mean * n);
+  }
+
+}
@@ -2,9 +2,15 @@ package com.github.thbrown.softballsim.helpers;
 
 import static org.junit.Assert.assertThat;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
 import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.stream.Stream;
 import com.github.thbrown.softballsim.util.Logger;
 import org.hamcrest.CoreMatchers;
 
@@ -44,4 +50,19 @@ public class TestUtil {
     recursiveResult.add(dataPoints.get(dataPoints.size() - 1));
     return recursiveResult;
   }
+
+  /**
+   * @return a new empty directory for tests to pass as the cache path (-z), so their cache files don't
+   *         end up in the project's cache directory. Remove it with {@link #deleteDirectory(Path)}.
+   */
+  public static Path createTempCacheDirectory() throws IOException {
+    return Files.createTempDirectory("softball-sim-cache");
+  }
+
+  public static void deleteDirectory(Path directory) throws IOException {
+    try (Stream<Path> files = Files.walk(directory)) {
+      files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+    }
+  }
+
 }
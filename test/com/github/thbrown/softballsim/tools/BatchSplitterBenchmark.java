@@ -0,0 +1,96 @@
+package com.github.thbrown.softballsim.tools;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.Options;
+import org.junit.Test;
+import com.github.thbrown.softballsim.CommandLineOptions;
+import com.github.thbrown.softballsim.data.gson.DataStats;
+import com.github.thbrown.softballsim.datasource.DataSourceEnum;
+import com.github.thbrown.softballsim.helpers.LineupTypeTestInfo;
+import com.github.thbrown.softballsim.lineupindexer.BattingLineupIndexer;
+import com.github.thbrown.softballsim.lineupindexer.LineupTypeEnum;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloadaptive.BatchSplitter;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive.CompiledLineup;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive.ControlVariateAccumulator;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive.GameScoreAccumulator;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive.HitGenerator;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive.MonteCarloGameSimulation;
+import com.github.thbrown.softballsim.util.Logger;
+
+/**
+ * Times the end of an adaptive run, where a single comparison is left running on an otherwise idle
+ * pool. Each round simulates one paired comparison's worth of games from a task on the pool, once on
+ * the task's own thread and once through a {@link BatchSplitter}. The speedup should approach the
+ * number of cores, on a single core machine the two should take the same time.
+ */
+public class BatchSplitterBenchmark {
+
+  private static final int INNINGS = 7;
+  private static final int WARMUP_ROUNDS = 3;
+  private static final int TIMED_ROUNDS = 5;
+  private static final long GAMES_PER_ROUND = 2000000;
+
+  @Test
+  public void compareSplitBatches() throws Exception {
+    CommandLineOptions commandLineOptions = CommandLineOptions.getInstance();
+    Options commonOptions = commandLineOptions.getOptionsForFlags(DataSourceEnum.FILE_SYSTEM, null);
+    CommandLine commonCmd = commandLineOptions.parse(commonOptions, new String[0], true);
+    DataStats stats = DataSourceEnum.FILE_SYSTEM.getData(commonCmd);
+
+    List<String> players = LineupTypeTestInfo.getInstance().getTestLineup(LineupTypeEnum.STANDARD, 9, stats);
+    BattingLineupIndexer<?> indexer = LineupTypeEnum.STANDARD.getLineupIndexer(stats, players);
+    HitGenerator hitGenerator = new HitGenerator(indexer.getPlayers());
+    CompiledLineup lineupA = new CompiledLineup(indexer.getLineup(0), hitGenerator);
+    CompiledLineup lineupB = new CompiledLineup(indexer.getLineup(indexer.size() - 1), hitGenerator);
+
+    int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      BatchSplitter splitter = new BatchSplitter((ThreadPoolExecutor) executor);
+      Callable<Double> inline = () -> {
+        GameScoreAccumulator scoresA = new GameScoreAccumulator();
+        GameScoreAccumulator scoresB = new GameScoreAccumulator();
+        ControlVariateAccumulator differences = new ControlVariateAccumulator();
+        MonteCarloGameSimulation.simulatePairedGames(lineupA, lineupB, INNINGS, GAMES_PER_ROUND, scoresA, scoresB,
+            differences);
+        return differences.getMean();
+      };
+      Callable<Double> split = () -> {
+        GameScoreAccumulator scoresA = new GameScoreAccumulator();
+        GameScoreAccumulator scoresB = new GameScoreAccumulator();
+        ControlVariateAccumulator differences = new ControlVariateAccumulator();
+        splitter.simulatePairedGames(lineupA, lineupB, INNINGS, GAMES_PER_ROUND, scoresA, scoresB, differences);
+        return differences.getMean();
+      };
+
+      double inlineSeconds = time(executor, inline);
+      double splitSeconds = time(executor, split);
+      Logger.log(String.format("%d threads: inline %.2fs, split %.2fs, speedup %.2fx", threads, inlineSeconds,
+          splitSeconds, inlineSeconds / splitSeconds));
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  /**
+   * @return the mean wall time of a timed round, in seconds
+   */
+  private double time(ExecutorService executor, Callable<Double> round) throws Exception {
+    for (int i = 0; i < WARMUP_ROUNDS; i++) {
+      executor.submit(round).get();
+    }
+    long start = System.nanoTime();
+    double checksum = 0;
+    for (int i = 0; i < TIMED_ROUNDS; i++) {
+      checksum += executor.submit(round).get();
+    }
+    Logger.log(String.format("mean difference %.4f", checksum / TIMED_ROUNDS));
+    return (System.nanoTime() - start) / 1e9 / TIMED_ROUNDS;
+  }
+
+}
@@ -0,0 +1,78 @@
+package com.github.thbrown.softballsim.tools;
+
+import java.util.List;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.Options;
+import org.junit.Test;
+import com.github.thbrown.softballsim.CommandLineOptions;
+import com.github.thbrown.softballsim.data.gson.DataStats;
+import com.github.thbrown.softballsim.datasource.DataSourceEnum;
+import com.github.thbrown.softballsim.helpers.LineupTypeTestInfo;
+import com.github.thbrown.softballsim.lineup.BattingLineup;
+import com.github.thbrown.softballsim.lineupindexer.BattingLineupIndexer;
+import com.github.thbrown.softballsim.lineupindexer.LineupTypeEnum;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive.CompiledLineup;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive.GameScoreAccumulator;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive.HitGenerator;
+import com.github.thbrown.softballsim.optimizer.impl.montecarloexhaustive.SimulationEngineEnum;
+import com.github.thbrown.softballsim.util.Logger;
+
+/**
+ * Compares the speed of each simulation engine the way MONTE_CARLO_EXHAUSTIVE uses them: compile a
+ * lineup, build its simulator, and simulate a batch of games. Each engine is warmed up before it is
+ * timed.
+ */
+public class SimulationEngineBenchmark {
+
+  private static final int INNINGS = 7;
+  private static final int[] GAMES_PER_LINEUP = {1000, 10000, 100000};
+  private static final int WARMUP_ROUNDS = 3;
+  private static final int TIMED_ROUNDS = 5;
+  private static final long GAMES_PER_ROUND = 2000000;
+
+  @Test
+  public void compareEngines() {
+    CommandLineOptions commandLineOptions = CommandLineOptions.getInstance();
+    Options commonOptions = commandLineOptions.getOptionsForFlags(DataSourceEnum.FILE_SYSTEM, null);
+    CommandLine commonCmd = commandLineOptions.parse(commonOptions, new String[0], true);
+    DataStats stats = DataSourceEnum.FILE_SYSTEM.getData(commonCmd);
+
+    List<String> players = LineupTypeTestInfo.getInstance().getTestLineup(LineupTypeEnum.STANDARD, 10, stats);
+    BattingLineupIndexer<?> indexer = LineupTypeEnum.STANDARD.getLineupIndexer(stats, players);
+    HitGenerator hitGenerator = new HitGenerator(indexer.getLineup(0).asList());
+
+    for (int gamesPerLineup : GAMES_PER_LINEUP) {
+      for (SimulationEngineEnum engine : SimulationEngineEnum.values()) {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+          runRound(engine, indexer, hitGenerator, gamesPerLineup);
+        }
+        long start = System.nanoTime();
+        double checksum = 0;
+        for (int i = 0; i < TIMED_ROUNDS; i++) {
+          checksum += runRound(engine, indexer, hitGenerator, gamesPerLineup);
+        }
+        double nanosPerGame = (System.nanoTime() - start) / (double) (TIMED_ROUNDS * GAMES_PER_ROUND);
+        Logger.log(String.format("%-16s %7d games/lineup %8.1f ns/game (mean score %.3f)", engine, gamesPerLineup,
+            nanosPerGame, checksum / TIMED_ROUNDS));
+      }
+    }
+  }
+
+  /**
+   * Simulates GAMES_PER_ROUND games spread across consecutive lineups
+   *
+   * @return the mean score of all the games simulated, so the work can't be optimized away
+   */
+  private double runRound(SimulationEngineEnum engine, BattingLineupIndexer<?> indexer, HitGenerator hitGenerator,
+      int gamesPerLineup) {
+    GameScoreAccumulator accumulator = new GameScoreAccumulator();
+    long lineupIndex = 0;
+    for (long games = 0; games < GAMES_PER_ROUND; games += gamesPerLineup) {
+      BattingLineup lineup = indexer.getLineup(lineupIndex++ % indexer.size());
+      CompiledLineup compiledLineup = new CompiledLineup(lineup, hitGenerator);
+      engine.getSimulator(compiledLineup).simulateGames(INNINGS, gamesPerLineup, accumulator);
+    }
+    return accumulator.getMean();
+  }
+
+}